@@ -42,9 +42,10 @@ fun InputStream?.readString(): String? {
     val buffer = ByteArray(256)
     val stringStream = StringBuilder()
 
-    while (this.available() > 0) {
-        this.read(buffer)
-        stringStream.append(String(buffer))
+    while (true) {
+        val read = this.read(buffer)
+        if (read < 0) break
+        stringStream.append(String(buffer, 0, read))
     }
     return stringStream.toString()
 }
@@ -312,13 +313,14 @@ fun clearGLErrors() {
  *         if no errors exist.
  */
 fun collectGLErrors(): GLErrorFlags {
-    val errList: MutableList<Int> = mutableListOf()
     var nextError: Int = glGetError()
+    if (nextError == GL_NO_ERROR) return null // The usual case, checked every frame without allocating.
 
+    val errList: MutableList<Int> = mutableListOf()
     while (nextError != GL_NO_ERROR) {
         errList.add(nextError)
         nextError = glGetError()
     }
 
-    return if (errList.count() > 0) errList else null
+    return errList
 }
\ No newline at end of file
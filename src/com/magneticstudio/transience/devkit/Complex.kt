@@ -17,6 +17,17 @@ class Complex constructor(
     var real: Float = 1.0f,
     var imag: Float = 0.0f)
 {
+    /**
+     * Sets both parts of this complex number.
+     *
+     * @return This complex number.
+     */
+    fun set(real: Float, imag: Float): Complex {
+        this.real = real
+        this.imag = imag
+        return this
+    }
+
     /**
      * Calculates the magnitude of the complex number where magnitude
      * c^2 = a^2 + b^2
@@ -158,7 +169,18 @@ class Complex constructor(
      * @param complex Another complex number to multiply with this one.
      * @return The result of multiplying this complex number and another. (Complex result).
      */
-    operator fun times(complex: Complex): Complex = Complex(
+    operator fun times(complex: Complex): Complex = timesInto(complex, Complex())
+
+    /**
+     * Multiplies this complex number with another one and writes the product
+     * into a third complex number without allocating anything. The output may
+     * be this complex number or the other one.
+     *
+     * @param complex Another complex number to multiply with this one.
+     * @param out The complex number the product is written into.
+     * @return The out complex number.
+     */
+    fun timesInto(complex: Complex, out: Complex): Complex = out.set(
         (real * complex.real) - (imag * complex.imag),
         (real * complex.imag) + (imag * complex.real)
     )
@@ -181,8 +203,7 @@ class Complex constructor(
      * @param complex The complex to multiply with this complex number.
      */
     operator fun timesAssign(complex: Complex) {
-        real = (real * complex.real) - (imag * complex.imag)
-        imag = (real * complex.imag) + (imag * complex.real)
+        timesInto(complex, this)
     }
 
     /**
@@ -202,9 +223,20 @@ class Complex constructor(
      * @param complex Another complex number to divide with this one.
      * @return The result of dividing this complex number by another. (Complex result).
      */
-    operator fun div(complex: Complex): Complex {
+    operator fun div(complex: Complex): Complex = divInto(complex, Complex())
+
+    /**
+     * Divides this complex number by another one and writes the result into
+     * a third complex number without allocating anything. The output may be
+     * this complex number or the other one.
+     *
+     * @param complex Another complex number to divide this one by.
+     * @param out The complex number the result is written into.
+     * @return The out complex number.
+     */
+    fun divInto(complex: Complex, out: Complex): Complex {
         val fractionConstant = (complex.real * complex.real) + (complex.imag * complex.imag)
-        return Complex(
+        return out.set(
             (real * complex.real + imag * complex.imag) / fractionConstant,
             (imag * complex.real - real * complex.imag) / fractionConstant
         )
@@ -228,9 +260,7 @@ class Complex constructor(
      * @param complex The complex to divide with this complex number.
      */
     operator fun divAssign(complex: Complex) {
-        val fractionConstant = (complex.real * complex.real) + (complex.imag * complex.imag)
-        real = (real * complex.real + imag * complex.imag) / fractionConstant
-        imag = (imag * complex.real - real * complex.imag) / fractionConstant
+        divInto(complex, this)
     }
 
     /**
@@ -15,12 +15,338 @@
  * from texture files either outside or inside the jar file and display them
  * onto the screen.
  *
+ * The characters of a font are rasterized once (with java.awt) into a single
+ * texture atlas. Every glyph that is drawn in a frame is then written into one
+ * interleaved vertex buffer (position, texture coordinate and color), and the
+ * whole batch is submitted with a single glDrawElements call.
+ *
  * @author Max
  * @since 1.1
  */
 
 package com.magneticstudio.transience.devkit
 
-class Glyphs {
+import org.lwjgl.BufferUtils
+import org.lwjgl.opengl.GL11.*
+import org.lwjgl.opengl.GL15.*
+import org.lwjgl.opengl.GL20.glEnableVertexAttribArray
+import org.lwjgl.opengl.GL20.glVertexAttribPointer
+import org.lwjgl.opengl.GL30.glBindVertexArray
+import org.lwjgl.opengl.GL30.glDeleteVertexArrays
+import org.lwjgl.opengl.GL30.glGenVertexArrays
+import org.newdawn.slick.opengl.TextureImpl
+import java.awt.Font
+import java.awt.RenderingHints
+import java.awt.image.BufferedImage
+import java.io.File
+import java.nio.FloatBuffer
+import java.nio.IntBuffer
+
+// The characters rasterized into an atlas by default (printable ASCII).
+const val ASCII_GLYPHS = " !\"#$%&'()*+,-./0123456789:;<=>?@ABCDEFGHIJKLMNOPQRSTUVWXYZ[\\]^_`abcdefghijklmnopqrstuvwxyz{|}~"
+
+private const val GLYPH_PADDING = 1 // Empty pixels around each glyph in the atlas.
+private const val FLOATS_PER_VERTEX = 8 // x, y, u, v, r, g, b, a
+private const val VERTICES_PER_GLYPH = 4
+private const val INDICES_PER_GLYPH = 6
+private const val INITIAL_GLYPH_CAPACITY = 1024
+
+/**
+ * A texture holding the rasterized characters of a font, where
+ * every character takes up a cell of the same size.
+ */
+class GlyphAtlas private constructor(
+    val texture: Texture2,
+    val cellWidth: Int,
+    val cellHeight: Int,
+    private val characters: String,
+    private val uvs: FloatArray,
+    private val advances: IntArray)
+{
+    companion object Factory {
+
+        /**
+         * Rasterizes the characters of a font file into an atlas.
+         *
+         * @param path The path to the font file (TrueType or OpenType).
+         * @param size The size of the font in pixels.
+         * @param characters The characters to rasterize.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun fromFontFile(path: String, size: Float, characters: String = ASCII_GLYPHS): GlyphAtlas =
+            fromFont(Font.createFont(Font.TRUETYPE_FONT, File(path)).deriveFont(size), characters)
+
+        /**
+         * Rasterizes the characters of a font into an atlas. The glyphs
+         * are drawn white, so they can be tinted by the vertex color.
+         *
+         * @param font The font to rasterize.
+         * @param characters The characters to rasterize.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun fromFont(font: Font, characters: String = ASCII_GLYPHS): GlyphAtlas {
+            val measure = BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics()
+            measure.font = font
+            val metrics = measure.fontMetrics
+            measure.dispose()
+
+            var widest = 0
+            characters.forEach { widest = maxOf(widest, metrics.charWidth(it)) }
+
+            val cellWidth = widest + GLYPH_PADDING * 2
+            val cellHeight = metrics.ascent + metrics.descent + GLYPH_PADDING * 2
+            val columnsWanted = Math.ceil(Math.sqrt(characters.length.toDouble())).toInt()
+            val atlasWidth = nextPowerOfTwo(columnsWanted * cellWidth)
+            val columns = atlasWidth / cellWidth
+            val atlasHeight = nextPowerOfTwo(((characters.length + columns - 1) / columns) * cellHeight)
+
+            val image = BufferedImage(atlasWidth, atlasHeight, BufferedImage.TYPE_INT_ARGB)
+            val graphics = image.createGraphics()
+            graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON)
+            graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON)
+            graphics.font = font
+            graphics.color = java.awt.Color.white
+
+            val uvs = FloatArray(characters.length * 4)
+            val advances = IntArray(characters.length)
+            characters.forEachIndexed { i, c ->
+                val cx = (i % columns) * cellWidth
+                val cy = (i / columns) * cellHeight
+                graphics.drawString(c.toString(), cx + GLYPH_PADDING, cy + GLYPH_PADDING + metrics.ascent)
+                uvs[i * 4]     = cx.toFloat() / atlasWidth
+                uvs[i * 4 + 1] = cy.toFloat() / atlasHeight
+                uvs[i * 4 + 2] = (cx + cellWidth).toFloat() / atlasWidth
+                uvs[i * 4 + 3] = (cy + cellHeight).toFloat() / atlasHeight
+                advances[i] = metrics.charWidth(c)
+            }
+            graphics.dispose()
+
+            // NOTE(max): Rows are uploaded top to bottom, so v = 0 is the top of the atlas.
+            val argb = image.getRGB(0, 0, atlasWidth, atlasHeight, null, 0, atlasWidth)
+            val pixels = BufferUtils.createByteBuffer(argb.size * 4)
+            for (pixel in argb) {
+                pixels.put(pixel.argb_red_b)
+                pixels.put(pixel.argb_green_b)
+                pixels.put(pixel.argb_blue_b)
+                pixels.put(pixel.argb_alpha_b)
+            }
+            pixels.flip()
+
+            val texture = Texture2.fromPixels(atlasWidth, atlasHeight, pixels)
+            texture.setFiltering(GL_LINEAR, GL_LINEAR)
+            return GlyphAtlas(texture, cellWidth, cellHeight, characters, uvs, advances)
+        }
+
+        private fun nextPowerOfTwo(value: Int): Int {
+            var result = 1
+            while (result < value) result = result shl 1
+            return result
+        }
+    }
+
+    // Direct lookup for ASCII characters; anything else is searched for.
+    private val asciiIndex = IntArray(128) { characters.indexOf(it.toChar()) }
+
+    /**
+     * Gets the index of a character in the atlas.
+     *
+     * @return The index of the character or -1 if it isn't in the atlas.
+     */
+    fun indexOf(character: Char): Int =
+        if (character.toInt() < 128) asciiIndex[character.toInt()] else characters.indexOf(character)
+
+    fun u0(index: Int): Float = uvs[index * 4]
+    fun v0(index: Int): Float = uvs[index * 4 + 1]
+    fun u1(index: Int): Float = uvs[index * 4 + 2]
+    fun v1(index: Int): Float = uvs[index * 4 + 3]
+
+    /**
+     * Gets the horizontal advance (the width) of a character in pixels.
+     */
+    fun advance(index: Int): Int = advances[index]
+
+    fun dispose() = texture.dispose()
+}
+
+/**
+ * Draws many glyphs of an atlas with a single draw call.
+ *
+ * Usage (every frame):
+ *     glyphs.begin()
+ *     glyphs.add(...) for every glyph
+ *     glyphs.end(projection)
+ */
+class Glyphs(val atlas: GlyphAtlas) {
+
+    private val shader: Shader = Shader.loadFromJar("glyphs")
+    private val atlasUniform = shader.samplerUniform("U_Atlas")
+    private val projectionUniform = shader.mat4Uniform("Cpu_Projection")
+    private var capacity = 0
+    private var vertices: FloatBuffer = BufferUtils.createFloatBuffer(0)
+    private var glyphCount = 0
+    private var uploadedCount = 0
+
+    private val vertexArray = glGenVertexArrays()
+    private val vertexBuffer = glGenBuffers()
+    private val elementBuffer = glGenBuffers()
+
+    init {
+        ensureCapacity(INITIAL_GLYPH_CAPACITY)
+    }
+
+    /**
+     * The amount of glyphs added since the last call to begin().
+     */
+    val count: Int
+        get() = glyphCount
+
+    /**
+     * Starts a new batch of glyphs.
+     */
+    fun begin() {
+        vertices.clear()
+        glyphCount = 0
+    }
+
+    /**
+     * Adds a glyph to the batch. The glyph is centered on the
+     * specified point.
+     *
+     * @param character The character to draw (ignored if it isn't in the atlas).
+     * @param centerX The X value of the center of the glyph.
+     * @param centerY The Y value of the center of the glyph.
+     * @param scale The scale of the glyph (1 draws it at the size of the font).
+     */
+    fun add(character: Char, centerX: Float, centerY: Float, scale: Float,
+            red: Float, green: Float, blue: Float, alpha: Float)
+    {
+        val index = atlas.indexOf(character)
+        if (index < 0 || alpha <= 0f) return
+
+        if (glyphCount == capacity)
+            ensureCapacity(capacity * 2)
+
+        val x0 = centerX - (atlas.advance(index) / 2f + GLYPH_PADDING) * scale
+        val y0 = centerY - (atlas.cellHeight / 2f) * scale
+        val x1 = x0 + atlas.cellWidth * scale
+        val y1 = y0 + atlas.cellHeight * scale
+        val u0 = atlas.u0(index)
+        val v0 = atlas.v0(index)
+        val u1 = atlas.u1(index)
+        val v1 = atlas.v1(index)
+
+        vertices.put(x0).put(y0).put(u0).put(v0).put(red).put(green).put(blue).put(alpha)
+        vertices.put(x1).put(y0).put(u1).put(v0).put(red).put(green).put(blue).put(alpha)
+        vertices.put(x1).put(y1).put(u1).put(v1).put(red).put(green).put(blue).put(alpha)
+        vertices.put(x0).put(y1).put(u0).put(v1).put(red).put(green).put(blue).put(alpha)
+        glyphCount++
+    }
+
+    /**
+     * Uploads the batch and draws every glyph in it with
+     * one draw call.
+     *
+     * @param projection The matrix transforming the glyph positions into clip space.
+     */
+    fun end(projection: Mat4) {
+        upload()
+        draw(projection)
+    }
+
+    /**
+     * Uploads the batch without drawing it. The uploaded batch can
+     * then be drawn (see draw) in as many frames as needed, so glyphs
+     * that don't change don't have to be added again every frame.
+     */
+    fun upload() {
+        uploadedCount = glyphCount
+        if (glyphCount == 0) return
+
+        vertices.flip()
+        glBindBuffer(GL_ARRAY_BUFFER, vertexBuffer)
+        // Orphan the old storage so the driver doesn't wait on the previous frame.
+        glBufferData(GL_ARRAY_BUFFER, capacity.toLong() * VERTICES_PER_GLYPH * FLOATS_PER_VERTEX * 4, GL_STREAM_DRAW)
+        glBufferSubData(GL_ARRAY_BUFFER, 0, vertices)
+        glBindBuffer(GL_ARRAY_BUFFER, 0)
+    }
+
+    /**
+     * Draws the last uploaded batch with one draw call. Adding glyphs
+     * may discard the uploaded batch, so a batch that is being built
+     * can't be drawn until it's uploaded.
+     *
+     * @param projection The matrix transforming the glyph positions into clip space.
+     */
+    fun draw(projection: Mat4) {
+        if (uploadedCount == 0) return
+
+        shader.bind()
+        atlas.texture.bind()
+        atlasUniform.set(atlas.texture)
+        projectionUniform.set(projection)
+
+        glEnable(GL_BLEND)
+        glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA)
+        glBindVertexArray(vertexArray)
+        glDrawElements(GL_TRIANGLES, uploadedCount * INDICES_PER_GLYPH, GL_UNSIGNED_INT, 0L)
+
+        glBindVertexArray(0)
+        shader.unbind()
+        atlas.texture.unbind()
+        // NOTE(max): Slick2d caches the last texture it bound, so it has to forget about it.
+        TextureImpl.bindNone()
+
+        collectGLErrors().reportThemBy(WRITING_TO_LOGS)
+    }
+
+    /**
+     * Releases the GPU resources of this batch (not the atlas).
+     */
+    fun dispose() {
+        glDeleteBuffers(vertexBuffer)
+        glDeleteBuffers(elementBuffer)
+        glDeleteVertexArrays(vertexArray)
+    }
+
+    /**
+     * Grows the vertex storage and index buffer to hold
+     * the specified amount of glyphs.
+     */
+    private fun ensureCapacity(glyphs: Int) {
+        if (glyphs <= capacity) return
+
+        val grown = BufferUtils.createFloatBuffer(glyphs * VERTICES_PER_GLYPH * FLOATS_PER_VERTEX)
+        vertices.flip()
+        grown.put(vertices)
+        vertices = grown
+        capacity = glyphs
+
+        // Every glyph is a quad made of two triangles.
+        val indices: IntBuffer = BufferUtils.createIntBuffer(glyphs * INDICES_PER_GLYPH)
+        for (i in 0 until glyphs) {
+            val base = i * VERTICES_PER_GLYPH
+            indices.put(base).put(base + 1).put(base + 2)
+            indices.put(base + 2).put(base + 3).put(base)
+        }
+        indices.flip()
+
+        val stride = FLOATS_PER_VERTEX * 4
+        glBindVertexArray(vertexArray)
+        glBindBuffer(GL_ARRAY_BUFFER, vertexBuffer)
+        glBufferData(GL_ARRAY_BUFFER, capacity.toLong() * VERTICES_PER_GLYPH * stride, GL_STREAM_DRAW)
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, elementBuffer)
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW)
+
+        glVertexAttribPointer(0, 2, GL_FLOAT, false, stride, 0L)
+        glEnableVertexAttribArray(0)
+        glVertexAttribPointer(1, 2, GL_FLOAT, false, stride, 2L * 4)
+        glEnableVertexAttribArray(1)
+        glVertexAttribPointer(2, 4, GL_FLOAT, false, stride, 4L * 4)
+        glEnableVertexAttribArray(2)
 
-}
\ No newline at end of file
+        glBindVertexArray(0)
+        glBindBuffer(GL_ARRAY_BUFFER, 0)
+    }
+}
@@ -16,6 +16,9 @@ class Mat4 private constructor(initFunc: (Int) -> Float) {
 
     companion object Factory {
 
+        // One reusable upload buffer per thread (see getShaderBuffer).
+        private val shaderBuffer: ThreadLocal<FloatBuffer> = ThreadLocal.withInitial { BufferUtils.createFloatBuffer(16) }
+
         /**
          * Creates an empty matrix (all 0's)
          *
@@ -30,6 +33,30 @@ class Mat4 private constructor(initFunc: (Int) -> Float) {
          */
         fun identity(): Mat4 = Mat4 { if (it % 5 == 0) 1.0f else 0.0f }
 
+        /**
+         * Creates a matrix that moves points by the specified amounts.
+         *
+         * @return A translation matrix.
+         */
+        fun translation(x: Float, y: Float, z: Float = 0f): Mat4 = empty().setTranslation(x, y, z)
+
+        /**
+         * Creates a matrix that scales points by the specified factors.
+         *
+         * @return A scaling matrix.
+         */
+        fun scaling(x: Float, y: Float, z: Float = 1f): Mat4 = empty().setScaling(x, y, z)
+
+        /**
+         * Creates a matrix that rotates points around the z axis. With
+         * a projection where y points down (like the screen) a positive
+         * angle turns clockwise, the same as Slick2d's rotations.
+         *
+         * @param degrees The angle of the rotation in degrees.
+         * @return A rotation matrix.
+         */
+        fun rotationZ(degrees: Float): Mat4 = empty().setRotationZ(degrees)
+
         /**
          * The orthographic projection matrix (Straight from wikipedia).
          */
@@ -39,20 +66,39 @@ class Mat4 private constructor(initFunc: (Int) -> Float) {
             bottom: Float,
             top:    Float,
             near:   Float =  1f,
-            far:    Float = -1f): Mat4
-        {
-            val result: Mat4 = empty()
-            // XYZ modifiers:
-            result[0, 0] =  2f / (right - left)
-            result[1, 1] =  2f / (top - bottom)
-            result[2, 2] = -2f / (far - near)
-            // W modifiers:
-            result[0, 3] = - (right + left) / (right - left)
-            result[1, 3] = - (top + bottom) / (top - bottom)
-            result[2, 3] = - (far + near) / (far - near)
-            result[3, 3] = 1f
-            return result
+            far:    Float = -1f): Mat4 = empty().setOrthographic(left, right, bottom, top, near, far)
+
+        /**
+         * Multiplies two matrices into a third one without allocating anything.
+         * The product is the same as a * b (see times), and out may be a or b.
+         *
+         * @param a The left matrix.
+         * @param b The right matrix.
+         * @param out The matrix the product is written into.
+         * @return The out matrix.
+         */
+        fun mulInto(a: Mat4, b: Mat4, out: Mat4): Mat4 {
+            // NOTE(max): Column c of the product only reads column c of a, so writing
+            // a column right after computing it is safe even if out is a. Every column
+            // reads all of b though, so b is copied first if it's also the output
+            // (whether or not a is too, like when squaring a matrix in place).
+            val rhs = if (out === b) b.matrix.copyInto(scratch.get()) else b.matrix
+            val lhs = a.matrix
+            val res = out.matrix
+            for (col in 0 until 4) {
+                val c = col * 4
+                val a0 = lhs[c]
+                val a1 = lhs[c + 1]
+                val a2 = lhs[c + 2]
+                val a3 = lhs[c + 3]
+                for (row in 0 until 4)
+                    res[c + row] = a0 * rhs[row] + a1 * rhs[4 + row] + a2 * rhs[8 + row] + a3 * rhs[12 + row]
+            }
+            return out
         }
+
+        // Copy of the right matrix when mulInto writes into it.
+        private val scratch: ThreadLocal<FloatArray> = ThreadLocal.withInitial { FloatArray(16) }
     }
 
     private inline fun swap(ind1: Int, ind2: Int) {
@@ -113,20 +159,14 @@ class Mat4 private constructor(initFunc: (Int) -> Float) {
      * Multiplies this matrix by another matrix and returns a new matrix
      * with the result.
      *
+     * NOTE(max): The product is (matrix * this) in math notation, so
+     * a chain like scale * rotation * translation reads in the order
+     * the transforms are applied to a point (scale first).
+     *
      * @param matrix The matrix to multiply this matrix by.
      * @return The resulting matrix.
      */
-    operator fun times(matrix: Mat4): Mat4 {
-        val result = empty()
-
-        for (itr in 0 until 16) {
-            for (dot in 0 until 4) {
-                result.matrix[itr] += this[dot, itr / 4] * matrix[itr % 4, dot]
-            }
-        }
-
-        return result
-    }
+    operator fun times(matrix: Mat4): Mat4 = mulInto(this, matrix, empty())
 
     /**
      * Multiplies this matrix by a scalar and stores the result in this
@@ -140,33 +180,254 @@ class Mat4 private constructor(initFunc: (Int) -> Float) {
     }
 
     /**
-     * Multiplies this matrix by another matrix and returns a new matrix
-     * with the result.
+     * Multiplies this matrix by another matrix and stores the result in
+     * this matrix object (the same product as times).
      *
      * @param matrix The matrix to multiply this matrix by.
-     * @return The resulting matrix.
      */
     operator fun timesAssign(matrix: Mat4) {
-        for (itr in 0 until 16) {
-            var accumulator = 0.0f
-            for (dot in 0 until 4) {
-                accumulator += this[dot, itr / 4] * matrix[itr % 4, dot]
-            }
-            this.matrix[itr] = accumulator
+        mulInto(this, matrix, this)
+    }
+
+    /**
+     * Copies the values of another matrix into this one.
+     *
+     * @return This matrix.
+     */
+    fun set(other: Mat4): Mat4 {
+        other.matrix.copyInto(matrix)
+        return this
+    }
+
+    /**
+     * Turns this matrix into an identity matrix.
+     *
+     * @return This matrix.
+     */
+    fun setIdentity(): Mat4 {
+        for (i in 0 until 16)
+            matrix[i] = if (i % 5 == 0) 1.0f else 0.0f
+        return this
+    }
+
+    /**
+     * Turns this matrix into a translation matrix (see translation).
+     *
+     * @return This matrix.
+     */
+    fun setTranslation(x: Float, y: Float, z: Float = 0f): Mat4 {
+        setIdentity()
+        this[0, 3] = x
+        this[1, 3] = y
+        this[2, 3] = z
+        return this
+    }
+
+    /**
+     * Turns this matrix into a scaling matrix (see scaling).
+     *
+     * @return This matrix.
+     */
+    fun setScaling(x: Float, y: Float, z: Float = 1f): Mat4 {
+        setIdentity()
+        this[0, 0] = x
+        this[1, 1] = y
+        this[2, 2] = z
+        return this
+    }
+
+    /**
+     * Turns this matrix into a rotation around the z axis (see rotationZ).
+     *
+     * @param degrees The angle of the rotation in degrees.
+     * @return This matrix.
+     */
+    fun setRotationZ(degrees: Float): Mat4 {
+        val radians = Math.toRadians(degrees.toDouble())
+        val cos = Math.cos(radians).toFloat()
+        val sin = Math.sin(radians).toFloat()
+        setIdentity()
+        this[0, 0] = cos
+        this[0, 1] = -sin
+        this[1, 0] = sin
+        this[1, 1] = cos
+        return this
+    }
+
+    /**
+     * Turns this matrix into the rotation described by a unit quaternion.
+     *
+     * @param q The rotation (expected to be normalized).
+     * @return This matrix.
+     */
+    fun setRotation(q: Quaternion): Mat4 {
+        val w = q.w
+        val x = q.x
+        val y = q.y
+        val z = q.z
+        setIdentity()
+        this[0, 0] = 1f - 2f * (y * y + z * z)
+        this[0, 1] = 2f * (x * y - w * z)
+        this[0, 2] = 2f * (x * z + w * y)
+        this[1, 0] = 2f * (x * y + w * z)
+        this[1, 1] = 1f - 2f * (x * x + z * z)
+        this[1, 2] = 2f * (y * z - w * x)
+        this[2, 0] = 2f * (x * z - w * y)
+        this[2, 1] = 2f * (y * z + w * x)
+        this[2, 2] = 1f - 2f * (x * x + y * y)
+        return this
+    }
+
+    /**
+     * Turns this matrix into an orthographic projection (see orthographic).
+     *
+     * @return This matrix.
+     */
+    fun setOrthographic(
+        left:   Float,
+        right:  Float,
+        bottom: Float,
+        top:    Float,
+        near:   Float =  1f,
+        far:    Float = -1f): Mat4
+    {
+        matrix.fill(0f)
+        // XYZ modifiers:
+        this[0, 0] =  2f / (right - left)
+        this[1, 1] =  2f / (top - bottom)
+        this[2, 2] = -2f / (far - near)
+        // W modifiers:
+        this[0, 3] = - (right + left) / (right - left)
+        this[1, 3] = - (top + bottom) / (top - bottom)
+        this[2, 3] = - (far + near) / (far - near)
+        this[3, 3] = 1f
+        return this
+    }
+
+    /**
+     * Moves everything this matrix transforms by the specified amounts
+     * (the same as this *= translation(x, y, z), without allocating).
+     *
+     * @return This matrix.
+     */
+    fun translateInPlace(x: Float, y: Float, z: Float = 0f): Mat4 {
+        for (col in 0 until 4) {
+            val c = col * 4
+            val w = matrix[c + 3]
+            matrix[c]     += x * w
+            matrix[c + 1] += y * w
+            matrix[c + 2] += z * w
         }
+        return this
     }
 
     /**
-     * Updates the float buffer with the current values of the matrix
-     * to be sent to a shader.
+     * Scales everything this matrix transforms by the specified factors
+     * (the same as this *= scaling(x, y, z), without allocating).
+     *
+     * @return This matrix.
+     */
+    fun scaleInPlace(x: Float, y: Float, z: Float = 1f): Mat4 {
+        for (col in 0 until 4) {
+            val c = col * 4
+            matrix[c]     *= x
+            matrix[c + 1] *= y
+            matrix[c + 2] *= z
+        }
+        return this
+    }
+
+    /**
+     * Rotates everything this matrix transforms around the z axis
+     * (the same as this *= rotationZ(degrees), without allocating).
+     *
+     * @param degrees The angle of the rotation in degrees.
+     * @return This matrix.
+     */
+    fun rotateInPlace(degrees: Float): Mat4 {
+        val radians = Math.toRadians(degrees.toDouble())
+        val cos = Math.cos(radians).toFloat()
+        val sin = Math.sin(radians).toFloat()
+        for (col in 0 until 4) {
+            val c = col * 4
+            val r0 = matrix[c]
+            val r1 = matrix[c + 1]
+            matrix[c]     = cos * r0 - sin * r1
+            matrix[c + 1] = sin * r0 + cos * r1
+        }
+        return this
+    }
+
+    /**
+     * Transforms 2D positions (x, y pairs with z = 0 and w = 1) in place, or
+     * into another array. Perspective is ignored, which is fine for affine
+     * transforms like the ones built with the functions above.
+     *
+     * @param points The positions, one x, y pair after another.
+     * @param offset The index of the first position's x in the array.
+     * @param count The amount of positions to transform.
+     * @param out The array the results are written into (at the same indices).
+     */
+    @JvmOverloads
+    fun transformPoints2(points: FloatArray, offset: Int = 0, count: Int = (points.size - offset) / 2, out: FloatArray = points) {
+        val m = matrix
+        var i = offset
+        for (n in 0 until count) {
+            val x = points[i]
+            val y = points[i + 1]
+            out[i]     = m[0] * x + m[4] * y + m[12]
+            out[i + 1] = m[1] * x + m[5] * y + m[13]
+            i += 2
+        }
+    }
+
+    /**
+     * Transforms 3D positions (x, y, z triples with w = 1) in place, or into
+     * another array. Perspective is ignored (see transformPoints2).
+     *
+     * @param points The positions, one x, y, z triple after another.
+     * @param offset The index of the first position's x in the array.
+     * @param count The amount of positions to transform.
+     * @param out The array the results are written into (at the same indices).
+     */
+    @JvmOverloads
+    fun transformPoints3(points: FloatArray, offset: Int = 0, count: Int = (points.size - offset) / 3, out: FloatArray = points) {
+        val m = matrix
+        var i = offset
+        for (n in 0 until count) {
+            val x = points[i]
+            val y = points[i + 1]
+            val z = points[i + 2]
+            out[i]     = m[0] * x + m[4] * y + m[8]  * z + m[12]
+            out[i + 1] = m[1] * x + m[5] * y + m[9]  * z + m[13]
+            out[i + 2] = m[2] * x + m[6] * y + m[10] * z + m[14]
+            i += 3
+        }
+    }
+
+    /**
+     * Writes the values of the matrix into a buffer (replacing its contents)
+     * so it can be sent to a shader.
+     *
+     * @param buffer A buffer with room for 16 floats.
+     * @return The same buffer, flipped and ready to be read.
      */
-    fun getShaderBuffer(): FloatBuffer {
-        val buffer = BufferUtils.createFloatBuffer(matrix.size)
+    fun writeTo(buffer: FloatBuffer): FloatBuffer {
+        buffer.clear()
         buffer.put(matrix)
         buffer.flip()
         return buffer
     }
 
+    /**
+     * Updates the float buffer with the current values of the matrix
+     * to be sent to a shader.
+     *
+     * NOTE(max): The buffer is reused by every matrix on the same thread, so
+     *            it's only valid until the next call on that thread.
+     */
+    fun getShaderBuffer(): FloatBuffer = writeTo(shaderBuffer.get())
+
     fun print() {
         for (row in 0 until 4) {
             for (col in 0 until 4) {
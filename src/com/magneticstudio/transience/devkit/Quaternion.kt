@@ -15,6 +15,45 @@ class Quaternion constructor(
     var y: Float = 0.0f,
     var z: Float = 0.0f)
 {
+    /**
+     * Sets every component of this quaternion.
+     *
+     * @return This quaternion.
+     */
+    fun set(w: Float, x: Float, y: Float, z: Float): Quaternion {
+        this.w = w
+        this.x = x
+        this.y = y
+        this.z = z
+        return this
+    }
+
+    /**
+     * Turns this quaternion into a rotation around an axis.
+     *
+     * @param axisX The x component of the axis (the axis is normalized here).
+     * @param axisY The y component of the axis.
+     * @param axisZ The z component of the axis.
+     * @param degrees The angle of the rotation in degrees.
+     * @return This quaternion.
+     */
+    fun setAxisAngle(axisX: Float, axisY: Float, axisZ: Float, degrees: Float): Quaternion {
+        val length = sqrt(axisX * axisX + axisY * axisY + axisZ * axisZ)
+        if (length == 0.0f)
+            return set(1.0f, 0.0f, 0.0f, 0.0f)
+        val half = Math.toRadians(degrees.toDouble()) / 2.0
+        val s = Math.sin(half).toFloat() / length
+        return set(Math.cos(half).toFloat(), axisX * s, axisY * s, axisZ * s)
+    }
+
+    /**
+     * Writes the rotation this (unit) quaternion describes into a matrix.
+     *
+     * @param out The matrix to write the rotation into.
+     * @return The out matrix.
+     */
+    fun toMatrix(out: Mat4): Mat4 = out.setRotation(this)
+
     /**
      * Calculates the magnitude of this quaternion.
      *
@@ -47,7 +86,7 @@ class Quaternion constructor(
      */
     inline fun conjugate() {
         x = -x
-        y = -x
+        y = -y
         z = -z
     }
 
@@ -168,7 +207,18 @@ class Quaternion constructor(
      * @param quaternion Another quaternion number to multiply with this one.
      * @return The result of multiplying this quaternion number and another. (Quaternion result).
      */
-    operator fun times(quaternion: Quaternion): Quaternion = Quaternion(
+    operator fun times(quaternion: Quaternion): Quaternion = timesInto(quaternion, Quaternion())
+
+    /**
+     * Multiplies this quaternion with another one and writes the product into
+     * a third quaternion without allocating anything. The output may be this
+     * quaternion or the other one.
+     *
+     * @param quaternion Another quaternion number to multiply with this one.
+     * @param out The quaternion the product is written into.
+     * @return The out quaternion.
+     */
+    fun timesInto(quaternion: Quaternion, out: Quaternion): Quaternion = out.set(
         (w * quaternion.w  -  x * quaternion.x  -  y * quaternion.y  -  z * quaternion.z),
         (w * quaternion.x  +  x * quaternion.w  +  y * quaternion.z  -  z * quaternion.y),
         (w * quaternion.y  -  x * quaternion.z  +  y * quaternion.w  +  z * quaternion.x),
@@ -195,10 +245,7 @@ class Quaternion constructor(
      * @param quaternion The quaternion to multiply with this quaternion number.
      */
     operator fun timesAssign(quaternion: Quaternion) {
-        w = (w * quaternion.w  -  x * quaternion.x  -  y * quaternion.y  -  z * quaternion.z)
-        x = (w * quaternion.x  +  x * quaternion.w  +  y * quaternion.z  -  z * quaternion.y)
-        y = (w * quaternion.y  -  x * quaternion.z  +  y * quaternion.w  +  z * quaternion.x)
-        z = (w * quaternion.z  +  x * quaternion.y  -  y * quaternion.x  +  z * quaternion.w)
+        timesInto(quaternion, this)
     }
 
     /**
@@ -220,17 +267,28 @@ class Quaternion constructor(
      * @param quaternion Another quaternion number to divide with this one.
      * @return The result of dividing this quaternion number by another. (Quaternion result).
      */
-    operator fun div(quaternion: Quaternion): Quaternion {
+    operator fun div(quaternion: Quaternion): Quaternion = divInto(quaternion, Quaternion())
+
+    /**
+     * Divides this quaternion by another one and writes the result into a
+     * third quaternion without allocating anything. The output may be this
+     * quaternion or the other one.
+     *
+     * @param quaternion Another quaternion number to divide this one by.
+     * @param out The quaternion the result is written into.
+     * @return The out quaternion.
+     */
+    fun divInto(quaternion: Quaternion, out: Quaternion): Quaternion {
         val fractionConstant =
             (quaternion.w * quaternion.w) +
             (quaternion.x * quaternion.x) +
             (quaternion.y * quaternion.y) +
             (quaternion.z * quaternion.z)
-        return Quaternion(
+        return out.set(
             (w * quaternion.w  +  x * quaternion.x  +  y * quaternion.y  +  z * quaternion.z) / fractionConstant,
             (x * quaternion.w  +  z * quaternion.y  -  w * quaternion.x  -  y * quaternion.z) / fractionConstant,
             (y * quaternion.w  +  x * quaternion.z  -  w * quaternion.y  -  z * quaternion.x) / fractionConstant,
-            (z * quaternion.w  +  w * quaternion.x  -  w * quaternion.z  -  x * quaternion.y) / fractionConstant
+            (z * quaternion.w  +  y * quaternion.x  -  w * quaternion.z  -  x * quaternion.y) / fractionConstant
         )
     }
 
@@ -254,15 +312,7 @@ class Quaternion constructor(
      * @param quaternion The quaternion to divide with this quaternion number.
      */
     operator fun divAssign(quaternion: Quaternion) {
-        val fractionConstant =
-            (quaternion.w * quaternion.w) +
-            (quaternion.x * quaternion.x) +
-            (quaternion.y * quaternion.y) +
-            (quaternion.z * quaternion.z)
-        w = (w * quaternion.w  +  x * quaternion.x  +  y * quaternion.y  +  z * quaternion.z) / fractionConstant
-        x = (x * quaternion.w  +  z * quaternion.y  -  w * quaternion.x  -  y * quaternion.z) / fractionConstant
-        y = (y * quaternion.w  +  x * quaternion.z  -  w * quaternion.y  -  z * quaternion.x) / fractionConstant
-        z = (z * quaternion.w  +  w * quaternion.x  -  w * quaternion.z  -  x * quaternion.y) / fractionConstant
+        divInto(quaternion, this)
     }
 
     /**
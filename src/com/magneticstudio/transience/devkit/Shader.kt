@@ -7,9 +7,12 @@
 
 package com.magneticstudio.transience.devkit
 
+import org.lwjgl.BufferUtils
 import org.lwjgl.opengl.GL11.GL_FALSE
+import org.lwjgl.opengl.GL11.GL_FLOAT
 import org.lwjgl.opengl.GL20.*
 import org.lwjgl.opengl.GL32.GL_GEOMETRY_SHADER
+import java.nio.FloatBuffer
 
 private const val INFO_LOG_BUFFER_SIZE = 256
 
@@ -21,6 +24,17 @@ class Shader private constructor(
     var program: Int
         private set
 
+    // Every active uniform of the program by name, resolved once after linking.
+    private val uniforms = HashMap<String, ActiveUniform>()
+
+    // Reused by uniformMat4f, so uploading a matrix allocates nothing.
+    private val matrixBuffer: FloatBuffer = BufferUtils.createFloatBuffer(16)
+
+    /**
+     * The location, GL type and array size of an active uniform.
+     */
+    private class ActiveUniform(val location: Int, val type: Int, val size: Int)
+
     init {
         if (vertexSource == null || fragmentSource == null)
             reportGLError("Shader error: Vertex or Fragment shader(s) are/is null.", true)
@@ -60,6 +74,9 @@ class Shader private constructor(
             glDeleteShader(geometry as Int)
         }
 
+        if (program != 0)
+            resolveUniforms()
+
         collectGLErrors().reportThemBy(WRITING_TO_LOGS and THROWING_EXCEPTION)
     }
 
@@ -116,6 +133,67 @@ class Shader private constructor(
         }
     }
 
+    /**
+     * Looks up the location of every active uniform of the program, so
+     * setting uniforms never has to ask the driver for a location again.
+     * Arrays are also reachable by their name without the "[0]".
+     */
+    private fun resolveUniforms() {
+        val count = glGetProgrami(program, GL_ACTIVE_UNIFORMS)
+        val maxLength = glGetProgrami(program, GL_ACTIVE_UNIFORM_MAX_LENGTH)
+        val sizeType = BufferUtils.createIntBuffer(2)
+        for (index in 0 until count) {
+            val name = glGetActiveUniform(program, index, maxLength, sizeType)
+            val uniform = ActiveUniform(glGetUniformLocation(program, name), sizeType.get(1), sizeType.get(0))
+            uniforms[name] = uniform
+            if (name.endsWith("[0]"))
+                uniforms[name.substring(0, name.length - 3)] = uniform
+        }
+    }
+
+    /**
+     * Gets the cached location of a uniform.
+     *
+     * @return The location of the uniform (-1 if the program doesn't have it).
+     */
+    fun uniformLocation(name: String): Int = uniforms[name]?.location ?: -1
+
+    /**
+     * The names of every active uniform of the program.
+     */
+    val uniformNames: Set<String>
+        get() = uniforms.keys
+
+    /**
+     * Looks up a uniform for a typed handle and reports (without throwing)
+     * if the program doesn't have it or it has a different type.
+     */
+    private fun lookUp(name: String, vararg types: Int): Int {
+        val uniform = uniforms[name]
+        if (uniform == null)
+            reportGLError("Shader has no active uniform \"$name\".", false)
+        else if (uniform.type !in types)
+            reportGLError("Uniform \"$name\" has GL type ${uniform.type}, expected one of ${types.joinToString()}.", false)
+        return uniform?.location ?: -1
+    }
+
+    /**
+     * Typed handles to the uniforms of this program. Resolve them once (for example
+     * after loading the shader) and keep them; setting a value through a handle
+     * needs no lookup at all.
+     */
+    fun floatUniform(name: String) = FloatUniform(name, lookUp(name, GL_FLOAT))
+
+    fun vec2Uniform(name: String) = Vec2Uniform(name, lookUp(name, GL_FLOAT_VEC2))
+
+    fun vec3Uniform(name: String) = Vec3Uniform(name, lookUp(name, GL_FLOAT_VEC3))
+
+    fun vec4Uniform(name: String) = Vec4Uniform(name, lookUp(name, GL_FLOAT_VEC4))
+
+    fun mat4Uniform(name: String) = Mat4Uniform(name, lookUp(name, GL_FLOAT_MAT4))
+
+    fun samplerUniform(name: String) = SamplerUniform(name, lookUp(name, GL_SAMPLER_1D, GL_SAMPLER_2D, GL_SAMPLER_3D, GL_SAMPLER_CUBE))
+
     /**
      * Checks whether the program had compiled and linked successfully if for some reason
      * allowReportsToThrow is false and no errors were thrown.
@@ -137,13 +215,16 @@ class Shader private constructor(
     /**
      * Sets a texture's "slot" as the integer for the OpenGL sampler2D
      * type so that the sampler can use the texture.
+     *
+     * NOTE(max): The location comes from the cache filled after linking; prefer
+     *            keeping a typed handle (see samplerUniform) for uniforms set every frame.
      */
-    inline fun uniformTex2D(name: String, tex2: Texture2)
-            = glUniform1i(glGetUniformLocation(program, name), tex2.slot)
+    fun uniformTex2D(name: String, tex2: Texture2)
+            = glUniform1i(uniformLocation(name), tex2.slot)
 
     /**
      * Sets a 4x4 matrix in this shader.
      */
-    inline fun uniformMat4f(name: String, mat4: Mat4)
-            = glUniformMatrix4(glGetUniformLocation(program, name), false, mat4.getShaderBuffer())
+    fun uniformMat4f(name: String, mat4: Mat4)
+            = glUniformMatrix4(uniformLocation(name), false, mat4.writeTo(matrixBuffer))
 }
\ No newline at end of file
@@ -12,6 +12,7 @@ import org.lwjgl.opengl.GL11.*
 import org.lwjgl.opengl.GL13.GL_TEXTURE0
 import org.lwjgl.opengl.GL13.glActiveTexture
 import org.lwjgl.opengl.GL30.*
+import java.awt.image.BufferedImage
 import java.awt.image.DataBufferByte
 import java.nio.ByteBuffer
 import javax.imageio.ImageIO
@@ -33,6 +34,15 @@ inline val Int.argb_green_b get(): Byte = ((this shr 8)  and 0xFF).toByte()
 inline val Int.argb_blue_b  get(): Byte = ((this)        and 0xFF).toByte()
 inline val Int.argb_alpha_b get(): Byte = ((this shr 24) and 0xFF).toByte()
 
+/**
+ * The decoded pixels of a texture that hasn't been uploaded yet.
+ *
+ * @param width The width of the texture.
+ * @param height The height of the texture.
+ * @param pixels The pixels in RGBA order (4 bytes per pixel, rows one after another).
+ */
+class TexturePixels(val width: Int, val height: Int, val pixels: ByteBuffer)
+
 // NOTE(max): If needed bump and gloss maps will be added later.
 // NOTE(max): The data is expected to be in BGRA / BGR format.
 class Texture2 private constructor(
@@ -79,9 +89,9 @@ class Texture2 private constructor(
          * of the TEXTURE_JAR_LOCATION package in the jar file. If it cannot be found
          * a texture error is reported and an exception is possibly thrown.
          *
-         * Java's ImageIO and BufferedImage is used to load the texture, so if you're messing
-         * around with the code please note that the pixel format for the BufferedImage is ABGR,
-         * which is why we have to reverse the bytes in the integers near the end of the function.
+         * The pixels are decoded with decodeFromJar and uploaded right away, so this
+         * must be called on the GL thread. Use a TextureLoader to decode on worker
+         * threads instead.
          *
          * The final result is a texture object containing an OpenGL handle for the texture.
          *
@@ -91,6 +101,25 @@ class Texture2 private constructor(
          * @param flipVertically Whether to flip the image vertically when loading.
          */
         fun loadFromJar(file: String, subdir: String?, flipVertically: Boolean = true): Texture2 {
+            val decoded = decodeFromJar(file, subdir, flipVertically)
+            return Texture2(decoded.width, decoded.height, decoded.pixels)
+        }
+
+        /**
+         * Reads a texture file from the jar file (see loadFromJar) and converts it
+         * to RGBA pixels without touching OpenGL, so it may run on any thread.
+         *
+         * Java's ImageIO and BufferedImage is used to load the texture. The raster is read
+         * in bulk: images stored as ABGR bytes (the usual case for PNGs with alpha) are
+         * swizzled straight from their data buffer, anything else is read with a single
+         * getRGB call for the whole image. Flipping vertically only changes which source
+         * row each destination row is copied from.
+         *
+         * @param file The name of the file (for example "wood.jpg")
+         * @param subdir The subdirectory of src/textures/... the file is in (if any).
+         * @param flipVertically Whether to flip the image vertically when loading.
+         */
+        fun decodeFromJar(file: String, subdir: String?, flipVertically: Boolean = true): TexturePixels {
             val texIS = when (subdir) {
                 null -> openJarResource("$TEXTURE_JAR_LOCATION/$file")
                 else -> openJarResource("$TEXTURE_JAR_LOCATION/$subdir/$file")
@@ -99,38 +128,88 @@ class Texture2 private constructor(
             if (texIS == null)
                 reportTextureError("Failed to open JAR texture resource.", true)
 
-            // NOTE(max): The buffered image stores the image data as ABGR
-            val loaded = ImageIO.read(texIS)
+            val loaded = texIS.use { ImageIO.read(it) }
 
             if (loaded == null)
                 reportTextureError("javax.imageio.ImageIO.read(texIS) failed to read image (unrecognized)", true)
 
-            val hasAlpha = loaded.colorModel.hasAlpha()
-
-            // @HACK(max): Assumption: the number of components is 4 if it has alpha or 3 if it doesn't.
-            // this may be a problem later on, just note that.
-            val imgBuffer = BufferUtils.createByteBuffer(loaded.width * loaded.height * 4)
-
-            for (y in
-                if (flipVertically)
-                    (loaded.height - 1 downTo 0)
-                else
-                    (0 until loaded.height))
-            {
-                for (x in 0 until loaded.width) {
-                    // NOTE(max): According to the documentation BufferedImage.getRGB() returns
-                    // an ARGB format integer.
-                    val argb: Int = loaded.getRGB(x, y)
-                    imgBuffer.put(argb.argb_red_b)
-                    imgBuffer.put(argb.argb_green_b)
-                    imgBuffer.put(argb.argb_blue_b)
-                    imgBuffer.put(argb.argb_alpha_b)
+            val width = loaded.width
+            val height = loaded.height
+            val rowBytes = width * 4
+            val rgba = ByteArray(rowBytes * height)
+
+            if (loaded.type == BufferedImage.TYPE_4BYTE_ABGR) {
+                // NOTE(max): The data buffer holds the pixels as A, B, G, R bytes.
+                val abgr = (loaded.raster.dataBuffer as DataBufferByte).data
+                for (y in 0 until height) {
+                    var src = (if (flipVertically) height - 1 - y else y) * rowBytes
+                    var dst = y * rowBytes
+                    for (x in 0 until width) {
+                        rgba[dst]     = abgr[src + 3]
+                        rgba[dst + 1] = abgr[src + 2]
+                        rgba[dst + 2] = abgr[src + 1]
+                        rgba[dst + 3] = abgr[src]
+                        src += 4
+                        dst += 4
+                    }
+                }
+            }
+            else {
+                // NOTE(max): According to the documentation BufferedImage.getRGB() returns
+                // ARGB format integers.
+                val argbRows = loaded.getRGB(0, 0, width, height, null, 0, width)
+                for (y in 0 until height) {
+                    var src = (if (flipVertically) height - 1 - y else y) * width
+                    var dst = y * rowBytes
+                    for (x in 0 until width) {
+                        val argb = argbRows[src++]
+                        rgba[dst]     = argb.argb_red_b
+                        rgba[dst + 1] = argb.argb_green_b
+                        rgba[dst + 2] = argb.argb_blue_b
+                        rgba[dst + 3] = argb.argb_alpha_b
+                        dst += 4
+                    }
                 }
             }
-            imgBuffer.flip()
 
-            return Texture2(loaded.width, loaded.height, imgBuffer)
+            val imgBuffer = BufferUtils.createByteBuffer(rgba.size)
+            imgBuffer.put(rgba).flip()
+            return TexturePixels(width, height, imgBuffer)
         }
+
+        /**
+         * Creates a texture from pixels that are already in memory,
+         * for example an image generated by the game itself.
+         *
+         * @param width The width of the texture.
+         * @param height The height of the texture.
+         * @param data The pixels in RGBA order (4 bytes per pixel, rows one after another).
+         */
+        fun fromPixels(width: Int, height: Int, data: ByteBuffer): Texture2 = Texture2(width, height, data)
+
+        /**
+         * Creates a texture from pixels decoded with decodeFromJar.
+         */
+        fun fromPixels(pixels: TexturePixels): Texture2 = Texture2(pixels.width, pixels.height, pixels.pixels)
+    }
+
+    /**
+     * Sets the filters used when the texture is drawn smaller
+     * or bigger than it is (for example GL_NEAREST or GL_LINEAR).
+     */
+    fun setFiltering(minFilter: Int, magFilter: Int) {
+        glBindTexture(GL_TEXTURE_2D, glTextureId)
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, minFilter)
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, magFilter)
+        glBindTexture(GL_TEXTURE_2D, 0)
+    }
+
+    /**
+     * Deletes the texture from the GPU.
+     */
+    fun dispose() {
+        glDeleteTextures(glTextureId)
+        glTextureId = 0
     }
 
     fun bind() {
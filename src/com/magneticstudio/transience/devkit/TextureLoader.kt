@@ -0,0 +1,104 @@
+/**
+ * Asynchronous texture loading.
+ *
+ * @author Max
+ * @since 1.1
+ */
+
+package com.magneticstudio.transience.devkit
+
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.BlockingQueue
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Loads textures without blocking the GL thread. Files are decoded
+ * (see Texture2.decodeFromJar) on a pool of worker threads, and the
+ * decoded pixels wait in a bounded upload queue until the GL thread
+ * calls processUploads, which is the only part that touches OpenGL.
+ *
+ * When the upload queue is full the workers wait for the GL thread,
+ * so decoding a large texture set never holds more than the queue's
+ * capacity of decoded pixels in memory.
+ *
+ * @param workers The amount of decoding threads.
+ * @param maxPendingUploads The amount of decoded textures that may wait for upload.
+ */
+class TextureLoader @JvmOverloads constructor(
+    workers: Int = Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+    maxPendingUploads: Int = 16)
+{
+    private class PendingUpload(val pixels: TexturePixels, val result: CompletableFuture<Texture2>)
+
+    private val uploads: BlockingQueue<PendingUpload> = ArrayBlockingQueue(Math.max(1, maxPendingUploads))
+    private val threadCount = AtomicInteger()
+    private val decoders: ExecutorService = Executors.newFixedThreadPool(Math.max(1, workers)) { task ->
+        val thread = Thread(task, "Texture Decoder ${threadCount.incrementAndGet()}")
+        thread.isDaemon = true
+        thread
+    }
+
+    /**
+     * The amount of decoded textures waiting for upload.
+     */
+    val pendingUploads: Int
+        get() = uploads.size
+
+    /**
+     * Starts loading a texture from the jar file (see Texture2.loadFromJar).
+     * The returned future completes on the GL thread, inside of processUploads,
+     * once the texture is uploaded (or right away on a worker if decoding fails).
+     *
+     * @param file The name of the file (for example "wood.jpg")
+     * @param subdir The subdirectory of src/textures/... the file is in (if any).
+     * @param flipVertically Whether to flip the image vertically when loading.
+     */
+    @JvmOverloads
+    fun loadFromJar(file: String, subdir: String?, flipVertically: Boolean = true): CompletableFuture<Texture2> {
+        val result = CompletableFuture<Texture2>()
+        decoders.execute {
+            try {
+                uploads.put(PendingUpload(Texture2.decodeFromJar(file, subdir, flipVertically), result))
+            }
+            catch (e: Exception) {
+                result.completeExceptionally(e)
+            }
+        }
+        return result
+    }
+
+    /**
+     * Uploads textures that finished decoding. Must be called on the GL
+     * thread, usually once per frame.
+     *
+     * @param maxUploads The most textures to upload in this call (limits the time taken per frame).
+     * @return The amount of textures uploaded.
+     */
+    @JvmOverloads
+    fun processUploads(maxUploads: Int = Int.MAX_VALUE): Int {
+        var uploaded = 0
+        while (uploaded < maxUploads) {
+            val pending = uploads.poll() ?: break
+            try {
+                pending.result.complete(Texture2.fromPixels(pending.pixels))
+            }
+            catch (e: Exception) {
+                pending.result.completeExceptionally(e)
+            }
+            uploaded++
+        }
+        return uploaded
+    }
+
+    /**
+     * Stops the decoding threads. Textures that are still
+     * being decoded are dropped.
+     */
+    fun shutdown() {
+        decoders.shutdownNow()
+        uploads.clear()
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Typed handles to shader uniforms.
+ *
+ * @author Max
+ * @since 1.1
+ */
+
+package com.magneticstudio.transience.devkit
+
+import org.lwjgl.BufferUtils
+import org.lwjgl.opengl.GL20.*
+import java.nio.FloatBuffer
+
+/**
+ * A uniform of a linked shader program. The location is resolved
+ * once (see Shader), so setting the value is a single glUniform call.
+ * A handle to a uniform the program doesn't have (for example because
+ * the compiler removed it) has the location -1, which OpenGL ignores.
+ *
+ * NOTE(max): Like the glUniform functions, the setters affect the
+ *            program that is currently bound.
+ *
+ * @param name The name of the uniform in the shader source.
+ * @param location The location of the uniform in the program.
+ */
+sealed class Uniform(val name: String, val location: Int) {
+
+    /**
+     * Whether the program actually has this uniform.
+     */
+    val isActive: Boolean
+        get() = location >= 0
+}
+
+/**
+ * Handle to a float uniform.
+ */
+class FloatUniform(name: String, location: Int) : Uniform(name, location) {
+    fun set(x: Float): Unit = glUniform1f(location, x)
+}
+
+/**
+ * Handle to a vec2 uniform.
+ */
+class Vec2Uniform(name: String, location: Int) : Uniform(name, location) {
+    fun set(x: Float, y: Float): Unit = glUniform2f(location, x, y)
+}
+
+/**
+ * Handle to a vec3 uniform.
+ */
+class Vec3Uniform(name: String, location: Int) : Uniform(name, location) {
+    fun set(x: Float, y: Float, z: Float): Unit = glUniform3f(location, x, y, z)
+}
+
+/**
+ * Handle to a vec4 uniform.
+ */
+class Vec4Uniform(name: String, location: Int) : Uniform(name, location) {
+    fun set(x: Float, y: Float, z: Float, w: Float): Unit = glUniform4f(location, x, y, z, w)
+}
+
+/**
+ * Handle to a mat4 uniform. The matrix is copied into a buffer
+ * owned by the handle, so uploading allocates nothing.
+ */
+class Mat4Uniform(name: String, location: Int) : Uniform(name, location) {
+    private val buffer: FloatBuffer = BufferUtils.createFloatBuffer(16)
+
+    fun set(mat4: Mat4): Unit = glUniformMatrix4(location, false, mat4.writeTo(buffer))
+}
+
+/**
+ * Handle to a sampler uniform (sampler2D and the like).
+ */
+class SamplerUniform(name: String, location: Int) : Uniform(name, location) {
+    fun set(tex2: Texture2): Unit = glUniform1i(location, tex2.slot)
+
+    fun setUnit(unit: Int): Unit = glUniform1i(location, unit)
+}
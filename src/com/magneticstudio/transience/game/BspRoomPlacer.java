@@ -0,0 +1,96 @@
+package com.magneticstudio.transience.game;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.SplittableRandom;
+
+/**
+ * This class places rooms by binary space partitioning: the
+ * map is split in two, and the halves again, until every part
+ * is small enough for a single room, and then a room of a random
+ * size is put somewhere in each part. The parts don't overlap,
+ * so every room fits and no attempt is wasted, and the map is
+ * filled evenly. As parts are visited depth first, rooms that
+ * follow each other in the list are close to each other, which
+ * keeps the hallways linking them short.
+ *
+ * @author Max
+ */
+public class BspRoomPlacer implements RoomPlacer {
+
+    /**
+     * Creates a new BspRoomPlacer object.
+     */
+    public BspRoomPlacer() {
+
+    }
+
+    /**
+     * Splits the map into a tree of areas and places
+     * a room in each of its leaves.
+     * @param limits The size of the map and of the rooms, and the budget.
+     * @param rng The random number generator to place rooms with.
+     * @param placement Carves a candidate room if it fits.
+     * @return The statistics of the placement.
+     */
+    @Override
+    public Result place(Limits limits, SplittableRandom rng, Placement placement) {
+        // A part keeps its last column and row free, so the rooms of neighbouring parts never touch.
+        // The map's own last column and row can't hold a room (see TileSetGenerator.Room.embed).
+        final Deque<int[]> parts = new ArrayDeque<>();
+        parts.push(new int[] {0, 0, limits.getMapWidth() - 1, limits.getMapHeight() - 1});
+        int attempts = 0, placed = 0;
+        while(!parts.isEmpty() && attempts < limits.getBudget()) {
+            final int[] part = parts.pop();
+            final int x = part[0], y = part[1], w = part[2], h = part[3];
+
+            final boolean splitX = w > limits.getMaxWidth() + 1 && w >= 2 * (limits.getMinWidth() + 1);
+            final boolean splitY = h > limits.getMaxHeight() + 1 && h >= 2 * (limits.getMinHeight() + 1);
+            if(splitX && (!splitY || w * limits.getMaxHeight() >= h * limits.getMaxWidth())) {
+                final int cut = cut(w, limits.getMinWidth() + 1, rng);
+                parts.push(new int[] {x + cut, y, w - cut, h});
+                parts.push(new int[] {x, y, cut, h});
+                continue;
+            }
+            if(splitY) {
+                final int cut = cut(h, limits.getMinHeight() + 1, rng);
+                parts.push(new int[] {x, y + cut, w, h - cut});
+                parts.push(new int[] {x, y, w, cut});
+                continue;
+            }
+
+            // Small enough for a single room.
+            final int maxWidth = Math.min(limits.getMaxWidth(), w - 1);
+            final int maxHeight = Math.min(limits.getMaxHeight(), h - 1);
+            if(maxWidth < limits.getMinWidth() || maxHeight < limits.getMinHeight())
+                continue;
+            final int width = limits.getMinWidth() + rng.nextInt(maxWidth - limits.getMinWidth() + 1);
+            final int height = limits.getMinHeight() + rng.nextInt(maxHeight - limits.getMinHeight() + 1);
+            attempts++;
+            if(placement.tryPlace(x + rng.nextInt(w - width), y + rng.nextInt(h - height), width, height))
+                placed++;
+        }
+        return new Result(attempts, placed, parts.isEmpty());
+    }
+
+    /**
+     * Picks where to split a part, keeping both sides
+     * large enough for the smallest room.
+     * @param length The length of the part.
+     * @param smallest The smallest length of either side.
+     * @param rng The random number generator.
+     * @return The length of the first side.
+     */
+    private static int cut(int length, int smallest, SplittableRandom rng) {
+        return smallest + rng.nextInt(length - 2 * smallest + 1);
+    }
+
+    /**
+     * Gets the name of this strategy.
+     * @return "bsp".
+     */
+    @Override
+    public String getName() {
+        return "bsp";
+    }
+}
@@ -45,6 +45,15 @@ public class Entity {
         return representation;
     }
 
+    /**
+     * Gives back the shared resources used by this
+     * entity. Called once the entity is removed.
+     */
+    public void release() {
+        if(representation instanceof CharacterCell)
+            Res.releaseFont(((CharacterCell) representation).getFont());
+    }
+
     /**
      * Gets the maximum health of this entity.
      * @return Maximum health of the entity.
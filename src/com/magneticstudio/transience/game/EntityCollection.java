@@ -31,7 +31,8 @@ public class EntityCollection {
         if(player == null)
             player = new Player(ts);
         IntPoint air = ts.randomPositionOn(Tile.Type.AIR);
-        player.setPosition(air.x, air.y);
+        if(air != null)
+            player.setPosition(air.x, air.y);
     }
 
     /**
@@ -46,9 +47,20 @@ public class EntityCollection {
      * Clears all entities besides the player.
      */
     public void purgeAllButPlayer() {
+        for(Entity entity : entities)
+            entity.release();
         entities.clear();
     }
 
+    /**
+     * Gets the amount of entities in this
+     * collection, including the player.
+     * @return The amount of entities.
+     */
+    public int size() {
+        return entities.size() + (player == null ? 0 : 1);
+    }
+
     /**
      * Returns the list of all entities in this array list.
      * @return The list of entities in this collection.
@@ -53,21 +53,42 @@ public class Environment {
     }
 
     /**
-     * Renders all of the effects in
-     * the effects list.
+     * Drops the effects that have finished playing.
+     * Runs on the simulation thread, which is the only
+     * one changing the list of effects.
+     */
+    public void update() {
+        effects.removeIf(e -> e.animation.isFinished());
+    }
+
+    /**
+     * Gets the effects that are currently playing.
+     * @return A copy of the list of effects.
+     */
+    public Effect[] getEffects() {
+        return effects.toArray(new Effect[0]);
+    }
+
+    /**
+     * Gets the amount of effects that are currently playing.
+     * @return The amount of effects.
+     */
+    public int getEffectCount() {
+        return effects.size();
+    }
+
+    /**
+     * Renders the effects of the frame being
+     * rendered (see WorldSnapshot).
      * @param ts The tile set to render on.
      * @param g The graphics to render with.
      */
     public void render(TileSet ts, Graphics g) {
-        for(int i = 0; i < effects.size(); i++) {
-            Effect e = effects.get(i);
-            if(e.animation.isFinished()) {
-                effects.remove(i);
-                i--;
+        for(Effect e : ts.getRenderSnapshot().getEffects()) {
+            if(e.animation.isFinished())
                 continue;
-            }
             IntPoint loc = e.tileLocation;
-            e.animation.setRenderScale(ts.getScale());
+            e.animation.setRenderScale(ts.getRenderScale());
             e.animation.render(g, ts.tileToDisplayLocationX(loc.x), ts.tileToDisplayLocationY(loc.y), true);
         }
     }
@@ -77,8 +98,24 @@ public class Environment {
      * the location of the animation alongside
      * the animation sprite.
      */
-    private static final class Effect {
+    public static final class Effect {
         private Sprite animation;
         private IntPoint tileLocation;
+
+        /**
+         * Gets the animation of this effect.
+         * @return The animation sprite.
+         */
+        public Sprite getAnimation() {
+            return animation;
+        }
+
+        /**
+         * Gets the tile this effect is located on.
+         * @return The location of the tile.
+         */
+        public IntPoint getTileLocation() {
+            return tileLocation;
+        }
     }
 }
@@ -0,0 +1,248 @@
+package com.magneticstudio.transience.game;
+
+import com.magneticstudio.transience.devkit.CommonKt;
+import com.magneticstudio.transience.util.Metrics;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * This class keeps the floors of a tile set by their depth:
+ * the floors below the current one, generated ahead of time in
+ * parallel on a fork/join pool, and the floors visited last, as
+ * they were left. Going down a floor then only has to swap in a
+ * floor that is ready, and going back up swaps in the floor that
+ * was there before, with its item stacks where they were.
+ *
+ * Only the floors within a window around the current depth are
+ * kept (floorsAhead below it and floorsKept above it), and the
+ * ones outside of it are dropped. A dropped floor is simply
+ * generated again; it comes out the same (but for what changed on
+ * it), as each floor is generated from the random number stream of
+ * its depth. The first floor is never dropped, as it's made along
+ * with the tile set and can't be generated again on its own.
+ *
+ * The manager isn't thread safe. It should only be used by the
+ * thread changing the tile set (see TileSetGenerator), while the
+ * floors themselves are generated on the pool.
+ *
+ * @author Max
+ */
+public class FloorManager {
+
+    public static final int DEFAULT_FLOORS_AHEAD = 2; // Floors generated ahead of time below the current one.
+    public static final int DEFAULT_FLOORS_KEPT = 3; // Visited floors kept above the current one.
+
+    private static final Metrics.Counter FLOORS_READY = Metrics.counter("level.floors.ready"); // Floors that were ready when entered.
+    private static final Metrics.Counter FLOORS_WAITED = Metrics.counter("level.floors.waited"); // Floors still being generated when entered.
+    private static final Metrics.Counter FLOORS_MISSED = Metrics.counter("level.floors.missed"); // Floors that weren't kept when entered.
+    private static final Metrics.Counter FLOORS_FAILED = Metrics.counter("level.floors.failed"); // Floors that failed to generate ahead.
+
+    private final Generation generation; // Generates the floor of a depth.
+    private final Map<Integer, CompletableFuture<TileSetGenerator.Floor>> floors = new HashMap<>(); // The kept floors by depth.
+    private int floorsAhead; // Floors generated ahead of time below the current one.
+    private int floorsKept; // Visited floors kept above the current one.
+
+    /**
+     * Creates a new FloorManager object.
+     * @param generation Generates the floor of a depth (on the pool).
+     * @param floorsAhead Floors generated ahead of time below the current one.
+     * @param floorsKept Visited floors kept above the current one.
+     */
+    FloorManager(Generation generation, int floorsAhead, int floorsKept) {
+        this.generation = generation;
+        this.floorsAhead = Math.max(floorsAhead, 0);
+        this.floorsKept = Math.max(floorsKept, 0);
+    }
+
+    /**
+     * Starts generating the floors below a depth that aren't
+     * kept yet, and drops the floors outside of the window
+     * around it.
+     * @param depth The current depth.
+     */
+    void prefetch(int depth) {
+        for(int d = depth + 1; d <= depth + floorsAhead; d++) {
+            if(!floors.containsKey(d)) {
+                final int below = d;
+                floors.put(d, CompletableFuture.supplyAsync(() -> generation.generate(below, true), PoolHolder.POOL));
+            }
+        }
+        trim(depth);
+    }
+
+    /**
+     * Takes the floor of a depth out of the manager, waiting
+     * for it if it's still being generated (it's further
+     * along than a new one would be).
+     * @param depth The depth of the floor.
+     * @return The floor (null if it isn't kept, or failed to generate).
+     */
+    TileSetGenerator.Floor take(int depth) {
+        final CompletableFuture<TileSetGenerator.Floor> pending = floors.remove(depth);
+        if(pending == null) {
+            FLOORS_MISSED.increment();
+            return null;
+        }
+
+        final boolean ready = pending.isDone();
+        final TileSetGenerator.Floor floor;
+        try {
+            floor = pending.join();
+        }
+        catch(CompletionException | CancellationException e) {
+            FLOORS_FAILED.increment();
+            CommonKt.logErr("Floor " + depth + " failed to generate ahead: ", e.getCause() != null ? e.getCause() : e);
+            return null;
+        }
+        (ready ? FLOORS_READY : FLOORS_WAITED).increment();
+        return floor;
+    }
+
+    /**
+     * Gets the floor of a depth to enter: takes it if it's
+     * kept, or generates it on the calling thread otherwise.
+     * @param depth The depth of the floor.
+     * @return The floor.
+     */
+    TileSetGenerator.Floor enter(int depth) {
+        TileSetGenerator.Floor floor = take(depth);
+        return floor != null ? floor : generation.generate(depth, false);
+    }
+
+    /**
+     * Keeps a floor that is being left, so it can be
+     * swapped in again as it is.
+     * @param depth The depth of the floor.
+     * @param floor The floor.
+     */
+    void keep(int depth, TileSetGenerator.Floor floor) {
+        final CompletableFuture<TileSetGenerator.Floor> old = floors.put(depth, CompletableFuture.completedFuture(floor));
+        if(old != null)
+            old.cancel(false);
+    }
+
+    /**
+     * Drops the floors outside of the window around a depth
+     * (but the first floor). Floors being generated finish,
+     * but are thrown away.
+     * @param depth The current depth.
+     */
+    void trim(int depth) {
+        Iterator<Map.Entry<Integer, CompletableFuture<TileSetGenerator.Floor>>> it = floors.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry<Integer, CompletableFuture<TileSetGenerator.Floor>> entry = it.next();
+            final int d = entry.getKey();
+            if(d > 0 && (d < depth - floorsKept || d > depth + floorsAhead)) {
+                entry.getValue().cancel(false);
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops every floor.
+     */
+    void clear() {
+        floors.values().forEach(f -> f.cancel(false));
+        floors.clear();
+    }
+
+    /**
+     * Checks whether the floor of a depth is kept and
+     * ready to be swapped in.
+     * @param depth The depth of the floor.
+     * @return Whether the floor is ready.
+     */
+    public boolean isReady(int depth) {
+        final CompletableFuture<TileSetGenerator.Floor> floor = floors.get(depth);
+        return floor != null && floor.isDone() && !floor.isCompletedExceptionally();
+    }
+
+    /**
+     * Gets the amount of floors kept (generated,
+     * being generated or visited).
+     * @return The amount of kept floors.
+     */
+    public int size() {
+        return floors.size();
+    }
+
+    /**
+     * Sets how many floors below the current one are
+     * generated ahead of time (0 to generate each floor
+     * when it's entered). Applies from the next floor change.
+     * @param floorsAhead The amount of floors generated ahead.
+     */
+    public void setFloorsAhead(int floorsAhead) {
+        this.floorsAhead = Math.max(floorsAhead, 0);
+    }
+
+    /**
+     * Gets how many floors below the current one are
+     * generated ahead of time.
+     * @return The amount of floors generated ahead.
+     */
+    public int getFloorsAhead() {
+        return floorsAhead;
+    }
+
+    /**
+     * Sets how many visited floors above the current one
+     * are kept. Applies from the next floor change.
+     * @param floorsKept The amount of visited floors kept.
+     */
+    public void setFloorsKept(int floorsKept) {
+        this.floorsKept = Math.max(floorsKept, 0);
+    }
+
+    /**
+     * Gets how many visited floors above the current one are kept.
+     * @return The amount of visited floors kept.
+     */
+    public int getFloorsKept() {
+        return floorsKept;
+    }
+
+    /**
+     * This interface is used by the floor
+     * manager to generate a floor.
+     */
+    interface Generation {
+        /**
+         * Generates the floor of a depth. Runs on the
+         * pool, for several depths at once, unless a floor
+         * that isn't kept is entered.
+         * @param depth The depth of the floor.
+         * @param background Whether the floor is generated ahead of time.
+         * @return The generated floor.
+         */
+        TileSetGenerator.Floor generate(int depth, boolean background);
+    }
+
+    /**
+     * Holds the pool floors are generated on, made when
+     * first needed. It leaves a core to the simulation and
+     * the rendering, and its threads don't keep the game
+     * running once the window is closed.
+     */
+    private static final class PoolHolder {
+        private static final ForkJoinPool POOL = new ForkJoinPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+            pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("Floor Generation " + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            },
+            null,
+            false
+        );
+    }
+}
@@ -0,0 +1,212 @@
+package com.magneticstudio.transience.game;
+
+import com.magneticstudio.transience.devkit.GlyphAtlas;
+import com.magneticstudio.transience.devkit.Glyphs;
+import com.magneticstudio.transience.devkit.Mat4;
+import com.magneticstudio.transience.ui.CharacterCell;
+import com.magneticstudio.transience.ui.Res;
+import com.magneticstudio.transience.util.DirtyRegion;
+import com.magneticstudio.transience.util.RenderTasks;
+import org.newdawn.slick.Color;
+import org.newdawn.slick.Graphics;
+
+/**
+ * This class draws a tile set as batches of glyphs on the GPU
+ * (from a glyph atlas of the tile font), with a draw call each,
+ * instead of a font draw per tile through Slick2d.
+ *
+ * The glyphs are placed in the tile set's own pixels (like on
+ * the canvas), and zoom and shake are applied by the view
+ * transform, so zooming doesn't change the batches. The tile
+ * batch covers the area of the tile layer and is only rebuilt
+ * when tiles change. Item stacks are images, so they are still
+ * drawn through Slick2d (with the same transform).
+ *
+ * @author Max
+ */
+public class GlyphTileRenderer implements TileRenderer {
+
+    private static final int PIXELS_PER_TILE = TileSet.PIXELS_PER_TILE; // The size of a tile in the tile set's pixels.
+    private static final int CENTER_ADJUSTMENT = TileSet.CENTER_ADJUSTMENT; // From the corner to the center of a tile.
+
+    private Glyphs glyphs; // Draws the glyphs of the entities with one draw call.
+    private Glyphs tileGlyphs; // The glyphs of the tiles around the visible area (rebuilt when they change).
+    private Mat4 glyphProjection; // Projection from screen pixels used by the glyph batch.
+    private int projectionWidth, projectionHeight; // The viewport the projection was made for.
+    private final Mat4 glyphView = Mat4.Factory.identity(); // The view and projection of the glyph batch (reused every frame).
+    private int layerX, layerY; // The location of the upper left tile held by the tile layer.
+    private int layerColumns, layerRows; // The amount of tiles held by the tile layer.
+
+    /**
+     * Creates a new GlyphTileRenderer object. The glyph
+     * atlas is made on the first frame it renders.
+     */
+    public GlyphTileRenderer() {
+
+    }
+
+    /**
+     * Moves the tile layer to cover a new area.
+     * The tile batch is rebuilt right after.
+     * @param tileSet The tile set being rendered.
+     * @param layerX The first column of the tile layer.
+     * @param layerY The first row of the tile layer.
+     * @param columns The amount of columns of the tile layer.
+     * @param rows The amount of rows of the tile layer.
+     */
+    @Override
+    public void anchorLayer(TileSet tileSet, int layerX, int layerY, int columns, int rows) {
+        // The glyph batch has no images to hold the tiles.
+        this.layerX = layerX;
+        this.layerY = layerY;
+        this.layerColumns = columns;
+        this.layerRows = rows;
+    }
+
+    /**
+     * Rebuilds the glyph batch of the tile layer.
+     * @param tileSet The tile set being rendered.
+     * @param dirty The tiles that changed (possibly all of them).
+     */
+    @Override
+    public void redrawTiles(TileSet tileSet, DirtyRegion dirty) {
+        prepare(tileSet);
+
+        // Every cell of a type shares one tile, so the colors are looked up once per type.
+        final Color[] typeColors = new Color[Tile.Type.values().length];
+        tileSet.getTileRegistry().forEach(t -> {
+            if(t.getRepresentation() instanceof CharacterCell)
+                typeColors[t.getTileType().ordinal()] = ((CharacterCell) t.getRepresentation()).getGlyphColor();
+        });
+
+        tileGlyphs.begin();
+        tileSet.forEachDrawnTile(layerX, layerY, layerColumns, layerRows, (t, ix, iy) -> {
+            Color color = typeColors[t.getTileType().ordinal()];
+            if(color == null)
+                return;
+            tileGlyphs.add(
+                ((CharacterCell) t.getRepresentation()).getCharacter(),
+                ix * PIXELS_PER_TILE + CENTER_ADJUSTMENT,
+                iy * PIXELS_PER_TILE + CENTER_ADJUSTMENT,
+                1f,
+                color.r, color.g, color.b, color.a
+            );
+        });
+        tileGlyphs.upload();
+    }
+
+    /**
+     * Draws the glyph batch of the tile layer
+     * with the zoom and shake of the frame.
+     * @param tileSet The tile set being rendered.
+     * @param graphics The graphics of the screen.
+     * @param firstX The first visible column.
+     * @param firstY The first visible row.
+     * @param lastX The column after the last visible column.
+     * @param lastY The row after the last visible row.
+     */
+    @Override
+    public void renderTiles(TileSet tileSet, Graphics graphics, int firstX, int firstY, int lastX, int lastY) {
+        prepare(tileSet);
+
+        // Scale, then rotate around the player, then move onto the screen (see Mat4.times).
+        final float scale = tileSet.getRenderScale();
+        final float pivotX = tileSet.getRotationPivotX(), pivotY = tileSet.getRotationPivotY();
+        glyphView.setScaling(scale, scale, 1f)
+            .translateInPlace(-pivotX, -pivotY, 0f)
+            .rotateInPlace(tileSet.getRenderSnapshot().getShakeRotation())
+            .translateInPlace(pivotX + tileSet.tileToDisplayLocationX(0), pivotY + tileSet.tileToDisplayLocationY(0), 0f);
+        Mat4.Factory.mulInto(glyphView, glyphProjection, glyphView);
+        tileGlyphs.draw(glyphView);
+    }
+
+    /**
+     * Draws the item stacks through Slick2d and the
+     * entities as one batch of glyphs.
+     * @param tileSet The tile set being rendered.
+     * @param graphics The graphics of the screen.
+     * @param firstX The first visible column.
+     * @param firstY The first visible row.
+     * @param lastX The column after the last visible column.
+     * @param lastY The row after the last visible row.
+     */
+    @Override
+    public void renderEntities(TileSet tileSet, Graphics graphics, int firstX, int firstY, int lastX, int lastY) {
+        final WorldSnapshot view = tileSet.getRenderSnapshot();
+        final float alpha = tileSet.getRenderAlpha();
+        glyphs.begin();
+        for(WorldSnapshot.EntityView e : view.getEntities()) {
+            if(!(e.getRepresentation() instanceof CharacterCell))
+                continue;
+            CharacterCell cell = (CharacterCell) e.getRepresentation();
+            Color color = cell.getGlyphColor();
+            glyphs.add(
+                cell.getCharacter(),
+                e.getX(alpha) * PIXELS_PER_TILE + CENTER_ADJUSTMENT,
+                e.getY(alpha) * PIXELS_PER_TILE + CENTER_ADJUSTMENT,
+                1f,
+                color.r, color.g, color.b, color.a
+            );
+        }
+        glyphs.end(glyphView);
+
+        final float scale = tileSet.getRenderScale();
+        graphics.pushTransform();
+        graphics.translate(tileSet.tileToDisplayLocationX(0), tileSet.tileToDisplayLocationY(0));
+        graphics.rotate(tileSet.getRotationPivotX(), tileSet.getRotationPivotY(), view.getShakeRotation());
+        graphics.scale(scale, scale);
+        for(WorldSnapshot.StackView stack : view.getStacks()) {
+            final int x = stack.getX(), y = stack.getY();
+            if(x < firstX || x >= lastX || y < firstY || y >= lastY)
+                continue;
+            stack.render(graphics, x * PIXELS_PER_TILE, y * PIXELS_PER_TILE);
+        }
+        graphics.popTransform();
+    }
+
+    /**
+     * Creates the glyph batches on first use, and the
+     * projection whenever the viewport changes size.
+     * @param tileSet The tile set being rendered.
+     */
+    private void prepare(TileSet tileSet) {
+        if(glyphs == null) {
+            GlyphAtlas atlas = GlyphAtlas.fromFontFile(Res.getFontPath("Consolas.ttf"), TileSet.TILE_FONT_SIZE);
+            glyphs = new Glyphs(atlas);
+            tileGlyphs = new Glyphs(atlas);
+        }
+        if(glyphProjection == null
+           || projectionWidth != tileSet.getViewportWidth()
+           || projectionHeight != tileSet.getViewportHeight()) {
+            projectionWidth = tileSet.getViewportWidth();
+            projectionHeight = tileSet.getViewportHeight();
+            glyphProjection = Mat4.Factory.orthographic(0, projectionWidth, projectionHeight, 0, 1, -1);
+        }
+    }
+
+    /**
+     * Checks whether this renderer draws onto the screen.
+     * @return True, as the frames are drawn with Slick2d's graphics.
+     */
+    @Override
+    public boolean drawsToScreen() {
+        return true;
+    }
+
+    /**
+     * Frees the glyph batches and the glyph
+     * atlas (on the render thread).
+     */
+    @Override
+    public void dispose() {
+        if(glyphs == null)
+            return;
+        final Glyphs oldGlyphs = glyphs, oldTileGlyphs = tileGlyphs;
+        RenderTasks.run(() -> {
+            oldGlyphs.dispose();
+            oldTileGlyphs.dispose();
+            oldGlyphs.getAtlas().dispose();
+        });
+        glyphs = tileGlyphs = null;
+    }
+}
@@ -0,0 +1,335 @@
+package com.magneticstudio.transience.game;
+
+import com.magneticstudio.transience.ui.CharacterCell;
+import com.magneticstudio.transience.util.DirtyRegion;
+import org.newdawn.slick.Color;
+import org.newdawn.slick.Graphics;
+
+import java.util.Arrays;
+
+/**
+ * This class renders a tile set without OpenGL. Each frame the
+ * visible tiles, item stacks and entities are written into a
+ * buffer of cells (a character and a color per tile), so the
+ * game can be generated, simulated and rendered where there
+ * is no display, and the cost of the render path can be
+ * measured apart from the graphics driver.
+ *
+ * The tile layer is cached as cells the same way the other
+ * renderers cache it, so culling, the tile layer margin and
+ * the redrawing of changed tiles behave as they do on screen.
+ * The environment effects aren't drawn.
+ *
+ * Since nothing is drawn through Slick2d, the tile set may be
+ * rendered with null graphics (see TileSet.render). Fonts should
+ * be loaded without their glyph textures (see Res.setHeadless).
+ *
+ * @author Max
+ */
+public class HeadlessTileRenderer implements TileRenderer {
+
+    public static final char EMPTY_CELL = ' '; // The character of a cell nothing is drawn in.
+    public static final char STACK_CELL = '*'; // The character drawn for an item stack.
+    private static final int STACK_COLOR = 0xFFFFD700; // The color drawn for an item stack.
+
+    // The tile layer
+    private char[] layerCharacters = new char[0]; // The character of each cell of the tile layer.
+    private int[] layerColors = new int[0]; // The color (ARGB) of each cell of the tile layer.
+    private int layerX, layerY; // The location of the upper left tile held by the tile layer.
+    private int layerColumns, layerRows; // The amount of tiles held by the tile layer.
+
+    // The frame
+    private char[] frameCharacters = new char[0]; // The character of each cell of the latest frame.
+    private int[] frameColors = new int[0]; // The color (ARGB) of each cell of the latest frame.
+    private int frameX, frameY; // The location of the upper left tile of the latest frame.
+    private int frameColumns, frameRows; // The amount of tiles in the latest frame.
+
+    // Statistics
+    private long framesRendered = 0; // The amount of frames rendered.
+    private long tilesDrawn = 0; // The amount of tiles drawn onto the tile layer.
+    private long entitiesDrawn = 0; // The amount of entities and item stacks drawn onto frames.
+
+    /**
+     * Creates a new HeadlessTileRenderer object.
+     */
+    public HeadlessTileRenderer() {
+
+    }
+
+    /**
+     * Moves the tile layer to cover a new area, making
+     * larger cell buffers for it if the area doesn't fit.
+     * @param tileSet The tile set being rendered.
+     * @param layerX The first column of the tile layer.
+     * @param layerY The first row of the tile layer.
+     * @param columns The amount of columns of the tile layer.
+     * @param rows The amount of rows of the tile layer.
+     */
+    @Override
+    public void anchorLayer(TileSet tileSet, int layerX, int layerY, int columns, int rows) {
+        this.layerX = layerX;
+        this.layerY = layerY;
+        this.layerColumns = columns;
+        this.layerRows = rows;
+        if(layerCharacters.length < columns * rows) {
+            layerCharacters = new char[columns * rows];
+            layerColors = new int[columns * rows];
+        }
+    }
+
+    /**
+     * Writes the tiles that changed into the
+     * cells of the tile layer.
+     * @param tileSet The tile set being rendered.
+     * @param dirty The tiles that changed (possibly all of them).
+     */
+    @Override
+    public void redrawTiles(TileSet tileSet, DirtyRegion dirty) {
+        // Every cell of a type shares one tile, so the colors are looked up once per type.
+        final int[] typeColors = new int[Tile.Type.values().length];
+        tileSet.getTileRegistry().forEach(t -> {
+            if(t.getRepresentation() instanceof CharacterCell)
+                typeColors[t.getTileType().ordinal()] = toArgb(((CharacterCell) t.getRepresentation()).getGlyphColor());
+        });
+
+        if(dirty.isAll()) {
+            drawTiles(tileSet, typeColors, layerX, layerY, layerColumns, layerRows);
+            return;
+        }
+        dirty.forEach((x, y, w, h) -> {
+            final int x1 = Math.max(x, layerX);
+            final int y1 = Math.max(y, layerY);
+            final int x2 = Math.min(x + w, layerX + layerColumns);
+            final int y2 = Math.min(y + h, layerY + layerRows);
+            if(x1 < x2 && y1 < y2)
+                drawTiles(tileSet, typeColors, x1, y1, x2 - x1, y2 - y1);
+        });
+    }
+
+    /**
+     * Clears an area of the tile layer and draws its tiles.
+     * @param tileSet The tile set being rendered.
+     * @param typeColors The color of each tile type (ARGB).
+     * @param x The first column of the area.
+     * @param y The first row of the area.
+     * @param w The width of the area.
+     * @param h The height of the area.
+     */
+    private void drawTiles(TileSet tileSet, int[] typeColors, int x, int y, int w, int h) {
+        for(int iy = y; iy < y + h; iy++) {
+            final int row = (iy - layerY) * layerColumns - layerX;
+            for(int ix = x; ix < x + w; ix++) {
+                layerCharacters[row + ix] = EMPTY_CELL;
+                layerColors[row + ix] = 0;
+            }
+        }
+        tileSet.forEachDrawnTile(x, y, w, h, (t, ix, iy) -> {
+            if(!(t.getRepresentation() instanceof CharacterCell))
+                return;
+            final int index = (iy - layerY) * layerColumns + (ix - layerX);
+            layerCharacters[index] = ((CharacterCell) t.getRepresentation()).getCharacter();
+            layerColors[index] = typeColors[t.getTileType().ordinal()];
+            tilesDrawn++;
+        });
+    }
+
+    /**
+     * Copies the visible cells of the tile layer
+     * into the cells of the frame.
+     * @param tileSet The tile set being rendered.
+     * @param graphics The graphics of the screen (unused, may be null).
+     * @param firstX The first visible column.
+     * @param firstY The first visible row.
+     * @param lastX The column after the last visible column.
+     * @param lastY The row after the last visible row.
+     */
+    @Override
+    public void renderTiles(TileSet tileSet, Graphics graphics, int firstX, int firstY, int lastX, int lastY) {
+        frameX = firstX;
+        frameY = firstY;
+        frameColumns = lastX - firstX;
+        frameRows = lastY - firstY;
+        final int cells = frameColumns * frameRows;
+        if(frameCharacters.length < cells) {
+            frameCharacters = new char[cells];
+            frameColors = new int[cells];
+        }
+        Arrays.fill(frameCharacters, 0, cells, EMPTY_CELL);
+        Arrays.fill(frameColors, 0, cells, 0);
+
+        // The tile layer may lag behind the view when the simulation held the lock (see TileSet.refreshTiles).
+        final int x1 = Math.max(frameX, layerX);
+        final int x2 = Math.min(frameX + frameColumns, layerX + layerColumns);
+        final int y1 = Math.max(frameY, layerY);
+        final int y2 = Math.min(frameY + frameRows, layerY + layerRows);
+        for(int y = y1; y < y2 && x1 < x2; y++) {
+            final int from = (y - layerY) * layerColumns + (x1 - layerX);
+            final int to = (y - frameY) * frameColumns + (x1 - frameX);
+            System.arraycopy(layerCharacters, from, frameCharacters, to, x2 - x1);
+            System.arraycopy(layerColors, from, frameColors, to, x2 - x1);
+        }
+    }
+
+    /**
+     * Writes the item stacks and entities into
+     * the cells of the frame.
+     * @param tileSet The tile set being rendered.
+     * @param graphics The graphics of the screen (unused, may be null).
+     * @param firstX The first visible column.
+     * @param firstY The first visible row.
+     * @param lastX The column after the last visible column.
+     * @param lastY The row after the last visible row.
+     */
+    @Override
+    public void renderEntities(TileSet tileSet, Graphics graphics, int firstX, int firstY, int lastX, int lastY) {
+        final WorldSnapshot view = tileSet.getRenderSnapshot();
+        for(WorldSnapshot.StackView stack : view.getStacks())
+            drawCell(stack.getX(), stack.getY(), STACK_CELL, STACK_COLOR);
+
+        final float alpha = tileSet.getRenderAlpha();
+        for(WorldSnapshot.EntityView e : view.getEntities()) {
+            if(!(e.getRepresentation() instanceof CharacterCell))
+                continue;
+            CharacterCell cell = (CharacterCell) e.getRepresentation();
+            drawCell(Math.round(e.getX(alpha)), Math.round(e.getY(alpha)), cell.getCharacter(), toArgb(cell.getGlyphColor()));
+        }
+        framesRendered++;
+    }
+
+    /**
+     * Draws a character into a cell of the frame,
+     * if the cell is within the frame.
+     * @param x The column of the cell.
+     * @param y The row of the cell.
+     * @param character The character to draw.
+     * @param argb The color to draw it in.
+     */
+    private void drawCell(int x, int y, char character, int argb) {
+        if(x < frameX || x >= frameX + frameColumns || y < frameY || y >= frameY + frameRows)
+            return;
+        final int index = (y - frameY) * frameColumns + (x - frameX);
+        frameCharacters[index] = character;
+        frameColors[index] = argb;
+        entitiesDrawn++;
+    }
+
+    /**
+     * Gets the first column of the latest frame.
+     * @return The column of the leftmost cells.
+     */
+    public int getFrameX() {
+        return frameX;
+    }
+
+    /**
+     * Gets the first row of the latest frame.
+     * @return The row of the topmost cells.
+     */
+    public int getFrameY() {
+        return frameY;
+    }
+
+    /**
+     * Gets the amount of columns of the latest frame.
+     * @return The width of the frame in tiles.
+     */
+    public int getFrameColumns() {
+        return frameColumns;
+    }
+
+    /**
+     * Gets the amount of rows of the latest frame.
+     * @return The height of the frame in tiles.
+     */
+    public int getFrameRows() {
+        return frameRows;
+    }
+
+    /**
+     * Gets the character drawn in a cell of the latest frame.
+     * @param x The column of the cell (in the tile set).
+     * @param y The row of the cell (in the tile set).
+     * @return The character of the cell (EMPTY_CELL if it's outside of the frame).
+     */
+    public char getCharacter(int x, int y) {
+        if(x < frameX || x >= frameX + frameColumns || y < frameY || y >= frameY + frameRows)
+            return EMPTY_CELL;
+        return frameCharacters[(y - frameY) * frameColumns + (x - frameX)];
+    }
+
+    /**
+     * Gets the color drawn in a cell of the latest frame.
+     * @param x The column of the cell (in the tile set).
+     * @param y The row of the cell (in the tile set).
+     * @return The color of the cell as ARGB (0 if it's outside of the frame).
+     */
+    public int getColor(int x, int y) {
+        if(x < frameX || x >= frameX + frameColumns || y < frameY || y >= frameY + frameRows)
+            return 0;
+        return frameColors[(y - frameY) * frameColumns + (x - frameX)];
+    }
+
+    /**
+     * Gets the amount of frames rendered.
+     * @return The frame count.
+     */
+    public long getFramesRendered() {
+        return framesRendered;
+    }
+
+    /**
+     * Gets the amount of tiles drawn onto the tile layer,
+     * which shows how much redrawing the changes caused.
+     * @return The amount of drawn tiles.
+     */
+    public long getTilesDrawn() {
+        return tilesDrawn;
+    }
+
+    /**
+     * Gets the amount of entities and item stacks drawn onto frames.
+     * @return The amount of drawn entities and item stacks.
+     */
+    public long getEntitiesDrawn() {
+        return entitiesDrawn;
+    }
+
+    /**
+     * Writes the latest frame as text, a line per row.
+     * @return The characters of the latest frame.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(frameRows * (frameColumns + 1));
+        for(int row = 0; row < frameRows; row++)
+            text.append(frameCharacters, row * frameColumns, frameColumns).append('\n');
+        return text.toString();
+    }
+
+    /**
+     * Packs a color into an int.
+     * @param color The color.
+     * @return The color as ARGB.
+     */
+    private static int toArgb(Color color) {
+        return (color.getAlphaByte() << 24) | (color.getRedByte() << 16) | (color.getGreenByte() << 8) | color.getBlueByte();
+    }
+
+    /**
+     * Checks whether this renderer draws onto the screen.
+     * @return False, as nothing is drawn through Slick2d.
+     */
+    @Override
+    public boolean drawsToScreen() {
+        return false;
+    }
+
+    /**
+     * Does nothing, as the cell buffers are
+     * left to the garbage collector.
+     */
+    @Override
+    public void dispose() {
+
+    }
+}
@@ -1,10 +1,10 @@
 package com.magneticstudio.transience.game;
 
 import com.magneticstudio.transience.ui.Displayable;
-import com.magneticstudio.transience.ui.Game;
 import org.newdawn.slick.Graphics;
 
 import java.util.Stack;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * This class simply handles item stacks
@@ -29,7 +29,8 @@ public class InventoryStack<T extends Item> implements Displayable {
     private int capacity = 16; // The capacity this inventory stack.
     private Stack<T> items = new Stack<>(); // The list of items in this stack.
     private double sinParameter = 0;
-    private long lastRenderTime = System.currentTimeMillis() + Game.rng.nextInt(1000);
+    private long lastRenderTime = System.currentTimeMillis() + ThreadLocalRandom.current().nextInt(1000); // Only staggers the floating, so it needn't be reproducible.
+    private Runnable changeListener; // Called whenever the items in this stack change.
 
     /**
      * Creates a new default inventory stack.
@@ -59,12 +60,24 @@ public class InventoryStack<T extends Item> implements Displayable {
      * @param nCapacity New capacity for the inventory stack.
      */
     public void setCapacity(int nCapacity) {
+        final int before = items.size();
         for(int i = capacity - nCapacity; i > 0; i--) {
             if(items.size() == 0)
                 break;
             items.pop();
         }
         capacity = Math.max(1, nCapacity);
+        if(items.size() != before)
+            changed();
+    }
+
+    /**
+     * Sets the action that is performed whenever the
+     * items in this stack change.
+     * @param listener The action to perform (null for none).
+     */
+    public void setChangeListener(Runnable listener) {
+        changeListener = listener;
     }
 
     /**
@@ -75,13 +88,23 @@ public class InventoryStack<T extends Item> implements Displayable {
         return items.size();
     }
 
+    /**
+     * Gets the item on top of this inventory stack.
+     * @return The top item (null if the stack is empty).
+     */
+    public T getTopItem() {
+        return items.isEmpty() ? null : items.peek();
+    }
+
     /**
      * Adds an item to this inventory stack.
      * @param item The item to add to this inventory stack.
      */
     public void push(T item) {
-        if(items.size() < capacity)
+        if(items.size() < capacity) {
             items.push(item);
+            changed();
+        }
     }
 
     /**
@@ -99,8 +122,19 @@ public class InventoryStack<T extends Item> implements Displayable {
      * Removes the next item from the stack.
      */
     public void pop() {
-        if(items.size() != 0)
+        if(items.size() != 0) {
             items.pop();
+            changed();
+        }
+    }
+
+    /**
+     * Tells the change listener (if any) that
+     * the items in this stack changed.
+     */
+    private void changed() {
+        if(changeListener != null)
+            changeListener.run();
     }
 
     /**
@@ -114,12 +148,26 @@ public class InventoryStack<T extends Item> implements Displayable {
     public void render(Graphics graphics, float x, float y, boolean centerSurround) {
         if(items.size() == 0)
             return;
+        renderItem(graphics, items.peek(), x, y, centerSurround);
+    }
 
+    /**
+     * Renders an item as the preview of this inventory stack,
+     * floating along with it. Used by the render thread to draw
+     * the item the stack held when its snapshot was taken (see
+     * WorldSnapshot.StackView), as the stack may change meanwhile.
+     * @param graphics The graphics used for drawing on main screen.
+     * @param item The item to render.
+     * @param x The X value of the position that this object is supposed to be rendered at.
+     * @param y The Y value of the position that this object is supposed to be rendered at.
+     * @param centerSurround Whether or not the x and y are based around the center of the element.
+     */
+    public void renderItem(Graphics graphics, T item, float x, float y, boolean centerSurround) {
         boolean tempAntiAlias = graphics.isAntiAlias();
         graphics.setAntiAlias(false);
         sinParameter += (float) (System.currentTimeMillis() - lastRenderTime) / 250f;
         float yOffset = (float) Math.sin(sinParameter) * WAVE_INTENSITY;
-        items.peek().render(graphics, x, y + yOffset + VERTICAL_ADJUSTMENT, centerSurround);
+        item.render(graphics, x, y + yOffset + VERTICAL_ADJUSTMENT, centerSurround);
         lastRenderTime = System.currentTimeMillis();
         graphics.setAntiAlias(tempAntiAlias);
     }
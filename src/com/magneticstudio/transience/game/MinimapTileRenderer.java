@@ -0,0 +1,250 @@
+package com.magneticstudio.transience.game;
+
+import com.magneticstudio.transience.devkit.CommonKt;
+import com.magneticstudio.transience.ui.CharacterCell;
+import com.magneticstudio.transience.util.DirtyRegion;
+import com.magneticstudio.transience.util.RenderTasks;
+import org.lwjgl.BufferUtils;
+import org.newdawn.slick.Color;
+import org.newdawn.slick.Graphics;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.lwjgl.opengl.GL11.*;
+
+/**
+ * This class draws a tile set that is zoomed far out as a
+ * minimap: a texture holding one pixel per tile, in a color
+ * set for the tile's type, drawn stretched over the whole tile set.
+ * Entities and item stacks are drawn as squares of their color.
+ *
+ * At that scale a tile is a few pixels across, so its glyph
+ * can't be read anyway, and a frame costs one textured quad no
+ * matter how large the tile set is. Only the pixels of tiles that
+ * changed are worked out again, and only the rows holding them
+ * are uploaded to the texture.
+ *
+ * The tile set switches to this renderer by itself below
+ * TileSet.MINIMAP_SCALE (see TileSet.render).
+ *
+ * @author Max
+ */
+public class MinimapTileRenderer implements TileRenderer {
+
+    private static final int PIXELS_PER_TILE = TileSet.PIXELS_PER_TILE; // The size of a tile in the tile set's pixels.
+    private static final Color STACK_COLOR = new Color(255, 215, 0); // The color drawn for an item stack.
+
+    // The color of each tile type on the minimap. The glyphs of most types share one color, so it can't be used.
+    private static final Map<Tile.Type, Color> TYPE_COLORS = new EnumMap<>(Tile.Type.class);
+
+    static {
+        TYPE_COLORS.put(Tile.Type.AIR, new Color(70, 70, 70));
+        TYPE_COLORS.put(Tile.Type.WALL, new Color(220, 220, 220));
+        TYPE_COLORS.put(Tile.Type.STAIR, new Color(0, 200, 255));
+        TYPE_COLORS.put(Tile.Type.STAIR_UP, new Color(0, 120, 255));
+    }
+
+    private Image minimap; // One pixel per tile of the tile set.
+    private ByteBuffer pixels; // The pixels of the minimap (RGBA, row by row).
+    private int mapWidth, mapHeight; // The size of the tile set the minimap was made for.
+    private final byte[][] typeColors = new byte[Tile.Type.values().length][4]; // The RGBA of each tile type (faded like the tiles).
+    private int firstRow, lastRow; // The rows of the minimap redrawn since the last upload (lastRow is exclusive).
+
+    /**
+     * Creates a new MinimapTileRenderer object.
+     */
+    public MinimapTileRenderer() {
+
+    }
+
+    /**
+     * Makes the minimap for the whole tile set,
+     * unless its size didn't change.
+     * @param tileSet The tile set being rendered.
+     * @param layerX The first column of the tile layer.
+     * @param layerY The first row of the tile layer.
+     * @param columns The amount of columns of the tile layer.
+     * @param rows The amount of rows of the tile layer.
+     * @throws SlickException In case the minimap image can't be created.
+     */
+    @Override
+    public void anchorLayer(TileSet tileSet, int layerX, int layerY, int columns, int rows) throws SlickException {
+        // The minimap covers the whole tile set, not only the tile layer.
+        final int width = tileSet.getTiles().getWidth();
+        final int height = tileSet.getTiles().getHeight();
+        if(minimap != null && width == mapWidth && height == mapHeight)
+            return;
+        dispose();
+        mapWidth = width;
+        mapHeight = height;
+        minimap = new Image(width, height, Image.FILTER_NEAREST);
+        pixels = BufferUtils.createByteBuffer(width * height * 4);
+    }
+
+    /**
+     * Works out the pixels of the tiles that changed
+     * and uploads the rows holding them.
+     * @param tileSet The tile set being rendered.
+     * @param dirty The tiles that changed (possibly all of them).
+     */
+    @Override
+    public void redrawTiles(TileSet tileSet, DirtyRegion dirty) {
+        // Every cell of a type shares one tile, so the colors are worked out once per type.
+        final boolean[] recolored = {false};
+        tileSet.getTileRegistry().forEach(t -> recolored[0] |= updateTypeColor(t));
+
+        firstRow = mapHeight;
+        lastRow = 0;
+        if(dirty.isAll() || recolored[0])
+            drawTiles(tileSet, 0, 0, mapWidth, mapHeight);
+        else {
+            dirty.forEach((x, y, w, h) -> {
+                final int x1 = Math.max(x, 0), y1 = Math.max(y, 0);
+                final int x2 = Math.min(x + w, mapWidth), y2 = Math.min(y + h, mapHeight);
+                if(x1 < x2 && y1 < y2)
+                    drawTiles(tileSet, x1, y1, x2 - x1, y2 - y1);
+            });
+        }
+        if(firstRow >= lastRow)
+            return;
+
+        // The rows are contiguous in the buffer, so only they are handed to the texture.
+        pixels.limit(lastRow * mapWidth * 4).position(firstRow * mapWidth * 4);
+        minimap.getTexture().bind();
+        glTexSubImage2D(GL_TEXTURE_2D, 0, 0, firstRow, mapWidth, lastRow - firstRow, GL_RGBA, GL_UNSIGNED_BYTE, pixels);
+        pixels.clear();
+    }
+
+    /**
+     * Works out the color of a tile's type on the
+     * minimap into the cached color of the type.
+     * @param t The tile shared by the cells of the type.
+     * @return Whether the color changed (like when the tile fades).
+     */
+    private boolean updateTypeColor(Tile t) {
+        final Color color = TYPE_COLORS.getOrDefault(t.getTileType(), Color.transparent);
+        final byte[] rgba = typeColors[t.getTileType().ordinal()];
+        final byte alpha = (byte) (color.getAlphaByte() * t.getRepresentation().getAlpha());
+        final boolean changed = rgba[0] != (byte) color.getRedByte() || rgba[1] != (byte) color.getGreenByte()
+            || rgba[2] != (byte) color.getBlueByte() || rgba[3] != alpha;
+        rgba[0] = (byte) color.getRedByte();
+        rgba[1] = (byte) color.getGreenByte();
+        rgba[2] = (byte) color.getBlueByte();
+        rgba[3] = alpha;
+        return changed;
+    }
+
+    /**
+     * Clears an area of the minimap and works out
+     * the pixels of its tiles again.
+     * @param tileSet The tile set being rendered.
+     * @param x The first column of the area.
+     * @param y The first row of the area.
+     * @param w The width of the area.
+     * @param h The height of the area.
+     */
+    private void drawTiles(TileSet tileSet, int x, int y, int w, int h) {
+        firstRow = Math.min(firstRow, y);
+        lastRow = Math.max(lastRow, y + h);
+        for(int iy = y; iy < y + h; iy++) {
+            for(int ix = x; ix < x + w; ix++)
+                pixels.putInt((iy * mapWidth + ix) * 4, 0);
+        }
+        tileSet.forEachDrawnTile(x, y, w, h, (t, ix, iy) -> {
+            pixels.position((iy * mapWidth + ix) * 4);
+            pixels.put(typeColors[t.getTileType().ordinal()]);
+        });
+    }
+
+    /**
+     * Draws the minimap stretched over the tile set.
+     * @param tileSet The tile set being rendered.
+     * @param graphics The graphics of the screen.
+     * @param firstX The first visible column.
+     * @param firstY The first visible row.
+     * @param lastX The column after the last visible column.
+     * @param lastY The row after the last visible row.
+     */
+    @Override
+    public void renderTiles(TileSet tileSet, Graphics graphics, int firstX, int firstY, int lastX, int lastY) {
+        pushTransform(tileSet, graphics);
+        graphics.drawImage(minimap, 0, 0, mapWidth * PIXELS_PER_TILE, mapHeight * PIXELS_PER_TILE, 0, 0, mapWidth, mapHeight);
+        graphics.popTransform();
+    }
+
+    /**
+     * Draws the item stacks and entities as
+     * squares of their color.
+     * @param tileSet The tile set being rendered.
+     * @param graphics The graphics of the screen.
+     * @param firstX The first visible column.
+     * @param firstY The first visible row.
+     * @param lastX The column after the last visible column.
+     * @param lastY The row after the last visible row.
+     */
+    @Override
+    public void renderEntities(TileSet tileSet, Graphics graphics, int firstX, int firstY, int lastX, int lastY) {
+        pushTransform(tileSet, graphics);
+        final WorldSnapshot view = tileSet.getRenderSnapshot();
+        graphics.setColor(STACK_COLOR);
+        for(WorldSnapshot.StackView stack : view.getStacks())
+            graphics.fillRect(stack.getX() * PIXELS_PER_TILE, stack.getY() * PIXELS_PER_TILE, PIXELS_PER_TILE, PIXELS_PER_TILE);
+
+        final float alpha = tileSet.getRenderAlpha();
+        for(WorldSnapshot.EntityView e : view.getEntities()) {
+            graphics.setColor(e.getRepresentation() instanceof CharacterCell
+                ? ((CharacterCell) e.getRepresentation()).getGlyphColor()
+                : e.getRepresentation().getColor());
+            graphics.fillRect(e.getX(alpha) * PIXELS_PER_TILE, e.getY(alpha) * PIXELS_PER_TILE, PIXELS_PER_TILE, PIXELS_PER_TILE);
+        }
+        graphics.setColor(Color.white);
+        graphics.popTransform();
+    }
+
+    /**
+     * Applies the zoom and shake of the frame being rendered,
+     * so drawing is done in the tile set's own pixels.
+     * @param tileSet The tile set being rendered.
+     * @param graphics The graphics of the screen.
+     */
+    private static void pushTransform(TileSet tileSet, Graphics graphics) {
+        final float scale = tileSet.getRenderScale();
+        graphics.pushTransform();
+        graphics.translate(tileSet.tileToDisplayLocationX(0), tileSet.tileToDisplayLocationY(0));
+        graphics.rotate(tileSet.getRotationPivotX(), tileSet.getRotationPivotY(), tileSet.getRenderSnapshot().getShakeRotation());
+        graphics.scale(scale, scale);
+    }
+
+    /**
+     * Checks whether this renderer draws onto the screen.
+     * @return True, as the frames are drawn with Slick2d's graphics.
+     */
+    @Override
+    public boolean drawsToScreen() {
+        return true;
+    }
+
+    /**
+     * Destroys the minimap image (on the render thread).
+     */
+    @Override
+    public void dispose() {
+        if(minimap == null)
+            return;
+        final Image old = minimap;
+        RenderTasks.run(() -> {
+            try {
+                old.destroy();
+            }
+            catch(SlickException e) {
+                CommonKt.logErr("Failed to destroy the minimap: ", e);
+            }
+        });
+        minimap = null;
+        pixels = null;
+    }
+}
@@ -4,6 +4,8 @@ import com.magneticstudio.transience.ui.CharacterCell;
 import com.magneticstudio.transience.ui.Game;
 import com.magneticstudio.transience.ui.GameKeyboard;
 import com.magneticstudio.transience.util.IntPoint;
+import com.magneticstudio.transience.util.Metrics;
+import com.magneticstudio.transience.util.TelemetryEvents;
 import org.newdawn.slick.Color;
 import org.newdawn.slick.Graphics;
 import org.newdawn.slick.Input;
@@ -21,6 +23,7 @@ public class Player extends Entity {
     private static final int KEY_GO_RIGHT = Input.KEY_D;
     private static final int KEY_GO_DOWN = Input.KEY_S;
     private static final int KEY_INTERACT_WITH_TILE = Input.KEY_ENTER;
+    private static final Metrics.Counter STAIRS_TAKEN = Metrics.counter("level.stairs.taken"); // The amount of stairs taken.
 
     // inv slot 1
     // inv slot 2
@@ -84,16 +87,28 @@ public class Player extends Entity {
      * @param ty The column the tile is located on.
      */
     private void interactWithTile(TileSet ts, int tx, int ty) {
-        if(ts.getTiles().getElement(tx, ty).getTileType() == Tile.Type.STAIR) {
+        final Tile.Type type = ts.getTiles().getElement(tx, ty).getTileType();
+        if(type == Tile.Type.STAIR || type == Tile.Type.STAIR_UP) {
+            final boolean ascending = type == Tile.Type.STAIR_UP;
+            TelemetryEvents.StairTransition transition = new TelemetryEvents.StairTransition();
+            transition.ascending = ascending;
+            transition.begin();
+            STAIRS_TAKEN.increment();
+
             Game.activeGame.disableInputUpdatesWhileFading(true);
             Game.activeGame.setOnFadedOut(() -> {
-                ts.getGenerator().regenerate(ts);
+                if(ascending)
+                    ts.getGenerator().ascend(ts);
+                else
+                    ts.getGenerator().regenerate(ts);
+                transition.floor = ts.getGenerator().getFloorIndex();
                 Player player = ts.getEntities().getPlayer();
                 if(player != null) {
                     IntPoint position = player.getPosition().getIntPoint();
                     ts.getPosition().forcePosition(-position.x, -position.y);
                 }
                 ts.setScale(.5f, 500);
+                Game.activeGame.setOnFadedIn(transition::commit);
                 Game.activeGame.fadeIn(500);
             });
             ts.setScale(.05f, 1000);
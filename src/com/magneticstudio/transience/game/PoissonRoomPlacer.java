@@ -0,0 +1,164 @@
+package com.magneticstudio.transience.game;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * This class places rooms around points spread by Poisson disc
+ * sampling (Bridson's algorithm): every point is at least a
+ * room's size away from the others, yet no large gaps are left,
+ * so rooms are spread evenly without lining up like a grid. A
+ * room of a random size is centered on every point; most fit, as
+ * the points are far enough apart.
+ *
+ * Points are looked up in a grid with a cell size of the spacing
+ * divided by the square root of two, so each cell holds at most
+ * one point and a candidate only has to be checked against the
+ * cells around it.
+ *
+ * @author Max
+ */
+public class PoissonRoomPlacer implements RoomPlacer {
+
+    public static final int DEFAULT_CANDIDATES = 30; // Candidates tried around a point before it's done.
+
+    private final int candidatesPerPoint; // Candidates tried around a point before it's done.
+
+    /**
+     * Creates a new PoissonRoomPlacer object that tries
+     * DEFAULT_CANDIDATES candidates around each point.
+     */
+    public PoissonRoomPlacer() {
+        this(DEFAULT_CANDIDATES);
+    }
+
+    /**
+     * Creates a new PoissonRoomPlacer object.
+     * @param candidatesPerPoint Candidates tried around a point before it's done.
+     */
+    public PoissonRoomPlacer(int candidatesPerPoint) {
+        this.candidatesPerPoint = candidatesPerPoint;
+    }
+
+    /**
+     * Places a room around each point spread by
+     * Poisson disc sampling, within the budget.
+     * @param limits The size of the map and of the rooms, and the budget.
+     * @param rng The random number generator to place rooms with.
+     * @param placement Carves a candidate room if it fits.
+     * @return The statistics of the placement.
+     */
+    @Override
+    public Result place(Limits limits, SplittableRandom rng, Placement placement) {
+        final int mapWidth = limits.getMapWidth(), mapHeight = limits.getMapHeight();
+        final float spacing = Math.max(limits.getMaxWidth(), limits.getMaxHeight()) + 1; // The least distance between points.
+        final float cellSize = spacing / (float) Math.sqrt(2);
+        final int columns = (int) Math.ceil(mapWidth / cellSize);
+        final int rows = (int) Math.ceil(mapHeight / cellSize);
+
+        final int[] grid = new int[columns * rows]; // The point in each cell (-1 for none).
+        Arrays.fill(grid, -1);
+        final int maxPoints = columns * rows;
+        final float[] pointX = new float[maxPoints], pointY = new float[maxPoints];
+        final int[] active = new int[maxPoints]; // Points that may still have room around them.
+        int points = 0, activeCount = 0;
+        int attempts = 0, placed = 0;
+
+        pointX[0] = (float) rng.nextDouble() * mapWidth;
+        pointY[0] = (float) rng.nextDouble() * mapHeight;
+        grid[(int) (pointY[0] / cellSize) * columns + (int) (pointX[0] / cellSize)] = 0;
+        active[activeCount++] = points++;
+        attempts++;
+        if(placeAround(pointX[0], pointY[0], limits, rng, placement))
+            placed++;
+
+        while(activeCount > 0 && attempts < limits.getBudget()) {
+            final int slot = rng.nextInt(activeCount);
+            final int point = active[slot];
+            boolean found = false;
+            for(int i = 0; i < candidatesPerPoint && attempts < limits.getBudget(); i++) {
+                attempts++;
+                final double angle = rng.nextDouble() * Math.PI * 2;
+                final double distance = spacing * (1 + rng.nextDouble());
+                final float x = (float) (pointX[point] + Math.cos(angle) * distance);
+                final float y = (float) (pointY[point] + Math.sin(angle) * distance);
+                if(x < 0 || y < 0 || x >= mapWidth || y >= mapHeight)
+                    continue;
+                final int column = (int) (x / cellSize), row = (int) (y / cellSize);
+                if(isCrowded(x, y, column, row, spacing, grid, columns, rows, pointX, pointY))
+                    continue;
+
+                pointX[points] = x;
+                pointY[points] = y;
+                grid[row * columns + column] = points;
+                active[activeCount++] = points++;
+                if(placeAround(x, y, limits, rng, placement))
+                    placed++;
+                found = true;
+                break;
+            }
+            if(!found)
+                active[slot] = active[--activeCount];
+        }
+        return new Result(attempts, placed, activeCount == 0);
+    }
+
+    /**
+     * Checks whether a candidate is too close to a point
+     * in one of the cells around it.
+     * @param x The x value of the candidate.
+     * @param y The y value of the candidate.
+     * @param column The column of the grid the candidate is in.
+     * @param row The row of the grid the candidate is in.
+     * @param spacing The least distance between points.
+     * @param grid The point in each cell.
+     * @param columns The amount of columns of the grid.
+     * @param rows The amount of rows of the grid.
+     * @param pointX The x values of the points.
+     * @param pointY The y values of the points.
+     * @return Whether the candidate is too close to another point.
+     */
+    private static boolean isCrowded(float x, float y, int column, int row, float spacing, int[] grid,
+                                     int columns, int rows, float[] pointX, float[] pointY) {
+        for(int r = Math.max(0, row - 2); r <= Math.min(rows - 1, row + 2); r++) {
+            for(int c = Math.max(0, column - 2); c <= Math.min(columns - 1, column + 2); c++) {
+                final int other = grid[r * columns + c];
+                if(other < 0)
+                    continue;
+                final float dx = pointX[other] - x, dy = pointY[other] - y;
+                if(dx * dx + dy * dy < spacing * spacing)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hands a room of a random size centered on a point to the generator.
+     * Rooms around points near the edge are pushed back onto the map,
+     * as a room hanging off of it would be rejected.
+     * @param x The x value of the point.
+     * @param y The y value of the point.
+     * @param limits The size of the map and of the rooms.
+     * @param rng The random number generator.
+     * @param placement Carves the room if it fits.
+     * @return Whether the room was placed.
+     */
+    private static boolean placeAround(float x, float y, Limits limits, SplittableRandom rng, Placement placement) {
+        final int width = limits.getMinWidth() + rng.nextInt(limits.getMaxWidth() - limits.getMinWidth() + 1);
+        final int height = limits.getMinHeight() + rng.nextInt(limits.getMaxHeight() - limits.getMinHeight() + 1);
+        // The generator keeps a room's last column and row off of the map's last ones.
+        final int left = Math.max(0, Math.min((int) x - width / 2, limits.getMapWidth() - width - 1));
+        final int top = Math.max(0, Math.min((int) y - height / 2, limits.getMapHeight() - height - 1));
+        return placement.tryPlace(left, top, width, height);
+    }
+
+    /**
+     * Gets the name of this strategy.
+     * @return "poisson".
+     */
+    @Override
+    public String getName() {
+        return "poisson";
+    }
+}
@@ -0,0 +1,84 @@
+package com.magneticstudio.transience.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * This class places rooms by rejection sampling: rooms of a
+ * random size are put at random locations, and kept if they
+ * don't overlap a room placed before. This is how levels were
+ * always generated, but instead of a fixed quarter of a million
+ * attempts it stops once the budget is used up, or once so many
+ * attempts in a row failed that the map is considered full.
+ *
+ * @author Max
+ */
+public class RejectionRoomPlacer implements RoomPlacer {
+
+    public static final int DEFAULT_SATURATION_LIMIT = 1000; // Failed attempts in a row after which the map is full.
+    private static final int ABSOLUTE_MIN_ROOM_SIZE = 3; // The smallest room that has an inside.
+
+    private final int saturationLimit; // Failed attempts in a row after which the map is considered full.
+
+    /**
+     * Creates a new RejectionRoomPlacer object that stops
+     * after DEFAULT_SATURATION_LIMIT failed attempts in a row.
+     */
+    public RejectionRoomPlacer() {
+        this(DEFAULT_SATURATION_LIMIT);
+    }
+
+    /**
+     * Creates a new RejectionRoomPlacer object.
+     * @param saturationLimit Failed attempts in a row after which the map is considered full.
+     */
+    public RejectionRoomPlacer(int saturationLimit) {
+        this.saturationLimit = saturationLimit;
+    }
+
+    /**
+     * Places rooms of random sizes at random locations
+     * until the budget is used up or the map is full.
+     * @param limits The size of the map and of the rooms, and the budget.
+     * @param rng The random number generator to place rooms with.
+     * @param placement Carves a candidate room if it fits.
+     * @return The statistics of the placement.
+     */
+    @Override
+    public Result place(Limits limits, SplittableRandom rng, Placement placement) {
+        final int mapWidth = limits.getMapWidth(), mapHeight = limits.getMapHeight();
+        final int minWidth = limits.getMinWidth(), minHeight = limits.getMinHeight();
+        if(mapWidth <= minWidth || mapHeight <= minHeight)
+            return new Result(0, 0, true); // Not even the smallest room fits.
+        int attempts = 0, placed = 0, failedInARow = 0;
+        while(attempts < limits.getBudget() && failedInARow < saturationLimit) {
+            attempts++;
+            final int x = rng.nextInt(mapWidth - minWidth);
+            final int y = rng.nextInt(mapHeight - minHeight);
+            final int maxWidth = mapWidth - x;
+            final int maxHeight = mapHeight - y;
+            if(maxWidth < ABSOLUTE_MIN_ROOM_SIZE || maxHeight < ABSOLUTE_MIN_ROOM_SIZE) {
+                failedInARow++;
+                continue;
+            }
+
+            final int width = minWidth + rng.nextInt(Math.max(1, Math.min(maxWidth, limits.getMaxWidth() - minWidth)));
+            final int height = minHeight + rng.nextInt(Math.max(1, Math.min(maxHeight, limits.getMaxHeight() - minHeight)));
+            if(placement.tryPlace(x, y, width, height)) {
+                placed++;
+                failedInARow = 0;
+            }
+            else
+                failedInARow++;
+        }
+        return new Result(attempts, placed, failedInARow >= saturationLimit);
+    }
+
+    /**
+     * Gets the name of this strategy.
+     * @return "rejection".
+     */
+    @Override
+    public String getName() {
+        return "rejection";
+    }
+}
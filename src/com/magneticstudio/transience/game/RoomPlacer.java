@@ -0,0 +1,205 @@
+package com.magneticstudio.transience.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * This interface is implemented by the strategies the
+ * TileSetGenerator places rooms with (see setRoomPlacer).
+ *
+ * A placer picks where rooms go and how large they are, and
+ * hands each candidate to the generator, which only carves it
+ * if it doesn't overlap a room placed before. Every placer
+ * stops after a fixed amount of candidates (the budget), so the
+ * time a level takes depends on the size of the map and the
+ * rooms, never on an open ended loop.
+ *
+ * Floors are generated on several threads at once (see
+ * FloorManager), all with the same placer, so a placer
+ * shouldn't keep any state between calls.
+ *
+ * @author Max
+ */
+public interface RoomPlacer {
+
+    /**
+     * Places rooms on a map.
+     * @param limits The size of the map and of the rooms, and the budget.
+     * @param rng The random number generator to place rooms with.
+     * @param placement Carves a candidate room if it fits.
+     * @return The statistics of the placement.
+     */
+    Result place(Limits limits, SplittableRandom rng, Placement placement);
+
+    /**
+     * Gets the name of this strategy (for metrics and logs).
+     * @return The name of the placer.
+     */
+    String getName();
+
+    /**
+     * This interface is used by placers to hand
+     * a candidate room to the generator.
+     */
+    interface Placement {
+        /**
+         * Carves a room if it fits on the map and doesn't
+         * overlap a room placed before.
+         * @param x The first column of the room (its left wall).
+         * @param y The first row of the room (its top wall).
+         * @param width The width of the room, walls included.
+         * @param height The height of the room, walls included.
+         * @return Whether the room was placed.
+         */
+        boolean tryPlace(int x, int y, int width, int height);
+    }
+
+    /**
+     * The size of the map and of the rooms, and
+     * the most candidates a placer may try.
+     */
+    final class Limits {
+        private final int mapWidth, mapHeight; // The size of the map.
+        private final int minWidth, maxWidth; // The range of room widths.
+        private final int minHeight, maxHeight; // The range of room heights.
+        private final int budget; // The most candidates to try.
+
+        /**
+         * Creates a new Limits object.
+         * @param mapWidth The width of the map.
+         * @param mapHeight The height of the map.
+         * @param minWidth The smallest width of a room.
+         * @param maxWidth The largest width of a room.
+         * @param minHeight The smallest height of a room.
+         * @param maxHeight The largest height of a room.
+         * @param budget The most candidates a placer may try.
+         */
+        public Limits(int mapWidth, int mapHeight, int minWidth, int maxWidth, int minHeight, int maxHeight, int budget) {
+            this.mapWidth = mapWidth;
+            this.mapHeight = mapHeight;
+            this.minWidth = minWidth;
+            this.maxWidth = Math.max(minWidth, maxWidth);
+            this.minHeight = minHeight;
+            this.maxHeight = Math.max(minHeight, maxHeight);
+            this.budget = budget;
+        }
+
+        /**
+         * Gets the width of the map.
+         * @return The width of the map in tiles.
+         */
+        public int getMapWidth() {
+            return mapWidth;
+        }
+
+        /**
+         * Gets the height of the map.
+         * @return The height of the map in tiles.
+         */
+        public int getMapHeight() {
+            return mapHeight;
+        }
+
+        /**
+         * Gets the smallest width of a room.
+         * @return The smallest room width, walls included.
+         */
+        public int getMinWidth() {
+            return minWidth;
+        }
+
+        /**
+         * Gets the largest width of a room.
+         * @return The largest room width, walls included.
+         */
+        public int getMaxWidth() {
+            return maxWidth;
+        }
+
+        /**
+         * Gets the smallest height of a room.
+         * @return The smallest room height, walls included.
+         */
+        public int getMinHeight() {
+            return minHeight;
+        }
+
+        /**
+         * Gets the largest height of a room.
+         * @return The largest room height, walls included.
+         */
+        public int getMaxHeight() {
+            return maxHeight;
+        }
+
+        /**
+         * Gets the most candidates a placer may try.
+         * @return The budget of attempts.
+         */
+        public int getBudget() {
+            return budget;
+        }
+    }
+
+    /**
+     * The statistics of placing the rooms of a level.
+     */
+    final class Result {
+        private final int attempts; // The amount of candidates tried.
+        private final int placed; // The amount of rooms placed.
+        private final boolean saturated; // Whether the placer stopped before using its budget.
+
+        /**
+         * Creates a new Result object.
+         * @param attempts The amount of candidates tried.
+         * @param placed The amount of rooms placed.
+         * @param saturated Whether the placer stopped before using its budget.
+         */
+        public Result(int attempts, int placed, boolean saturated) {
+            this.attempts = attempts;
+            this.placed = placed;
+            this.saturated = saturated;
+        }
+
+        /**
+         * Gets the amount of candidates tried.
+         * @return The amount of attempts.
+         */
+        public int getAttempts() {
+            return attempts;
+        }
+
+        /**
+         * Gets the amount of rooms placed.
+         * @return The amount of placed rooms.
+         */
+        public int getPlaced() {
+            return placed;
+        }
+
+        /**
+         * Gets the amount of candidates that didn't fit.
+         * @return The amount of rejected attempts.
+         */
+        public int getRejected() {
+            return attempts - placed;
+        }
+
+        /**
+         * Checks whether the placer stopped before using its
+         * budget, as no more rooms were likely to fit.
+         * @return Whether the map was found to be full.
+         */
+        public boolean isSaturated() {
+            return saturated;
+        }
+
+        /**
+         * Gets a string representation of this object.
+         * @return String representation of this object.
+         */
+        @Override
+        public String toString() {
+            return placed + " rooms in " + attempts + " attempts" + (saturated ? " (saturated)" : "");
+        }
+    }
+}
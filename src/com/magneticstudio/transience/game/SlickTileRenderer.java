@@ -0,0 +1,215 @@
+package com.magneticstudio.transience.game;
+
+import com.magneticstudio.transience.devkit.CommonKt;
+import com.magneticstudio.transience.util.DirtyRegion;
+import com.magneticstudio.transience.util.RenderTasks;
+import org.newdawn.slick.Color;
+import org.newdawn.slick.Graphics;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+
+/**
+ * This class draws a tile set through Slick2d. The tiles
+ * of the tile layer are drawn onto a cached image, where only
+ * the tiles that changed are redrawn. Each frame the tile layer
+ * is copied onto the canvas once, the item stacks and entities
+ * (which move) are drawn on top of it, and the canvas is drawn
+ * onto the screen with the zoom and shake applied.
+ *
+ * This is the renderer tile sets start out with.
+ *
+ * @author Max
+ */
+public class SlickTileRenderer implements TileRenderer {
+
+    private static final Color CLEAR_COLOR = new Color(0f, 0f, 0f, 0f); // Multiplied in to clear part of an image.
+    private static final int PIXELS_PER_TILE = TileSet.PIXELS_PER_TILE; // The size of a tile on the canvas.
+
+    private Image canvas; // The image object used to render tile set on.
+    private Graphics canvasGraphics; // The graphics object doing to the rendering.
+    private Image tileLayer; // Cached image of the tiles around the visible area.
+    private Graphics tileLayerGraphics; // The graphics object drawing onto the tile layer.
+    private int layerX, layerY; // The location of the upper left tile held by the tile layer.
+    private int layerColumns, layerRows; // The amount of tiles held by the tile layer.
+
+    /**
+     * Creates a new SlickTileRenderer object.
+     */
+    public SlickTileRenderer() {
+
+    }
+
+    /**
+     * Moves the tile layer to cover a new area, making
+     * larger images for it if the area doesn't fit.
+     * @param tileSet The tile set being rendered.
+     * @param layerX The first column of the tile layer.
+     * @param layerY The first row of the tile layer.
+     * @param columns The amount of columns of the tile layer.
+     * @param rows The amount of rows of the tile layer.
+     * @throws SlickException In case the images of the tile layer can't be created.
+     */
+    @Override
+    public void anchorLayer(TileSet tileSet, int layerX, int layerY, int columns, int rows) throws SlickException {
+        this.layerX = layerX;
+        this.layerY = layerY;
+        this.layerColumns = columns;
+        this.layerRows = rows;
+        if(tileLayer == null
+           || tileLayer.getWidth() < columns * PIXELS_PER_TILE
+           || tileLayer.getHeight() < rows * PIXELS_PER_TILE) {
+            final int width = Math.max(columns * PIXELS_PER_TILE, tileLayer == null ? 0 : tileLayer.getWidth());
+            final int height = Math.max(rows * PIXELS_PER_TILE, tileLayer == null ? 0 : tileLayer.getHeight());
+            dispose();
+            tileLayer = new Image(width, height);
+            tileLayerGraphics = tileLayer.getGraphics();
+            canvas = new Image(width, height);
+            canvasGraphics = canvas.getGraphics();
+        }
+    }
+
+    /**
+     * Draws the tiles that changed onto the cached
+     * image of the tile layer.
+     * @param tileSet The tile set being rendered.
+     * @param dirty The tiles that changed (possibly all of them).
+     */
+    @Override
+    public void redrawTiles(TileSet tileSet, DirtyRegion dirty) {
+        if(dirty.isAll()) {
+            tileLayerGraphics.clear();
+            drawTiles(tileSet, layerX, layerY, layerColumns, layerRows);
+        }
+        else {
+            dirty.forEach((x, y, w, h) -> {
+                final int x1 = Math.max(x, layerX);
+                final int y1 = Math.max(y, layerY);
+                final int x2 = Math.min(x + w, layerX + layerColumns);
+                final int y2 = Math.min(y + h, layerY + layerRows);
+                if(x1 >= x2 || y1 >= y2)
+                    return;
+                tileLayerGraphics.setDrawMode(Graphics.MODE_COLOR_MULTIPLY);
+                tileLayerGraphics.setColor(CLEAR_COLOR);
+                tileLayerGraphics.fillRect(
+                    (x1 - layerX) * PIXELS_PER_TILE,
+                    (y1 - layerY) * PIXELS_PER_TILE,
+                    (x2 - x1) * PIXELS_PER_TILE,
+                    (y2 - y1) * PIXELS_PER_TILE
+                );
+                tileLayerGraphics.setDrawMode(Graphics.MODE_NORMAL);
+                drawTiles(tileSet, x1, y1, x2 - x1, y2 - y1);
+            });
+        }
+        tileLayerGraphics.flush();
+    }
+
+    /**
+     * Draws an area of tiles onto the tile layer.
+     * @param tileSet The tile set being rendered.
+     * @param x The first column of the area.
+     * @param y The first row of the area.
+     * @param w The width of the area.
+     * @param h The height of the area.
+     */
+    private void drawTiles(TileSet tileSet, int x, int y, int w, int h) {
+        tileSet.forEachDrawnTile(x, y, w, h, (t, ix, iy) ->
+            t.render(tileLayerGraphics, (ix - layerX) * PIXELS_PER_TILE, (iy - layerY) * PIXELS_PER_TILE, false)
+        );
+    }
+
+    /**
+     * Copies the visible part of the tile
+     * layer onto the canvas.
+     * @param tileSet The tile set being rendered.
+     * @param graphics The graphics of the screen.
+     * @param firstX The first visible column.
+     * @param firstY The first visible row.
+     * @param lastX The column after the last visible column.
+     * @param lastY The row after the last visible row.
+     */
+    @Override
+    public void renderTiles(TileSet tileSet, Graphics graphics, int firstX, int firstY, int lastX, int lastY) {
+        canvasGraphics.clear();
+        canvasGraphics.setDrawMode(Graphics.MODE_NORMAL);
+        canvasGraphics.drawImage(tileLayer, 0, 0);
+    }
+
+    /**
+     * Draws the item stacks and entities onto the canvas,
+     * and the canvas onto the screen with the zoom and shake.
+     * @param tileSet The tile set being rendered.
+     * @param graphics The graphics of the screen.
+     * @param firstX The first visible column.
+     * @param firstY The first visible row.
+     * @param lastX The column after the last visible column.
+     * @param lastY The row after the last visible row.
+     */
+    @Override
+    public void renderEntities(TileSet tileSet, Graphics graphics, int firstX, int firstY, int lastX, int lastY) {
+        final WorldSnapshot view = tileSet.getRenderSnapshot();
+        final float alpha = tileSet.getRenderAlpha();
+        final int originX = layerX, originY = layerY;
+
+        for(WorldSnapshot.StackView stack : view.getStacks()) {
+            final int x = stack.getX(), y = stack.getY();
+            if(x < originX || x >= originX + layerColumns || y < originY || y >= originY + layerRows)
+                continue;
+            stack.render(canvasGraphics, (x - originX) * PIXELS_PER_TILE, (y - originY) * PIXELS_PER_TILE);
+        }
+
+        for(WorldSnapshot.EntityView e : view.getEntities()) {
+            float x = (e.getX(alpha) - originX) * PIXELS_PER_TILE;
+            float y = (e.getY(alpha) - originY) * PIXELS_PER_TILE;
+            canvasGraphics.setDrawMode(Graphics.MODE_COLOR_MULTIPLY);
+            canvasGraphics.setColor(CLEAR_COLOR);
+            canvasGraphics.fillRect(x, y, PIXELS_PER_TILE, PIXELS_PER_TILE);
+            canvasGraphics.setDrawMode(Graphics.MODE_ADD);
+            e.getRepresentation().render(canvasGraphics, x, y, false);
+        }
+        canvasGraphics.setDrawMode(Graphics.MODE_NORMAL);
+        canvasGraphics.flush();
+
+        // Zoom and shake are applied as a transform while drawing, so no scaled/rotated copy is made.
+        final float scale = tileSet.getRenderScale();
+        final float width = layerColumns * PIXELS_PER_TILE;
+        final float height = layerRows * PIXELS_PER_TILE;
+        final float left = tileSet.tileToCanvasX(originX);
+        final float top = tileSet.tileToCanvasY(originY);
+        graphics.pushTransform();
+        graphics.translate(tileSet.tileToDisplayLocationX(0), tileSet.tileToDisplayLocationY(0));
+        graphics.rotate(tileSet.getRotationPivotX(), tileSet.getRotationPivotY(), view.getShakeRotation());
+        graphics.scale(scale, scale);
+        graphics.drawImage(canvas, left, top, left + width, top + height, 0, 0, width, height);
+        graphics.popTransform();
+    }
+
+    /**
+     * Checks whether this renderer draws onto the screen.
+     * @return True, as the frames are drawn with Slick2d's graphics.
+     */
+    @Override
+    public boolean drawsToScreen() {
+        return true;
+    }
+
+    /**
+     * Destroys the images of the tile layer and the
+     * canvas (on the render thread).
+     */
+    @Override
+    public void dispose() {
+        if(tileLayer == null)
+            return;
+        final Image oldLayer = tileLayer, oldCanvas = canvas;
+        RenderTasks.run(() -> {
+            try {
+                oldLayer.destroy();
+                oldCanvas.destroy();
+            }
+            catch(SlickException e) {
+                CommonKt.logErr("Failed to destroy the tile layer: ", e);
+            }
+        });
+        tileLayer = canvas = null;
+    }
+}
@@ -9,55 +9,71 @@ import org.newdawn.slick.UnicodeFont;
  * This class represents all of the individual tiles
  * in this game.
  *
+ * A tile only describes a kind of tile (glyph, color and
+ * whether it can be walked on or hold items), so a single
+ * instance of each kind is shared by every cell of a tile
+ * set through its TileRegistry. Anything that belongs to a
+ * single cell (item stacks, visibility) is kept in the tile
+ * set's TileStateTable instead.
+ *
  * @author Max
  */
 public class Tile implements Displayable {
 
     // Enumeration of types of tiles.
     public enum Type {
-        STAIR, AIR, VOID, WALL
+        STAIR, AIR, VOID, WALL, STAIR_UP
     }
 
     /**
-     * Creates a new air tile.
-     * @param parent The parent tile set used to get the font.
+     * Creates the air tile prototype.
+     * @param font The font of the tile set the prototype belongs to.
      * @return A new air tile.
      */
-    public static Tile createAirTile(TileSet parent) {
-        Tile air = new Tile(new CharacterCell(parent.getFont(), '.'), Type.AIR);
-        air.setCanContainItems(true);
-        return air;
+    static Tile createAirTile(UnicodeFont font) {
+        return new Tile(new CharacterCell(font, '.'), Type.AIR, true, true);
     }
 
     /**
-     * Creates a new void tile.
-     * @param parent The parent tile set used to get the font.
+     * Creates the void tile prototype.
+     * @param font The gray variant of the tile set's font (held by its TileRegistry).
      * @return A new void tile.
      */
-    public static Tile createVoidTile(TileSet parent) {
-        UnicodeFont font = parent.getFont();
-        font = Res.modifyFont(font, Color.gray, Res.USE_DEFAULT, Res.USE_DEFAULT, Res.USE_DEFAULT);
+    static Tile createVoidTile(UnicodeFont font) {
         return new Tile(new CharacterCell(font, ' '), Type.VOID);
     }
 
-    public static Tile createWallTile(TileSet parent) {
-        Tile tile = new Tile(new CharacterCell(parent.getFont(), 'X'), Type.WALL);
-        tile.setTraversable(false);
-        return tile;
+    /**
+     * Creates the wall tile prototype.
+     * @param font The font of the tile set the prototype belongs to.
+     * @return A new wall tile.
+     */
+    static Tile createWallTile(UnicodeFont font) {
+        return new Tile(new CharacterCell(font, 'X'), Type.WALL, false, false);
     }
 
-    public static Tile createStairTile(TileSet parent) {
-        Tile tile = new Tile(new CharacterCell(parent.getFont(), '/'), Type.STAIR);
-        tile.setTraversable(true);
-        return tile;
+    /**
+     * Creates the stair tile prototype.
+     * @param font The font of the tile set the prototype belongs to.
+     * @return A new stair tile.
+     */
+    static Tile createStairTile(UnicodeFont font) {
+        return new Tile(new CharacterCell(font, '/'), Type.STAIR, true, false);
     }
 
-    private Type tileType; // The type of tile this is.
-    private GraphicalElement representation; // The graphical representation of the tile.
-    private InventoryStack<Item> inventoryStack; // The inventory stack of this tile.
-    private boolean visible = true; // Whether this tile is visible (will be rendered).
-    private boolean traversable = true; // Whether an entity can be located on this tile from movement.
-    private boolean canContainItems = false; // Whether this tile can contain item stacks.
+    /**
+     * Creates the prototype of the stair leading back up.
+     * @param font The font of the tile set the prototype belongs to.
+     * @return A new up stair tile.
+     */
+    static Tile createUpStairTile(UnicodeFont font) {
+        return new Tile(new CharacterCell(font, '\\'), Type.STAIR_UP, true, false);
+    }
+
+    private final Type tileType; // The type of tile this is.
+    private final GraphicalElement representation; // The graphical representation of the tile.
+    private final boolean traversable; // Whether an entity can be located on this tile from movement.
+    private final boolean canContainItems; // Whether this tile can contain item stacks.
 
     /**
      * Creates a new Tile object with
@@ -65,8 +81,7 @@ public class Tile implements Displayable {
      * @param sprite The sprite to represent this tile.
      */
     public Tile(Sprite sprite, Type t) {
-        tileType = t;
-        representation = sprite;
+        this(sprite, t, true, false);
     }
 
     /**
@@ -74,8 +89,21 @@ public class Tile implements Displayable {
      * @param charCell The character cell that represents this tile.
      */
     public Tile(CharacterCell charCell, Type t) {
-        tileType = t;
-        representation = charCell;
+        this(charCell, t, true, false);
+    }
+
+    /**
+     * Creates a new tile object.
+     * @param representation The graphical representation of this tile.
+     * @param t The type of this tile.
+     * @param traversable Whether an entity can move onto this tile.
+     * @param canContainItems Whether this tile can contain item stacks.
+     */
+    public Tile(GraphicalElement representation, Type t, boolean traversable, boolean canContainItems) {
+        this.tileType = t;
+        this.representation = representation;
+        this.traversable = traversable;
+        this.canContainItems = canContainItems;
     }
 
     /**
@@ -94,30 +122,6 @@ public class Tile implements Displayable {
         return canContainItems;
     }
 
-    /**
-     * Sets whether this tile can contain items.
-     * @param v Whether this tile can contain items.
-     */
-    public void setCanContainItems(boolean v) {
-        canContainItems = v;
-    }
-
-    /**
-     * Gets the inventory stack of this tile.
-     * @return The inventory stack of this tile.
-     */
-    public InventoryStack<Item> getInventoryStack() {
-        return inventoryStack;
-    }
-
-    /**
-     * Sets the item stack of this tile.
-     * @param itemStack The new item stack of this tile.
-     */
-    public void setInventoryStack(InventoryStack<Item> itemStack) {
-        inventoryStack = itemStack;
-    }
-
     /**
      * Checks whether an entity can move onto
      * this tile.
@@ -127,23 +131,6 @@ public class Tile implements Displayable {
         return traversable;
     }
 
-    /**
-     * Sets whether entities can move onto this tile.
-     * @param value Whether an entity can move onto this tile.
-     */
-    public void setTraversable(boolean value) {
-        this.traversable = value;
-    }
-
-    /**
-     * Checks whether this tile is being rendered onto
-     * the screen.
-     * @return Whether this tile is rendered onto the screen.
-     */
-    public boolean isVisible() {
-        return visible;
-    }
-
     /**
      * Gets the font of this tile if the representation
      * is a character cell.
@@ -155,25 +142,6 @@ public class Tile implements Displayable {
         return null;
     }
 
-    /**
-     * Sets the font of the representation if it's
-     * a character cell.
-     * @param font The new font.
-     */
-    public void setFont(UnicodeFont font) {
-        if(representation instanceof CharacterCell)
-            ((CharacterCell) representation).setFont(font);
-    }
-
-    /**
-     * Sets whether this tile will be rendered
-     * onto the screen.
-     * @param visible Whether this tile will be rendered onto the screen.
-     */
-    public void setVisible(boolean visible) {
-        this.visible = visible;
-    }
-
     /**
      * Gets the representation of this tile.
      * @return Representation of this tile.
@@ -191,11 +159,6 @@ public class Tile implements Displayable {
      */
     @Override
     public void render(Graphics graphics, float x, float y, boolean centerSurround) {
-        if(!visible)
-            return;
-        if(canContainItems && inventoryStack != null && inventoryStack.getItemCount() > 0)
-            inventoryStack.render(graphics, x, y, centerSurround);
-        else
-            representation.render(graphics, x, y, centerSurround);
+        representation.render(graphics, x, y, centerSurround);
     }
 }
@@ -0,0 +1,255 @@
+package com.magneticstudio.transience.game;
+
+import com.magneticstudio.transience.util.Grid2D;
+import com.magneticstudio.transience.util.IntPoint;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * This class keeps the locations of the cells of each
+ * tracked tile type in a tile set. It listens to the writes
+ * into the tile set's grid, so it's always up to date.
+ *
+ * The locations of a type are kept in plain int arrays, and
+ * a removed location is replaced by the last one (swap-remove),
+ * so counting, picking a random location and going through
+ * every location of a type never have to scan the tile set.
+ *
+ * @author Max
+ */
+public class TilePositionIndex implements Grid2D.ChangeListener<Tile> {
+
+    private static final int MIN_CAPACITY = 16; // The smallest capacity of a location list.
+    private static final long NO_KEY = -1L; // Marks an unused slot of the slot table.
+
+    private final boolean[] tracked; // Whether each type (by ordinal) is tracked.
+    private final int[][] xs; // The x values of the locations of each type.
+    private final int[][] ys; // The y values of the locations of each type.
+    private final int[] sizes; // The amount of locations of each type.
+
+    // Open addressing table from a location to its index in the lists above.
+    private long[] slotKeys = new long[MIN_CAPACITY];
+    private int[] slotValues = new int[MIN_CAPACITY];
+    private int slotCount = 0;
+
+    /**
+     * Creates a new index of the locations of
+     * the specified tile types.
+     * @param types The tile types to keep track of.
+     */
+    public TilePositionIndex(Tile.Type... types) {
+        final int typeCount = Tile.Type.values().length;
+        tracked = new boolean[typeCount];
+        xs = new int[typeCount][];
+        ys = new int[typeCount][];
+        sizes = new int[typeCount];
+        for(Tile.Type type : types) {
+            tracked[type.ordinal()] = true;
+            xs[type.ordinal()] = new int[MIN_CAPACITY];
+            ys[type.ordinal()] = new int[MIN_CAPACITY];
+        }
+        Arrays.fill(slotKeys, NO_KEY);
+    }
+
+    /**
+     * Checks whether the locations of a type are kept track of.
+     * @param type The tile type.
+     * @return Whether the type is tracked.
+     */
+    public boolean isTracked(Tile.Type type) {
+        return tracked[type.ordinal()];
+    }
+
+    /**
+     * Gets the amount of cells of the specified type.
+     * @param type The tile type.
+     * @return The amount of cells of that type (0 if the type isn't tracked).
+     */
+    public int count(Tile.Type type) {
+        return sizes[type.ordinal()];
+    }
+
+    /**
+     * Picks the location of a random cell of the specified type.
+     * @param type The tile type.
+     * @param rng The random number generator to use.
+     * @return The location of the cell (null if there is no cell of that type).
+     */
+    public IntPoint random(Tile.Type type, SplittableRandom rng) {
+        final int t = type.ordinal();
+        if(sizes[t] == 0)
+            return null;
+        final int i = rng.nextInt(sizes[t]);
+        return new IntPoint(xs[t][i], ys[t][i]);
+    }
+
+    /**
+     * Goes through the location of every cell of the specified type.
+     * The cells must not be changed while doing so.
+     * @param type The tile type.
+     * @param feobj The action performed on each location.
+     */
+    public void forEach(Tile.Type type, ForEachPosition feobj) {
+        final int t = type.ordinal();
+        for(int i = 0; i < sizes[t]; i++)
+            feobj.onPosition(xs[t][i], ys[t][i]);
+    }
+
+    /**
+     * Removes every location from the index.
+     */
+    public void clear() {
+        Arrays.fill(sizes, 0);
+        Arrays.fill(slotKeys, NO_KEY);
+        slotCount = 0;
+    }
+
+    /**
+     * Moves the location of a cell from the list of its
+     * old type to the list of its new type.
+     * @param old The tile the cell held before.
+     * @param elem The tile the cell holds now.
+     * @param x The X value of the cell's location.
+     * @param y The Y value of the cell's location.
+     */
+    @Override
+    public void onElementChanged(Tile old, Tile elem, int x, int y) {
+        if(old != null && tracked[old.getTileType().ordinal()])
+            remove(old.getTileType().ordinal(), x, y);
+        if(elem != null && tracked[elem.getTileType().ordinal()])
+            add(elem.getTileType().ordinal(), x, y);
+    }
+
+    /**
+     * Adds a location to the list of a type.
+     * @param t The ordinal of the type.
+     * @param x The X value of the location.
+     * @param y The Y value of the location.
+     */
+    private void add(int t, int x, int y) {
+        if(sizes[t] == xs[t].length) {
+            xs[t] = Arrays.copyOf(xs[t], xs[t].length * 2);
+            ys[t] = Arrays.copyOf(ys[t], ys[t].length * 2);
+        }
+        final int i = sizes[t]++;
+        xs[t][i] = x;
+        ys[t][i] = y;
+        putSlot(key(x, y), i);
+    }
+
+    /**
+     * Removes a location from the list of a type by moving
+     * the last location of the list into its place.
+     * @param t The ordinal of the type.
+     * @param x The X value of the location.
+     * @param y The Y value of the location.
+     */
+    private void remove(int t, int x, int y) {
+        final int i = removeSlot(key(x, y));
+        if(i < 0)
+            return;
+        final int last = --sizes[t];
+        if(i != last) {
+            xs[t][i] = xs[t][last];
+            ys[t][i] = ys[t][last];
+            putSlot(key(xs[t][i], ys[t][i]), i);
+        }
+    }
+
+    /**
+     * Sets the list index of a location in the slot table.
+     * @param key The key of the location.
+     * @param value The index in the list of its type.
+     */
+    private void putSlot(long key, int value) {
+        if((slotCount + 1) * 2 > slotKeys.length)
+            growSlots();
+        int i = slotOf(key);
+        while(slotKeys[i] != NO_KEY && slotKeys[i] != key)
+            i = (i + 1) & (slotKeys.length - 1);
+        if(slotKeys[i] == NO_KEY)
+            slotCount++;
+        slotKeys[i] = key;
+        slotValues[i] = value;
+    }
+
+    /**
+     * Removes a location from the slot table.
+     * @param key The key of the location.
+     * @return The index the location had in the list of its type (-1 if unknown).
+     */
+    private int removeSlot(long key) {
+        final int mask = slotKeys.length - 1;
+        int i = slotOf(key);
+        while(slotKeys[i] != key) {
+            if(slotKeys[i] == NO_KEY)
+                return -1;
+            i = (i + 1) & mask;
+        }
+        final int value = slotValues[i];
+        slotCount--;
+
+        // Shift back the entries that follow, so lookups don't stop at the hole.
+        int hole = i;
+        for(int j = (i + 1) & mask; slotKeys[j] != NO_KEY; j = (j + 1) & mask) {
+            final int home = slotOf(slotKeys[j]);
+            if(((j - home) & mask) >= ((j - hole) & mask)) {
+                slotKeys[hole] = slotKeys[j];
+                slotValues[hole] = slotValues[j];
+                hole = j;
+            }
+        }
+        slotKeys[hole] = NO_KEY;
+        return value;
+    }
+
+    /**
+     * Doubles the size of the slot table.
+     */
+    private void growSlots() {
+        final long[] oldKeys = slotKeys;
+        final int[] oldValues = slotValues;
+        slotKeys = new long[oldKeys.length * 2];
+        slotValues = new int[oldValues.length * 2];
+        Arrays.fill(slotKeys, NO_KEY);
+        slotCount = 0;
+        for(int i = 0; i < oldKeys.length; i++) {
+            if(oldKeys[i] != NO_KEY)
+                putSlot(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    /**
+     * Gets the preferred slot of a key in the slot table.
+     * @param key The key of the location.
+     * @return The preferred slot.
+     */
+    private int slotOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & (slotKeys.length - 1);
+    }
+
+    /**
+     * Packs a location into a single key.
+     * @param x The X value of the location.
+     * @param y The Y value of the location.
+     * @return The key of the location.
+     */
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * This interface is used to go through the
+     * locations of a tile type.
+     */
+    public interface ForEachPosition {
+        /**
+         * Function that runs for an individual location.
+         * @param x The X value of the location.
+         * @param y The Y value of the location.
+         */
+        void onPosition(int x, int y);
+    }
+}
@@ -0,0 +1,83 @@
+package com.magneticstudio.transience.game;
+
+import com.magneticstudio.transience.ui.Res;
+import org.newdawn.slick.Color;
+import org.newdawn.slick.UnicodeFont;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * This class keeps the one shared tile of each
+ * tile type for a tile set. Every cell of the same
+ * type refers to the same Tile object, so the amount
+ * of tiles (and fonts) created for a level depends on
+ * the amount of tile types, not the size of the level.
+ *
+ * The font variants the registry asks Res for are held
+ * until it's disposed (see TileSet.dispose).
+ *
+ * @author Max
+ */
+public class TileRegistry {
+
+    private Map<Tile.Type, Tile> prototypes = new EnumMap<>(Tile.Type.class); // The shared tile of each type.
+    private UnicodeFont voidFont; // The gray font variant of the void tile (null once released).
+
+    /**
+     * Creates the shared tiles of every
+     * tile type using the specified font.
+     * @param font The font used to render the tiles.
+     */
+    public TileRegistry(UnicodeFont font) {
+        prototypes.put(Tile.Type.AIR, Tile.createAirTile(font));
+        voidFont = Res.modifyFont(font, Color.gray, Res.USE_DEFAULT, Res.USE_DEFAULT, Res.USE_DEFAULT);
+        prototypes.put(Tile.Type.VOID, Tile.createVoidTile(voidFont));
+        prototypes.put(Tile.Type.WALL, Tile.createWallTile(font));
+        prototypes.put(Tile.Type.STAIR, Tile.createStairTile(font));
+        prototypes.put(Tile.Type.STAIR_UP, Tile.createUpStairTile(font));
+    }
+
+    /**
+     * Gets the shared tile of the specified type.
+     * @param type The type of the tile.
+     * @return The shared tile of the type.
+     */
+    public Tile get(Tile.Type type) {
+        return prototypes.get(type);
+    }
+
+    /**
+     * Gives back the font variants of the tiles, so the
+     * cached fonts can be freed once nothing uses them.
+     * The tiles shouldn't be drawn afterwards.
+     */
+    public void dispose() {
+        if(voidFont == null)
+            return;
+        Res.releaseFont(voidFont);
+        voidFont = null;
+    }
+
+    /**
+     * Goes through the shared tile of every
+     * tile type.
+     * @param feobj The action performed on each tile.
+     */
+    public void forEach(ForEach feobj) {
+        for(Tile t : prototypes.values())
+            feobj.onTile(t);
+    }
+
+    /**
+     * This interface is used to go through
+     * each of the shared tiles.
+     */
+    public interface ForEach {
+        /**
+         * Function that runs for an individual tile.
+         * @param t The tile this function should process.
+         */
+        void onTile(Tile t);
+    }
+}
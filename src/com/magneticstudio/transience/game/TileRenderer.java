@@ -0,0 +1,83 @@
+package com.magneticstudio.transience.game;
+
+import com.magneticstudio.transience.util.DirtyRegion;
+import org.newdawn.slick.Graphics;
+import org.newdawn.slick.SlickException;
+
+/**
+ * This interface is implemented by the backends that draw
+ * a tile set (see TileSet.setRenderer).
+ *
+ * The tile set does the work that is the same for every
+ * backend: it works out which tiles are visible, keeps track
+ * of the tiles that changed, and picks the area of tiles kept
+ * cached around the visible area (the tile layer). A renderer
+ * only decides how the cached tiles are kept and how a frame
+ * ends up on the screen (or wherever it goes).
+ *
+ * Every function is called on the render thread while the
+ * tile set renders. Locations are in tiles unless noted.
+ *
+ * @author Max
+ */
+public interface TileRenderer {
+
+    /**
+     * Moves the tile layer to cover a new area. Every tile
+     * of the area is redrawn right after (see redrawTiles).
+     * Called while holding the tile set's lock.
+     * @param tileSet The tile set being rendered.
+     * @param layerX The first column of the tile layer.
+     * @param layerY The first row of the tile layer.
+     * @param columns The amount of columns of the tile layer.
+     * @param rows The amount of rows of the tile layer.
+     * @throws SlickException In case the storage of the tile layer can't be created.
+     */
+    void anchorLayer(TileSet tileSet, int layerX, int layerY, int columns, int rows) throws SlickException;
+
+    /**
+     * Redraws the tiles of the tile layer that changed.
+     * Only called when tiles changed, and while holding
+     * the tile set's lock, so the tiles may be read (see
+     * TileSet.forEachDrawnTile).
+     * @param tileSet The tile set being rendered.
+     * @param dirty The tiles that changed (possibly all of them).
+     */
+    void redrawTiles(TileSet tileSet, DirtyRegion dirty);
+
+    /**
+     * Draws the cached tiles of the frame being rendered.
+     * @param tileSet The tile set being rendered.
+     * @param graphics The graphics of the screen (null when rendering headless).
+     * @param firstX The first visible column.
+     * @param firstY The first visible row.
+     * @param lastX The column after the last visible column.
+     * @param lastY The row after the last visible row.
+     */
+    void renderTiles(TileSet tileSet, Graphics graphics, int firstX, int firstY, int lastX, int lastY);
+
+    /**
+     * Draws the item stacks and entities of the frame being
+     * rendered (see TileSet.getRenderSnapshot) on top of the tiles.
+     * @param tileSet The tile set being rendered.
+     * @param graphics The graphics of the screen (null when rendering headless).
+     * @param firstX The first visible column.
+     * @param firstY The first visible row.
+     * @param lastX The column after the last visible column.
+     * @param lastY The row after the last visible row.
+     */
+    void renderEntities(TileSet tileSet, Graphics graphics, int firstX, int firstY, int lastX, int lastY);
+
+    /**
+     * Checks whether this renderer draws onto the screen, so
+     * that the environment effects are drawn along with it.
+     * @return True if the frames are drawn with Slick2d's graphics.
+     */
+    boolean drawsToScreen();
+
+    /**
+     * Frees whatever this renderer holds. Called when the
+     * tile set is given another renderer.
+     */
+    void dispose();
+}
@@ -6,9 +6,19 @@ import com.magneticstudio.transience.ui.LogicalElement;
 import com.magneticstudio.transience.util.*;
 import org.newdawn.slick.*;
 
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * This class manages a 2d array of tiles.
  *
+ * The tile set is changed by the simulation thread (while
+ * holding the lock, see getLock) and drawn by the render thread.
+ * After each batch of ticks the simulation publishes a snapshot
+ * of what moves (see WorldSnapshot), and every frame is drawn from
+ * the latest one. Locations on the screen (getCanvasX and the like)
+ * are those of the frame being rendered.
+ *
  * @author Max
  */
 public class TileSet implements LogicalElement {
@@ -16,32 +26,56 @@ public class TileSet implements LogicalElement {
     public static final int PIXELS_PER_TILE = 64;
     public static final int CENTER_ADJUSTMENT = PIXELS_PER_TILE / 2;
     public static final int TILE_FONT_SIZE = 56;
+    public static final float MINIMAP_SCALE = .2f; // Below this scale the tile set is drawn as a minimap.
 
     private static final float CANVAS_SCALE_MAX = 1f; // The maximum canvas scale.
     private static final float CANVAS_SCALE_MIN = .01f; // The minimum canvas scale.
+    private static final int CANVAS_MAX_TILES = 128; // The most tiles the canvas holds along one axis.
+    private static final int RENDER_BLOCK_SIZE = ChunkedGrid2D.CHUNK_SIZE; // Tiles per block checked for emptiness when rendering.
+    private static final int LAYER_MARGIN = 6; // Tiles cached around the visible area on each side.
 
     // Anything related to the current tile set (the object; not static things) below
-    private ArrayList2D<Tile> tiles = new ArrayList2D<>(); // The 2d array of tiles.
+    private Grid2D<Tile> tiles; // The 2d array of tiles.
     private FlowPosition position = new FlowPosition(); // The position of this tile set.
 
     private Environment environment = new Environment(); // The environment for this tile set.
     private EntityCollection entities = new EntityCollection(); // The collection of entities.
 
+    private TileRegistry tileRegistry; // The shared tile of each tile type.
+    private TileStateTable tileStates = new TileStateTable(); // State of individual cells.
+    private TilePositionIndex tilePositions; // The locations of the cells of each tile type.
+
     private TileSetGenerator generator; // The generator used to create this tile set.
+    private SplittableRandom random = Game.randomStreams.stream("tile set"); // Picks random positions (set per floor by the generator).
     private UnicodeFont font; // The font used to render the individual tiles.
 
     // Graphics
-    private Image canvas; // The image object used to render tile set on.
-    private Graphics canvasGraphics; // The graphics object doing to the rendering.
+    private TileRenderer renderer = new SlickTileRenderer(); // Draws the tile set.
+    private TileRenderer minimap; // Draws the tile set while zoomed out (made when first needed).
+    private TileRenderer activeRenderer; // The renderer the tile layer is held by.
+    private int viewportWidth = 1280; // The width of the area the tile set is drawn in (in pixels).
+    private int viewportHeight = 720; // The height of the area the tile set is drawn in (in pixels).
+    private int layerX, layerY; // The location of the upper left tile held by the tile layer.
+    private int layerColumns, layerRows; // The amount of tiles held by the tile layer.
+    private DirtyRegion dirtyTiles = new DirtyRegion(); // The tiles that changed since they were last drawn.
+    private final Grid2D.ChangeListener<Tile> dirtyListener = (old, elem, x, y) -> dirtyTiles.mark(x, y); // Marks changed tiles.
+
+    // Threading
+    private final ReentrantLock lock = new ReentrantLock(); // Held while the tile set is changed.
+    private volatile WorldSnapshot snapshot; // The latest published snapshot.
+    private WorldSnapshot view; // The snapshot of the frame being rendered.
+    private float viewAlpha = 1f; // How far the frame being rendered is into the next tick.
 
     private Shake shaker; // The shaker for the tile set.
 
     private float canvasScale = 1f; // The scale of the canvas.
+    private float previousScale = 1f; // The scale of the canvas before the last update.
     private float scaleMod = 0f; // The amount to modify the scale by.
     private int scaleModTimeRemain = 0; // The time remaining to scale the tile set.
 
     // Game/ai
     private boolean runAi = false; // Whether to run the Ai on the next update.
+    private long aiNanos; // The time the AI took within the current update (simulation thread).
 
      /**
       * Creates a new TileSet object with
@@ -50,6 +84,18 @@ public class TileSet implements LogicalElement {
       * @param height The amount of tiles on the y axis.
       */
     public TileSet(int width, int height) {
+        this(width, height, false);
+    }
+
+    /**
+     * Creates a new TileSet object with the specified
+     * dimensions, optionally keeping the tiles in chunks
+     * so that only the carved out area takes up memory.
+     * @param width The amount of tiles on the x axis.
+     * @param height The amount of tiles on the y axis.
+     * @param chunked Whether to store the tiles in chunks.
+     */
+    public TileSet(int width, int height, boolean chunked) {
         font = Res.loadFont(
             "Consolas.ttf",
             Color.white,
@@ -57,11 +103,69 @@ public class TileSet implements LogicalElement {
             Res.USE_DEFAULT,
             Res.USE_DEFAULT
         );
-        tiles.setDimensions(width, height);
-        tiles.fill(Tile.createVoidTile(this));
-        tiles.setLocked(true);
+        tileRegistry = new TileRegistry(font);
+        tiles = createTiles(width, height, chunked, tileRegistry);
+        tilePositions = createPositionIndex();
+        tiles.addChangeListener(tilePositions);
+        tiles.addChangeListener(dirtyListener);
+        tileStates.setCellListener(dirtyTiles::mark);
         shaker = new Shake();
         generator = null;
+        view = snapshot = new WorldSnapshot(this, canvasScale, 1); // Something to draw before the first tick.
+    }
+
+    /**
+     * Creates a grid of void tiles to hold the tiles of a tile set.
+     * @param width The amount of tiles on the x axis.
+     * @param height The amount of tiles on the y axis.
+     * @param chunked Whether to store the tiles in chunks.
+     * @param registry The shared tile of each tile type.
+     * @return A new grid of tiles.
+     */
+    static Grid2D<Tile> createTiles(int width, int height, boolean chunked, TileRegistry registry) {
+        if(chunked) {
+            // Sized like the ArrayList2D below, which holds one extra row and column.
+            return new ChunkedGrid2D<>(width + 1, height + 1, registry.get(Tile.Type.VOID));
+        }
+        ArrayList2D<Tile> dense = new ArrayList2D<>();
+        dense.setDimensions(width, height);
+        dense.fill(registry.get(Tile.Type.VOID));
+        dense.setLocked(true);
+        return dense;
+    }
+
+    /**
+     * Creates an empty index of the locations of the
+     * tile types a tile set keeps track of.
+     * @return A new tile position index.
+     */
+    static TilePositionIndex createPositionIndex() {
+        // Void is the bulk of most tile sets and is never searched for, so it isn't tracked.
+        return new TilePositionIndex(Tile.Type.AIR, Tile.Type.WALL, Tile.Type.STAIR, Tile.Type.STAIR_UP);
+    }
+
+    /**
+     * Replaces the tiles of this tile set with those of another
+     * floor, filled apart from it (see FloorManager), so a floor
+     * is swapped in without writing a single tile. The grid must
+     * be as large as the current one, use this tile set's tile
+     * registry, and the position index must have listened to
+     * every write into the grid. The floor being replaced is left
+     * as it is, so it can be swapped in again later.
+     * Should be called while holding the lock.
+     * @param next The grid of the new floor.
+     * @param positions The locations of the cells of each tile type of the new floor.
+     * @param states The state of the cells of the new floor.
+     */
+    void replaceTiles(Grid2D<Tile> next, TilePositionIndex positions, TileStateTable states) {
+        tiles.removeChangeListener(dirtyListener);
+        tileStates.setCellListener(null);
+        tiles = next;
+        tilePositions = positions;
+        tileStates = states;
+        tiles.addChangeListener(dirtyListener);
+        tileStates.setCellListener(dirtyTiles::mark);
+        dirtyTiles.markAll();
     }
 
     /**
@@ -88,6 +192,84 @@ public class TileSet implements LogicalElement {
         canvasScale = Math.max(Math.min(CANVAS_SCALE_MAX, nScale), CANVAS_SCALE_MIN);
     }
 
+    /**
+     * Sets the renderer that draws this tile set, disposing
+     * the previous one (see TileRenderer).
+     * @param renderer The new renderer.
+     */
+    public void setRenderer(TileRenderer renderer) {
+        this.renderer.dispose();
+        this.renderer = renderer;
+        layerColumns = 0; // Anchored (and drawn) again on the next frame.
+    }
+
+    /**
+     * Gets the renderer that draws this tile set.
+     * @return The renderer of this tile set.
+     */
+    public TileRenderer getRenderer() {
+        return renderer;
+    }
+
+    /**
+     * Frees what this tile set holds outside of the heap: the
+     * tile layers of its renderers and the font variants of its
+     * tiles. The tile set shouldn't be drawn afterwards.
+     */
+    public void dispose() {
+        renderer.dispose();
+        if(minimap != null)
+            minimap.dispose();
+        tileRegistry.dispose();
+    }
+
+    /**
+     * Sets whether the tiles and entities are drawn as one batch
+     * of glyphs on the GPU (from a glyph atlas of the tile font)
+     * instead of a font draw per tile through Slick2d.
+     * @param v True to draw with the glyph batch.
+     */
+    public void setGlyphBatching(boolean v) {
+        if(v != isGlyphBatching())
+            setRenderer(v ? new GlyphTileRenderer() : new SlickTileRenderer());
+    }
+
+    /**
+     * Checks whether the tiles and entities are drawn
+     * as one batch of glyphs.
+     * @return Whether the glyph batch is used.
+     */
+    public boolean isGlyphBatching() {
+        return renderer instanceof GlyphTileRenderer;
+    }
+
+    /**
+     * Sets the size of the area the tile set is drawn in,
+     * which decides which tiles are visible.
+     * @param width The width of the viewport in pixels.
+     * @param height The height of the viewport in pixels.
+     */
+    public void setViewport(int width, int height) {
+        viewportWidth = width;
+        viewportHeight = height;
+    }
+
+    /**
+     * Gets the width of the area the tile set is drawn in.
+     * @return The width of the viewport in pixels.
+     */
+    public int getViewportWidth() {
+        return viewportWidth;
+    }
+
+    /**
+     * Gets the height of the area the tile set is drawn in.
+     * @return The height of the viewport in pixels.
+     */
+    public int getViewportHeight() {
+        return viewportHeight;
+    }
+
     /**
      * Gets the pixels per individual tile.
      * @return Pixels per individual tile.
@@ -108,25 +290,34 @@ public class TileSet implements LogicalElement {
         scaleModTimeRemain = time;
     }
 
-    // The limit on iterations for searching for a specific tile.
-    private static final int RANDOM_POSITION_SEARCH_LIMIT = 250_000;
-
     /**
      * Gets a random position that is over a specific
      * tile type.
      * @param on The tile to get the random position on.
-     * @return The location of the randomly selected tile.
+     * @return The location of the randomly selected tile (null if there is no tile of that type).
      */
-    @Deprecated
     public IntPoint randomPositionOn(Tile.Type on) {
-        for(int i = 0; i < RANDOM_POSITION_SEARCH_LIMIT; i++) {
-            int x = Game.rng.nextInt(tiles.getWidth());
-            int y = Game.rng.nextInt(tiles.getHeight());
-            Tile t = tiles.getElement(x, y);
-            if(t != null && t.getTileType() == on)
-                return new IntPoint(x, y);
-        }
-        return new IntPoint(0, 0);
+        return tilePositions.random(on, random);
+    }
+
+    /**
+     * Sets the random number generator positions are picked
+     * with. The generator hands each floor its own stream,
+     * so floors of the same seed spawn the same way.
+     * @param random The random number generator.
+     */
+    public void setRandom(SplittableRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * Gets the random number generator positions are picked with.
+     * It isn't thread safe, so it should only be used while
+     * holding the lock (or before the simulation starts).
+     * @return The random number generator of this tile set.
+     */
+    public SplittableRandom getRandom() {
+        return random;
     }
 
     /**
@@ -160,7 +351,7 @@ public class TileSet implements LogicalElement {
      */
     public void hideTile(int x, int y) {
         if(tiles.getElement(x, y) != null)
-            tiles.getElement(x, y).setVisible(false);
+            tileStates.setHidden(x, y, true);
     }
 
     /**
@@ -168,8 +359,7 @@ public class TileSet implements LogicalElement {
      * @param loc Location of the tile to hide.
      */
     public void hideTile(IntPoint loc) {
-        if(tiles.getElement(loc.x, loc.y) != null)
-            tiles.getElement(loc.x, loc.y).setVisible(false);
+        hideTile(loc.x, loc.y);
     }
 
     /**
@@ -179,7 +369,7 @@ public class TileSet implements LogicalElement {
      */
     public void showTile(int x, int y) {
         if(tiles.getElement(x, y) != null)
-            tiles.getElement(x, y).setVisible(true);
+            tileStates.setHidden(x, y, false);
     }
 
     /**
@@ -187,8 +377,7 @@ public class TileSet implements LogicalElement {
      * @param loc Location of the tile to show.
      */
     public void showTile(IntPoint loc) {
-        if(tiles.getElement(loc.x, loc.y) != null)
-            tiles.getElement(loc.x, loc.y).setVisible(true);
+        showTile(loc.x, loc.y);
     }
 
     /**
@@ -215,8 +404,9 @@ public class TileSet implements LogicalElement {
      * this tile set.
      */
     public void adjustGraphicalElements() {
-        tiles.forEach(t -> t.getRepresentation().setDimensions(PIXELS_PER_TILE, PIXELS_PER_TILE));
+        tileRegistry.forEach(t -> t.getRepresentation().setDimensions(PIXELS_PER_TILE, PIXELS_PER_TILE));
         entities.forEach(e -> e.getRepresentation().setDimensions(PIXELS_PER_TILE, PIXELS_PER_TILE));
+        dirtyTiles.markAll();
     }
 
     /**
@@ -234,17 +424,45 @@ public class TileSet implements LogicalElement {
      * @param alpha The alpha value for all tiles.
      */
     public void setAlpha(float alpha) {
-        tiles.forEach(e -> e.getRepresentation().setAlpha(alpha));
+        tileRegistry.forEach(t -> t.getRepresentation().setAlpha(alpha));
+        dirtyTiles.markAll();
     }
 
     /**
      * Gets the 2d array of tiles.
      * @return The 2d array of tiles.
      */
-    public ArrayList2D<Tile> getTiles() {
+    public Grid2D<Tile> getTiles() {
         return tiles;
     }
 
+    /**
+     * Gets the shared tile of each tile type
+     * used by this tile set.
+     * @return The tile registry of this tile set.
+     */
+    public TileRegistry getTileRegistry() {
+        return tileRegistry;
+    }
+
+    /**
+     * Gets the table holding the state of individual
+     * cells (item stacks and visibility).
+     * @return The cell state table of this tile set.
+     */
+    public TileStateTable getTileStates() {
+        return tileStates;
+    }
+
+    /**
+     * Gets the index of the locations of the cells
+     * of each tile type (void isn't tracked).
+     * @return The tile position index of this tile set.
+     */
+    public TilePositionIndex getTilePositions() {
+        return tilePositions;
+    }
+
     /**
      * Gets the environment of this tile set.
      * @return The tile set environment.
@@ -253,6 +471,51 @@ public class TileSet implements LogicalElement {
         return environment;
     }
 
+    /**
+     * Gets the lock that is held while the tile set is
+     * changed. The simulation holds it while ticking, and
+     * the render thread only takes it to update the cached
+     * tiles when it can get it without waiting.
+     * @return The lock of this tile set.
+     */
+    public ReentrantLock getLock() {
+        return lock;
+    }
+
+    /**
+     * Publishes a snapshot of the current state for the render
+     * thread. Called by the simulation after a batch of ticks.
+     * @param tickMillis The length of a simulation tick in milliseconds.
+     */
+    public void publishSnapshot(int tickMillis) {
+        snapshot = new WorldSnapshot(this, previousScale, tickMillis);
+    }
+
+    /**
+     * Gets the snapshot the frame being rendered is drawn from.
+     * @return The render snapshot.
+     */
+    public WorldSnapshot getRenderSnapshot() {
+        return view;
+    }
+
+    /**
+     * Gets the scale of the canvas in the frame being rendered.
+     * @return The interpolated scale.
+     */
+    public float getRenderScale() {
+        return view.getScale(viewAlpha);
+    }
+
+    /**
+     * Gets how far the frame being rendered is
+     * into the next tick (see WorldSnapshot.getAlpha).
+     * @return The interpolation factor of the frame.
+     */
+    public float getRenderAlpha() {
+        return viewAlpha;
+    }
+
     /**
      * Tells the entities in the entity collection
      * to perform some action on next update.
@@ -267,8 +530,9 @@ public class TileSet implements LogicalElement {
      * @return Render X value of tile set canvas.
      */
     public float getCanvasX() {
-        return (Game.activeGame.getResolutionWidth() / 2) - (CENTER_ADJUSTMENT * canvasScale)
-                + (position.getIntermediateX() * PIXELS_PER_TILE * canvasScale);
+        final float scale = getRenderScale();
+        return (viewportWidth / 2) - (CENTER_ADJUSTMENT * scale)
+                + (view.getCameraX(viewAlpha) * PIXELS_PER_TILE * scale);
     }
 
     /**
@@ -277,8 +541,9 @@ public class TileSet implements LogicalElement {
      * @return Render Y value of tile set canvas.
      */
     public float getCanvasY() {
-        return (Game.activeGame.getResolutionHeight() / 2) - (CENTER_ADJUSTMENT * canvasScale)
-                + (position.getIntermediateY() * PIXELS_PER_TILE * canvasScale);
+        final float scale = getRenderScale();
+        return (viewportHeight / 2) - (CENTER_ADJUSTMENT * scale)
+                + (view.getCameraY(viewAlpha) * PIXELS_PER_TILE * scale);
     }
 
     /**
@@ -318,7 +583,7 @@ public class TileSet implements LogicalElement {
      * @return The x location of the tile on the screen.
      */
     public float tileToDisplayLocationX(int tileX) {
-        return getCanvasX() + (tileX * PIXELS_PER_TILE * canvasScale) + shaker.getHorizontalOffset();
+        return getCanvasX() + (tileX * PIXELS_PER_TILE * getRenderScale()) + view.getShakeX();
     }
 
     /**
@@ -327,7 +592,7 @@ public class TileSet implements LogicalElement {
      * @return The y location of the tile on the screen.
      */
     public float tileToDisplayLocationY(int tileY) {
-        return getCanvasY() + (tileY * PIXELS_PER_TILE * canvasScale) + shaker.getVerticalOffset();
+        return getCanvasY() + (tileY * PIXELS_PER_TILE * getRenderScale()) + view.getShakeY();
     }
 
     /**
@@ -345,67 +610,191 @@ public class TileSet implements LogicalElement {
     }
 
     /**
-     * Renders the tile set onto the screen.
-     * @param graphics The graphics object used to render anything on the main screen.
+     * Renders the tile set from the latest published snapshot
+     * with its renderer (see setRenderer). The tile set works out
+     * which tiles are visible and keeps the tiles around them cached
+     * in the renderer's tile layer, where only the tiles that changed
+     * are redrawn; the renderer draws the tile layer and the item
+     * stacks and entities (which move) on top of it.
+     *
+     * Zoomed out below MINIMAP_SCALE, the glyphs are too small to
+     * read, so the whole tile set is drawn as a minimap instead
+     * (see MinimapTileRenderer), unless rendering headless.
+     * @param graphics The graphics object used to render anything on the main screen (null when rendering headless).
      */
     public void render(Graphics graphics) throws SlickException {
-        if(canvas == null
-           || canvas.getWidth() / PIXELS_PER_TILE != tiles.getWidth()
-           || canvas.getHeight() / PIXELS_PER_TILE != tiles.getHeight()) {
-            canvas = new Image(tiles.getWidth() * PIXELS_PER_TILE, tiles.getHeight() * PIXELS_PER_TILE);
-            canvasGraphics = canvas.getGraphics();
+        view = snapshot;
+        viewAlpha = view.getAlpha(System.nanoTime());
+
+        final boolean zoomedOut = renderer.drawsToScreen() && getRenderScale() < MINIMAP_SCALE;
+        if(zoomedOut && minimap == null)
+            minimap = new MinimapTileRenderer();
+        final TileRenderer active = zoomedOut ? minimap : renderer;
+        if(active != activeRenderer) {
+            activeRenderer = active;
+            layerColumns = 0; // Anchored (and drawn) again for the renderer taking over.
         }
 
-        canvasGraphics.clear();
+        int firstX = firstVisibleColumn(), lastX = lastVisibleColumn();
+        int firstY = firstVisibleRow(), lastY = lastVisibleRow();
+        if(zoomedOut) {
+            // The minimap holds the whole tile set, so its layer never has to move.
+            firstX = firstY = 0;
+            lastX = tiles.getWidth();
+            lastY = tiles.getHeight();
+        }
+        else if(lastX - firstX > CANVAS_MAX_TILES) {
+            firstX += (lastX - firstX - CANVAS_MAX_TILES) / 2;
+            lastX = firstX + CANVAS_MAX_TILES;
+        }
+        if(!zoomedOut && lastY - firstY > CANVAS_MAX_TILES) {
+            firstY += (lastY - firstY - CANVAS_MAX_TILES) / 2;
+            lastY = firstY + CANVAS_MAX_TILES;
+        }
+        if(lastX <= firstX || lastY <= firstY) {
+            renderEnvironment(graphics);
+            return;
+        }
 
-        for(int iy = 0; iy < tiles.getHeight(); iy++) {
-            if(!willTileBeVisibleY(iy))
-                continue;
+        long start = FrameProfiler.start();
+        refreshTiles(firstX, firstY, lastX, lastY);
+        active.renderTiles(this, graphics, firstX, firstY, lastX, lastY);
+        FrameProfiler.record(FrameProfiler.Phase.TILE_LAYER, start);
 
-            float renderY = iy * PIXELS_PER_TILE;
-            for(int ix = 0; ix < tiles.getWidth(); ix++) {
-                if(!willTileBeVisibleX(ix))
-                    continue;
+        start = FrameProfiler.start();
+        active.renderEntities(this, graphics, firstX, firstY, lastX, lastY);
+        FrameProfiler.record(FrameProfiler.Phase.ENTITIES, start);
+        renderEnvironment(graphics);
+    }
 
-                Tile t = tiles.getElement(ix, iy);
-                if(t.getTileType() == Tile.Type.VOID)
-                    continue;
+    /**
+     * Renders the environment effects (timed as their own phase),
+     * if the renderer draws onto the screen.
+     * @param graphics The graphics object used to render anything on the main screen.
+     */
+    private void renderEnvironment(Graphics graphics) {
+        if(!renderer.drawsToScreen())
+            return;
+        final long start = FrameProfiler.start();
+        environment.render(this, graphics);
+        FrameProfiler.record(FrameProfiler.Phase.ENVIRONMENT, start);
+    }
 
-                float renderX = ix * PIXELS_PER_TILE;
-                t.render(
-                    canvasGraphics,
-                    renderX,
-                    renderY,
-                    false
-                );
-            }
-        }
+    /**
+     * Gets the X value of the point (in scaled pixels from the
+     * upper left corner of the tile set) the shake rotates around.
+     * @return The X value of the rotation pivot.
+     */
+    float getRotationPivotX() {
+        return tileToCanvasX(view.getPivotX()) * getRenderScale();
+    }
 
-        entities.forEach(e -> {
-            FlowPosition entPos = e.getPosition();
-            float x = entPos.getIntermediateX() * PIXELS_PER_TILE;
-            float y = entPos.getIntermediateY() * PIXELS_PER_TILE;
-            canvasGraphics.setDrawMode(Graphics.MODE_COLOR_MULTIPLY);
-            canvasGraphics.setColor(new Color(0f, 0f, 0f, 0f));
-            canvasGraphics.fillRect(x, y, PIXELS_PER_TILE, PIXELS_PER_TILE);
-            canvasGraphics.setDrawMode(Graphics.MODE_ADD);
-            e.render(canvasGraphics, x, y, false);
-        });
+    /**
+     * Gets the Y value of the point (in scaled pixels from the
+     * upper left corner of the tile set) the shake rotates around.
+     * @return The Y value of the rotation pivot.
+     */
+    float getRotationPivotY() {
+        return tileToCanvasY(view.getPivotY()) * getRenderScale();
+    }
 
-        Image preprocessedCanvas = canvas.getScaledCopy(canvasScale);
-        if(entities.getPlayer() != null) {
-            FlowPosition playerPos = entities.getPlayer().getPosition();
-            IntPoint playerLoc = tileToCanvasCoordinates(playerPos.getTargetX(), playerPos.getTargetY());
-            preprocessedCanvas.setCenterOfRotation(playerLoc.x * canvasScale, playerLoc.y * canvasScale);
+    /**
+     * Brings the renderer's cached tiles up to date and makes sure
+     * they cover the visible area. The tiles are read while holding
+     * the lock, which is only taken if the simulation isn't using it.
+     * Otherwise the cached tiles of the last frame are drawn again,
+     * so a long tick (like generating a new level) never holds up a
+     * frame. Only a frame with nothing cached to draw waits (the
+     * first one, or the first after another renderer takes over).
+     * @param firstX The first visible column.
+     * @param firstY The first visible row.
+     * @param lastX The column after the last visible column.
+     * @param lastY The row after the last visible row.
+     */
+    private void refreshTiles(int firstX, int firstY, int lastX, int lastY) throws SlickException {
+        final boolean anchored = layerColumns > 0;
+        if(anchored && !lock.tryLock())
+            return;
+        if(!anchored)
+            lock.lock();
+        try {
+            if(!anchored
+               || firstX < layerX || lastX > layerX + layerColumns
+               || firstY < layerY || lastY > layerY + layerRows)
+                anchorTileLayer(firstX, firstY, lastX, lastY);
+            if(!dirtyTiles.isEmpty()) {
+                activeRenderer.redrawTiles(this, dirtyTiles);
+                dirtyTiles.clear();
+            }
         }
-        preprocessedCanvas.rotate(shaker.getRotationOffset());
+        finally {
+            lock.unlock();
+        }
+    }
 
-        graphics.drawImage(
-            preprocessedCanvas,
-            getCanvasX() + shaker.getHorizontalOffset(),
-            getCanvasY() + shaker.getVerticalOffset()
-        );
-        environment.render(this, graphics);
+    /**
+     * Moves the area held by the tile layer so that it covers the
+     * visible tiles plus a margin, so the tile layer only has to be
+     * redrawn entirely once the view moves past the margin.
+     * @param firstX The first visible column.
+     * @param firstY The first visible row.
+     * @param lastX The column after the last visible column.
+     * @param lastY The row after the last visible row.
+     */
+    private void anchorTileLayer(int firstX, int firstY, int lastX, int lastY) throws SlickException {
+        layerX = Math.max(0, firstX - LAYER_MARGIN);
+        layerY = Math.max(0, firstY - LAYER_MARGIN);
+        int x2 = Math.min(tiles.getWidth(), lastX + LAYER_MARGIN);
+        int y2 = Math.min(tiles.getHeight(), lastY + LAYER_MARGIN);
+        if(x2 - layerX > CANVAS_MAX_TILES) {
+            layerX = firstX;
+            x2 = lastX;
+        }
+        if(y2 - layerY > CANVAS_MAX_TILES) {
+            layerY = firstY;
+            y2 = lastY;
+        }
+        layerColumns = x2 - layerX;
+        layerRows = y2 - layerY;
+        dirtyTiles.markAll();
+        activeRenderer.anchorLayer(this, layerX, layerY, layerColumns, layerRows);
+    }
+
+    /**
+     * Goes through the tiles of an area that are drawn onto
+     * the tile layer, which leaves out void, hidden cells and
+     * cells holding items (the item stacks are drawn on top of
+     * the tile layer every frame). The area is gone through in
+     * blocks, skipping blocks that are empty. Only called by
+     * renderers while the lock is held.
+     * @param x The first column of the area.
+     * @param y The first row of the area.
+     * @param w The width of the area.
+     * @param h The height of the area.
+     * @param action The action performed on each drawn tile.
+     */
+    void forEachDrawnTile(int x, int y, int w, int h, ArrayList2D.ForEachAt<Tile> action) {
+        final ArrayList2D.ForEachAt<Tile> drawn = (t, ix, iy) -> {
+            if(t == null || t.getTileType() == Tile.Type.VOID || tileStates.isHidden(ix, iy))
+                return;
+            InventoryStack<Item> stack = t.canContainItems() ? tileStates.getInventoryStack(ix, iy) : null;
+            if(stack != null && stack.getItemCount() > 0)
+                return;
+            action.onelem(t, ix, iy);
+        };
+
+        // Blocks are aligned to the chunks of the tile storage, so empty chunks are skipped as a whole.
+        for(int by = y - y % RENDER_BLOCK_SIZE; by < y + h; by += RENDER_BLOCK_SIZE) {
+            final int y1 = Math.max(by, y);
+            final int y2 = Math.min(by + RENDER_BLOCK_SIZE, y + h);
+            for(int bx = x - x % RENDER_BLOCK_SIZE; bx < x + w; bx += RENDER_BLOCK_SIZE) {
+                final int x1 = Math.max(bx, x);
+                final int x2 = Math.min(bx + RENDER_BLOCK_SIZE, x + w);
+                if(tiles.isRegionEmpty(x1, y1, x2 - x1, y2 - y1))
+                    continue;
+                tiles.forEachInRect(x1, y1, x2 - x1, y2 - y1, drawn);
+            }
+        }
     }
 
     /**
@@ -425,13 +814,21 @@ public class TileSet implements LogicalElement {
      */
     @Override
     public void update(int milliseconds) {
-        // Entity updates.
+        final long start = FrameProfiler.start();
+        previousScale = canvasScale;
+
+        // Entity updates. Only the AI itself is timed, summed over the enemies.
+        aiNanos = 0;
         entities.forEach(e -> {
             e.updatePosition(milliseconds);
             if(e instanceof Enemy) {
                 Enemy cast = (Enemy) e;
-                if(runAi)
+                if(runAi) {
+                    final long aiStart = FrameProfiler.start();
                     cast.runAi(this);
+                    if(aiStart != 0)
+                        aiNanos += System.nanoTime() - aiStart;
+                }
 
             }
             else {
@@ -444,6 +841,8 @@ public class TileSet implements LogicalElement {
             focusOn(playerPosition.getTargetX(), playerPosition.getTargetY());
         }
 
+        if(runAi) // Only recorded for ticks that ran the AI.
+            FrameProfiler.recordDuration(FrameProfiler.Phase.AI, aiNanos);
         runAi = false;
 
         // Scaling and transformations:
@@ -453,27 +852,51 @@ public class TileSet implements LogicalElement {
         }
         shaker.update(milliseconds);
         position.update(milliseconds);
+        environment.update();
+        FrameProfiler.record(FrameProfiler.Phase.UPDATE, start);
     }
 
     /**
-     * Checks if the specified column would be visible on the screen;
+     * Gets the first column that would be visible on the screen;
      * the tile itself isn't out of bounds of the rendering window.
-     * @param x The column number.
-     * @return Whether that column would be visible or not.
+     * @return The first visible column.
+     */
+    private int firstVisibleColumn() {
+        final float tileSize = PIXELS_PER_TILE * getRenderScale();
+        final float base = tileToDisplayLocationX(0);
+        return Math.max(0, (int) Math.floor((-tileSize - base) / tileSize) + 1);
+    }
+
+    /**
+     * Gets the column after the last column that would be visible
+     * on the screen.
+     * @return The column after the last visible column.
      */
-    private boolean willTileBeVisibleX(int x) {
-        float tileX = tileToDisplayLocationX(x);
-        return tileX > (-PIXELS_PER_TILE * canvasScale) && tileX < Game.activeGame.getResolutionWidth();
+    private int lastVisibleColumn() {
+        final float tileSize = PIXELS_PER_TILE * getRenderScale();
+        final float base = tileToDisplayLocationX(0);
+        return Math.min(tiles.getWidth(), (int) Math.ceil((viewportWidth - base) / tileSize));
     }
 
     /**
-     * Checks if the specified row would be visible on the screen;
+     * Gets the first row that would be visible on the screen;
      * the tile itself isn't out of bounds of the rendering window.
-     * @param y The row number.
-     * @return Whether that row would be visible or not.
+     * @return The first visible row.
+     */
+    private int firstVisibleRow() {
+        final float tileSize = PIXELS_PER_TILE * getRenderScale();
+        final float base = tileToDisplayLocationY(0);
+        return Math.max(0, (int) Math.floor((-tileSize - base) / tileSize) + 1);
+    }
+
+    /**
+     * Gets the row after the last row that would be visible
+     * on the screen.
+     * @return The row after the last visible row.
      */
-    private boolean willTileBeVisibleY(int y) {
-        float tileY = tileToDisplayLocationY(y);
-        return tileY > (-PIXELS_PER_TILE * canvasScale) && tileY < Game.activeGame.getResolutionHeight();
+    private int lastVisibleRow() {
+        final float tileSize = PIXELS_PER_TILE * getRenderScale();
+        final float base = tileToDisplayLocationY(0);
+        return Math.min(tiles.getHeight(), (int) Math.ceil((viewportHeight - base) / tileSize));
     }
 }
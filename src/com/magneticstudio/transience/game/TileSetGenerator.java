@@ -4,11 +4,17 @@ import com.magneticstudio.transience.ui.Game;
 import com.magneticstudio.transience.ui.Res;
 import com.magneticstudio.transience.ui.Sprite;
 import com.magneticstudio.transience.util.ArrayList2D;
+import com.magneticstudio.transience.util.ChunkedGrid2D;
+import com.magneticstudio.transience.util.Grid2D;
 import com.magneticstudio.transience.util.IntPoint;
+import com.magneticstudio.transience.util.LogHistogram;
+import com.magneticstudio.transience.util.Metrics;
+import com.magneticstudio.transience.util.RandomStreams;
+import com.magneticstudio.transience.util.SpatialGrid;
+import com.magneticstudio.transience.util.TelemetryEvents;
 import org.newdawn.slick.Image;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.SplittableRandom;
 
 /**
  * This class will handle the map generation
@@ -22,7 +28,19 @@ public class TileSetGenerator {
     public static final int ROOM_CLUSTER_MODERATE = 3; // A moderate cluster.
     public static final int ROOM_CLUSTER_SIMPLE = 5; // A simple room cluster.
 
-    private List<Room> generatedRooms = new ArrayList<>(); // The list of generated rooms.
+    private static final String NULL_ITEM_IMAGE = "resources/textures/items/Null Item.png"; // The image of scattered loot.
+
+    private static final LogHistogram GENERATION_TIME = Metrics.histogram("level.generation.micros"); // Time taken per level.
+    private static final LogHistogram ROOMS_PLACED = Metrics.histogram("level.rooms.placed"); // Rooms placed per level.
+    private static final Metrics.Counter ATTEMPTS_REJECTED = Metrics.counter("level.rooms.rejected"); // Room attempts that failed.
+    private static final LogHistogram ATTEMPTS = Metrics.histogram("level.rooms.attempts"); // Room attempts per level.
+    private static final int ATTEMPTS_PER_ROOM = 64; // Room attempts budgeted for each smallest room the map could hold.
+    private static final int MIN_ATTEMPTS = 256; // The least room attempts budgeted for a level.
+    private static final int STAIR_ATTEMPTS = 64; // Locations tried for a stair before the floor goes without one.
+    private static final String FLOOR_STREAM = "floor"; // The name of the random number streams of floors.
+    private static final LogHistogram SWAP_TIME = Metrics.histogram("level.swap.micros"); // Time taken to swap in a floor.
+
+    private SpatialGrid<Room> generatedRooms = new SpatialGrid<>(0, 0, 1); // The generated rooms, indexed by where they are.
     private static final int ABSOLUTE_MIN_ROOM_WIDTH = 3; // Absolute minimum room width.
     private static final int ABSOLUTE_MIN_ROOM_HEIGHT = 3; // Absolute minimum room height.
 
@@ -36,6 +54,16 @@ public class TileSetGenerator {
     private boolean autoStairSpawn = true; // Automatically spawn stairs to go up and down.
     private boolean autoPlayerSpawn = true; // Automatically spawn the player.
     private boolean autoLootScatter = true; // Automatically spawn items in the tile set.
+    private boolean chunkedStorage = false; // Store generated tile sets in chunks (for very large floors).
+    private RoomPlacer roomPlacer = new RejectionRoomPlacer(); // Decides where the rooms go.
+    private int floorsAhead = FloorManager.DEFAULT_FLOORS_AHEAD; // Floors generated ahead of time below the current one.
+    private int floorsKept = FloorManager.DEFAULT_FLOORS_KEPT; // Visited floors kept above the current one.
+    private FloorManager floors; // Keeps the floors of the tile set generated last (null before one is).
+    private Floor currentFloor; // The floor the tile set holds.
+    private RandomStreams randomStreams = Game.randomStreams; // The streams each floor is generated from.
+    private int floorIndex = 0; // The index (depth) of the current floor (the first one is 0).
+    private SplittableRandom random; // Picks locations in the rooms of the current floor.
+    private Image nullItemImage; // The image of scattered loot (kept loaded for every level).
 
     /**
      * Creates a new instance of the TileSetGenerator
@@ -111,17 +139,161 @@ public class TileSetGenerator {
         autoStairSpawn = v;
     }
 
+    /**
+     * Sets whether items are scattered in a newly generated tile set.
+     * The items are images, so this needs OpenGL (turn it off when
+     * generating headless).
+     * @param v True to scatter items automatically; False to not.
+     */
+    public void setAutoLootScatter(boolean v) {
+        autoLootScatter = v;
+    }
+
+    /**
+     * Sets the strategy that decides where rooms are placed
+     * (see RejectionRoomPlacer, BspRoomPlacer and PoissonRoomPlacer).
+     * @param placer The room placer.
+     */
+    public void setRoomPlacer(RoomPlacer placer) {
+        roomPlacer = placer;
+    }
+
+    /**
+     * Gets the strategy that decides where rooms are placed.
+     * @return The room placer.
+     */
+    public RoomPlacer getRoomPlacer() {
+        return roomPlacer;
+    }
+
+    /**
+     * Sets how many floors below the current one are generated
+     * ahead of time, in parallel (0 to generate each floor when
+     * it's entered). See FloorManager.
+     * @param floorsAhead The amount of floors generated ahead.
+     */
+    public void setFloorsAhead(int floorsAhead) {
+        this.floorsAhead = Math.max(floorsAhead, 0);
+        if(floors != null)
+            floors.setFloorsAhead(this.floorsAhead);
+    }
+
+    /**
+     * Sets how many visited floors above the current one are
+     * kept, so going back up finds them as they were left.
+     * @param floorsKept The amount of visited floors kept.
+     */
+    public void setFloorsKept(int floorsKept) {
+        this.floorsKept = Math.max(floorsKept, 0);
+        if(floors != null)
+            floors.setFloorsKept(this.floorsKept);
+    }
+
+    /**
+     * Gets the manager keeping the floors of the tile
+     * set generated last.
+     * @return The floor manager (null if no tile set was generated yet).
+     */
+    public FloorManager getFloorManager() {
+        return floors;
+    }
+
+    /**
+     * Sets the random number streams floors are generated from.
+     * Each floor gets the stream of its index, so with the same
+     * seed and settings, every floor comes out the same no matter
+     * when or on which thread it's generated. The floors kept
+     * so far are dropped.
+     * @param streams The random number streams (like a RandomStreams with a fixed seed).
+     */
+    public void setRandomStreams(RandomStreams streams) {
+        randomStreams = streams;
+        if(floors != null)
+            floors.clear();
+    }
+
+    /**
+     * Gets the random number streams floors are generated from.
+     * @return The random number streams.
+     */
+    public RandomStreams getRandomStreams() {
+        return randomStreams;
+    }
+
+    /**
+     * Gets the index (depth) of the current floor
+     * (the first floor of a tile set is 0).
+     * @return The index of the current floor.
+     */
+    public int getFloorIndex() {
+        return floorIndex;
+    }
+
+    /**
+     * Sets whether generated tile sets keep their tiles in chunks,
+     * so that only the carved out area of a very large floor takes
+     * up memory.
+     * @param v True to use chunked storage; False to use a plain 2d array.
+     */
+    public void setChunkedStorage(boolean v) {
+        chunkedStorage = v;
+    }
+
     /**
      * Gets a random location inside of the
      * tile set.
-     * @return A random location inside of the tile set (anything that is not void or wall)
+     * @return A random location inside of the tile set (anything that is not void or wall), or null if no room was placed.
      */
     public IntPoint randomLocationInside() {
-        return generatedRooms.get(Game.rng.nextInt(generatedRooms.size())).selectRandomLocationInside();
+        return randomLocationIn(generatedRooms, random);
+    }
+
+    /**
+     * Gets a random location inside of a random room.
+     * @param rooms The rooms to pick from.
+     * @param rng The random number generator to pick with.
+     * @return A random location inside of a room (null if there are no rooms).
+     */
+    private static IntPoint randomLocationIn(SpatialGrid<Room> rooms, SplittableRandom rng) {
+        if(rooms.size() == 0)
+            return null;
+        return rooms.get(rng.nextInt(rooms.size())).selectRandomLocationInside(rng);
+    }
+
+    /**
+     * Picks the location of a stair in a random room, away
+     * from another location. A floor with a single room that
+     * has a single cell inside may not have such a location.
+     * @param rooms The rooms to pick from.
+     * @param rng The random number generator to pick with.
+     * @param avoid The location the stair can't be on (null for none).
+     * @return The location of the stair (null if none was found).
+     */
+    private static IntPoint randomStairLocation(SpatialGrid<Room> rooms, SplittableRandom rng, IntPoint avoid) {
+        for(int i = 0; i < STAIR_ATTEMPTS; i++) {
+            IntPoint stair = randomLocationIn(rooms, rng);
+            if(stair == null || avoid == null || !stair.isEquivalentTo(avoid))
+                return stair;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the image of scattered loot. The image is
+     * loaded once and kept by this generator, so later
+     * levels don't load it again.
+     * @return The image of scattered loot.
+     */
+    private Image getNullItemImage() {
+        if(nullItemImage == null)
+            nullItemImage = Res.loadImage(NULL_ITEM_IMAGE);
+        return nullItemImage;
     }
 
     /**
-     * Generates a new tile set.
+     * Generates a new tile set. Once it's generated, the floors
+     * below it start being generated in the background (see
+     * regenerate).
      * @param width The width of the tile set.
      * @param height The height of the tile set.
      * @return A new tile set.
@@ -133,132 +305,319 @@ public class TileSetGenerator {
         if(height < roomMaxHeight)
             roomMaxHeight = height;
 
-        TileSet tileSet = new TileSet(width, height);
+        TelemetryEvents.LevelGeneration event = new TelemetryEvents.LevelGeneration();
+        event.begin();
+        final long start = System.nanoTime();
+
+        TileSet tileSet = new TileSet(width, height, chunkedStorage);
         tileSet.setGenerator(this);
         tileSet.getPosition().setTransitionTime(tsTransitionTime);
 
-        final int generationAttempts = 250_000; // Number of attempts to create non-overlapping rooms.
-        for(int i = 0; i < generationAttempts; i++) {
-            generateRoom(tileSet);
-        }
-
-        if(generatedRooms.size() >= 2) {
-            for(int i = 0; i < generatedRooms.size() - 1; i++) {
-                Room toLinkWithOthers = generatedRooms.get(i);
-                for(int j = i + 1; j < generatedRooms.size(); j += tsRoomClusterSize) {
-                    Room next = generatedRooms.get(j);
-                    linkRooms(tileSet, toLinkWithOthers, next);
-                }
-            }
-        }
+        // The first floor is carved right into the tile set, whose own tables follow the writes.
+        Floor floor = carveFloor(tileSet.getTiles(), tileSet.getTilePositions(), tileSet.getTileStates(),
+            tileSet.getTileRegistry(), randomStreams.stream(FLOOR_STREAM, 0), 0);
+        enterFloor(tileSet, floor);
 
         if(autoPlayerSpawn)
             tileSet.getEntities().spawnPlayer(tileSet);
 
+        // Without rooms there is no air, so the player wasn't placed anywhere.
         Player player = tileSet.getEntities().getPlayer();
-        if(autoStairSpawn && player != null) {
-            IntPoint playerLocation = player.getPosition().getIntPoint();
-            IntPoint random;
-            do {
-                random = randomLocationInside();
-            }
-            while(random.isEquivalentTo(playerLocation));
-            tileSet.getTiles().setElement(Tile.createStairTile(tileSet), random);
-        }
-        else if(autoStairSpawn) {
-            tileSet.getTiles().setElement(Tile.createStairTile(tileSet), randomLocationInside());
-        }
+        floor.arrival = player != null && floor.rooms.size() > 0 ? player.getPosition().getIntPoint() : null;
+        floor.downStair = placeStair(tileSet, floor.arrival);
 
         if(autoLootScatter) {
             for(int i = 0; i < 10; i++) {
-                Tile t = tileSet.getTiles().getElement(randomLocationInside());
+                IntPoint location = tileSet.randomPositionOn(Tile.Type.AIR);
+                if(location == null)
+                    break;
+                Tile t = tileSet.getTiles().getElement(location);
                 if(t.canContainItems()) {
                     InventoryStack<Item> item = new InventoryStack<>(1);
-                    Image image = Res.loadImage("resources/textures/items/Null Item.png").getScaledCopy(TileSet.PIXELS_PER_TILE, TileSet.PIXELS_PER_TILE);
+                    Image image = getNullItemImage().getScaledCopy(TileSet.PIXELS_PER_TILE, TileSet.PIXELS_PER_TILE);
                     Sprite sprite = new Sprite(image, image.getWidth(), image.getHeight(), 60);
                     item.push(new Item(sprite));
-                    t.setInventoryStack(item);
+                    tileSet.getTileStates().setInventoryStack(location.x, location.y, item);
                 }
             }
         }
 
         tileSet.adjustGraphicalElements();
+        recordGeneration(event, start, floor, false, false);
+        startFloors(tileSet);
 
         return tileSet;
     }
 
     /**
-     * Regenerates the tile set.
+     * Regenerates the tile set: takes the player down to the
+     * floor below. The floors below are generated in parallel
+     * while the player is on the current one (see FloorManager),
+     * so the floor only has to be swapped in, which takes the
+     * same time no matter how large it is. The floor left is
+     * kept, so it can be returned to (see ascend).
+     *
+     * Settings changed while floors are being generated may
+     * only apply from the floors generated after them.
      * @param tileSet The tile set to regenerate.
      */
     public void regenerate(TileSet tileSet) {
-        generatedRooms.clear();
+        changeFloor(tileSet, floorIndex + 1);
+    }
+
+    /**
+     * Takes the player back up to the floor above, as it was
+     * left, onto its stair down.
+     * @param tileSet The tile set holding the floors.
+     * @return Whether there was a floor above (the first floor has none).
+     */
+    public boolean ascend(TileSet tileSet) {
+        if(floorIndex == 0)
+            return false;
+        changeFloor(tileSet, floorIndex - 1);
+        return true;
+    }
+
+    /**
+     * Swaps the floor of a depth into the tile set, generating
+     * it if it isn't kept, and starts generating the floors
+     * below it.
+     * @param tileSet The tile set holding the floors.
+     * @param depth The depth of the floor.
+     */
+    private void changeFloor(TileSet tileSet, int depth) {
+        final long start = System.nanoTime();
+        final boolean down = depth > floorIndex;
+        if(floors == null || currentFloor == null || currentFloor.registry != tileSet.getTileRegistry())
+            startFloors(tileSet); // A tile set this generator didn't make (or made before another).
+        else
+            floors.keep(floorIndex, currentFloor);
+        Floor floor = floors.enter(depth);
 
-        tileSet.getTiles().fill(Tile.createVoidTile(tileSet));
         Player saved = tileSet.getEntities().getPlayer();
         tileSet.getEntities().purgeAllButPlayer();
+        Res.evictUnusedFonts();
 
-        final int generationAttempts = 250_000; // Number of attempts to create non-overlapping rooms.
-        for(int i = 0; i < generationAttempts; i++) {
-            generateRoom(tileSet);
-        }
+        tileSet.replaceTiles(floor.tiles, floor.positions, floor.states);
+        enterFloor(tileSet, floor);
 
-        if(generatedRooms.size() >= 2) {
-            for(int i = 0; i < generatedRooms.size() - 1; i++) {
-                Room toLinkWithOthers = generatedRooms.get(i);
-                for(int j = i + 1; j < generatedRooms.size(); j += tsRoomClusterSize) {
-                    Room next = generatedRooms.get(j);
-                    linkRooms(tileSet, toLinkWithOthers, next);
-                }
-            }
+        // Going down arrives on the stair up, and going up arrives on the stair down.
+        IntPoint arrival = down || floor.downStair == null ? floor.arrival : floor.downStair;
+        if(autoPlayerSpawn && saved != null && arrival != null)
+            saved.getPosition().forcePosition(arrival);
+
+        tileSet.adjustGraphicalElements();
+        SWAP_TIME.record((System.nanoTime() - start) / 1000);
+        floors.prefetch(depth);
+    }
+
+    /**
+     * Makes a new floor manager for a tile set, which starts
+     * generating the floors below the current one.
+     * @param tileSet The tile set the floors are for.
+     */
+    private void startFloors(TileSet tileSet) {
+        if(floors != null)
+            floors.clear();
+        // Both kinds of grid hold one more row and column than they were created with.
+        final int width = tileSet.getTiles().getWidth() - 1;
+        final int height = tileSet.getTiles().getHeight() - 1;
+        final boolean chunked = tileSet.getTiles() instanceof ChunkedGrid2D;
+        final TileRegistry registry = tileSet.getTileRegistry();
+        floors = new FloorManager(
+            (depth, background) -> generateFloor(width, height, chunked, registry, depth, background),
+            floorsAhead,
+            floorsKept
+        );
+        floors.prefetch(floorIndex);
+    }
+
+    /**
+     * Makes a floor the current one: its rooms and random
+     * number streams are used from now on.
+     * @param tileSet The tile set holding the floor.
+     * @param floor The floor.
+     */
+    private void enterFloor(TileSet tileSet, Floor floor) {
+        currentFloor = floor;
+        floorIndex = floor.index;
+        generatedRooms = floor.rooms;
+        random = floor.spawnRandom;
+        tileSet.setRandom(floor.tileSetRandom);
+    }
+
+    /**
+     * Places the stair down in a random room, away from the
+     * player (if automatic stair spawning is on).
+     * @param tileSet The tile set to place the stair on.
+     * @param player The location of the player (null if there is none).
+     * @return The location of the stair (null if none was placed).
+     */
+    private IntPoint placeStair(TileSet tileSet, IntPoint player) {
+        if(!autoStairSpawn)
+            return null;
+        IntPoint stair = randomStairLocation(generatedRooms, random, player);
+        if(stair != null)
+            tileSet.getTiles().setElement(tileSet.getTileRegistry().get(Tile.Type.STAIR), stair);
+        return stair;
+    }
+
+    /**
+     * Generates a floor into a new grid, apart from any tile set,
+     * with a stair up where the player arrives and a stair down
+     * in another room. Runs on the floor manager's pool when
+     * generating in the background, for several floors at once.
+     * @param width The width of the tile set.
+     * @param height The height of the tile set.
+     * @param chunked Whether the tile set stores its tiles in chunks.
+     * @param registry The shared tile of each tile type of the tile set.
+     * @param index The index (depth) of the floor.
+     * @param background Whether the floor is generated ahead of time.
+     * @return The generated floor.
+     */
+    private Floor generateFloor(int width, int height, boolean chunked, TileRegistry registry,
+                                int index, boolean background) {
+        TelemetryEvents.LevelGeneration event = new TelemetryEvents.LevelGeneration();
+        event.begin();
+        final long start = System.nanoTime();
+
+        Grid2D<Tile> tiles = TileSet.createTiles(width, height, chunked, registry);
+        TilePositionIndex positions = TileSet.createPositionIndex();
+        tiles.addChangeListener(positions);
+        Floor floor = carveFloor(tiles, positions, new TileStateTable(), registry,
+            randomStreams.stream(FLOOR_STREAM, index), index);
+
+        // A floor without rooms has nowhere to arrive, and no stairs.
+        floor.arrival = randomLocationIn(floor.rooms, floor.spawnRandom);
+        if(autoStairSpawn && floor.arrival != null) {
+            if(index > 0)
+                tiles.setElement(registry.get(Tile.Type.STAIR_UP), floor.arrival);
+            floor.downStair = randomStairLocation(floor.rooms, floor.spawnRandom, floor.arrival);
+            if(floor.downStair != null)
+                tiles.setElement(registry.get(Tile.Type.STAIR), floor.downStair);
         }
 
-        if(autoPlayerSpawn && saved != null)
-            saved.getPosition().forcePosition(randomLocationInside());
+        recordGeneration(event, start, floor, true, background);
+        return floor;
+    }
 
-        Player player = tileSet.getEntities().getPlayer();
-        if(autoStairSpawn && player != null) {
-            IntPoint playerLocation = player.getPosition().getIntPoint();
-            IntPoint random;
-            do {
-                random = randomLocationInside();
+    /**
+     * Places the rooms of a floor and links them with hallways.
+     * Each phase draws from its own stream, split from the
+     * floor's stream in a fixed order, so changing how much one
+     * phase draws doesn't change the others.
+     * @param tiles The grid to carve the floor into (filled with void).
+     * @param positions The index following the writes into the grid.
+     * @param states The state of the cells of the floor.
+     * @param registry The shared tile of each tile type.
+     * @param floorRandom The random number stream of the floor.
+     * @param index The index of the floor.
+     * @return The carved floor.
+     */
+    private Floor carveFloor(Grid2D<Tile> tiles, TilePositionIndex positions, TileStateTable states,
+                             TileRegistry registry, SplittableRandom floorRandom, int index) {
+        final SplittableRandom roomRandom = floorRandom.split();
+        final SplittableRandom hallRandom = floorRandom.split();
+        final SplittableRandom spawnRandom = floorRandom.split();
+        final SplittableRandom tileSetRandom = floorRandom.split();
+        final RoomPlacer placer = roomPlacer;
+        final int clusterSize = tsRoomClusterSize;
+        SpatialGrid<Room> rooms = new SpatialGrid<>(tiles.getWidth(), tiles.getHeight(), Math.max(roomMaxWidth, roomMaxHeight) + 1);
+        RoomPlacer.Result placement = placeRooms(placer, tiles, registry, rooms, roomRandom);
+
+        if(rooms.size() >= 2) {
+            for(int i = 0; i < rooms.size() - 1; i++) {
+                Room toLinkWithOthers = rooms.get(i);
+                for(int j = i + 1; j < rooms.size(); j += clusterSize) {
+                    Room next = rooms.get(j);
+                    linkRooms(tiles, registry, toLinkWithOthers, next, hallRandom);
+                }
             }
-            while(random.isEquivalentTo(playerLocation));
-            tileSet.getTiles().setElement(Tile.createStairTile(tileSet), random);
         }
-        else if(autoStairSpawn) {
-            tileSet.getTiles().setElement(Tile.createStairTile(tileSet), randomLocationInside());
-        }
-
-        tileSet.adjustGraphicalElements();
+        return new Floor(index, tiles, positions, states, registry, rooms, placement, placer.getName(), spawnRandom, tileSetRandom);
     }
 
     /**
-     * Attempts to generate a new room.
-     * @param onWhat The tile set to generate room on.
+     * Records the metrics of a generated level and
+     * commits its flight recorder event.
+     * @param event The event started at the beginning of the generation.
+     * @param start The time the generation started at (from System.nanoTime).
+     * @param floor The generated floor.
+     * @param regeneration Whether an existing tile set was regenerated.
+     * @param background Whether the floor was generated ahead of time.
      */
-    private void generateRoom(TileSet onWhat) {
-        int x = Game.rng.nextInt(onWhat.getTiles().getWidth() - roomMinWidth);
-        int y = Game.rng.nextInt(onWhat.getTiles().getHeight() - roomMinHeight);
-        final int maxWidth = onWhat.getTiles().getWidth() - x;
-        final int maxHeight = onWhat.getTiles().getHeight() - y;
+    private static void recordGeneration(TelemetryEvents.LevelGeneration event, long start, Floor floor,
+                                         boolean regeneration, boolean background) {
+        GENERATION_TIME.record((System.nanoTime() - start) / 1000);
+        ROOMS_PLACED.record(floor.rooms.size());
+        ATTEMPTS.record(floor.placement.getAttempts());
+        ATTEMPTS_REJECTED.add(floor.placement.getRejected());
+
+        event.end();
+        if(event.shouldCommit()) {
+            event.width = floor.tiles.getWidth();
+            event.height = floor.tiles.getHeight();
+            event.regeneration = regeneration;
+            event.floor = floor.index;
+            event.background = background;
+            event.roomsPlaced = floor.rooms.size();
+            event.attemptsRejected = floor.placement.getRejected();
+            event.placer = floor.placer;
+            event.saturated = floor.placement.isSaturated();
+            event.commit();
+        }
+    }
 
-        if(maxWidth < ABSOLUTE_MIN_ROOM_WIDTH || maxHeight < ABSOLUTE_MIN_ROOM_HEIGHT)
-            return;
+    /**
+     * Places the rooms of a level with a room placer. The
+     * placer gets a budget of attempts that grows with the
+     * amount of the smallest rooms that would fit on the map.
+     * The rooms are indexed in a grid with cells as large as
+     * the largest room, so an attempt only checks the rooms
+     * around it for overlapping.
+     * @param placer The room placer.
+     * @param tiles The grid to place the rooms on.
+     * @param registry The shared tile of each tile type.
+     * @param rooms The index the placed rooms are added to.
+     * @param rng The random number generator to place rooms with.
+     * @return The statistics of the placement.
+     */
+    private RoomPlacer.Result placeRooms(RoomPlacer placer, Grid2D<Tile> tiles, TileRegistry registry,
+                                         SpatialGrid<Room> rooms, SplittableRandom rng) {
+        final int width = tiles.getWidth();
+        final int height = tiles.getHeight();
+        final int fitting = (width * height) / Math.max(1, roomMinWidth * roomMinHeight);
+        RoomPlacer.Limits limits = new RoomPlacer.Limits(
+            width, height,
+            roomMinWidth, roomMaxWidth,
+            roomMinHeight, roomMaxHeight,
+            Math.max(MIN_ATTEMPTS, fitting * ATTEMPTS_PER_ROOM)
+        );
+        return placer.place(limits, rng, (x, y, w, h) -> generateRoom(tiles, registry, rooms, x, y, w, h));
+    }
 
-        int width = roomMinWidth + Game.rng.nextInt(Math.min(maxWidth, roomMaxWidth - roomMinWidth));
-        int height = roomMinHeight + Game.rng.nextInt(Math.min(maxHeight, roomMaxHeight - roomMinHeight));
+    /**
+     * Attempts to place a room.
+     * @param tiles The grid to generate the room on.
+     * @param registry The shared tile of each tile type.
+     * @param rooms The rooms placed before.
+     * @param x The first column of the room.
+     * @param y The first row of the room.
+     * @param width The width of the room.
+     * @param height The height of the room.
+     * @return Whether a room was placed.
+     */
+    private static boolean generateRoom(Grid2D<Tile> tiles, TileRegistry registry, SpatialGrid<Room> rooms,
+                                        int x, int y, int width, int height) {
+        if(rooms.overlapsAny(x, y, width, height))
+            return false;
 
         Room room = new Room(x, y, width, height);
-
-        for(Room r : generatedRooms)
-            if(r.doesOverlap(room))
-                return;
-
-        boolean wasSuccessful = room.embed(onWhat);
+        boolean wasSuccessful = room.embed(tiles, registry);
         if(wasSuccessful) {
-            generatedRooms.add(room);
+            rooms.add(room, x, y, width, height);
         }
+        return wasSuccessful;
     }
 
     // A predicate to use when setting elements to automatically
@@ -277,31 +636,81 @@ public class TileSetGenerator {
 
     /**
      * Links two rooms together using a hallway.
-     * @param onWhat On what tile set.
+     * @param tiles On what grid.
+     * @param registry The shared tile of each tile type.
      * @param first The first room.
      * @param second The second room.
+     * @param rng The random number generator to pick the ends of the hallway with.
      */
-    private void linkRooms(TileSet onWhat, Room first, Room second) {
-        IntPoint start = first.selectRandomLocationInside();
-        IntPoint end = second.selectRandomLocationInside();
+    private static void linkRooms(Grid2D<Tile> tiles, TileRegistry registry, Room first, Room second, SplittableRandom rng) {
+        IntPoint start = first.selectRandomLocationInside(rng);
+        IntPoint end = second.selectRandomLocationInside(rng);
         final byte changeX = (byte) (start.x < end.x ? 1 : -1);
         final byte changeY = (byte) (start.y < end.y ? 1 : -1);
-        ArrayList2D<Tile> tiles = onWhat.getTiles();
+        final Tile air = registry.get(Tile.Type.AIR);
+        final Tile wall = registry.get(Tile.Type.WALL);
         for(int i = start.x + changeX; i != end.x + changeX; i += changeX) {
-            tiles.setElement(Tile.createAirTile(onWhat), i, start.y);
-            tiles.setElementIf(Tile.createWallTile(onWhat), wallPlacePredicate, i, start.y - 1);
-            tiles.setElementIf(Tile.createWallTile(onWhat), wallPlacePredicate, i, start.y + 1);
+            tiles.setElement(air, i, start.y);
+            tiles.setElementIf(wall, wallPlacePredicate, i, start.y - 1);
+            tiles.setElementIf(wall, wallPlacePredicate, i, start.y + 1);
         }
         for(int i = start.y + changeY; i != end.y + changeY; i += changeY) {
-            tiles.setElement(Tile.createAirTile(onWhat), end.x, i);
-            tiles.setElementIf(Tile.createWallTile(onWhat), wallPlacePredicate, end.x - 1, i);
-            tiles.setElementIf(Tile.createWallTile(onWhat), wallPlacePredicate, end.x + 1, i);
+            tiles.setElement(air, end.x, i);
+            tiles.setElementIf(wall, wallPlacePredicate, end.x - 1, i);
+            tiles.setElementIf(wall, wallPlacePredicate, end.x + 1, i);
         }
 
         final int pivotX = end.x;
         final int pivotY = start.y;
         for(IntPoint s : pointSurroundings) {
-            tiles.setElementIf(Tile.createWallTile(onWhat), wallPlacePredicate, pivotX + s.x, pivotY + s.y);
+            tiles.setElementIf(wall, wallPlacePredicate, pivotX + s.x, pivotY + s.y);
+        }
+    }
+
+    /**
+     * The tiles, cell states and rooms of a floor, kept apart
+     * from the tile set it's swapped into (see FloorManager).
+     */
+    static final class Floor {
+        private final int index; // The index (depth) of the floor.
+        private final Grid2D<Tile> tiles; // The tiles of the floor.
+        private final TilePositionIndex positions; // The locations of the cells of each tile type.
+        private final TileStateTable states; // The state of the cells of the floor.
+        private final TileRegistry registry; // The shared tiles the floor was carved with.
+        private final SpatialGrid<Room> rooms; // The rooms of the floor.
+        private final RoomPlacer.Result placement; // The statistics of placing the rooms.
+        private final String placer; // The name of the room placer.
+        private final SplittableRandom spawnRandom; // Picks where the player and the stair go.
+        private final SplittableRandom tileSetRandom; // Picks random positions for the tile set.
+        private IntPoint arrival; // Where the player arrives from above (null if unknown).
+        private IntPoint downStair; // The location of the stair down (null if there is none).
+
+        /**
+         * Creates a new Floor object.
+         * @param index The index of the floor.
+         * @param tiles The tiles of the floor.
+         * @param positions The locations of the cells of each tile type.
+         * @param states The state of the cells of the floor.
+         * @param registry The shared tiles the floor was carved with.
+         * @param rooms The rooms of the floor.
+         * @param placement The statistics of placing the rooms.
+         * @param placer The name of the room placer.
+         * @param spawnRandom Picks where the player and the stair go.
+         * @param tileSetRandom Picks random positions for the tile set.
+         */
+        private Floor(int index, Grid2D<Tile> tiles, TilePositionIndex positions, TileStateTable states, TileRegistry registry,
+                      SpatialGrid<Room> rooms, RoomPlacer.Result placement, String placer,
+                      SplittableRandom spawnRandom, SplittableRandom tileSetRandom) {
+            this.index = index;
+            this.tiles = tiles;
+            this.positions = positions;
+            this.states = states;
+            this.registry = registry;
+            this.rooms = rooms;
+            this.placement = placement;
+            this.placer = placer;
+            this.spawnRandom = spawnRandom;
+            this.tileSetRandom = tileSetRandom;
         }
     }
 
@@ -346,53 +755,54 @@ public class TileSetGenerator {
 
         /**
          * Randomly picks a location on a wall of this room.
+         * @param rng The random number generator to pick with.
          * @return Random location that contains this room's wall.
          */
-        private IntPoint selectRandomLocationInside() {
-            return new IntPoint(x + Game.rng.nextInt(width - 2) + 1, y + Game.rng.nextInt(height - 2) + 1);
+        private IntPoint selectRandomLocationInside(SplittableRandom rng) {
+            return new IntPoint(x + rng.nextInt(width - 2) + 1, y + rng.nextInt(height - 2) + 1);
         }
 
         /**
-         * Checks whether another room overlaps this one.
-         * @param another A room to check for overlapping.
-         * @return Whether the two rooms overlap.
+         * Sets this room onto a grid of tiles.
+         * @param tiles The grid to place this room in.
+         * @param registry The shared tile of each tile type.
+         * @return Whether this room was successfully embedded into the grid.
          */
-        private boolean doesOverlap(Room another) {
-            return !(y + height < another.y || another.y + another.height < y)
-                    && !(x + width < another.x || another.x + another.width < x);
-        }
-
-        /**
-         * Sets this room onto the tile set.
-         * @param into The TileSet to place this room in.
-         * @return Whether this room was successfully embedded into the tile set.
-         */
-        private boolean embed(TileSet into) {
+        private boolean embed(Grid2D<Tile> tiles, TileRegistry registry) {
             if(x < 0 || y < 0)
                 return false;
 
-            ArrayList2D<Tile> tiles = into.getTiles();
             if(x + width >= tiles.getWidth() || y + height >= tiles.getHeight())
                 return false;
 
-            for(int i = x; i < x + width; i++) {
-                if(tiles.getElement(i, y).getTileType() != Tile.Type.AIR)
-                    tiles.setElement(Tile.createWallTile(into), i, y);
-
-                if(tiles.getElement(i, y + height - 1).getTileType() != Tile.Type.AIR)
-                    tiles.setElement(Tile.createWallTile(into), i, y + height - 1);
+            final Tile wall = registry.get(Tile.Type.WALL);
+            if(tiles.isRegionEmpty(x, y, width, height)) {
+                // Nothing was carved here yet, so the walls don't need to check for air.
+                tiles.fillRect(wall, x, y, width, 1);
+                tiles.fillRect(wall, x, y + height - 1, width, 1);
+                tiles.fillRect(wall, x, y + 1, 1, height - 2);
+                tiles.fillRect(wall, x + width - 1, y + 1, 1, height - 2);
             }
+            else {
+                for(int i = x; i < x + width; i++) {
+                    if(tiles.getElement(i, y).getTileType() != Tile.Type.AIR)
+                        tiles.setElement(wall, i, y);
 
-            for(int i = y + 1; i < y + height - 1; i++) {
-                if(tiles.getElement(x, i).getTileType() != Tile.Type.AIR)
-                    tiles.setElement(Tile.createWallTile(into), x, i);
+                    if(tiles.getElement(i, y + height - 1).getTileType() != Tile.Type.AIR)
+                        tiles.setElement(wall, i, y + height - 1);
+                }
 
-                if(tiles.getElement(x + width - 1, i).getTileType() != Tile.Type.AIR)
-                    tiles.setElement(Tile.createWallTile(into), x + width - 1, i);
+                for(int i = y + 1; i < y + height - 1; i++) {
+                    if(tiles.getElement(x, i).getTileType() != Tile.Type.AIR)
+                        tiles.setElement(wall, x, i);
 
-                for(int j = x + 1; j < x + width - 1; j++)
-                    tiles.setElement(Tile.createAirTile(into), j, i);
+                    if(tiles.getElement(x + width - 1, i).getTileType() != Tile.Type.AIR)
+                        tiles.setElement(wall, x + width - 1, i);
+                }
             }
+
+            // The inside of the room is all air.
+            tiles.fillRect(registry.get(Tile.Type.AIR), x + 1, y + 1, width - 2, height - 2);
             return true;
         }
 
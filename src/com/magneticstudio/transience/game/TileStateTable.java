@@ -0,0 +1,211 @@
+package com.magneticstudio.transience.game;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class keeps the state that belongs to single
+ * cells of a tile set (item stacks and visibility).
+ * Tiles themselves are shared between cells, so this
+ * state can't live on them. Only cells that actually
+ * hold some state take up an entry.
+ *
+ * @author Max
+ */
+public class TileStateTable {
+
+    private Map<Long, CellState> states = new HashMap<>(); // Cell states keyed by packed location.
+    private CellListener listener; // Told about every cell whose state changes.
+
+    /**
+     * Creates an empty state table.
+     */
+    public TileStateTable() {
+
+    }
+
+    /**
+     * Sets the listener that is told about every cell whose
+     * state changes (including changes of the items in its stack).
+     * @param listener The listener (null for none).
+     */
+    public void setCellListener(CellListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Gets the inventory stack at the specified location.
+     * @param x The X value of the location.
+     * @param y The Y value of the location.
+     * @return The inventory stack at the location (null if there is none).
+     */
+    public InventoryStack<Item> getInventoryStack(int x, int y) {
+        CellState state = states.get(key(x, y));
+        return state == null ? null : state.inventoryStack;
+    }
+
+    /**
+     * Sets the inventory stack at the specified location.
+     * @param x The X value of the location.
+     * @param y The Y value of the location.
+     * @param stack The new inventory stack (null to remove it).
+     */
+    public void setInventoryStack(int x, int y, InventoryStack<Item> stack) {
+        CellState state = stack == null ? states.get(key(x, y)) : stateAt(x, y);
+        if(state == null)
+            return;
+        if(state.inventoryStack != null)
+            state.inventoryStack.setChangeListener(null);
+        state.inventoryStack = stack;
+        if(stack != null)
+            stack.setChangeListener(() -> changed(x, y));
+        else
+            discardIfUnused(x, y, state);
+        changed(x, y);
+    }
+
+    /**
+     * Checks whether the cell at the specified location is hidden.
+     * @param x The X value of the location.
+     * @param y The Y value of the location.
+     * @return Whether the cell is hidden.
+     */
+    public boolean isHidden(int x, int y) {
+        CellState state = states.get(key(x, y));
+        return state != null && state.hidden;
+    }
+
+    /**
+     * Sets whether the cell at the specified location is hidden.
+     * @param x The X value of the location.
+     * @param y The Y value of the location.
+     * @param hidden Whether the cell is hidden.
+     */
+    public void setHidden(int x, int y, boolean hidden) {
+        if(hidden) {
+            CellState state = stateAt(x, y);
+            if(!state.hidden) {
+                state.hidden = true;
+                changed(x, y);
+            }
+            return;
+        }
+        CellState state = states.get(key(x, y));
+        if(state != null && state.hidden) {
+            state.hidden = false;
+            discardIfUnused(x, y, state);
+            changed(x, y);
+        }
+    }
+
+    /**
+     * Goes through every cell that holds an inventory stack.
+     * @param feobj The action performed on each stack.
+     */
+    public void forEachInventoryStack(ForEachStack feobj) {
+        for(Map.Entry<Long, CellState> entry : states.entrySet()) {
+            InventoryStack<Item> stack = entry.getValue().inventoryStack;
+            if(stack != null) {
+                long key = entry.getKey();
+                feobj.onStack(stack, (int) (key >> 32), (int) key);
+            }
+        }
+    }
+
+    /**
+     * Gets the amount of cells holding some state.
+     * @return The amount of cells with state.
+     */
+    public int size() {
+        return states.size();
+    }
+
+    /**
+     * Removes the state of every cell.
+     */
+    public void clear() {
+        for(Map.Entry<Long, CellState> entry : states.entrySet()) {
+            if(entry.getValue().inventoryStack != null)
+                entry.getValue().inventoryStack.setChangeListener(null);
+            long key = entry.getKey();
+            changed((int) (key >> 32), (int) key);
+        }
+        states.clear();
+    }
+
+    /**
+     * Gets (or creates) the state of a cell.
+     * @param x The X value of the location.
+     * @param y The Y value of the location.
+     * @return The state of the cell.
+     */
+    private CellState stateAt(int x, int y) {
+        return states.computeIfAbsent(key(x, y), k -> new CellState());
+    }
+
+    /**
+     * Removes the state of a cell if it doesn't
+     * hold anything anymore.
+     */
+    private void discardIfUnused(int x, int y, CellState state) {
+        if(state.inventoryStack == null && !state.hidden)
+            states.remove(key(x, y));
+    }
+
+    /**
+     * Tells the listener (if any) that the state
+     * of a cell changed.
+     * @param x The X value of the location.
+     * @param y The Y value of the location.
+     */
+    private void changed(int x, int y) {
+        if(listener != null)
+            listener.onCellChanged(x, y);
+    }
+
+    /**
+     * Packs a location into a single key.
+     * @param x The X value of the location.
+     * @param y The Y value of the location.
+     * @return The key of the location.
+     */
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * This interface is used to listen to changes
+     * of the state of cells.
+     */
+    public interface CellListener {
+        /**
+         * Called after the state of a cell changed.
+         * @param x The X value of the cell's location.
+         * @param y The Y value of the cell's location.
+         */
+        void onCellChanged(int x, int y);
+    }
+
+    /**
+     * This interface is used to go through the
+     * inventory stacks of the cells.
+     */
+    public interface ForEachStack {
+        /**
+         * Function that runs for an individual stack.
+         * @param stack The inventory stack.
+         * @param x The X value of the cell's location.
+         * @param y The Y value of the cell's location.
+         */
+        void onStack(InventoryStack<Item> stack, int x, int y);
+    }
+
+    /**
+     * This class acts as a struct to hold
+     * the state of an individual cell.
+     */
+    private static final class CellState {
+        private InventoryStack<Item> inventoryStack;
+        private boolean hidden;
+    }
+}
@@ -0,0 +1,300 @@
+package com.magneticstudio.transience.game;
+
+import com.magneticstudio.transience.ui.GraphicalElement;
+import com.magneticstudio.transience.util.FlowPosition;
+import org.newdawn.slick.Graphics;
+
+import java.util.Arrays;
+
+/**
+ * This class holds what the render thread needs to draw
+ * a frame of a tile set, taken at the end of a batch of
+ * simulation ticks. A snapshot never changes once it's
+ * published, so the render thread can draw from it while
+ * the simulation thread is already working on the next tick.
+ *
+ * Positions are kept from before and after the last tick,
+ * and are interpolated by how far the frame is into the
+ * next tick (see getAlpha).
+ *
+ * The tiles themselves aren't copied: the render thread keeps
+ * them in a cached tile layer, which is only brought up to date
+ * while the simulation isn't changing them (see TileSet.getLock).
+ *
+ * Item stacks are captured as their top item and item count, so
+ * a stack changing after the snapshot doesn't change the frame.
+ * What entities and items are drawn as (their GraphicalElement)
+ * is shared with the simulation rather than copied: it's set up
+ * when they're made, and afterwards only its size is set again
+ * when a floor is entered (see TileSet.adjustGraphicalElements),
+ * where a frame drawn meanwhile at worst uses the old size.
+ *
+ * @author Max
+ */
+public final class WorldSnapshot {
+
+    private final long publishedNanos; // The time the snapshot was published at.
+    private final long tickNanos; // The length of a simulation tick.
+
+    private final float previousCameraX, previousCameraY; // The position of the tile set before the last tick.
+    private final float cameraX, cameraY; // The position of the tile set after the last tick.
+    private final float previousScale, scale; // The scale of the canvas before and after the last tick.
+    private final float shakeX, shakeY, shakeRotation; // The offsets of the shake.
+    private final int pivotX, pivotY; // The tile the shake rotates around (the player's).
+
+    private final EntityView[] entities; // The entities to draw.
+    private final StackView[] stacks; // The item stacks to draw.
+    private final Environment.Effect[] effects; // The effects to draw.
+
+    /**
+     * Takes a snapshot of a tile set. Must be called while
+     * nothing is changing the tile set (on the simulation
+     * thread, or before the simulation starts).
+     * @param ts The tile set to take the snapshot of.
+     * @param previousScale The scale of the canvas before the last tick.
+     * @param tickMillis The length of a simulation tick in milliseconds.
+     */
+    WorldSnapshot(TileSet ts, float previousScale, int tickMillis) {
+        publishedNanos = System.nanoTime();
+        tickNanos = Math.max(tickMillis, 1) * 1_000_000L;
+
+        FlowPosition position = ts.getPosition();
+        previousCameraX = position.getInterpolatedX(0f);
+        previousCameraY = position.getInterpolatedY(0f);
+        cameraX = position.getIntermediateX();
+        cameraY = position.getIntermediateY();
+        this.previousScale = previousScale;
+        scale = ts.getScale();
+        shakeX = ts.getShaker().getHorizontalOffset();
+        shakeY = ts.getShaker().getVerticalOffset();
+        shakeRotation = ts.getShaker().getRotationOffset();
+
+        Player player = ts.getEntities().getPlayer();
+        pivotX = player == null ? 0 : player.getPosition().getTargetX();
+        pivotY = player == null ? 0 : player.getPosition().getTargetY();
+
+        entities = new EntityView[ts.getEntities().getEntities().size() + (player == null ? 0 : 1)];
+        final int[] count = {0};
+        ts.getEntities().forEach(e -> entities[count[0]++] = new EntityView(e));
+
+        StackView[] visible = new StackView[ts.getTileStates().size()];
+        count[0] = 0;
+        ts.getTileStates().forEachInventoryStack((stack, x, y) -> {
+            Tile t = ts.getTiles().getElement(x, y);
+            if(stack.getItemCount() > 0 && t != null && t.canContainItems() && !ts.getTileStates().isHidden(x, y))
+                visible[count[0]++] = new StackView(stack, x, y);
+        });
+        stacks = count[0] == visible.length ? visible : Arrays.copyOf(visible, count[0]);
+
+        effects = ts.getEnvironment().getEffects();
+    }
+
+    /**
+     * Gets how far the specified time is into
+     * the tick after this snapshot.
+     * @param nowNanos The current time (from System.nanoTime).
+     * @return The interpolation alpha (0 to 1).
+     */
+    public float getAlpha(long nowNanos) {
+        return Math.max(Math.min((nowNanos - publishedNanos) / (float) tickNanos, 1f), 0f);
+    }
+
+    /**
+     * Gets the X value of the tile set's position.
+     * @param alpha The interpolation alpha.
+     * @return The interpolated X value of the position.
+     */
+    public float getCameraX(float alpha) {
+        return previousCameraX + (cameraX - previousCameraX) * alpha;
+    }
+
+    /**
+     * Gets the Y value of the tile set's position.
+     * @param alpha The interpolation alpha.
+     * @return The interpolated Y value of the position.
+     */
+    public float getCameraY(float alpha) {
+        return previousCameraY + (cameraY - previousCameraY) * alpha;
+    }
+
+    /**
+     * Gets the scale of the canvas.
+     * @param alpha The interpolation alpha.
+     * @return The interpolated scale.
+     */
+    public float getScale(float alpha) {
+        return previousScale + (scale - previousScale) * alpha;
+    }
+
+    /**
+     * Gets the horizontal offset of the shake.
+     * @return The horizontal shake offset.
+     */
+    public float getShakeX() {
+        return shakeX;
+    }
+
+    /**
+     * Gets the vertical offset of the shake.
+     * @return The vertical shake offset.
+     */
+    public float getShakeY() {
+        return shakeY;
+    }
+
+    /**
+     * Gets the rotation offset of the shake.
+     * @return The shake rotation.
+     */
+    public float getShakeRotation() {
+        return shakeRotation;
+    }
+
+    /**
+     * Gets the column of the tile the shake rotates around.
+     * @return The X value of the rotation pivot tile.
+     */
+    public int getPivotX() {
+        return pivotX;
+    }
+
+    /**
+     * Gets the row of the tile the shake rotates around.
+     * @return The Y value of the rotation pivot tile.
+     */
+    public int getPivotY() {
+        return pivotY;
+    }
+
+    /**
+     * Gets the entities to draw.
+     * @return The entities (not to be modified).
+     */
+    public EntityView[] getEntities() {
+        return entities;
+    }
+
+    /**
+     * Gets the item stacks to draw; only non empty stacks
+     * on shown tiles that can contain items are included.
+     * @return The item stacks (not to be modified).
+     */
+    public StackView[] getStacks() {
+        return stacks;
+    }
+
+    /**
+     * Gets the effects to draw.
+     * @return The effects (not to be modified).
+     */
+    public Environment.Effect[] getEffects() {
+        return effects;
+    }
+
+    /**
+     * An entity as it was at the time of the snapshot
+     * (its representation is shared, see WorldSnapshot).
+     */
+    public static final class EntityView {
+        private final GraphicalElement representation; // What the entity is drawn as.
+        private final float previousX, previousY; // The position before the last tick.
+        private final float x, y; // The position after the last tick.
+
+        private EntityView(Entity e) {
+            FlowPosition position = e.getPosition();
+            representation = e.getRepresentation();
+            previousX = position.getInterpolatedX(0f);
+            previousY = position.getInterpolatedY(0f);
+            x = position.getIntermediateX();
+            y = position.getIntermediateY();
+        }
+
+        /**
+         * Gets what the entity is drawn as.
+         * @return The representation of the entity.
+         */
+        public GraphicalElement getRepresentation() {
+            return representation;
+        }
+
+        /**
+         * Gets the X value of the entity's position.
+         * @param alpha The interpolation alpha.
+         * @return The interpolated X value (in tiles).
+         */
+        public float getX(float alpha) {
+            return previousX + (x - previousX) * alpha;
+        }
+
+        /**
+         * Gets the Y value of the entity's position.
+         * @param alpha The interpolation alpha.
+         * @return The interpolated Y value (in tiles).
+         */
+        public float getY(float alpha) {
+            return previousY + (y - previousY) * alpha;
+        }
+    }
+
+    /**
+     * An item stack lying on a tile, as it was at the
+     * time of the snapshot.
+     */
+    public static final class StackView {
+        private final InventoryStack<Item> stack; // The stack of items (only used for its floating).
+        private final Item top; // The item on top of the stack.
+        private final int count; // The amount of items in the stack.
+        private final int x, y; // The tile the stack lies on.
+
+        private StackView(InventoryStack<Item> stack, int x, int y) {
+            this.stack = stack;
+            this.top = stack.getTopItem();
+            this.count = stack.getItemCount();
+            this.x = x;
+            this.y = y;
+        }
+
+        /**
+         * Renders the item that was on top of the stack,
+         * floating like the stack's preview.
+         * @param graphics The graphics to draw with.
+         * @param x The X value of the position to render at (in pixels).
+         * @param y The Y value of the position to render at (in pixels).
+         */
+        public void render(Graphics graphics, float x, float y) {
+            stack.renderItem(graphics, top, x, y, false);
+        }
+
+        /**
+         * Gets the item that was on top of the stack.
+         * @return The top item.
+         */
+        public Item getTopItem() {
+            return top;
+        }
+
+        /**
+         * Gets the amount of items the stack held.
+         * @return The item count.
+         */
+        public int getItemCount() {
+            return count;
+        }
+
+        /**
+         * Gets the column of the tile the stack lies on.
+         * @return The X value of the tile.
+         */
+        public int getX() {
+            return x;
+        }
+
+        /**
+         * Gets the row of the tile the stack lies on.
+         * @return The Y value of the tile.
+         */
+        public int getY() {
+            return y;
+        }
+    }
+}
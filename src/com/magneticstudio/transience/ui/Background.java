@@ -10,6 +10,10 @@ import org.newdawn.slick.Image;
  * a menu that may be animated to follow the mouse cursor
  * or any other effects that may be implemented in the future.
  *
+ * The background is updated and drawn on the render thread.
+ * Only its anchors are set from the simulation thread (by the
+ * flow position it tracks), so they are volatile.
+ *
  * @author Max
  */
 public class Background implements FlowPosition.Listener {
@@ -27,8 +31,8 @@ public class Background implements FlowPosition.Listener {
     private Image background; // The image to display in the background.
     private float horizontalRange = 30; // The horizontal range of movement of this background.
     private float verticalRange = 30; // The vertical range of movement of this background.
-    private float horizontalAnchor = 0; // The horizontal anchor of this background.
-    private float verticalAnchor = 0; // The vertical anchor of this background.
+    private volatile float horizontalAnchor = 0; // The horizontal anchor of this background.
+    private volatile float verticalAnchor = 0; // The vertical anchor of this background.
     private float x; // The x disposition of this background.
     private float y; // The y disposition of this background.
     private int roamSpace; // The amount of space this background has to roam.
@@ -106,6 +110,7 @@ public class Background implements FlowPosition.Listener {
     /**
      * Updates the disposition of this background
      * relative to the mouse position in the scene.
+     * Called on the render thread, before render.
      */
     public void update() {
         float w = bgMode == Mode.MOUSE_TRACK ? Game.activeGame.getResolutionWidth() : horizontalRange;
@@ -7,6 +7,7 @@ import org.newdawn.slick.Color;
 import org.newdawn.slick.Font;
 import org.newdawn.slick.Graphics;
 import org.newdawn.slick.UnicodeFont;
+import org.newdawn.slick.font.effects.ColorEffect;
 
 /**
  * This class simply display a character instead of an
@@ -169,6 +170,27 @@ public final class CharacterCell implements GraphicalElement {
         return color;
     }
 
+    /**
+     * Gets the color the character is drawn in, which
+     * is the color of the font with the alpha of this
+     * character cell.
+     * @return The color of the drawn character.
+     */
+    public Color getGlyphColor() {
+        for(Object effect : font.getEffects()) {
+            if(effect instanceof ColorEffect) {
+                java.awt.Color fontColor = ((ColorEffect) effect).getColor();
+                return new Color(
+                    fontColor.getRed() / 255f,
+                    fontColor.getGreen() / 255f,
+                    fontColor.getBlue() / 255f,
+                    fontColor.getAlpha() / 255f * color.a
+                );
+            }
+        }
+        return new Color(1f, 1f, 1f, color.a);
+    }
+
     /**
      * Sets a new color for this character cell object.
      * @param newColor A new color for this character cell object.
@@ -178,6 +200,7 @@ public final class CharacterCell implements GraphicalElement {
         color.r = newColor.r;
         color.g = newColor.g;
         color.b = newColor.b;
+        UnicodeFont old = font;
         font = Res.modifyFont(
             font,
             newColor,
@@ -185,6 +208,7 @@ public final class CharacterCell implements GraphicalElement {
             Res.USE_DEFAULT,
             Res.USE_DEFAULT
         );
+        Res.releaseFont(old);
     }
 
     /**
@@ -2,12 +2,23 @@ package com.magneticstudio.transience.ui;
 
 import com.magneticstudio.transience.devkit.CommonKt;
 import com.magneticstudio.transience.devkit.Mat4;
+import com.magneticstudio.transience.devkit.Mat4Uniform;
+import com.magneticstudio.transience.devkit.SamplerUniform;
 import com.magneticstudio.transience.devkit.Shader;
 import com.magneticstudio.transience.devkit.Texture2;
+import com.magneticstudio.transience.devkit.TextureLoader;
 import com.magneticstudio.transience.game.Environment;
 import com.magneticstudio.transience.game.TileSet;
 import com.magneticstudio.transience.game.TileSetGenerator;
+import com.magneticstudio.transience.util.FixedTimestep;
+import com.magneticstudio.transience.util.FrameProfiler;
+import com.magneticstudio.transience.util.LogHistogram;
+import com.magneticstudio.transience.util.Metrics;
 import com.magneticstudio.transience.util.RadialVignetteGenerator;
+import com.magneticstudio.transience.util.RandomStreams;
+import com.magneticstudio.transience.util.RenderTasks;
+import com.magneticstudio.transience.util.SimulationThread;
+import com.magneticstudio.transience.util.TelemetryEvents;
 import org.lwjgl.BufferUtils;
 import org.newdawn.slick.*;
 import org.newdawn.slick.Color;
@@ -15,7 +26,6 @@ import org.newdawn.slick.Graphics;
 
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
-import java.util.Random;
 
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL15.*;
@@ -34,31 +44,38 @@ import static org.lwjgl.opengl.GL30.glGenVertexArrays;
 public class Game extends BasicGame {
 
     // --- STATIC MEMBERS
-    public static Random rng = new Random();
+    public static RandomStreams randomStreams = RandomStreams.forSession(); // The random number streams of the session.
     public static Game activeGame = null; // The game currently being played.
+    private static final LogHistogram FRAME_TIME = Metrics.histogram("frame.micros"); // The time between frames.
 
     // --- WINDOW/GRAPHICS INFORMATION
     private Image vignette;
-    private float vignetteScale = 1f;
+    private volatile float vignetteScale = 1f; // Changed by the simulation, read when rendering.
     private float vignetteTarget = 0f;
     private float vignetteScaleMod = 0f;
     private boolean showVignette = true;
 
     private UnicodeFont fpsNotification;
+    private ProfilerOverlay profilerOverlay; // Shows the fps count, or the frame profiler when toggled.
     private boolean showFps = true; // Whether to show the fps count to the user.
     private int resolutionWidth = 1280; // The width of the window.
     private int resolutionHeight = 720; // The height of the window.
     private boolean graphicsSetup = false; // Tells whether the graphics have been setup.
 
     private boolean disableInputWhileFading = false; // Whether to disable input while fading.
-    private float opacity = 1f; // The opacity of the screen.
-    private float modOpacity = 0f; // The opacity modifier.
+    private volatile float opacity = 1f; // The opacity of the screen.
+    private volatile float modOpacity = 0f; // The opacity modifier.
     private Runnable onFadedOut; // Function that runs when everything has faded out.
     private Runnable onFadedIn; // Function that runs when everything has faded in.
 
     private TileSet tileSet;
     private Background background;
 
+    // --- SIMULATION
+    private FixedTimestep timestep = new FixedTimestep(); // Turns the passed time into fixed simulation ticks.
+    private SimulationThread simulation; // Runs the simulation apart from rendering.
+    private GameContainer container; // The container running this game.
+
     /**
      * Creates a new Game object with the
      * specified title.
@@ -105,6 +122,7 @@ public class Game extends BasicGame {
         if(modOpacity != 0) // Currently fading in or out.
             return;
 
+        GameKeyboard.clearTaps();
         modOpacity = -1f / (float) Math.max(Math.min(FADE_TIME_MAX, milliseconds), FADE_TIME_MIN);
     }
 
@@ -116,6 +134,7 @@ public class Game extends BasicGame {
         if(modOpacity != 0) // Currently fading in or out.
             return;
 
+        GameKeyboard.clearTaps();
         modOpacity = 1f / (float) Math.max(Math.min(FADE_TIME_MAX, milliseconds), FADE_TIME_MIN);
     }
 
@@ -138,6 +157,27 @@ public class Game extends BasicGame {
         System.out.println(vignetteScaleMod);
     }
 
+    /**
+     * Gets the fixed timestep the simulation runs at. Its tick
+     * rate sets the speed of the simulation independently of
+     * the frame rate, as the simulation runs on its own thread.
+     * @return The fixed timestep.
+     */
+    public FixedTimestep getTimestep() {
+        return timestep;
+    }
+
+    /**
+     * Limits how many frames are drawn per second. This
+     * doesn't change the speed of the game, as the simulation
+     * runs at the fixed tick rate regardless.
+     * @param framesPerSecond The most frames per second (0 or less for no limit).
+     */
+    public void setFrameCap(int framesPerSecond) {
+        if(container != null)
+            container.setTargetFrameRate(framesPerSecond > 0 ? framesPerSecond : -1);
+    }
+
     /**
      * Gets the resolution width.
      * @return Resolution width.
@@ -156,7 +196,10 @@ public class Game extends BasicGame {
     }
 
     private Shader triangleShader;
+    private TextureLoader textureLoader; // Decodes textures off of the GL thread.
     private Texture2 woodTexture;
+    private SamplerUniform textureUniform; // The texture of the test triangle.
+    private Mat4Uniform projectionUniform; // The projection of the test triangle.
     private Mat4 projection;
 
     private int vertexArr;
@@ -170,8 +213,14 @@ public class Game extends BasicGame {
      */
     @Override
     public void init(GameContainer gc) throws SlickException {
+        RenderTasks.bindToCurrentThread();
+        TelemetryEvents.register();
+        CommonKt.logInf("Session seed: " + randomStreams.getSeed() + " (set with -D" + RandomStreams.SEED_PROPERTY + ")");
         triangleShader = Shader.Factory.loadFromJar("test");
-        woodTexture = Texture2.Factory.loadFromJar("mario.png", "test", true);
+        textureUniform = triangleShader.samplerUniform("U_Tex");
+        projectionUniform = triangleShader.mat4Uniform("Cpu_Projection");
+        textureLoader = new TextureLoader();
+        textureLoader.loadFromJar("mario.png", "test", true).thenAccept(texture -> woodTexture = texture);
         projection = Mat4.Factory.orthographic(0, 960, 640, 0, 1, -1);
 
         FloatBuffer vertexData = BufferUtils.createFloatBuffer((3 * 3) + (3 * 2));
@@ -216,6 +265,7 @@ public class Game extends BasicGame {
         glBindBuffer(GL_ARRAY_BUFFER, 0);
         glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
 
+        container = gc;
         resolutionWidth = gc.getWidth();
         resolutionHeight = gc.getHeight();
 
@@ -225,20 +275,65 @@ public class Game extends BasicGame {
     }
 
     /**
-     * Function gets called every 1000 milliseconds to update the game.
+     * Function gets called once per frame, before rendering. The
+     * simulation itself runs on the simulation thread, so this only
+     * reads the input (which has to happen on this thread) and checks
+     * that the simulation is still alive.
      * @param gc The container of this game.
      * @param elapsed The elapsed time in milliseconds
-     * @throws RuntimeException If a runtime exception occurs.
+     * @throws SlickException If the simulation stopped because of an error.
      */
     @Override
     public void update(GameContainer gc, int elapsed) throws SlickException {
         if(!graphicsSetup)
             return;
 
-        handleNumberAnimationsAndStuff(gc, elapsed);
+        pollInput();
+        if(gc.getInput().isKeyPressed(KEY_TOGGLE_PROFILER))
+            profilerOverlay.toggle();
+        if(simulation.getFailure() != null)
+            throw new SlickException("The simulation has stopped.", simulation.getFailure());
+    }
 
-        background.update();
-        tileSet.update(elapsed);
+    /**
+     * Runs one fixed length step of the simulation.
+     * Called on the simulation thread.
+     * @param milliseconds The length of the step.
+     */
+    private void tick(int milliseconds) {
+        GameKeyboard.nextTap();
+        handleNumberAnimationsAndStuff(container, milliseconds);
+
+        tileSet.update(milliseconds);
+        GameKeyboard.consumeTap();
+    }
+
+    /**
+     * Stops the simulation when the window is closed.
+     * @return True, as the game may always be closed.
+     */
+    @Override
+    public boolean closeRequested() {
+        if(simulation != null)
+            simulation.stop();
+        if(tileSet != null)
+            tileSet.dispose();
+        CommonKt.logInf("Session metrics:\n" + Metrics.report());
+        return true;
+    }
+
+    /**
+     * Reads the input of the user once per frame
+     * (unless input is disabled while fading).
+     */
+    private void pollInput() {
+        if(modOpacity != 0 && disableInputWhileFading)
+            return;
+        final long start = FrameProfiler.start();
+        GameKeyboard.poll();
+        MenuKeyboard.poll();
+        MenuMouse.poll();
+        FrameProfiler.record(FrameProfiler.Phase.INPUT, start);
     }
 
     /**
@@ -253,6 +348,7 @@ public class Game extends BasicGame {
             if(opacity <= 0) {
                 modOpacity = 0;
                 opacity = 0;
+                GameKeyboard.clearTaps(); // Keys pressed while fading out aren't meant for the next floor.
                 if(onFadedOut != null)
                     onFadedOut.run();
                 onFadedOut = null;
@@ -260,21 +356,11 @@ public class Game extends BasicGame {
             else if(opacity >= 1f) {
                 modOpacity = 0;
                 opacity = 1f;
+                GameKeyboard.clearTaps();
                 if(onFadedIn != null)
                     onFadedIn.run();
                 onFadedIn = null;
             }
-
-            if(!disableInputWhileFading) {
-                GameKeyboard.poll();
-                MenuKeyboard.poll();
-                MenuMouse.poll();
-            }
-        }
-        else {
-            GameKeyboard.poll();
-            MenuKeyboard.poll();
-            MenuMouse.poll();
         }
 
         if(vignetteScaleMod != 0) {
@@ -289,6 +375,8 @@ public class Game extends BasicGame {
 
     private static final int FPS_SHOW_X = 5; // The X location of the fps counter.
     private static final int FPS_SHOW_Y = 5; // The Y location of the fps counter.
+    private static final int MAX_TEXTURE_UPLOADS_PER_FRAME = 4; // The most decoded textures uploaded in one frame.
+    private static final int KEY_TOGGLE_PROFILER = Input.KEY_F3; // Shows or hides the frame profiler.
 
     /**
      * Function gets called as many times as possible (without VSync)
@@ -299,16 +387,21 @@ public class Game extends BasicGame {
      */
     @Override
     public void render(GameContainer gc, Graphics graphics) throws SlickException {
+        recordFrame(FrameProfiler.frame());
         graphics.setAntiAlias(true);
+        textureLoader.processUploads(MAX_TEXTURE_UPLOADS_PER_FRAME);
+        RenderTasks.runPending();
         if(!graphicsSetup) {
             setupGraphics();
             graphicsSetup = true;
         }
 
+        background.update();
         background.render(graphics);
         tileSet.render(graphics);
 
         // Renders fade ins and outs.
+        long start = FrameProfiler.start();
         if(opacity != 1) {
             graphics.setColor(new Color(0f, 0f, 0f, 1f - opacity));
             graphics.fillRect(0, 0, gc.getWidth(), gc.getHeight());
@@ -316,14 +409,10 @@ public class Game extends BasicGame {
 
         // Renders the main vignette
         if(showVignette) {
-            Image vignetteImage = vignetteScale != 1f ? vignette.getScaledCopy(vignetteScale) : vignette;
-            int vx = (resolutionWidth / 2) - (vignetteImage.getWidth() / 2);
-            int vy = (resolutionHeight / 2) - (vignetteImage.getHeight() / 2);
-            graphics.drawImage(
-                 vignetteImage,
-                 vx,
-                 vy
-            );
+            // Drawn at its scale directly instead of making a scaled copy every frame.
+            int vx = (resolutionWidth / 2) - (int) (vignette.getWidth() * vignetteScale / 2);
+            int vy = (resolutionHeight / 2) - (int) (vignette.getHeight() * vignetteScale / 2);
+            vignette.draw(vx, vy, vignetteScale);
             graphics.setColor(Color.black);
             if(vx > 0) {
                 graphics.fillRect(0, 0, vx, resolutionHeight);
@@ -334,31 +423,54 @@ public class Game extends BasicGame {
                 graphics.fillRect(vx, resolutionHeight - vy, resolutionWidth - (vx * 2), vy);
             }
         }
+        FrameProfiler.record(FrameProfiler.Phase.COMPOSITE, start);
+
+        start = FrameProfiler.start();
+        tileSet.postRender(graphics);
+        FrameProfiler.record(FrameProfiler.Phase.POST_RENDER, start);
 
         if(showFps) {
-            fpsNotification.drawString(FPS_SHOW_X, FPS_SHOW_Y, Integer.toString(gc.getFPS()));
+            profilerOverlay.render(graphics, FPS_SHOW_X, FPS_SHOW_Y, gc.getFPS());
         }
 
-        tileSet.postRender(graphics);
+        if(woodTexture == null)
+            return;
 
         triangleShader.bind();
         woodTexture.bind();
 
-        triangleShader.uniformTex2D("U_Tex", woodTexture);
-        triangleShader.uniformMat4f("Cpu_Projection", projection);
+        textureUniform.set(woodTexture);
+        projectionUniform.set(projection);
 
         glBindVertexArray(vertexArr);
         glDrawElements(GL_TRIANGLES, 3, GL_UNSIGNED_BYTE, 0);
 
-        int error = 0;
-        while ((error = glGetError()) != GL_NO_ERROR) {
-            System.out.println("Err: " + error);
-        }
+        CommonKt.reportThemBy(CommonKt.collectGLErrors(), CommonKt.WRITING_TO_LOGS);
 
         triangleShader.unbind();
         woodTexture.unbind();
     }
 
+    /**
+     * Records the time a frame took in the metrics, and
+     * reports it to the flight recorder if it took long.
+     * @param frameNanos The time since the last frame started in nanoseconds.
+     */
+    private void recordFrame(long frameNanos) {
+        if(frameNanos <= 0)
+            return;
+        FRAME_TIME.record(frameNanos / 1000);
+        if(frameNanos > TelemetryEvents.LONG_FRAME_NANOS) {
+            TelemetryEvents.LongFrame event = new TelemetryEvents.LongFrame();
+            if(event.isEnabled()) {
+                FrameProfiler.Phase slowest = FrameProfiler.getSlowestRenderPhase();
+                event.frameTime = frameNanos;
+                event.slowestPhase = slowest == null ? "" : slowest.getLabel();
+                event.commit();
+            }
+        }
+    }
+
     /**
      * Sets up the graphics portion of the game
      * such as creating the effects on images
@@ -366,6 +478,7 @@ public class Game extends BasicGame {
      */
     private void setupGraphics() throws SlickException {
         fpsNotification = Res.loadFont("Consolas.ttf", new Color(255, 100, 100, 175), 16, Res.USE_DEFAULT, Res.USE_DEFAULT);
+        profilerOverlay = new ProfilerOverlay(fpsNotification);
 
         RadialVignetteGenerator vignetteGenerator = new RadialVignetteGenerator();
         vignetteGenerator.setImageWidth(600);
@@ -384,6 +497,7 @@ public class Game extends BasicGame {
         tsGenerator.setRoomMaxHeight(12);
         tsGenerator.setRoomClusterSize(TileSetGenerator.ROOM_CLUSTER_SIMPLE);
         tileSet = tsGenerator.generate(30, 30);
+        tileSet.setViewport(resolutionWidth, resolutionHeight);
 
         background = new Background(RadialVignetteGenerator.createBackgroundForGame(new Color(00, 120, 120, 150), true));
         background.setMode(Background.Mode.FLOW_POSITION_TRACK);
@@ -391,5 +505,12 @@ public class Game extends BasicGame {
         background.setRoamSpace(1000);
 
         tileSet.getEntities().getPlayer().getPosition().addListener(background);
+        Metrics.gauge("entities", () -> tileSet.getEntities().size());
+        Metrics.gauge("environment.effects", () -> tileSet.getEnvironment().getEffectCount());
+        tileSet.publishSnapshot(timestep.getTickMillis());
+
+        simulation = new SimulationThread("Simulation", timestep, tileSet.getLock(), this::tick,
+            () -> tileSet.publishSnapshot(timestep.getTickMillis()));
+        simulation.start();
     }
 }
\ No newline at end of file
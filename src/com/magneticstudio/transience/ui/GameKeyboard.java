@@ -2,23 +2,39 @@ package com.magneticstudio.transience.ui;
 
 import org.lwjgl.input.Keyboard;
 
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
 /**
  * This class manages the keyboard events that
  * are specified for this game. No key will
  * be able to be held, and each movement by the player
  * must be done through releasing and pressing the key.
  *
+ * The keyboard is read on the render thread (see poll),
+ * while the taps are handled by the simulation thread,
+ * so taps are handed over through a thread safe queue.
+ * Each simulation tick takes at most one tap from it. The
+ * queue only holds a couple of taps, so keys pressed during
+ * a long tick aren't replayed for ticks after they're let go
+ * of, and it's emptied when the game fades (see Game.fadeOut).
+ *
  * @author Max
  */
 public class GameKeyboard {
 
     public static final int KEY_COOLDOWN_TIME = 100; // Time in milliseconds before another key can be pressed.
-    private static int KEY = -1; // The key that has triggered the latest event.
-    private static boolean isPressed = false; // Whether the 'key' is pressed.
+    public static final int MAX_PENDING_TAPS = 2; // The most taps waiting for a tick (later ones are dropped).
+    private static final Queue<Integer> taps = new ArrayBlockingQueue<>(MAX_PENDING_TAPS); // Taps not yet taken by a tick.
+    private static int KEY = -1; // The key that has triggered the latest event (render thread).
     private static long lastEventTime = System.currentTimeMillis(); // The time of the last key ever pressed.
+    private static int tapped = -1; // The tap handled by the current tick (simulation thread).
 
     /**
-     * Registers the next key for the game.
+     * Registers the next key for the game. Called on
+     * the render thread; the tap is queued until a
+     * simulation tick takes it (see nextTap), or
+     * dropped if MAX_PENDING_TAPS are queued already.
      */
     public static void poll() {
         if(!Keyboard.getEventKeyState()) { // Not a press event (ie. release)
@@ -26,16 +42,39 @@ public class GameKeyboard {
             return;
         }
 
-        isPressed = false;
         long currentTime = System.currentTimeMillis();
         int eventKey = Keyboard.getEventKey();
         if(KEY != eventKey && currentTime - lastEventTime >= KEY_COOLDOWN_TIME) {
             KEY = eventKey;
             lastEventTime = System.currentTimeMillis();
-            isPressed = true;
+            taps.offer(eventKey);
         }
     }
 
+    /**
+     * Takes the next queued tap for the tick that is
+     * about to run. Called on the simulation thread.
+     */
+    public static void nextTap() {
+        Integer next = taps.poll();
+        tapped = next == null ? -1 : next;
+    }
+
+    /**
+     * Forgets the current tap. Called after each simulation
+     * tick, so a tap is handled by exactly one tick.
+     */
+    public static void consumeTap() {
+        tapped = -1;
+    }
+
+    /**
+     * Forgets every tap that wasn't handled yet.
+     */
+    public static void clearTaps() {
+        taps.clear();
+    }
+
     /**
      * Checks whether the specified key is the
      * one that is tapped.
@@ -44,7 +83,7 @@ public class GameKeyboard {
      */
     @Deprecated
     public static boolean isTapped(Integer key) {
-        return isPressed && KEY == key;
+        return tapped != -1 && tapped == key;
     }
 
     /**
@@ -52,6 +91,6 @@ public class GameKeyboard {
      * @return The tapped key.
      */
     public static int getTappedKey() {
-        return isPressed ? KEY : -1;
+        return tapped;
     }
 }
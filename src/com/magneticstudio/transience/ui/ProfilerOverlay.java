@@ -0,0 +1,143 @@
+package com.magneticstudio.transience.ui;
+
+import com.magneticstudio.transience.util.FrameProfiler;
+import com.magneticstudio.transience.util.RollingSamples;
+import org.newdawn.slick.Color;
+import org.newdawn.slick.Graphics;
+import org.newdawn.slick.UnicodeFont;
+
+/**
+ * This class draws the times measured by the frame profiler
+ * on top of the game: the 50th, 95th and 99th percentile and
+ * the maximum of every phase, and a graph of the latest frame
+ * times. When it's hidden only the fps count is shown.
+ *
+ * The text is only put together a few times per second, so
+ * showing the overlay barely changes the times it shows.
+ *
+ * @author Max
+ */
+public class ProfilerOverlay {
+
+    private static final int REFRESH_TIME = 250; // Time in milliseconds between updates of the text.
+    private static final int LINE_HEIGHT = 18; // The height of a line of text.
+    private static final int GRAPH_HEIGHT = 60; // The height of the frame time graph.
+    private static final float GRAPH_MAX_MILLIS = 50f; // The frame time at the top of the graph.
+    private static final float BUDGET_60 = 1000f / 60f; // The frame time at 60 fps.
+    private static final float BUDGET_30 = 1000f / 30f; // The frame time at 30 fps.
+
+    private static final Color BACKGROUND = new Color(0f, 0f, 0f, .6f); // The color behind the overlay.
+    private static final Color GUIDE = new Color(1f, 1f, 1f, .25f); // The color of the 60 and 30 fps lines.
+    private static final Color FAST = new Color(80, 220, 80, 220); // A frame within the 60 fps budget.
+    private static final Color SLOW = new Color(230, 200, 60, 220); // A frame within the 30 fps budget.
+    private static final Color STUTTER = new Color(240, 70, 70, 220); // A frame over the 30 fps budget.
+
+    private final UnicodeFont font; // The font the text is drawn with.
+    private final String[] lines = new String[FrameProfiler.Phase.values().length + 1]; // The text of the overlay.
+    private boolean visible = false; // Whether the overlay is shown.
+    private long lastRefresh = 0; // The time the text was last updated at.
+    private String fps = ""; // The fps count shown while the overlay is hidden.
+
+    /**
+     * Creates a new profiler overlay.
+     * @param font The font the text is drawn with.
+     */
+    public ProfilerOverlay(UnicodeFont font) {
+        this.font = font;
+    }
+
+    /**
+     * Shows the overlay if it's hidden, or hides it if it's shown.
+     */
+    public void toggle() {
+        visible = !visible;
+        lastRefresh = 0;
+    }
+
+    /**
+     * Sets whether the overlay is shown.
+     * @param v True to show the overlay.
+     */
+    public void setVisible(boolean v) {
+        visible = v;
+        lastRefresh = 0;
+    }
+
+    /**
+     * Checks whether the overlay is shown.
+     * @return Whether the overlay is shown.
+     */
+    public boolean isVisible() {
+        return visible;
+    }
+
+    /**
+     * Draws the overlay (or just the fps count when it's hidden).
+     * @param graphics The graphics object used to render anything on the main screen.
+     * @param x The X value of the upper left corner.
+     * @param y The Y value of the upper left corner.
+     * @param framesPerSecond The current frames per second.
+     */
+    public void render(Graphics graphics, int x, int y, int framesPerSecond) {
+        final long now = System.currentTimeMillis();
+        if(now - lastRefresh >= REFRESH_TIME) {
+            lastRefresh = now;
+            refresh(framesPerSecond);
+        }
+
+        if(!visible) {
+            font.drawString(x, y, fps);
+            return;
+        }
+
+        RollingSamples frames = FrameProfiler.getTimes(FrameProfiler.Phase.FRAME);
+        final int width = frames.capacity();
+        final int height = lines.length * LINE_HEIGHT + GRAPH_HEIGHT + 8;
+        graphics.setColor(BACKGROUND);
+        graphics.fillRect(x - 4, y - 4, Math.max(width, 420) + 8, height + 8);
+
+        for(int i = 0; i < lines.length; i++)
+            font.drawString(x, y + i * LINE_HEIGHT, lines[i]);
+
+        // The latest frame is on the right.
+        final float bottom = y + lines.length * LINE_HEIGHT + 4 + GRAPH_HEIGHT;
+        final int count = frames.size();
+        for(int age = 0; age < count; age++) {
+            final float millis = frames.get(age) / 1_000_000f;
+            final float bar = Math.min(millis / GRAPH_MAX_MILLIS, 1f) * GRAPH_HEIGHT;
+            final float bx = x + width - 1 - age;
+            graphics.setColor(millis <= BUDGET_60 ? FAST : millis <= BUDGET_30 ? SLOW : STUTTER);
+            graphics.drawLine(bx, bottom, bx, bottom - bar);
+        }
+        graphics.setColor(GUIDE);
+        final float line60 = bottom - BUDGET_60 / GRAPH_MAX_MILLIS * GRAPH_HEIGHT;
+        final float line30 = bottom - BUDGET_30 / GRAPH_MAX_MILLIS * GRAPH_HEIGHT;
+        graphics.drawLine(x, line60, x + width, line60);
+        graphics.drawLine(x, line30, x + width, line30);
+    }
+
+    /**
+     * Puts the text of the overlay together
+     * from the latest statistics.
+     * @param framesPerSecond The current frames per second.
+     */
+    private void refresh(int framesPerSecond) {
+        fps = Integer.toString(framesPerSecond);
+        if(!visible)
+            return;
+
+        FrameProfiler.computeStatistics();
+        lines[0] = String.format("%-14s %7s %7s %7s %7s", framesPerSecond + " fps (ms)", "p50", "p95", "p99", "max");
+        FrameProfiler.Phase[] phases = FrameProfiler.Phase.values();
+        for(int i = 0; i < phases.length; i++) {
+            RollingSamples times = FrameProfiler.getTimes(phases[i]);
+            lines[i + 1] = String.format("%-14s %7.2f %7.2f %7.2f %7.2f",
+                phases[i].getLabel(),
+                times.getP50() / 1_000_000f,
+                times.getP95() / 1_000_000f,
+                times.getP99() / 1_000_000f,
+                times.getMax() / 1_000_000f
+            );
+        }
+    }
+}
@@ -1,12 +1,20 @@
 package com.magneticstudio.transience.ui;
 
+import com.magneticstudio.transience.devkit.CommonKt;
+import com.magneticstudio.transience.util.Images;
+import com.magneticstudio.transience.util.Metrics;
+import com.magneticstudio.transience.util.RenderTasks;
+import com.magneticstudio.transience.util.ResourceCache;
 import org.newdawn.slick.*;
 import org.newdawn.slick.font.effects.ColorEffect;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * This class is a "redesign" of the previous
@@ -15,7 +23,9 @@ import java.util.List;
  * to clean up/aid code.
  *
  * The previous method became way too confusing, even very
- * early in the game's codebase.
+ * early in the game's codebase. The only exceptions are font
+ * variants (see modifyFont) and loaded images (see loadImage),
+ * which are shared because creating them is expensive.
  *
  * @author Max.
  */
@@ -29,6 +39,51 @@ public class Res {
     private static final boolean DEFAULT_BOLD = false; // Default bold setting.
     private static final boolean DEFAULT_ITAL = false; // Default italicize setting.
     private static final String FONT_DIRECTORY = "resources/fonts/"; // The directory to the font file collection.
+    private static final int MAX_IDLE_FONTS = 16; // The amount of unused font variants kept around.
+    private static final int MAX_IDLE_IMAGES = 32; // The amount of unused images kept around.
+
+    // Font variants created by modifyFont, shared by everything that asks for the same settings.
+    // Fonts are freed on the render thread, as they may be released by the simulation thread.
+    private static final ResourceCache<FontKey, UnicodeFont> fontCache = new ResourceCache<>(MAX_IDLE_FONTS, f -> RenderTasks.run(f::destroy));
+
+    // Images read by loadImage, shared by everything that loads the same location.
+    private static final ResourceCache<String, Image> imageCache = new ResourceCache<>(MAX_IDLE_IMAGES, i -> RenderTasks.run(() -> destroyImage(i)));
+
+    private static volatile boolean headless = false; // Whether fonts are loaded without their glyph textures.
+
+    static {
+        Metrics.gauge("res.fonts.hitRate", fontCache::getHitRate);
+        Metrics.gauge("res.images.hitRate", imageCache::getHitRate);
+    }
+
+    /**
+     * Sets whether the game runs without OpenGL (see
+     * HeadlessTileRenderer). Fonts are then loaded without
+     * their glyph textures, so they can be measured and their
+     * colors read, but not drawn.
+     * @param v True to load fonts without glyph textures.
+     */
+    public static void setHeadless(boolean v) {
+        headless = v;
+    }
+
+    /**
+     * Checks whether the game runs without OpenGL.
+     * @return Whether fonts are loaded without glyph textures.
+     */
+    public static boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * Gets the path to a font file in the
+     * "resources/fonts/" directory.
+     * @param fileName The name of the font file.
+     * @return The path to the font file.
+     */
+    public static String getFontPath(String fileName) {
+        return FONT_DIRECTORY + fileName;
+    }
 
     /**
      * Creates a new UnicodeFont object by reading
@@ -46,14 +101,15 @@ public class Res {
                     FONT_DIRECTORY + fileName,
                     size <= USE_DEFAULT ? DEFAULT_FONT_SIZE : size,
                     bold <= USE_DEFAULT ? DEFAULT_BOLD : (bold == TRUE),
-                    bold <= USE_DEFAULT ? DEFAULT_ITAL : (italicized == TRUE)
+                    italicized <= USE_DEFAULT ? DEFAULT_ITAL : (italicized == TRUE)
             );
             if(color == null)
                 font.getEffects().add(new ColorEffect(new java.awt.Color(255, 255, 255)));
             else
                 font.getEffects().add(new ColorEffect(new java.awt.Color(color.r, color.g, color.b, color.a)));
             font.addAsciiGlyphs();
-            font.loadGlyphs();
+            if(!headless)
+                font.loadGlyphs();
             return font;
         }
         catch(SlickException e) {
@@ -62,29 +118,73 @@ public class Res {
     }
 
     /**
-     * Modifies an existing UnicodeFont and returns a new
-     * one with the modified settings.
+     * Gets a variant of an existing UnicodeFont with
+     * the modified settings. The variant keeps every effect
+     * of the font, with only the color changed. Variants are cached, so
+     * asking for the same variant again doesn't load its
+     * glyphs again; give the variant back with releaseFont
+     * once it isn't used anymore.
      * @param toMod The font to modify.
      * @param color The new color of the font (null for no change).
      * @param size The new size of the font (anything <= 0 will not change size)
      * @param bold Whether the new font should be bold.
      * @param italicized Whether the new font should be italicised.
-     * @return A new modified version of a UnicodeFont.
+     * @return A modified version of a UnicodeFont.
      */
     public static UnicodeFont modifyFont(UnicodeFont toMod, Color color, int size, byte bold, byte italicized) {
+        java.awt.Font base = toMod.getFont();
+        FontKey key = new FontKey(
+            base,
+            color == null ? colorOf(toMod) : new java.awt.Color(color.r, color.g, color.b, color.a).getRGB(),
+            size <= USE_DEFAULT ? base.getSize() : size,
+            bold <= USE_DEFAULT ? base.isBold() : (bold == TRUE),
+            italicized <= USE_DEFAULT ? base.isItalic() : (italicized == TRUE),
+            toMod.getEffects()
+        );
+        return fontCache.acquire(key, Res::createFont);
+    }
+
+    /**
+     * Gives back a font returned by modifyFont. Fonts
+     * that didn't come from modifyFont are ignored.
+     * @param font The font that isn't used anymore.
+     */
+    public static void releaseFont(UnicodeFont font) {
+        fontCache.release(font);
+    }
+
+    /**
+     * Disposes every cached font variant that
+     * isn't used anymore (for example when the
+     * level changes).
+     */
+    public static void evictUnusedFonts() {
+        fontCache.evictIdle();
+    }
+
+    /**
+     * Gets the cache of font variants (for its statistics).
+     * @return The font variant cache.
+     */
+    public static ResourceCache<?, UnicodeFont> getFontCache() {
+        return fontCache;
+    }
+
+    /**
+     * Creates the font variant described by a key.
+     * @param key The settings of the font.
+     * @return The new font (null if it couldn't be created).
+     */
+    private static UnicodeFont createFont(FontKey key) {
         try {
-            UnicodeFont font = new UnicodeFont(
-                toMod.getFont(),
-                size <= USE_DEFAULT ? toMod.getFont().getSize() : size,
-                bold <= USE_DEFAULT ? toMod.getFont().isBold() : (bold == TRUE),
-                bold <= USE_DEFAULT ? toMod.getFont().isItalic() : (italicized == TRUE)
-            );
-            if(color == null)
-                font.getEffects().addAll(toMod.getEffects());
-            else
-                font.getEffects().add(new ColorEffect(new java.awt.Color(color.r, color.g, color.b, color.a)));
+            UnicodeFont font = new UnicodeFont(key.base, key.size, key.bold, key.italic);
+            @SuppressWarnings("unchecked")
+            final List<Object> effects = font.getEffects();
+            effects.addAll(key.effects);
+            effects.add(key.colorIndex, new ColorEffect(new java.awt.Color(key.argb, true)));
             font.addAsciiGlyphs();
-            font.loadGlyphs();
+            if(!headless)
+                font.loadGlyphs();
             return font;
         }
         catch(SlickException e) {
@@ -92,6 +192,83 @@ public class Res {
         }
     }
 
+    /**
+     * Gets the color of a font's color effect.
+     * @param font The font.
+     * @return The color as ARGB (white if it has no color effect).
+     */
+    private static int colorOf(UnicodeFont font) {
+        for(Object effect : font.getEffects()) {
+            if(effect instanceof ColorEffect)
+                return ((ColorEffect) effect).getColor().getRGB();
+        }
+        return 0xFFFFFFFF;
+    }
+
+    /**
+     * The settings a font variant is cached by.
+     */
+    private static final class FontKey {
+        private final java.awt.Font base; // The font the variant is derived from.
+        private final int argb; // The color of the variant.
+        private final int size; // The size of the variant.
+        private final boolean bold; // Whether the variant is bold.
+        private final boolean italic; // Whether the variant is italicised.
+        private final List<Object> effects = new ArrayList<>(); // The effects of the font besides its color, in order.
+        private int colorIndex = 0; // Where the color effect goes among the effects.
+
+        /**
+         * Creates a new FontKey object.
+         * @param base The font the variant is derived from.
+         * @param argb The color of the variant.
+         * @param size The size of the variant.
+         * @param bold Whether the variant is bold.
+         * @param italic Whether the variant is italicised.
+         * @param fontEffects The effects of the font the variant is derived from.
+         */
+        private FontKey(java.awt.Font base, int argb, int size, boolean bold, boolean italic, List<?> fontEffects) {
+            this.base = base;
+            this.argb = argb;
+            this.size = size;
+            this.bold = bold;
+            this.italic = italic;
+            // The color effect is left out, so it's replaced by the variant's color.
+            boolean colored = false;
+            for(Object effect : fontEffects) {
+                if(effect instanceof ColorEffect && !colored) {
+                    colorIndex = effects.size();
+                    colored = true;
+                }
+                else if(!(effect instanceof ColorEffect))
+                    effects.add(effect);
+            }
+        }
+
+        /**
+         * Checks whether another key asks for the same font variant.
+         * @param o The object to compare with.
+         * @return Whether the keys are equal.
+         */
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof FontKey))
+                return false;
+            FontKey other = (FontKey) o;
+            return argb == other.argb && size == other.size && bold == other.bold && italic == other.italic
+                && colorIndex == other.colorIndex && effects.equals(other.effects)
+                && base.getFontName().equals(other.base.getFontName());
+        }
+
+        /**
+         * Gets the hash code of this key.
+         * @return The hash code of the settings.
+         */
+        @Override
+        public int hashCode() {
+            return Objects.hash(base.getFontName(), argb, size, bold, italic, colorIndex, effects);
+        }
+    }
+
     /**
      * Loads an image from the specified location.
      * The Slick2D image must be loaded by using
@@ -99,31 +276,72 @@ public class Res {
      * copy it over to a Slick2D image because
      * after the game has started rendering, Images
      * don't load properly.
+     *
+     * Each location is only read once: the returned image
+     * is shared by everything that loads the same location,
+     * so it must not be destroyed. Give it back with
+     * releaseImage once it isn't used anymore.
      * @param location The location to load the image from.
-     * @return The loaded image.
+     * @return The loaded image (null if it couldn't be loaded).
      */
     public static Image loadImage(String location) {
+        return imageCache.acquire(location, Res::decodeImage);
+    }
+
+    /**
+     * Gives back an image returned by loadImage. Images
+     * that didn't come from loadImage are ignored.
+     * @param image The image that isn't used anymore.
+     */
+    public static void releaseImage(Image image) {
+        imageCache.release(image);
+    }
+
+    /**
+     * Gets the cache of loaded images (for its statistics).
+     * @return The image cache.
+     */
+    public static ResourceCache<String, Image> getImageCache() {
+        return imageCache;
+    }
+
+    /**
+     * Reads an image file and uploads its pixels
+     * as a single texture.
+     * @param location The location to load the image from.
+     * @return The loaded image (null if it couldn't be loaded).
+     */
+    private static Image decodeImage(String location) {
         try {
             BufferedImage loaded = ImageIO.read(new File(location));
-            Image image = new Image(loaded.getWidth(), loaded.getHeight());
-            Graphics graphics = image.getGraphics();
-            graphics.setAntiAlias(false);
-            for(int x = 0; x < loaded.getWidth(); x++) {
-                for(int y = 0; y < loaded.getHeight(); y++) {
-                    int argb = loaded.getRGB(x, y);
-                    graphics.setColor(new Color(
-                        (argb >> 16) & 0xFF,
-                        (argb >> 8)  & 0xFF,
-                        (argb >> 4)  & 0xFF,
-                        (argb >> 24) & 0xFF
-                    ));
-                    graphics.fillRect(x, y, 1, 1);
-                }
+            final int width = loaded.getWidth();
+            final int height = loaded.getHeight();
+            int[] argb = loaded.getRGB(0, 0, width, height, null, 0, width);
+            ByteBuffer pixels = ByteBuffer.allocateDirect(width * height * 4);
+            for(int pixel : argb) {
+                pixels.put((byte) (pixel >> 16));
+                pixels.put((byte) (pixel >> 8));
+                pixels.put((byte) pixel);
+                pixels.put((byte) (pixel >> 24));
             }
-            return image;
+            pixels.flip();
+            return Images.fromPixels(width, height, pixels);
         }
         catch(Exception e) {
             return null;
         }
     }
+
+    /**
+     * Destroys an image that was removed from the image cache.
+     * @param image The image to destroy.
+     */
+    private static void destroyImage(Image image) {
+        try {
+            image.destroy();
+        }
+        catch(SlickException e) {
+            CommonKt.logErr("Failed to destroy an evicted image: ", e);
+        }
+    }
 }
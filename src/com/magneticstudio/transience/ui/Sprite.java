@@ -234,10 +234,19 @@ public class Sprite implements GraphicalElement, Cloneable {
         if(!running)
             return;
 
-        if(centerSurround)
-            graphics.drawImage(images[currentFrame].getScaledCopy(renderScale), x - (width * renderScale / 2), y - (height * renderScale / 2));
-        else
-            graphics.drawImage(images[currentFrame].getScaledCopy(renderScale), x, y);
+        float renderX = centerSurround ? x - (width * renderScale / 2) : x;
+        float renderY = centerSurround ? y - (height * renderScale / 2) : y;
+        if(renderScale == 1f) {
+            graphics.drawImage(images[currentFrame], renderX, renderY);
+        }
+        else {
+            // Scaled while drawing instead of making a scaled copy of the frame.
+            graphics.pushTransform();
+            graphics.translate(renderX, renderY);
+            graphics.scale(renderScale, renderScale);
+            graphics.drawImage(images[currentFrame], 0, 0);
+            graphics.popTransform();
+        }
         next();
     }
 
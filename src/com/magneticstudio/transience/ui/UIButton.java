@@ -45,6 +45,7 @@ public class UIButton extends UIComponent {
         if(mainFont == null)
             return;
         this.mainFont = mainFont;
+        Res.releaseFont(this.idleFont);
         this.idleFont = Res.modifyFont(this.mainFont, new Color(120, 120, 120, 255), 0, Res.FALSE, Res.FALSE);
     }
 
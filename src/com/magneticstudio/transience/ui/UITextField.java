@@ -178,6 +178,7 @@ public class UITextField extends UIComponent {
         if(font == null)
             return;
         mainFont = font;
+        Res.releaseFont(promptFont);
         promptFont = Res.modifyFont(mainFont,  new Color(120, 120, 120, 255), Res.USE_DEFAULT, Res.USE_DEFAULT, Res.USE_DEFAULT);
     }
 
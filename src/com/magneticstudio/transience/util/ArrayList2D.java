@@ -3,12 +3,20 @@ package com.magneticstudio.transience.util;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * An ArrayList-like data structure, but it attempts
  * to emulate a resizable 2d array.
  *
+ * The elements are kept in a single flat array in row-major
+ * order (index = y * stride + x), so a lookup is one bounds
+ * check and one array read instead of two list hops. The
+ * stride and row capacity grow geometrically, which means
+ * growing the 2d array one row or column at a time is
+ * amortized and doesn't rebuild every row.
+ *
  * Efficiency:
  * Calculated under conditions on 7/12/17:
  * - Added 1 item to 0, 0
@@ -19,7 +27,7 @@ import java.util.List;
  * @param <T> An object to be contained within the 2d ArrayList.
  * @author Max
  */
-public class ArrayList2D<T> {
+public class ArrayList2D<T> implements Grid2D<T> {
 
     /**
      * Creates a new null predicate.
@@ -30,13 +38,21 @@ public class ArrayList2D<T> {
         return t -> t == null;
     }
 
+    private static final int MIN_CAPACITY = 4; // The smallest stride/row capacity allocated.
+
     private boolean locked = false; // Determines if the 2d array can be resized.
-    private List<List<T>> list2d = new ArrayList<>(); // 2d list.
+    private Object[] cells = new Object[0]; // Flat row-major storage of the 2d array.
+    private int stride = 0; // The amount of slots allocated per row.
+    private int rowCapacity = 0; // The amount of rows allocated.
+    private int occupied = 0; // The amount of non-null elements.
+    private int fittedWidth = 0; // The width the storage was last fitted to.
+    private int fittedHeight = 0; // The height the storage was last fitted to.
     private IntDimension dimensions; // Dimensions of the 2d array.
+    private List<ChangeListener<T>> listeners = new ArrayList<>(); // Listeners told about changed cells.
 
     /**
      * Constructor for ArrayList2D:
-     * Initializes list2d, width, and height with default parameters.
+     * Initializes the storage, width, and height with default parameters.
      * Then it adjusts the 2d list to match the width and height.
      */
     public ArrayList2D() {
@@ -46,7 +62,7 @@ public class ArrayList2D<T> {
 
     /**
      * Constructor for ArrayList2D:
-     * Initializes list2d, assigns width and height, and finally adjusts
+     * Initializes the storage, assigns width and height, and finally adjusts
      * the 2d array to match the width and height.
      * @param w Width of 2d array.
      * @param h Height of 2d array.
@@ -132,26 +148,16 @@ public class ArrayList2D<T> {
      * @return Total non-null elements in 2d array.
      */
     public int getElementCount() {
-        int total = 0;
-        for(List<T> row : list2d) {
-            for(final T elem : row) {
-                if(elem != null)
-                    total++;
-            }
-        }
-        return total;
+        return occupied;
     }
 
     /**
      * Fills the 2d array with specified type.
      * @param type A type to replace null or non equivalent objects.
      */
+    @Override
     public void fill(T type) {
-        for(List<T> list : list2d) {
-            for(int i = 0; i < list.size(); i++) {
-                list.set(i, type);
-            }
-        }
+        fillRect(type, 0, 0, getWidth(), getHeight());
     }
 
     /**
@@ -159,11 +165,7 @@ public class ArrayList2D<T> {
      * @param type A type to replace null objects.
      */
     public void fillNullOnly(T type) {
-        for(List<T> list : list2d) {
-            for(int i = 0; i < list.size(); i++) {
-                final T item = list.get(i);
-            }
-        }
+        fillIf(type, t -> t == null);
     }
 
     /**
@@ -171,14 +173,7 @@ public class ArrayList2D<T> {
      * @param type A type to replace non-null objects.
      */
     public void fillOccupiedOnly(T type) {
-        for(List<T> list : list2d) {
-            for(int i = 0; i < list.size(); i++) {
-                final T item = list.get(i);
-                if(item != null) {
-                    list.set(i, type);
-                }
-            }
-        }
+        fillIf(type, t -> t != null);
     }
 
     /**
@@ -187,39 +182,154 @@ public class ArrayList2D<T> {
      * @param pred Evaluation interface to decide whether to replace an item or not.
      */
     public void fillIf(T type, If<T> pred) {
-        for(List<T> list : list2d) {
-            for(int i = 0; i < list.size(); i++) {
-                final T item = list.get(i);
-                if(pred.test(item)) {
-                    list.set(i, type);
+        final int width = getWidth();
+        final int height = getHeight();
+        for(int y = 0; y < height; y++) {
+            final int row = y * stride;
+            for(int i = row; i < row + width; i++) {
+                if(pred.test(cast(cells[i]))) {
+                    put(i, type);
                 }
             }
         }
     }
 
+    /**
+     * Fills an entire row of the 2d array with the specified type.
+     * @param type The type to place in every column of the row.
+     * @param y The row to fill.
+     */
+    public void fillRow(T type, int y) {
+        fillRect(type, 0, y, getWidth(), 1);
+    }
+
+    /**
+     * Fills a rectangular area of the 2d array with the specified
+     * type. The area is clipped to the size of the 2d array, so
+     * nothing is resized by this function.
+     * @param type The type to place in the area.
+     * @param x The X value of the upper left corner of the area.
+     * @param y The Y value of the upper left corner of the area.
+     * @param w The width of the area.
+     * @param h The height of the area.
+     */
+    @Override
+    public void fillRect(T type, int x, int y, int w, int h) {
+        final int x1 = Math.max(x, 0);
+        final int y1 = Math.max(y, 0);
+        final int x2 = Math.min(x + w, getWidth());
+        final int y2 = Math.min(y + h, getHeight());
+        if(x1 >= x2 || y1 >= y2)
+            return;
+
+        if(!listeners.isEmpty()) {
+            for(int iy = y1; iy < y2; iy++) {
+                final int row = iy * stride;
+                for(int i = row + x1; i < row + x2; i++) {
+                    put(i, type);
+                }
+            }
+            return;
+        }
+
+        int before = 0;
+        for(int iy = y1; iy < y2; iy++) {
+            final int row = iy * stride;
+            for(int i = row + x1; i < row + x2; i++) {
+                if(cells[i] != null)
+                    before++;
+            }
+            Arrays.fill(cells, row + x1, row + x2, type);
+        }
+        occupied += (type == null ? 0 : (x2 - x1) * (y2 - y1)) - before;
+    }
+
     /**
      * Scans the entire 2d array and performs action
      * based on the ForEach interface in the parameters.
      * @param feobj ForEach interface to dictate action for each element.
      */
+    @Override
     public void forEach(ForEach<T> feobj) {
-        for(List<T> row : list2d) {
-            for(final T item : row) {
-                feobj.onelem(item);
+        final int width = getWidth();
+        final int height = getHeight();
+        for(int y = 0; y < height; y++) {
+            final int row = y * stride;
+            for(int i = row; i < row + width; i++) {
+                feobj.onelem(cast(cells[i]));
+            }
+        }
+    }
+
+    /**
+     * Scans a rectangular area of the 2d array (clipped to its size)
+     * row by row and performs action on each element along with
+     * its coordinates.
+     * @param x The X value of the upper left corner of the area.
+     * @param y The Y value of the upper left corner of the area.
+     * @param w The width of the area.
+     * @param h The height of the area.
+     * @param feobj ForEachAt interface to dictate action for each element.
+     */
+    @Override
+    public void forEachInRect(int x, int y, int w, int h, ForEachAt<T> feobj) {
+        final int x1 = Math.max(x, 0);
+        final int y1 = Math.max(y, 0);
+        final int x2 = Math.min(x + w, getWidth());
+        final int y2 = Math.min(y + h, getHeight());
+        for(int iy = y1; iy < y2; iy++) {
+            final int row = iy * stride;
+            for(int ix = x1; ix < x2; ix++) {
+                feobj.onelem(cast(cells[row + ix]), ix, iy);
             }
         }
     }
 
+    /**
+     * Checks whether a rectangular area of the 2d array is known
+     * to only hold null values. Only an entirely empty 2d array
+     * can be told apart cheaply, so any other area reports false.
+     * @param x The X value of the upper left corner of the area.
+     * @param y The Y value of the upper left corner of the area.
+     * @param w The width of the area.
+     * @param h The height of the area.
+     * @return True if the area is known to be empty.
+     */
+    @Override
+    public boolean isRegionEmpty(int x, int y, int w, int h) {
+        return occupied == 0 || x >= getWidth() || y >= getHeight() || x + w <= 0 || y + h <= 0;
+    }
+
+    /**
+     * Adds a listener that is told about every cell whose
+     * element changes.
+     * @param listener The listener to add.
+     */
+    @Override
+    public void addChangeListener(ChangeListener<T> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with addChangeListener.
+     * @param listener The listener to remove.
+     */
+    @Override
+    public void removeChangeListener(ChangeListener<T> listener) {
+        listeners.remove(listener);
+    }
+
     /**
      * Clears the entire 2d array and replaces it with
      * null values.
      */
     public void purge() {
-        for(List<T> list : list2d) {
-            for(int i = 0; i < list.size(); i++) {
-                list.set(i, null);
-            }
+        if(!listeners.isEmpty()) {
+            fill(null);
+            return;
         }
+        Arrays.fill(cells, null);
+        occupied = 0;
     }
 
     /**
@@ -231,12 +341,13 @@ public class ArrayList2D<T> {
             return;
         }
         dimensions.setWidth(Math.max(w, 0));
-        fitToWidth(dimensions.getWidth());
+        resize();
     }
 
     /**
      * @return Width of 2d array.
      */
+    @Override
     public int getWidth() {
         return (dimensions.getWidth() + 1);
     }
@@ -250,12 +361,13 @@ public class ArrayList2D<T> {
             return;
         }
         dimensions.setHeight(Math.max(h, 0));
-        fitToHeight(dimensions.getHeight());
+        resize();
     }
 
     /**
      * @return Height of the 2d array.
      */
+    @Override
     public int getHeight() {
         return (dimensions.getHeight() + 1);
     }
@@ -271,8 +383,7 @@ public class ArrayList2D<T> {
         }
         dimensions.setWidth(Math.max(w, 0));
         dimensions.setHeight(Math.max(h, 0));
-        fitToHeight(dimensions.getHeight());
-        fitToWidth(dimensions.getWidth());
+        resize();
     }
 
     /**
@@ -300,10 +411,13 @@ public class ArrayList2D<T> {
      * @return True if it is able to find an open place to put the element in.
      */
     public boolean addElement(T elem) {
-        for(List<T> row : list2d) {
-            for(int i = 0; i < row.size(); i++) {
-                if(row.get(i) == null) {
-                    row.set(i, elem);
+        final int width = getWidth();
+        final int height = getHeight();
+        for(int y = 0; y < height; y++) {
+            final int row = y * stride;
+            for(int i = row; i < row + width; i++) {
+                if(cells[i] == null) {
+                    put(i, elem);
                     return true;
                 }
             }
@@ -330,10 +444,10 @@ public class ArrayList2D<T> {
      * @return True if it was able to remove an element from specified coordinates.
      */
     public boolean removeElement(int x, int y) {
-        if(inBounds(x, y) || isEmpty(x, y)) {
+        if(isEmpty(x, y)) {
             return false;
         }
-        list2d.get(y).set(x, null);
+        put(y * stride + x, null);
         return true;
     }
 
@@ -342,13 +456,7 @@ public class ArrayList2D<T> {
      * @param pred Evaluation interface to decide whether to remove the item or not.
      */
     public void removeIf(If<T> pred) {
-        for(List<T> row : list2d) {
-            for(int i = 0; i < row.size(); i++) {
-                if(pred.test(row.get(i))) {
-                    row.set(i, null);
-                }
-            }
-        }
+        fillIf(null, pred);
     }
 
     /**
@@ -358,22 +466,18 @@ public class ArrayList2D<T> {
      * @param y Y coordinate.
      * @return True if the element was successfully placed in the specified coordinates.
      */
+    @Override
     public boolean setElement(T elem, int x, int y) {
         if(locked && inBounds(x, y)) {
-            list2d.get(y).set(x, elem);
+            put(y * stride + x, elem);
             return true;
         }
         else if(!locked) {
             if(x < 0 || y < 0) {
                 return false;
             }
-            if(x >= dimensions.getWidth()) {
-                setWidth(x);
-            }
-            if(y >= dimensions.getHeight()) {
-                setHeight(y);
-            }
-            list2d.get(y).set(x, elem);
+            growToFit(x, y);
+            put(y * stride + x, elem);
             return true;
         }
         return false;
@@ -385,6 +489,7 @@ public class ArrayList2D<T> {
      * @param location Coordinate.
      * @return True if the element was successfully place in the specified coordinates.
      */
+    @Override
     public boolean setElement(T elem, IntPoint location) {
         return setElement(elem, location.x, location.y);
     }
@@ -398,23 +503,19 @@ public class ArrayList2D<T> {
      * @param y The Y value of the location to set the element in.
      * @return Whether the element was successfully place in the specified location.
      */
+    @Override
     public boolean setElementIf(T elem, If<T> pred, int x, int y) {
         boolean predEval = pred.test(getElement(x, y));
         if(locked && inBounds(x, y) && predEval) {
-            list2d.get(y).set(x, elem);
+            put(y * stride + x, elem);
             return true;
         }
         else if(!locked && predEval) {
             if(x < 0 || y < 0) {
                 return false;
             }
-            if(x >= dimensions.getWidth()) {
-                setWidth(x);
-            }
-            if(y >= dimensions.getHeight()) {
-                setHeight(y);
-            }
-            list2d.get(y).set(x, elem);
+            growToFit(x, y);
+            put(y * stride + x, elem);
             return true;
         }
         return false;
@@ -429,7 +530,7 @@ public class ArrayList2D<T> {
      * @return Whether the element was successfully place in the specified location.
      */
     public boolean setElementIf(T elem, If<T> pred, IntPoint location) {
-        return setElementIf(elem, pred, location);
+        return setElementIf(elem, pred, location.x, location.y);
     }
 
     /**
@@ -438,11 +539,12 @@ public class ArrayList2D<T> {
      * @param y Y coordinate.
      * @return Object in those coordinates.
      */
+    @Override
     public T getElement(int x, int y) {
-        if(isEmpty(x, y)) {
+        if(x < 0 || y < 0 || x > dimensions.getWidth() || y > dimensions.getHeight()) {
             return null;
         }
-        return list2d.get(y).get(x);
+        return cast(cells[y * stride + x]);
     }
 
     /**
@@ -450,6 +552,7 @@ public class ArrayList2D<T> {
      * @param location Coordinate.
      * @return Object in those coordinates.
      */
+    @Override
     public T getElement(IntPoint location) {
         return getElement(location.x, location.y);
     }
@@ -459,32 +562,28 @@ public class ArrayList2D<T> {
      * space in the 2d array.
      * @param x X coordinate.
      * @param y Y coordinate.
-     * @return True if the object in row.index(x) is null.
+     * @return True if the object at the coordinates is null.
      */
     public boolean isEmpty(int x, int y) {
-        if((x < 0 || x > dimensions.getWidth()) || (y < 0 || y > dimensions.getHeight())) {
-            return true;
-        }
-        return list2d.get(y).get(x) == null;
+        return getElement(x, y) == null;
     }
 
     /**
      * Checks to see if specified coordinates point to an empty
      * space in the 2d array.
      * @param location Coordinate.
-     * @return True if the object in row.index(x) is null.
+     * @return True if the object at the coordinates is null.
      */
     public boolean isEmpty(IntPoint location) {
         return isEmpty(location.x, location.y);
     }
 
     /**
-     * Adjusts the dimensions of the two lists to
-     * be compatible with the data members 'width' and 'height'
+     * Adjusts the storage to be compatible with
+     * the data members 'width' and 'height'
      */
     private void adjust() {
-        fitToHeight(dimensions.getHeight());
-        fitToWidth(dimensions.getWidth());
+        resize();
     }
 
     /**
@@ -501,10 +600,10 @@ public class ArrayList2D<T> {
         final int obj = 79; //'O' for non-null objects in ASCII
         final int nline = 10; // '\n' character in ASCII
         try {
-            for(List<T> row : list2d) {
+            for(int y = 0; y < getHeight(); y++) {
                 out.write(lbrkt);
-                for(T elem : row) {
-                    if(elem == null) {
+                for(int x = 0; x < getWidth(); x++) {
+                    if(cells[y * stride + x] == null) {
                         out.write(asterisk);
                     }
                     else {
@@ -525,73 +624,91 @@ public class ArrayList2D<T> {
     }
 
     /**
-     * Fits the List<List<T>> to a specified height.
-     * @param y Target height.
+     * Writes an element into a slot of the flat storage
+     * while keeping the element count up to date and
+     * telling the listeners about the change.
+     * @param index The index in the flat storage.
+     * @param elem The element to write.
      */
-    private void fitToHeight(int y) {
-        if(list2d.size() != (y + 1)) {
-            list2d = fitSize(list2d, y);
+    private void put(int index, T elem) {
+        final Object old = cells[index];
+        if(old == null && elem != null)
+            occupied++;
+        else if(old != null && elem == null)
+            occupied--;
+        cells[index] = elem;
+        if(old != elem) {
+            for(ChangeListener<T> listener : listeners)
+                listener.onElementChanged(cast(old), elem, index % stride, index / stride);
         }
     }
 
     /**
-     * Fits the List<List<T>> to a specified width.
-     * @param x Target width.
+     * Grows the 2d array (if needed) so that the specified
+     * coordinates are inside of it.
+     * @param x X coordinate.
+     * @param y Y coordinate.
      */
-    private void fitToWidth(int x) {
-        for(int i = 0; i < list2d.size(); i++) {
-            final List<T> list = list2d.get(i);
-            if(list.size() != (x + 1)) {
-                list2d.set(i, fitSize(list, null, x));
-            }
+    private void growToFit(int x, int y) {
+        if(x >= dimensions.getWidth()) {
+            setWidth(x);
+        }
+        if(y >= dimensions.getHeight()) {
+            setHeight(y);
         }
     }
 
     /**
-     * Resizes the provided list to an indicated size.
-     * @param cpy Copy of the list.
-     * @param placeh Place holder if list.size() increases
-     * @param targetsize Target (final) size of the list
-     * @return Resized list.
+     * Fits the flat storage to the current dimensions. Slots that
+     * fall outside of the new size are cleared (so that they are
+     * null if the 2d array grows again), and the storage is only
+     * reallocated if the stride or row capacity are exceeded.
      */
-    private List<T> fitSize(List<T> cpy, T placeh, final int targetsize) {
-        final int cursize = cpy.size();
-        if(cursize <= targetsize) {
-            while(cpy.size() <= targetsize) {
-                cpy.add(placeh);
+    private void resize() {
+        final int width = getWidth();
+        final int height = getHeight();
+        final int oldWidth = fittedWidth;
+        final int oldHeight = fittedHeight;
+
+        // Clear anything that falls off the edges.
+        for(int y = 0; y < oldHeight; y++) {
+            final int row = y * stride;
+            final int from = y < height ? Math.min(width, oldWidth) : 0;
+            for(int i = row + from; i < row + oldWidth; i++) {
+                put(i, null);
             }
         }
-        else if(cursize > targetsize) {
-            while(cpy.size() > targetsize) {
-                cpy.remove(cpy.size() - 1);
+
+        if(width > stride || height > rowCapacity) {
+            final int nStride = width > stride ? Math.max(width, Math.max(MIN_CAPACITY, stride + (stride >> 1))) : stride;
+            final int nRows = height > rowCapacity ? Math.max(height, Math.max(MIN_CAPACITY, rowCapacity + (rowCapacity >> 1))) : rowCapacity;
+            if(nStride == stride) {
+                cells = Arrays.copyOf(cells, nStride * nRows);
             }
+            else {
+                final Object[] nCells = new Object[nStride * nRows];
+                final int copyRows = Math.min(oldHeight, height);
+                final int copyColumns = Math.min(oldWidth, width);
+                for(int y = 0; y < copyRows; y++) {
+                    System.arraycopy(cells, y * stride, nCells, y * nStride, copyColumns);
+                }
+                cells = nCells;
+            }
+            stride = nStride;
+            rowCapacity = nRows;
         }
-        return cpy;
+        fittedWidth = width;
+        fittedHeight = height;
     }
 
     /**
-     * Resizes the provided list to an indicated size.
-     * @param cpy Copy of the list containing another list of T objects.
-     * @param targetsize Target size of the list.
-     * @return Resized list.
+     * Casts a slot of the flat storage back to the element type.
+     * @param o The object in the slot.
+     * @return The object as the element type.
      */
-    private List<List<T>> fitSize(List<List<T>> cpy, final int targetsize) {
-        final int cursize = cpy.size();
-        if(cursize <= targetsize) {
-            while(cpy.size() <= targetsize) {
-                final List<T> elems = new ArrayList<>();
-                while(elems.size() <= dimensions.getWidth()) {
-                    elems.add(null);
-                }
-                cpy.add(elems);
-            }
-        }
-        else if(cursize > targetsize) {
-            while(cpy.size() > targetsize) {
-                cpy.remove(cpy.size() - 1);
-            }
-        }
-        return cpy;
+    @SuppressWarnings("unchecked")
+    private T cast(Object o) {
+        return (T) o;
     }
 
     /**
@@ -607,6 +724,21 @@ public class ArrayList2D<T> {
         void onelem(T item);
     }
 
+    /**
+     * Interface for the method "forEachInRect" in the 2d array.
+     * @param <T> Generic type.
+     */
+    public interface ForEachAt<T> {
+        /**
+         * Actions that will be performed by the caller
+         * for each item that the foreach function passes by.
+         * @param item The element.
+         * @param x The X value of the element's location.
+         * @param y The Y value of the element's location.
+         */
+        void onelem(T item, int x, int y);
+    }
+
     /**
      * Interface for the method "fillIf/removeIf" in the 2d array.
      * @param <T> Generic type.
@@ -626,6 +758,18 @@ public class ArrayList2D<T> {
      */
     @Override
     public String toString() {
-        return list2d.toString();
+        StringBuilder builder = new StringBuilder("[");
+        for(int y = 0; y < getHeight(); y++) {
+            if(y > 0)
+                builder.append(", ");
+            builder.append('[');
+            for(int x = 0; x < getWidth(); x++) {
+                if(x > 0)
+                    builder.append(", ");
+                builder.append(cells[y * stride + x]);
+            }
+            builder.append(']');
+        }
+        return builder.append(']').toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,360 @@
+package com.magneticstudio.transience.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A fixed size 2d grid that is split into square chunks.
+ * A chunk is only allocated once something other than
+ * the grid's blank element is written into it, and it is
+ * released again once it only holds the blank element.
+ * Every cell of a missing chunk reads as the blank element.
+ *
+ * This way the memory used by a very large, mostly blank
+ * grid (like a dungeon floor that is mostly void) depends
+ * on the area that is actually used, not on its size.
+ *
+ * @param <T> An object to be contained within the grid.
+ * @author Max
+ */
+public class ChunkedGrid2D<T> implements Grid2D<T> {
+
+    public static final int CHUNK_SHIFT = 5; // Log2 of the chunk size.
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // The width and height of a chunk.
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1; // Mask for the location inside of a chunk.
+
+    private final T blank; // The element every cell of a missing chunk holds.
+    private final int width; // Width of the grid.
+    private final int height; // Height of the grid.
+    private final int chunksX; // The amount of chunks on the x axis.
+    private final int chunksY; // The amount of chunks on the y axis.
+    private final Object[][] chunks; // The chunks (null if not allocated).
+    private final int[] used; // The amount of non-blank cells in each chunk.
+    private int allocated = 0; // The amount of allocated chunks.
+    private List<ChangeListener<T>> listeners = new ArrayList<>(); // Listeners told about changed cells.
+
+    /**
+     * Creates a new chunked grid where every
+     * cell holds the blank element.
+     * @param width Width of the grid.
+     * @param height Height of the grid.
+     * @param blank The element of cells that hold nothing.
+     */
+    public ChunkedGrid2D(int width, int height, T blank) {
+        this.width = Math.max(width, 0);
+        this.height = Math.max(height, 0);
+        this.blank = blank;
+        chunksX = (this.width + CHUNK_MASK) >> CHUNK_SHIFT;
+        chunksY = (this.height + CHUNK_MASK) >> CHUNK_SHIFT;
+        chunks = new Object[chunksX * chunksY][];
+        used = new int[chunksX * chunksY];
+    }
+
+    /**
+     * Gets the element of cells that hold nothing.
+     * @return The blank element.
+     */
+    public T getBlank() {
+        return blank;
+    }
+
+    /**
+     * Gets the amount of chunks that are allocated.
+     * @return The amount of allocated chunks.
+     */
+    public int getAllocatedChunkCount() {
+        return allocated;
+    }
+
+    /**
+     * Checks whether a chunk only holds the blank element.
+     * @param cx The column of the chunk.
+     * @param cy The row of the chunk.
+     * @return Whether the chunk is empty.
+     */
+    public boolean isChunkEmpty(int cx, int cy) {
+        if(cx < 0 || cy < 0 || cx >= chunksX || cy >= chunksY)
+            return true;
+        return chunks[cy * chunksX + cx] == null;
+    }
+
+    /**
+     * @return Width of the grid.
+     */
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return Height of the grid.
+     */
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets an element in specified coordinates.
+     * @param x X coordinate.
+     * @param y Y coordinate.
+     * @return Object in those coordinates (null if out of bounds).
+     */
+    @Override
+    public T getElement(int x, int y) {
+        if(x < 0 || y < 0 || x >= width || y >= height)
+            return null;
+        final Object[] chunk = chunks[(y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT)];
+        if(chunk == null)
+            return blank;
+        return cast(chunk[((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK)]);
+    }
+
+    /**
+     * Gets an element in specified coordinates.
+     * @param location Coordinate.
+     * @return Object in those coordinates (null if out of bounds).
+     */
+    @Override
+    public T getElement(IntPoint location) {
+        return getElement(location.x, location.y);
+    }
+
+    /**
+     * Places an element in specified coordinates.
+     * @param elem Element.
+     * @param x X coordinate.
+     * @param y Y coordinate.
+     * @return True if the coordinates are inside of the grid.
+     */
+    @Override
+    public boolean setElement(T elem, int x, int y) {
+        if(x < 0 || y < 0 || x >= width || y >= height)
+            return false;
+
+        final int index = (y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT);
+        Object[] chunk = chunks[index];
+        if(chunk == null) {
+            if(elem == blank)
+                return true;
+            chunk = allocate(index);
+        }
+
+        final int cell = ((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK);
+        final Object old = chunk[cell];
+        chunk[cell] = elem;
+        if(old == blank && elem != blank)
+            used[index]++;
+        else if(old != blank && elem == blank && --used[index] == 0)
+            release(index);
+        if(old != elem) {
+            for(ChangeListener<T> listener : listeners)
+                listener.onElementChanged(cast(old), elem, x, y);
+        }
+        return true;
+    }
+
+    /**
+     * Places an element in specified coordinates.
+     * @param elem Element.
+     * @param location Coordinate.
+     * @return True if the coordinates are inside of the grid.
+     */
+    @Override
+    public boolean setElement(T elem, IntPoint location) {
+        return setElement(elem, location.x, location.y);
+    }
+
+    /**
+     * Places an element in the specified coordinates if a certain
+     * condition is met.
+     * @param elem The element to place in the specified location.
+     * @param pred The predicate to determine the condition.
+     * @param x The X value of the location to set the element in.
+     * @param y The Y value of the location to set the element in.
+     * @return Whether the element was successfully place in the specified location.
+     */
+    @Override
+    public boolean setElementIf(T elem, ArrayList2D.If<T> pred, int x, int y) {
+        if(x < 0 || y < 0 || x >= width || y >= height || !pred.test(getElement(x, y)))
+            return false;
+        return setElement(elem, x, y);
+    }
+
+    /**
+     * Fills the grid with specified type. Filling with
+     * the blank element releases every chunk.
+     * @param type The type to place in every cell.
+     */
+    @Override
+    public void fill(T type) {
+        fillRect(type, 0, 0, width, height);
+    }
+
+    /**
+     * Fills a rectangular area of the grid (clipped to its size)
+     * with the specified type. Chunks that are entirely covered
+     * are released or filled as a whole (unless there are change
+     * listeners, which hear about each cell).
+     * @param type The type to place in the area.
+     * @param x The X value of the upper left corner of the area.
+     * @param y The Y value of the upper left corner of the area.
+     * @param w The width of the area.
+     * @param h The height of the area.
+     */
+    @Override
+    public void fillRect(T type, int x, int y, int w, int h) {
+        final int x1 = Math.max(x, 0);
+        final int y1 = Math.max(y, 0);
+        final int x2 = Math.min(x + w, width);
+        final int y2 = Math.min(y + h, height);
+        if(x1 >= x2 || y1 >= y2)
+            return;
+
+        for(int cy = y1 >> CHUNK_SHIFT; cy <= (y2 - 1) >> CHUNK_SHIFT; cy++) {
+            final int cy1 = Math.max(y1, cy << CHUNK_SHIFT);
+            final int cy2 = Math.min(y2, (cy + 1) << CHUNK_SHIFT);
+            for(int cx = x1 >> CHUNK_SHIFT; cx <= (x2 - 1) >> CHUNK_SHIFT; cx++) {
+                final int cx1 = Math.max(x1, cx << CHUNK_SHIFT);
+                final int cx2 = Math.min(x2, (cx + 1) << CHUNK_SHIFT);
+                final int index = cy * chunksX + cx;
+                // Whole chunks are only swapped at once if nobody needs to hear about each cell.
+                final boolean whole = cx2 - cx1 == CHUNK_SIZE && cy2 - cy1 == CHUNK_SIZE && listeners.isEmpty();
+
+                if(type == blank && (whole || chunks[index] == null)) {
+                    if(chunks[index] != null)
+                        release(index);
+                    continue;
+                }
+                if(whole) {
+                    if(chunks[index] == null)
+                        allocate(index);
+                    Arrays.fill(chunks[index], type);
+                    used[index] = CHUNK_SIZE * CHUNK_SIZE;
+                    continue;
+                }
+                for(int iy = cy1; iy < cy2; iy++) {
+                    for(int ix = cx1; ix < cx2; ix++) {
+                        setElement(type, ix, iy);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans the entire grid and performs action on each element.
+     * @param feobj ForEach interface to dictate action for each element.
+     */
+    @Override
+    public void forEach(ArrayList2D.ForEach<T> feobj) {
+        forEachInRect(0, 0, width, height, (t, x, y) -> feobj.onelem(t));
+    }
+
+    /**
+     * Scans a rectangular area of the grid (clipped to its size)
+     * row by row and performs action on each element along with
+     * its coordinates.
+     * @param x The X value of the upper left corner of the area.
+     * @param y The Y value of the upper left corner of the area.
+     * @param w The width of the area.
+     * @param h The height of the area.
+     * @param feobj ForEachAt interface to dictate action for each element.
+     */
+    @Override
+    public void forEachInRect(int x, int y, int w, int h, ArrayList2D.ForEachAt<T> feobj) {
+        final int x1 = Math.max(x, 0);
+        final int y1 = Math.max(y, 0);
+        final int x2 = Math.min(x + w, width);
+        final int y2 = Math.min(y + h, height);
+        for(int iy = y1; iy < y2; iy++) {
+            final int rowIndex = (iy >> CHUNK_SHIFT) * chunksX;
+            final int rowInChunk = (iy & CHUNK_MASK) << CHUNK_SHIFT;
+            for(int ix = x1; ix < x2; ix++) {
+                final Object[] chunk = chunks[rowIndex + (ix >> CHUNK_SHIFT)];
+                feobj.onelem(chunk == null ? blank : cast(chunk[rowInChunk | (ix & CHUNK_MASK)]), ix, iy);
+            }
+        }
+    }
+
+    /**
+     * Checks whether every chunk touching the area is missing.
+     * @param x The X value of the upper left corner of the area.
+     * @param y The Y value of the upper left corner of the area.
+     * @param w The width of the area.
+     * @param h The height of the area.
+     * @return True if the area only holds the blank element.
+     */
+    @Override
+    public boolean isRegionEmpty(int x, int y, int w, int h) {
+        final int x1 = Math.max(x, 0);
+        final int y1 = Math.max(y, 0);
+        final int x2 = Math.min(x + w, width);
+        final int y2 = Math.min(y + h, height);
+        if(x1 >= x2 || y1 >= y2)
+            return true;
+
+        for(int cy = y1 >> CHUNK_SHIFT; cy <= (y2 - 1) >> CHUNK_SHIFT; cy++) {
+            for(int cx = x1 >> CHUNK_SHIFT; cx <= (x2 - 1) >> CHUNK_SHIFT; cx++) {
+                if(chunks[cy * chunksX + cx] != null)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a listener that is told about every cell whose
+     * element changes.
+     * @param listener The listener to add.
+     */
+    @Override
+    public void addChangeListener(ChangeListener<T> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with addChangeListener.
+     * @param listener The listener to remove.
+     */
+    @Override
+    public void removeChangeListener(ChangeListener<T> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Allocates a chunk filled with the blank element.
+     * @param index The index of the chunk.
+     * @return The new chunk.
+     */
+    private Object[] allocate(int index) {
+        final Object[] chunk = new Object[CHUNK_SIZE * CHUNK_SIZE];
+        if(blank != null)
+            Arrays.fill(chunk, blank);
+        chunks[index] = chunk;
+        used[index] = 0;
+        allocated++;
+        return chunk;
+    }
+
+    /**
+     * Releases a chunk (all of its cells become blank).
+     * @param index The index of the chunk.
+     */
+    private void release(int index) {
+        chunks[index] = null;
+        used[index] = 0;
+        allocated--;
+    }
+
+    /**
+     * Casts a cell of a chunk back to the element type.
+     * @param o The object in the cell.
+     * @return The object as the element type.
+     */
+    @SuppressWarnings("unchecked")
+    private T cast(Object o) {
+        return (T) o;
+    }
+}
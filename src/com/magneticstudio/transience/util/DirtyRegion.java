@@ -0,0 +1,148 @@
+package com.magneticstudio.transience.util;
+
+/**
+ * This class collects the rectangular areas of a grid
+ * that changed since they were last processed (for
+ * example, redrawn). Rectangles that continue the last
+ * marked one are merged into it, and once too many
+ * rectangles are collected they collapse into their
+ * bounding box, so marking stays cheap even when a
+ * whole level is being written.
+ *
+ * @author Max
+ */
+public class DirtyRegion {
+
+    private static final int MAX_RECTS = 64; // The amount of rectangles kept before collapsing them.
+
+    private int[] rects = new int[MAX_RECTS * 4]; // The rectangles (x, y, width, height).
+    private int count = 0; // The amount of rectangles.
+    private boolean all = false; // Whether everything is dirty.
+
+    /**
+     * Creates a new clean dirty region.
+     */
+    public DirtyRegion() {
+
+    }
+
+    /**
+     * Marks a single cell as dirty.
+     * @param x The X value of the cell's location.
+     * @param y The Y value of the cell's location.
+     */
+    public void mark(int x, int y) {
+        mark(x, y, 1, 1);
+    }
+
+    /**
+     * Marks a rectangular area as dirty.
+     * @param x The X value of the upper left corner of the area.
+     * @param y The Y value of the upper left corner of the area.
+     * @param w The width of the area.
+     * @param h The height of the area.
+     */
+    public void mark(int x, int y, int w, int h) {
+        if(all || w <= 0 || h <= 0)
+            return;
+
+        if(count > 0) {
+            final int last = (count - 1) * 4;
+            final int lx = rects[last], ly = rects[last + 1], lw = rects[last + 2], lh = rects[last + 3];
+            if(x >= lx && y >= ly && x + w <= lx + lw && y + h <= ly + lh)
+                return;
+            if(y == ly && h == lh && x >= lx && x <= lx + lw) {
+                rects[last + 2] = Math.max(lx + lw, x + w) - lx;
+                return;
+            }
+            if(x == lx && w == lw && y >= ly && y <= ly + lh) {
+                rects[last + 3] = Math.max(ly + lh, y + h) - ly;
+                return;
+            }
+        }
+
+        if(count == MAX_RECTS)
+            collapse();
+        final int i = count++ * 4;
+        rects[i] = x;
+        rects[i + 1] = y;
+        rects[i + 2] = w;
+        rects[i + 3] = h;
+    }
+
+    /**
+     * Marks everything as dirty.
+     */
+    public void markAll() {
+        all = true;
+        count = 0;
+    }
+
+    /**
+     * Checks whether everything is dirty.
+     * @return Whether everything is dirty.
+     */
+    public boolean isAll() {
+        return all;
+    }
+
+    /**
+     * Checks whether nothing is dirty.
+     * @return Whether nothing is dirty.
+     */
+    public boolean isEmpty() {
+        return !all && count == 0;
+    }
+
+    /**
+     * Goes through every dirty rectangle. If everything
+     * is dirty, no rectangles are passed (check isAll first).
+     * @param feobj The action performed on each rectangle.
+     */
+    public void forEach(ForEachRect feobj) {
+        for(int i = 0; i < count * 4; i += 4)
+            feobj.onRect(rects[i], rects[i + 1], rects[i + 2], rects[i + 3]);
+    }
+
+    /**
+     * Marks everything as clean.
+     */
+    public void clear() {
+        all = false;
+        count = 0;
+    }
+
+    /**
+     * Replaces every rectangle with their bounding box.
+     */
+    private void collapse() {
+        int x1 = Integer.MAX_VALUE, y1 = Integer.MAX_VALUE;
+        int x2 = Integer.MIN_VALUE, y2 = Integer.MIN_VALUE;
+        for(int i = 0; i < count * 4; i += 4) {
+            x1 = Math.min(x1, rects[i]);
+            y1 = Math.min(y1, rects[i + 1]);
+            x2 = Math.max(x2, rects[i] + rects[i + 2]);
+            y2 = Math.max(y2, rects[i + 1] + rects[i + 3]);
+        }
+        rects[0] = x1;
+        rects[1] = y1;
+        rects[2] = x2 - x1;
+        rects[3] = y2 - y1;
+        count = 1;
+    }
+
+    /**
+     * This interface is used to go through
+     * each of the dirty rectangles.
+     */
+    public interface ForEachRect {
+        /**
+         * Function that runs for an individual rectangle.
+         * @param x The X value of the upper left corner of the rectangle.
+         * @param y The Y value of the upper left corner of the rectangle.
+         * @param w The width of the rectangle.
+         * @param h The height of the rectangle.
+         */
+        void onRect(int x, int y, int w, int h);
+    }
+}
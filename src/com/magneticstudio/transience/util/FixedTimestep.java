@@ -0,0 +1,135 @@
+package com.magneticstudio.transience.util;
+
+/**
+ * This class turns the variable time between frames
+ * into a whole number of fixed length simulation ticks.
+ * The time that is left over (less than one tick) is
+ * carried into the next frame, and the fraction of a tick
+ * it amounts to is the alpha used to interpolate between
+ * the last two simulation states when rendering.
+ *
+ * So the game runs at the same speed (and the simulation
+ * costs the same) no matter how often frames are drawn.
+ * After a very long frame (for example while the window is
+ * dragged) only a limited amount of ticks is caught up on
+ * and the rest of the time is dropped, so the game slows
+ * down instead of freezing to catch up.
+ *
+ * @author Max
+ */
+public class FixedTimestep {
+
+    public static final int DEFAULT_TICK_RATE = 100; // Ticks per second by default.
+    public static final int DEFAULT_MAX_CATCH_UP_TICKS = 10; // Ticks run in one frame at most by default.
+
+    private int tickMillis; // The length of a tick in milliseconds.
+    private int maxCatchUpTicks; // The most ticks run in one frame.
+    private int accumulator = 0; // Time not yet simulated in milliseconds.
+    private long ticks = 0; // The amount of ticks run so far.
+    private long droppedMillis = 0; // The amount of time dropped because of the catch up limit.
+
+    /**
+     * Creates a new fixed timestep with
+     * the default rate and catch up limit.
+     */
+    public FixedTimestep() {
+        this(DEFAULT_TICK_RATE, DEFAULT_MAX_CATCH_UP_TICKS);
+    }
+
+    /**
+     * Creates a new fixed timestep.
+     * @param ticksPerSecond The amount of ticks per second.
+     * @param maxCatchUpTicks The most ticks run in one frame.
+     */
+    public FixedTimestep(int ticksPerSecond, int maxCatchUpTicks) {
+        setTickRate(ticksPerSecond);
+        setMaxCatchUpTicks(maxCatchUpTicks);
+    }
+
+    /**
+     * Sets the amount of ticks per second. Ticks are
+     * a whole amount of milliseconds long, so the actual
+     * rate is rounded (see getTickMillis).
+     * @param ticksPerSecond The amount of ticks per second (1 to 1000).
+     */
+    public void setTickRate(int ticksPerSecond) {
+        tickMillis = Math.max(1, Math.round(1000f / Math.max(Math.min(ticksPerSecond, 1000), 1)));
+    }
+
+    /**
+     * Gets the length of a tick.
+     * @return The length of a tick in milliseconds.
+     */
+    public int getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * Sets the most ticks run in one frame.
+     * @param maxCatchUpTicks The most ticks run in one frame.
+     */
+    public void setMaxCatchUpTicks(int maxCatchUpTicks) {
+        this.maxCatchUpTicks = Math.max(1, maxCatchUpTicks);
+    }
+
+    /**
+     * Gets the most ticks run in one frame.
+     * @return The catch up limit.
+     */
+    public int getMaxCatchUpTicks() {
+        return maxCatchUpTicks;
+    }
+
+    /**
+     * Adds the time of a frame and works out how many
+     * ticks have to be run for it.
+     * @param elapsedMillis The time since the last frame in milliseconds.
+     * @return The amount of ticks to run.
+     */
+    public int advance(int elapsedMillis) {
+        accumulator += Math.max(elapsedMillis, 0);
+        int due = accumulator / tickMillis;
+        if(due > maxCatchUpTicks) {
+            droppedMillis += (long) (due - maxCatchUpTicks) * tickMillis;
+            accumulator -= (due - maxCatchUpTicks) * tickMillis;
+            due = maxCatchUpTicks;
+        }
+        accumulator -= due * tickMillis;
+        ticks += due;
+        return due;
+    }
+
+    /**
+     * Gets how far the time not yet simulated
+     * is into the next tick.
+     * @return The interpolation alpha (0 to 1).
+     */
+    public float getAlpha() {
+        return accumulator / (float) tickMillis;
+    }
+
+    /**
+     * Gets the amount of ticks run so far.
+     * @return The tick count.
+     */
+    public long getTickCount() {
+        return ticks;
+    }
+
+    /**
+     * Gets the amount of time that was dropped
+     * because of the catch up limit.
+     * @return The dropped time in milliseconds.
+     */
+    public long getDroppedMillis() {
+        return droppedMillis;
+    }
+
+    /**
+     * Forgets the time that isn't simulated yet
+     * (for example after loading a level).
+     */
+    public void reset() {
+        accumulator = 0;
+    }
+}
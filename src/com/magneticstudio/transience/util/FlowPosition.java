@@ -21,6 +21,9 @@ public class FlowPosition implements LogicalElement {
     private float nowX = 0; // The current X value of the intermediate motion.
     private float nowY = 0; // The current Y value of the intermediate motion.
 
+    private float previousX = 0; // The X value before the last update (for interpolation).
+    private float previousY = 0; // The Y value before the last update (for interpolation).
+
     private float modifyX = 0; // The amount to modify X by each millisecond.
     private float modifyY = 0; // The amount to modify Y by each millisecond.
 
@@ -49,6 +52,8 @@ public class FlowPosition implements LogicalElement {
 
         nowX = x;
         nowY = y;
+        previousX = x;
+        previousY = y;
     }
 
     /**
@@ -101,6 +106,8 @@ public class FlowPosition implements LogicalElement {
         towardsY = y;
         nowX = x;
         nowY = y;
+        previousX = x;
+        previousY = y;
         listeners.forEach(l -> {
             l.horizontalChange(nowX);
             l.verticalChange(nowY);
@@ -221,6 +228,26 @@ public class FlowPosition implements LogicalElement {
         return nowY;
     }
 
+    /**
+     * Gets the value of X between the last two updates,
+     * for rendering between simulation ticks.
+     * @param alpha How far past the last update (0 is the previous value, 1 the latest).
+     * @return Interpolated X value.
+     */
+    public float getInterpolatedX(float alpha) {
+        return previousX + (nowX - previousX) * alpha;
+    }
+
+    /**
+     * Gets the value of Y between the last two updates,
+     * for rendering between simulation ticks.
+     * @param alpha How far past the last update (0 is the previous value, 1 the latest).
+     * @return Interpolated Y value.
+     */
+    public float getInterpolatedY(float alpha) {
+        return previousY + (nowY - previousY) * alpha;
+    }
+
     /**
      * Gets the target time in milliseconds of
      * the transition from old position to new
@@ -264,6 +291,8 @@ public class FlowPosition implements LogicalElement {
      */
     @Override
     public void update(int milliseconds) {
+        previousX = nowX;
+        previousY = nowY;
         if(timeElapsed >= timeMillis)
             return;
 
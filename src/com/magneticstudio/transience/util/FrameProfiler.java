@@ -0,0 +1,178 @@
+package com.magneticstudio.transience.util;
+
+/**
+ * This class times the phases of the game's frames and
+ * ticks, so the phase behind a stutter can be seen in the
+ * game itself (see ProfilerOverlay) without attaching a
+ * profiler. The latest times of each phase are kept in
+ * preallocated ring buffers (see RollingSamples).
+ *
+ * Usage:
+ *     long start = FrameProfiler.start();
+ *     ... the work of the phase ...
+ *     FrameProfiler.record(FrameProfiler.Phase.UPDATE, start);
+ *
+ * Each phase is recorded by one thread only (the render or
+ * the simulation thread), so recording needs no locking.
+ *
+ * NOTE(max): OpenGL runs asynchronously, so the render phases
+ *            measure the time taken to issue the drawing, not
+ *            the time the GPU spends on it.
+ *
+ * @author Max
+ */
+public class FrameProfiler {
+
+    public static final int SAMPLES_PER_PHASE = 240; // The amount of latest times kept for each phase.
+
+    /**
+     * The phases that are timed.
+     */
+    public enum Phase {
+        FRAME("Frame"), // The time between the starts of two frames (render thread).
+        INPUT("Input"), // Reading the keyboard and mouse (render thread).
+        UPDATE("Update"), // A tick of the tile set, AI included (simulation thread).
+        AI("AI"), // The AI of the enemies within a tick (simulation thread).
+        TILE_LAYER("Tiles"), // Refreshing and drawing the cached tiles (render thread).
+        ENTITIES("Entities"), // Drawing the item stacks and entities (render thread).
+        ENVIRONMENT("Environment"), // Drawing the environment effects (render thread).
+        COMPOSITE("Fade/vignette"), // Drawing the fade and the vignette (render thread).
+        POST_RENDER("Post render"); // Drawing on top of everything, like the hud (render thread).
+
+        private final String label; // The name shown for the phase.
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Gets the name shown for this phase.
+         * @return The label of the phase.
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values(); // Every phase (values() makes a copy each call).
+    private static final RollingSamples[] times = new RollingSamples[PHASES.length]; // The latest times of each phase.
+    private static volatile boolean enabled = true; // Whether phases are timed.
+    private static long lastFrame = 0; // The time the last frame started at.
+
+    static {
+        for(int i = 0; i < times.length; i++)
+            times[i] = new RollingSamples(SAMPLES_PER_PHASE);
+    }
+
+    /**
+     * Sets whether phases are timed. While disabled
+     * start and record do nothing.
+     * @param v True to time the phases.
+     */
+    public static void setEnabled(boolean v) {
+        enabled = v;
+    }
+
+    /**
+     * Checks whether phases are timed.
+     * @return Whether the profiler is enabled.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets the time a phase starts at.
+     * @return The current time in nanoseconds (0 while disabled).
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time taken by a phase.
+     * @param phase The phase that ended.
+     * @param start The time the phase started at (see start).
+     */
+    public static void record(Phase phase, long start) {
+        if(enabled && start != 0)
+            times[phase.ordinal()].record(System.nanoTime() - start);
+    }
+
+    /**
+     * Records the time taken by a phase that was
+     * timed in parts (like the AI of each enemy).
+     * @param phase The phase that ended.
+     * @param nanos The time taken by all of its parts in nanoseconds.
+     */
+    public static void recordDuration(Phase phase, long nanos) {
+        if(enabled)
+            times[phase.ordinal()].record(nanos);
+    }
+
+    /**
+     * Marks the start of a frame, recording the time
+     * since the last frame started. Called once per frame
+     * on the render thread.
+     * @return The time since the last frame started in nanoseconds (0 if unknown).
+     */
+    public static long frame() {
+        if(!enabled) {
+            lastFrame = 0;
+            return 0;
+        }
+        final long now = System.nanoTime();
+        final long frameTime = lastFrame == 0 ? 0 : now - lastFrame;
+        if(frameTime != 0)
+            times[Phase.FRAME.ordinal()].record(frameTime);
+        lastFrame = now;
+        return frameTime;
+    }
+
+    /**
+     * Gets the render phase that took the longest
+     * the last time it was recorded.
+     * @return The slowest render phase (null if none was recorded).
+     */
+    public static Phase getSlowestRenderPhase() {
+        Phase slowest = null;
+        long longest = 0;
+        for(Phase phase : PHASES) {
+            if(phase == Phase.FRAME || phase == Phase.UPDATE || phase == Phase.AI)
+                continue;
+            final long latest = times[phase.ordinal()].get(0);
+            if(latest > longest) {
+                longest = latest;
+                slowest = phase;
+            }
+        }
+        return slowest;
+    }
+
+    /**
+     * Gets the latest times of a phase.
+     * @param phase The phase.
+     * @return The times of the phase in nanoseconds.
+     */
+    public static RollingSamples getTimes(Phase phase) {
+        return times[phase.ordinal()];
+    }
+
+    /**
+     * Works out the statistics of every phase
+     * (see RollingSamples.computeStatistics).
+     */
+    public static void computeStatistics() {
+        for(RollingSamples samples : times)
+            samples.computeStatistics();
+    }
+
+    /**
+     * Forgets the times of every phase.
+     */
+    public static void reset() {
+        for(RollingSamples samples : times)
+            samples.clear();
+        lastFrame = 0;
+    }
+}
@@ -0,0 +1,137 @@
+package com.magneticstudio.transience.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * This class keeps the pixels of generated images
+ * on the disk, so an image generator with the same
+ * parameters doesn't have to run again on later launches.
+ *
+ * Each image is one file named after the hash of its
+ * cache key. The file starts with the key itself and
+ * the image's dimensions, so an entry that doesn't
+ * match (or is damaged) is simply generated again.
+ *
+ * @author Max
+ */
+public class GeneratedImageCache {
+
+    public static final String DEFAULT_DIRECTORY = "cache/generated/"; // The default directory of the cache.
+    private static final int MAGIC = 0x54474943; // Marks a file of the cache.
+    private static final int VERSION = 1; // The version of the file layout.
+
+    private final File directory; // The directory the cache files are in.
+
+    /**
+     * Creates a new generated image cache in
+     * the default directory.
+     */
+    public GeneratedImageCache() {
+        this(new File(DEFAULT_DIRECTORY));
+    }
+
+    /**
+     * Creates a new generated image cache in
+     * the specified directory.
+     * @param directory The directory of the cache files.
+     */
+    public GeneratedImageCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the directory of the cache files.
+     * @return The directory of the cache.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Reads the pixels of a generated image.
+     * @param key The cache key of the generator.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @return The RGBA pixels (null if they aren't cached).
+     */
+    public ByteBuffer load(String key, int width, int height) {
+        File file = fileOf(key);
+        if(!file.isFile())
+            return null;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(key)
+                || in.readInt() != width || in.readInt() != height)
+                return null;
+            byte[] pixels = new byte[width * height * 4];
+            in.readFully(pixels);
+            return ByteBuffer.wrap(pixels);
+        }
+        catch(IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the pixels of a generated image. Failing to
+     * write is not an error, the image is just generated
+     * again next time.
+     * @param key The cache key of the generator.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param pixels The RGBA pixels (starting at the buffer's position).
+     * @return Whether the pixels were written.
+     */
+    public boolean store(String key, int width, int height, ByteBuffer pixels) {
+        if(!directory.isDirectory() && !directory.mkdirs())
+            return false;
+        File file = fileOf(key);
+        File temporary = new File(directory, file.getName() + ".tmp");
+        byte[] bytes = new byte[width * height * 4];
+        pixels.duplicate().get(bytes);
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(key);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.write(bytes);
+        }
+        catch(IOException e) {
+            temporary.delete();
+            return false;
+        }
+        try {
+            // Moving the finished file into place keeps other launches from reading half of it.
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        }
+        catch(IOException e) {
+            temporary.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Gets the file the pixels of a generator are kept in.
+     * @param key The cache key of the generator.
+     * @return The cache file.
+     */
+    private File fileOf(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for(int i = 0; i < 10; i++)
+                name.append(String.format("%02x", hash[i]));
+            return new File(directory, name + ".rgba");
+        }
+        catch(NoSuchAlgorithmException e) {
+            return new File(directory, Integer.toHexString(key.hashCode()) + ".rgba");
+        }
+    }
+}
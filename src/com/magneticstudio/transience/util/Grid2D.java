@@ -0,0 +1,143 @@
+package com.magneticstudio.transience.util;
+
+/**
+ * This interface defines the functions of a 2d grid
+ * of elements that the game reads and writes, so that
+ * the storage behind a grid (dense or chunked) can
+ * be picked based on the size of the grid.
+ *
+ * @param <T> An object to be contained within the grid.
+ * @author Max
+ */
+public interface Grid2D<T> {
+
+    /**
+     * @return Width of the grid.
+     */
+    int getWidth();
+
+    /**
+     * @return Height of the grid.
+     */
+    int getHeight();
+
+    /**
+     * Gets an element in specified coordinates.
+     * @param x X coordinate.
+     * @param y Y coordinate.
+     * @return Object in those coordinates (null if out of bounds).
+     */
+    T getElement(int x, int y);
+
+    /**
+     * Gets an element in specified coordinates.
+     * @param location Coordinate.
+     * @return Object in those coordinates (null if out of bounds).
+     */
+    T getElement(IntPoint location);
+
+    /**
+     * Places an element in specified coordinates.
+     * @param elem Element.
+     * @param x X coordinate.
+     * @param y Y coordinate.
+     * @return True if the element was successfully placed in the specified coordinates.
+     */
+    boolean setElement(T elem, int x, int y);
+
+    /**
+     * Places an element in specified coordinates.
+     * @param elem Element.
+     * @param location Coordinate.
+     * @return True if the element was successfully placed in the specified coordinates.
+     */
+    boolean setElement(T elem, IntPoint location);
+
+    /**
+     * Places an element in the specified coordinates if a certain
+     * condition is met.
+     * @param elem The element to place in the specified location.
+     * @param pred The predicate to determine the condition.
+     * @param x The X value of the location to set the element in.
+     * @param y The Y value of the location to set the element in.
+     * @return Whether the element was successfully place in the specified location.
+     */
+    boolean setElementIf(T elem, ArrayList2D.If<T> pred, int x, int y);
+
+    /**
+     * Fills the grid with specified type.
+     * @param type The type to place in every cell.
+     */
+    void fill(T type);
+
+    /**
+     * Fills a rectangular area of the grid (clipped to its size)
+     * with the specified type.
+     * @param type The type to place in the area.
+     * @param x The X value of the upper left corner of the area.
+     * @param y The Y value of the upper left corner of the area.
+     * @param w The width of the area.
+     * @param h The height of the area.
+     */
+    void fillRect(T type, int x, int y, int w, int h);
+
+    /**
+     * Scans the entire grid and performs action on each element.
+     * @param feobj ForEach interface to dictate action for each element.
+     */
+    void forEach(ArrayList2D.ForEach<T> feobj);
+
+    /**
+     * Scans a rectangular area of the grid (clipped to its size)
+     * row by row and performs action on each element along with
+     * its coordinates.
+     * @param x The X value of the upper left corner of the area.
+     * @param y The Y value of the upper left corner of the area.
+     * @param w The width of the area.
+     * @param h The height of the area.
+     * @param feobj ForEachAt interface to dictate action for each element.
+     */
+    void forEachInRect(int x, int y, int w, int h, ArrayList2D.ForEachAt<T> feobj);
+
+    /**
+     * Checks whether a rectangular area of the grid only holds
+     * the grid's empty element, without looking at each cell.
+     * This is a fast path: it may return false for an empty area
+     * if the grid can't tell cheaply, but never returns true for
+     * an area holding something.
+     * @param x The X value of the upper left corner of the area.
+     * @param y The Y value of the upper left corner of the area.
+     * @param w The width of the area.
+     * @param h The height of the area.
+     * @return True if the area is known to be empty.
+     */
+    boolean isRegionEmpty(int x, int y, int w, int h);
+
+    /**
+     * Adds a listener that is told about every cell whose
+     * element changes.
+     * @param listener The listener to add.
+     */
+    void addChangeListener(ChangeListener<T> listener);
+
+    /**
+     * Removes a listener added with addChangeListener.
+     * @param listener The listener to remove.
+     */
+    void removeChangeListener(ChangeListener<T> listener);
+
+    /**
+     * Interface for listening to changes of the cells of a grid.
+     * @param <T> Generic type.
+     */
+    interface ChangeListener<T> {
+        /**
+         * Called after the element of a cell changed.
+         * @param old The element the cell held before.
+         * @param elem The element the cell holds now.
+         * @param x The X value of the cell's location.
+         * @param y The Y value of the cell's location.
+         */
+        void onElementChanged(T old, T elem, int x, int y);
+    }
+}
@@ -1,15 +1,22 @@
 package com.magneticstudio.transience.util;
 
-import org.newdawn.slick.Graphics;
 import org.newdawn.slick.Image;
 import org.newdawn.slick.SlickException;
 
+import java.nio.ByteBuffer;
+
 /**
  * This interface simply defines a function that
  * may be implemented by any class that generates
  * an image object with special effects that have
  * need each pixel to be calculated.
  *
+ * Generators compute their pixels into a plain RGBA
+ * buffer, which is uploaded as a single texture. A
+ * generator that describes its parameters with a cache
+ * key is only run once; later requests (even from later
+ * launches) read its pixels from the generated image cache.
+ *
  * NOTE: THIS SHOULD NOT BE USED DURING RUNTIME RENDERING
  * AS THE CPU IS EXTREMELY SLOW COMPARED TO THE GPU
  *
@@ -17,9 +24,39 @@ import org.newdawn.slick.SlickException;
  */
 public interface ImageGenerator {
 
+    /**
+     * Gets the width of the generated pixels.
+     * @return Width of the generated pixels.
+     */
+    int getImageWidth();
+
+    /**
+     * Gets the height of the generated pixels.
+     * @return Height of the generated pixels.
+     */
+    int getImageHeight();
+
+    /**
+     * Computes the effect into a buffer, row by row, with
+     * four bytes (red, green, blue, alpha) per pixel.
+     * @param pixels The buffer to write the pixels into (starting at its position).
+     */
+    void generatePixels(ByteBuffer pixels);
+
+    /**
+     * Gets a key that describes every parameter the
+     * generated pixels depend on.
+     * @return The cache key (null if the pixels shouldn't be cached).
+     */
+    default String getCacheKey() {
+        return null;
+    }
+
     /**
      * Renders an effect onto an image.
      * @return The image with the rendered effect on it.
      */
-    Image generate() throws SlickException;
+    default Image generate() throws SlickException {
+        return Images.generate(this);
+    }
 }
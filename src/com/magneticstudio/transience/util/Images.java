@@ -1,5 +1,11 @@
 package com.magneticstudio.transience.util;
 
+import org.newdawn.slick.Image;
+import org.newdawn.slick.ImageBuffer;
+import org.newdawn.slick.SlickException;
+
+import java.nio.ByteBuffer;
+
 /**
  * This class is a simple collection of
  * pre-loaded images. We have to load images like
@@ -13,5 +19,66 @@ package com.magneticstudio.transience.util;
  */
 public class Images {
 
+    private static GeneratedImageCache generatedCache = new GeneratedImageCache(); // Pixels of generated images.
+
+    /**
+     * Gets the cache that generated pixels are kept in.
+     * @return The generated image cache.
+     */
+    public static GeneratedImageCache getGeneratedCache() {
+        return generatedCache;
+    }
+
+    /**
+     * Sets the cache that generated pixels are kept in.
+     * @param cache The new generated image cache (null to not cache generated images).
+     */
+    public static void setGeneratedCache(GeneratedImageCache cache) {
+        generatedCache = cache;
+    }
+
+    /**
+     * Runs an image generator (or reads its pixels from
+     * the generated image cache) and uploads the result.
+     * @param generator The generator to run.
+     * @return The generated image.
+     */
+    public static Image generate(ImageGenerator generator) throws SlickException {
+        final int width = generator.getImageWidth();
+        final int height = generator.getImageHeight();
+        final String key = generator.getCacheKey();
+
+        ByteBuffer pixels = null;
+        if(key != null && generatedCache != null)
+            pixels = generatedCache.load(key, width, height);
+        if(pixels == null) {
+            pixels = ByteBuffer.allocate(width * height * 4);
+            generator.generatePixels(pixels);
+            pixels.rewind();
+            if(key != null && generatedCache != null)
+                generatedCache.store(key, width, height, pixels);
+        }
+        return fromPixels(width, height, pixels);
+    }
 
-}
\ No newline at end of file
+    /**
+     * Creates an image out of RGBA pixels with
+     * a single texture upload.
+     * @param width Width of the image.
+     * @param height Height of the image.
+     * @param pixels The pixels, row by row, four bytes (red, green, blue, alpha) each.
+     * @return The new image.
+     */
+    public static Image fromPixels(int width, int height, ByteBuffer pixels) throws SlickException {
+        ImageBuffer buffer = new ImageBuffer(width, height);
+        byte[] texture = buffer.getRGBA();
+        final int textureStride = buffer.getTexWidth() * 4;
+        final int start = pixels.position();
+        for(int y = 0; y < height; y++) {
+            pixels.position(start + y * width * 4);
+            pixels.get(texture, y * textureStride, width * 4);
+        }
+        pixels.position(start);
+        return buffer.getImage();
+    }
+}
@@ -0,0 +1,126 @@
+package com.magneticstudio.transience.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non negative values with a fixed relative
+ * precision, in the style of an HDR histogram. Every power
+ * of two is split into 32 buckets of the same width, so any
+ * recorded value is known to about 3% no matter how large it
+ * is, and the whole range of a long fits in under 2000 buckets.
+ *
+ * The buckets are allocated up front, and recording is a couple
+ * of atomic increments, so it may be done from any thread and
+ * in code that runs every frame.
+ *
+ * @author Max
+ */
+public class LogHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5; // log2 of the buckets per power of two.
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // The buckets per power of two.
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS; // Enough buckets for every long.
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS); // The amount of values in each bucket.
+    private final LongAdder count = new LongAdder(); // The amount of recorded values.
+    private final LongAdder sum = new LongAdder(); // The sum of the recorded values.
+    private final AtomicLong max = new AtomicLong(); // The largest recorded value.
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     * @param value The value to record.
+     */
+    public void record(long value) {
+        final long v = Math.max(value, 0);
+        counts.incrementAndGet(indexOf(v));
+        count.increment();
+        sum.add(v);
+        long current;
+        while(v > (current = max.get()) && !max.compareAndSet(current, v));
+    }
+
+    /**
+     * Gets the amount of recorded values.
+     * @return The amount of values.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the average of the recorded values.
+     * @return The mean (0 if nothing was recorded).
+     */
+    public double getMean() {
+        final long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / (double) n;
+    }
+
+    /**
+     * Gets the largest recorded value.
+     * @return The maximum (0 if nothing was recorded).
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets the value below which the specified share of
+     * the recorded values lie. The result is the highest
+     * value of the bucket the percentile falls in.
+     * @param percentile The percentile (0 to 100).
+     * @return The value at the percentile (0 if nothing was recorded).
+     */
+    public long getPercentile(double percentile) {
+        final long n = count.sum();
+        if(n == 0)
+            return 0;
+        final long rank = Math.max(1, (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100.0 * n));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if(seen >= rank)
+                return Math.min(highestValueOf(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Forgets every recorded value.
+     */
+    public void reset() {
+        for(int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * Gets the bucket a value is counted in.
+     * @param v The value (not negative).
+     * @return The index of the bucket.
+     */
+    static int indexOf(long v) {
+        if(v < SUB_BUCKETS)
+            return (int) v;
+        final int exponent = 63 - Long.numberOfLeadingZeros(v);
+        final int sub = (int) (v >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Gets the highest value counted in a bucket.
+     * @param index The index of the bucket.
+     * @return The highest value of the bucket.
+     */
+    static long highestValueOf(int index) {
+        if(index < SUB_BUCKETS)
+            return index;
+        final int shift = index / SUB_BUCKETS - 1;
+        final long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
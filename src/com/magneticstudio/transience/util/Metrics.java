@@ -0,0 +1,151 @@
+package com.magneticstudio.transience.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is the registry of the metrics the game
+ * keeps about itself while it's played: counters (things
+ * that happened), gauges (values read when asked for) and
+ * histograms (distributions, see LogHistogram).
+ *
+ * Metrics are looked up by name once and kept in a field,
+ * so updating them costs no lookup:
+ *     private static final Metrics.Counter STAIRS = Metrics.counter("level.stairs");
+ *     ...
+ *     STAIRS.increment();
+ *
+ * Every metric may be updated from any thread.
+ *
+ * @author Max
+ */
+public class Metrics {
+
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>(); // Every counter by name.
+    private static final Map<String, Gauge> gauges = new ConcurrentHashMap<>(); // Every gauge by name.
+    private static final Map<String, LogHistogram> histograms = new ConcurrentHashMap<>(); // Every histogram by name.
+
+    /**
+     * Gets the counter with the specified name,
+     * creating it if it doesn't exist yet.
+     * @param name The name of the counter.
+     * @return The counter.
+     */
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    /**
+     * Gets the histogram with the specified name,
+     * creating it if it doesn't exist yet.
+     * @param name The name of the histogram.
+     * @return The histogram.
+     */
+    public static LogHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new LogHistogram());
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge
+     * with the same name.
+     * @param name The name of the gauge.
+     * @param gauge Reads the value of the gauge.
+     */
+    public static void gauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Reads the current value of a gauge.
+     * @param name The name of the gauge.
+     * @return The value of the gauge (NaN if there is no such gauge).
+     */
+    public static double readGauge(String name) {
+        Gauge gauge = gauges.get(name);
+        return gauge == null ? Double.NaN : gauge.read();
+    }
+
+    /**
+     * Writes every metric in a readable form, one per line
+     * and sorted by name. Histograms show their count, mean,
+     * 50th, 95th and 99th percentile and maximum.
+     * @return The report of every metric.
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder();
+        new TreeMap<>(counters).forEach((name, c) ->
+            report.append(name).append(" = ").append(c.get()).append('\n'));
+        new TreeMap<>(gauges).forEach((name, g) ->
+            report.append(name).append(" = ").append(String.format("%.3f", g.read())).append('\n'));
+        new TreeMap<>(histograms).forEach((name, h) ->
+            report.append(name).append(String.format(
+                " = count %d, mean %.1f, p50 %d, p95 %d, p99 %d, max %d",
+                h.getCount(), h.getMean(), h.getPercentile(50), h.getPercentile(95), h.getPercentile(99), h.getMax()
+            )).append('\n'));
+        return report.toString();
+    }
+
+    /**
+     * Resets every counter and histogram
+     * (gauges stay registered).
+     */
+    public static void reset() {
+        counters.values().forEach(Counter::reset);
+        histograms.values().forEach(LogHistogram::reset);
+    }
+
+    /**
+     * A count of things that happened.
+     */
+    public static final class Counter {
+        private final LongAdder value = new LongAdder(); // The count.
+
+        private Counter() {
+
+        }
+
+        /**
+         * Adds one to the count.
+         */
+        public void increment() {
+            value.increment();
+        }
+
+        /**
+         * Adds to the count.
+         * @param amount The amount to add.
+         */
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        /**
+         * Gets the count.
+         * @return The count.
+         */
+        public long get() {
+            return value.sum();
+        }
+
+        /**
+         * Sets the count back to 0.
+         */
+        public void reset() {
+            value.reset();
+        }
+    }
+
+    /**
+     * This interface is used to read a value
+     * when a gauge is asked for it.
+     */
+    public interface Gauge {
+        /**
+         * Reads the value of the gauge.
+         * @return The current value.
+         */
+        double read();
+    }
+}
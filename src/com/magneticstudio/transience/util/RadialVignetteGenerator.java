@@ -2,10 +2,12 @@ package com.magneticstudio.transience.util;
 
 import com.magneticstudio.transience.ui.Game;
 import org.newdawn.slick.Color;
-import org.newdawn.slick.Graphics;
 import org.newdawn.slick.Image;
 import org.newdawn.slick.SlickException;
 
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
+
 /**
  * An image generator that generates a vignette
  * from parameters specified through the constructor
@@ -106,6 +108,7 @@ public class RadialVignetteGenerator implements ImageGenerator {
      * Gets the image width.
      * @return Image width.
      */
+    @Override
     public int getImageWidth() {
         return imageWidth;
     }
@@ -122,6 +125,7 @@ public class RadialVignetteGenerator implements ImageGenerator {
      * Gets the image height.
      * @return Image height.
      */
+    @Override
     public int getImageHeight() {
         return imageHeight;
     }
@@ -252,35 +256,67 @@ public class RadialVignetteGenerator implements ImageGenerator {
     }
 
     /**
-     * Renders a vignette onto an image object.
-     * @return The image with an effect rendered onto it.
+     * Gets a key that describes every parameter
+     * of the vignette (except the upscale, which
+     * is applied after generating the pixels).
+     * @return The cache key.
      */
     @Override
-    public Image generate() throws SlickException {
-        Image canvas = new Image(imageWidth, imageHeight);
-        Graphics graphics = canvas.getGraphics();
-        graphics.setAntiAlias(false);
-
-        double lowestRadius = radius - (radius * softness);
-        double softnessRadRange = radius - lowestRadius;
-        float alphaScale = color.a / 1f;
+    public String getCacheKey() {
+        return "radial-vignette:" + imageWidth + "x" + imageHeight
+            + ":" + centerX + "," + centerY + ":" + radius + ":" + softness + ":" + inverted
+            + ":" + color.r + "," + color.g + "," + color.b + "," + color.a;
+    }
 
-        for(int y = 0; y < imageHeight; y++) {
+    /**
+     * Computes the vignette into a pixel buffer. Rows are
+     * computed in parallel, and the distance of a pixel is
+     * compared squared, so the square root is only taken
+     * for pixels inside of the soft edge.
+     * @param pixels The buffer to write the pixels into (starting at its position).
+     */
+    @Override
+    public void generatePixels(ByteBuffer pixels) {
+        final double lowestRadius = radius - (radius * softness);
+        final double softnessRadRange = radius - lowestRadius;
+        final double radiusSq = (double) radius * radius;
+        final double lowestRadiusSq = lowestRadius < 0 ? -1 : lowestRadius * lowestRadius;
+        final float alphaScale = color.a;
+        final byte r = (byte) color.getRed(), g = (byte) color.getGreen(), b = (byte) color.getBlue();
+        final int stride = imageWidth * 4;
+        final byte[] out = new byte[stride * imageHeight];
+
+        IntStream.range(0, imageHeight).parallel().forEach(y -> {
+            final double dy = y - centerY;
+            final double dySq = dy * dy;
+            int i = y * stride;
             for(int x = 0; x < imageWidth; x++) {
-                double curRadius = Math.sqrt( Math.pow( x - centerX, 2 ) + Math.pow( y - centerY, 2 ));
+                final double dx = x - centerX;
+                final double distSq = dx * dx + dySq;
                 float alpha = 1f;
-                if(curRadius <= radius && curRadius >= lowestRadius)
-                    alpha = (float) ((curRadius - lowestRadius) / softnessRadRange);
-                else if(curRadius < lowestRadius)
+                if(distSq < lowestRadiusSq)
                     alpha = 0f;
+                else if(distSq <= radiusSq)
+                    alpha = (float) ((Math.sqrt(distSq) - lowestRadius) / softnessRadRange);
 
-                Color adjusted = new Color(color.r, color.g, color.b, alphaScale * (inverted ? 1.0f - alpha : alpha));
-                graphics.setColor(adjusted);
-                graphics.drawRect(x, y, 1, 1);
+                out[i++] = r;
+                out[i++] = g;
+                out[i++] = b;
+                out[i++] = (byte) Math.round(255f * alphaScale * (inverted ? 1.0f - alpha : alpha));
             }
-        }
+        });
+        pixels.put(out);
+    }
+
+    /**
+     * Renders a vignette onto an image object.
+     * @return The image with an effect rendered onto it.
+     */
+    @Override
+    public Image generate() throws SlickException {
+        Image canvas = Images.generate(this);
         if(upscale == 1)
-            return canvas.copy();
+            return canvas;
         else
             return canvas.getScaledCopy(upscale);
     }
@@ -0,0 +1,95 @@
+package com.magneticstudio.transience.util;
+
+import java.util.SplittableRandom;
+
+/**
+ * This class hands out independent streams of random numbers,
+ * all derived from one seed for the session. A stream is picked
+ * by a name (the subsystem or phase using it) and an index (like
+ * the number of a floor), and the same seed, name and index always
+ * give the same stream, no matter which thread asks for it or in
+ * what order. So a floor can be generated again from the seed of a
+ * bug report, and floors can be generated in parallel without all
+ * of them drawing from (and contending on) one shared generator.
+ *
+ * A stream is a SplittableRandom, which isn't thread safe: each
+ * stream should be used by one thread at a time, and split for
+ * work that is handed to another thread.
+ *
+ * @author Max
+ */
+public final class RandomStreams {
+
+    public static final String SEED_PROPERTY = "transience.seed"; // The system property the session seed may be set with.
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L; // Spreads consecutive indices apart (from SplitMix64).
+
+    private final long seed; // The seed every stream is derived from.
+
+    /**
+     * Creates a new RandomStreams object.
+     * @param seed The seed every stream is derived from.
+     */
+    public RandomStreams(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Creates the streams of a session, seeded by the
+     * SEED_PROPERTY system property if it's set, or by
+     * a random seed otherwise.
+     * @return A new RandomStreams object.
+     */
+    public static RandomStreams forSession() {
+        Long seed = Long.getLong(SEED_PROPERTY);
+        return new RandomStreams(seed != null ? seed : mix(System.nanoTime() ^ System.currentTimeMillis()));
+    }
+
+    /**
+     * Gets the seed every stream is derived from.
+     * @return The seed of the session.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the stream of a subsystem.
+     * @param name The name of the subsystem.
+     * @return A new random number generator, the same every time for this seed and name.
+     */
+    public SplittableRandom stream(String name) {
+        return stream(name, 0);
+    }
+
+    /**
+     * Gets one of the streams of a subsystem.
+     * @param name The name of the subsystem.
+     * @param index The index of the stream (like the number of a floor).
+     * @return A new random number generator, the same every time for this seed, name and index.
+     */
+    public SplittableRandom stream(String name, long index) {
+        return new SplittableRandom(mix(mix(seed ^ name.hashCode()) + index * GOLDEN_GAMMA));
+    }
+
+    /**
+     * Scrambles the bits of a number (the finalizer of SplitMix64),
+     * so seeds that are close give streams that are unrelated.
+     * @param z The number to scramble.
+     * @return The scrambled number.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Gets a string representation of this object.
+     * @return String representation of this object.
+     */
+    @Override
+    public String toString() {
+        return "RandomStreams(seed " + seed + ")";
+    }
+}
@@ -0,0 +1,74 @@
+package com.magneticstudio.transience.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * This class hands work that has to touch OpenGL (destroying
+ * fonts and images, for example) over to the render thread.
+ * OpenGL may only be used on the thread that owns the context,
+ * so anything the simulation thread does that frees a GL
+ * resource is queued here and run at the start of the next frame.
+ *
+ * @author Max
+ */
+public class RenderTasks {
+
+    private static final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>(); // Tasks waiting for the render thread.
+    private static volatile Thread renderThread = null; // The thread owning the OpenGL context.
+
+    /**
+     * Marks the calling thread as the render thread.
+     * Called once by the game when the graphics are set up.
+     */
+    public static void bindToCurrentThread() {
+        renderThread = Thread.currentThread();
+    }
+
+    /**
+     * Checks whether the calling thread is the render thread.
+     * Before a render thread is bound every thread counts as one,
+     * so loading code can run as usual before the game starts.
+     * @return Whether OpenGL may be used on the calling thread.
+     */
+    public static boolean isRenderThread() {
+        Thread owner = renderThread;
+        return owner == null || owner == Thread.currentThread();
+    }
+
+    /**
+     * Runs a task on the render thread. On the render
+     * thread itself the task runs right away, otherwise
+     * it runs at the start of the next frame.
+     * @param task The task to run.
+     */
+    public static void run(Runnable task) {
+        if(isRenderThread())
+            task.run();
+        else
+            tasks.add(task);
+    }
+
+    /**
+     * Runs the tasks that were handed over to the render
+     * thread. Must be called on the render thread.
+     * @return The amount of tasks run.
+     */
+    public static int runPending() {
+        int ran = 0;
+        Runnable task;
+        while((task = tasks.poll()) != null) {
+            task.run();
+            ran++;
+        }
+        return ran;
+    }
+
+    /**
+     * Gets the amount of tasks waiting for the render thread.
+     * @return The amount of pending tasks.
+     */
+    public static int getPendingCount() {
+        return tasks.size();
+    }
+}
@@ -0,0 +1,222 @@
+package com.magneticstudio.transience.util;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of resources that are expensive to create
+ * (fonts, textures, ...) and can be shared. Every resource
+ * handed out by acquire is counted as a reference and must
+ * be given back with release once it isn't used anymore.
+ *
+ * Resources that are no longer referenced are kept around
+ * (so acquiring them again is just a lookup) until either
+ * more than the idle limit of them piles up, in which case the
+ * least recently released ones are disposed, or evictIdle is
+ * called explicitly.
+ *
+ * @param <K> The key a resource is identified by.
+ * @param <V> The resource.
+ * @author Max
+ */
+public class ResourceCache<K, V> {
+
+    private final Map<K, Entry<K, V>> entries = new HashMap<>(); // Every cached resource by key.
+    private final Map<V, Entry<K, V>> byValue = new IdentityHashMap<>(); // Every cached resource by itself.
+    private final LinkedHashMap<K, Entry<K, V>> idle = new LinkedHashMap<>(); // Unreferenced resources, least recently released first.
+    private final Disposer<V> disposer; // Frees a resource that is removed from the cache.
+    private int maxIdle; // The amount of unreferenced resources kept around.
+
+    private long hits = 0; // The amount of acquisitions that found the resource in the cache.
+    private long misses = 0; // The amount of acquisitions that had to create the resource.
+
+    /**
+     * Creates a new empty resource cache.
+     * @param maxIdle The amount of unreferenced resources kept around.
+     * @param disposer Frees a resource that is removed from the cache (may be null).
+     */
+    public ResourceCache(int maxIdle, Disposer<V> disposer) {
+        this.maxIdle = Math.max(maxIdle, 0);
+        this.disposer = disposer;
+    }
+
+    /**
+     * Gets the resource with the specified key, creating
+     * it if it isn't cached, and adds a reference to it.
+     * @param key The key of the resource.
+     * @param loader Creates the resource if it isn't cached.
+     * @return The resource (null if it couldn't be created).
+     */
+    public synchronized V acquire(K key, Loader<K, V> loader) {
+        Entry<K, V> entry = entries.get(key);
+        if(entry != null) {
+            hits++;
+            if(entry.references++ == 0)
+                idle.remove(key);
+            return entry.value;
+        }
+
+        misses++;
+        V value = loader.load(key);
+        if(value == null)
+            return null;
+        entry = new Entry<>(key, value);
+        entry.references = 1;
+        entries.put(key, entry);
+        byValue.put(value, entry);
+        return value;
+    }
+
+    /**
+     * Removes a reference from a resource handed out by acquire.
+     * Resources that weren't created by this cache are ignored.
+     * @param value The resource.
+     * @return Whether the resource belongs to this cache.
+     */
+    public synchronized boolean release(V value) {
+        Entry<K, V> entry = value == null ? null : byValue.get(value);
+        if(entry == null || entry.references == 0)
+            return false;
+        if(--entry.references == 0) {
+            idle.put(entry.key, entry);
+            trimIdle(maxIdle);
+        }
+        return true;
+    }
+
+    /**
+     * Disposes every resource that isn't referenced.
+     */
+    public synchronized void evictIdle() {
+        trimIdle(0);
+    }
+
+    /**
+     * Sets the amount of unreferenced resources kept around.
+     * @param maxIdle The new limit.
+     */
+    public synchronized void setMaxIdle(int maxIdle) {
+        this.maxIdle = Math.max(maxIdle, 0);
+        trimIdle(this.maxIdle);
+    }
+
+    /**
+     * Gets the amount of unreferenced resources kept around.
+     * @return The idle limit.
+     */
+    public synchronized int getMaxIdle() {
+        return maxIdle;
+    }
+
+    /**
+     * Gets the amount of references to a resource.
+     * @param key The key of the resource.
+     * @return The amount of references (0 if not cached).
+     */
+    public synchronized int getReferenceCount(K key) {
+        Entry<K, V> entry = entries.get(key);
+        return entry == null ? 0 : entry.references;
+    }
+
+    /**
+     * Gets the amount of cached resources.
+     * @return The amount of cached resources.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the amount of cached resources that aren't referenced.
+     * @return The amount of idle resources.
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Gets the amount of acquisitions that found
+     * the resource in the cache.
+     * @return The amount of cache hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the amount of acquisitions that had
+     * to create the resource.
+     * @return The amount of cache misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the share of acquisitions that found
+     * the resource in the cache.
+     * @return The hit rate (0 to 1, 0 if nothing was acquired).
+     */
+    public synchronized double getHitRate() {
+        return hits + misses == 0 ? 0 : hits / (double) (hits + misses);
+    }
+
+    /**
+     * Disposes the least recently released resources
+     * until only the specified amount is left idle.
+     * @param keep The amount of idle resources to keep.
+     */
+    private void trimIdle(int keep) {
+        Iterator<Entry<K, V>> it = idle.values().iterator();
+        while(idle.size() > keep && it.hasNext()) {
+            Entry<K, V> entry = it.next();
+            it.remove();
+            entries.remove(entry.key);
+            byValue.remove(entry.value);
+            if(disposer != null)
+                disposer.dispose(entry.value);
+        }
+    }
+
+    /**
+     * A cached resource along with its reference count.
+     */
+    private static final class Entry<K, V> {
+        private final K key; // The key of the resource.
+        private final V value; // The resource.
+        private int references = 0; // The amount of references to the resource.
+
+        private Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * This interface is used to create
+     * a resource that isn't cached yet.
+     */
+    public interface Loader<K, V> {
+        /**
+         * Creates the resource with the specified key.
+         * @param key The key of the resource.
+         * @return The resource (null if it couldn't be created).
+         */
+        V load(K key);
+    }
+
+    /**
+     * This interface is used to free a
+     * resource that is removed from the cache.
+     */
+    public interface Disposer<V> {
+        /**
+         * Frees the resource.
+         * @param value The resource.
+         */
+        void dispose(V value);
+    }
+}
@@ -0,0 +1,146 @@
+package com.magneticstudio.transience.util;
+
+import java.util.Arrays;
+
+/**
+ * This class keeps the latest samples of a measurement
+ * (frame or phase times, for example) in a ring buffer and
+ * works out percentiles over them. Every buffer is allocated
+ * up front, so neither recording nor computing the statistics
+ * creates garbage.
+ *
+ * NOTE(max): Samples may be recorded by one thread while another
+ *            computes the statistics. The statistics may then miss
+ *            the latest sample or two, which is fine for a display.
+ *
+ * @author Max
+ */
+public class RollingSamples {
+
+    private final long[] samples; // The ring buffer of samples.
+    private final long[] sorted; // Scratch buffer the samples are sorted in.
+    private volatile int next = 0; // The index the next sample is written at.
+    private volatile int count = 0; // The amount of samples in the buffer.
+
+    private long p50, p95, p99, max; // The statistics of the last computeStatistics call.
+
+    /**
+     * Creates new rolling samples.
+     * @param capacity The amount of latest samples kept.
+     */
+    public RollingSamples(int capacity) {
+        samples = new long[Math.max(capacity, 1)];
+        sorted = new long[samples.length];
+    }
+
+    /**
+     * Records a sample, replacing the oldest one
+     * once the buffer is full.
+     * @param value The sample.
+     */
+    public void record(long value) {
+        final int index = next;
+        samples[index] = value;
+        next = index + 1 == samples.length ? 0 : index + 1;
+        if(count < samples.length)
+            count++;
+    }
+
+    /**
+     * Gets a sample by its age.
+     * @param age How many samples ago it was recorded (0 is the latest).
+     * @return The sample (0 if there is no sample that old).
+     */
+    public long get(int age) {
+        if(age < 0 || age >= count)
+            return 0;
+        int index = next - 1 - age;
+        return samples[index < 0 ? index + samples.length : index];
+    }
+
+    /**
+     * Gets the amount of samples kept.
+     * @return The amount of samples in the buffer.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Gets the amount of samples that can be kept.
+     * @return The capacity of the buffer.
+     */
+    public int capacity() {
+        return samples.length;
+    }
+
+    /**
+     * Forgets every sample.
+     */
+    public void clear() {
+        count = 0;
+        next = 0;
+        p50 = p95 = p99 = max = 0;
+    }
+
+    /**
+     * Works out the percentiles and the maximum
+     * of the samples that are currently kept.
+     */
+    public void computeStatistics() {
+        final int n = count;
+        if(n == 0) {
+            p50 = p95 = p99 = max = 0;
+            return;
+        }
+        System.arraycopy(samples, 0, sorted, 0, n);
+        Arrays.sort(sorted, 0, n);
+        p50 = sorted[rank(0.50, n)];
+        p95 = sorted[rank(0.95, n)];
+        p99 = sorted[rank(0.99, n)];
+        max = sorted[n - 1];
+    }
+
+    /**
+     * Gets the median of the samples (see computeStatistics).
+     * @return The 50th percentile.
+     */
+    public long getP50() {
+        return p50;
+    }
+
+    /**
+     * Gets the 95th percentile of the samples (see computeStatistics).
+     * @return The 95th percentile.
+     */
+    public long getP95() {
+        return p95;
+    }
+
+    /**
+     * Gets the 99th percentile of the samples (see computeStatistics).
+     * @return The 99th percentile.
+     */
+    public long getP99() {
+        return p99;
+    }
+
+    /**
+     * Gets the largest of the samples (see computeStatistics).
+     * @return The maximum.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Gets the index of a percentile in a sorted buffer
+     * (nearest rank).
+     * @param percentile The percentile (0 to 1).
+     * @param n The amount of samples.
+     * @return The index of the percentile.
+     */
+    private static int rank(double percentile, int n) {
+        return Math.min(n - 1, Math.max(0, (int) Math.ceil(percentile * n) - 1));
+    }
+}
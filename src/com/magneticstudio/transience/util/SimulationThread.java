@@ -0,0 +1,136 @@
+package com.magneticstudio.transience.util;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class runs the simulation of the game on its own
+ * thread, at the fixed rate of a FixedTimestep, so that
+ * rendering never waits on the simulation (or the other way
+ * around). Slow steps, like generating a new level, only
+ * hold up the simulation thread while frames keep being drawn.
+ *
+ * Every batch of ticks runs while holding the world lock, and
+ * ends by publishing the state the render thread draws from
+ * (see WorldSnapshot). The render thread only takes the lock
+ * when it can get it right away, so it never blocks on a tick.
+ *
+ * @author Max
+ */
+public class SimulationThread {
+
+    private static final long MIN_WAIT_NANOS = 250_000L; // The shortest time the thread waits between checks.
+
+    private final FixedTimestep timestep; // Turns the passed time into ticks.
+    private final Lock worldLock; // Held while the world is changed.
+    private final Step step; // Runs one tick of the simulation.
+    private final Runnable publisher; // Publishes the state of the world after the ticks.
+    private final Thread thread; // The thread the simulation runs on.
+
+    private volatile boolean running = false; // Whether the simulation should keep running.
+    private volatile Throwable failure = null; // The error that stopped the simulation (if any).
+
+    /**
+     * Creates a new simulation thread. The thread
+     * doesn't run until start is called.
+     * @param name The name of the thread.
+     * @param timestep The fixed timestep the simulation runs at.
+     * @param worldLock The lock held while ticking and publishing.
+     * @param step Runs one tick of the simulation.
+     * @param publisher Publishes the state of the world after a batch of ticks.
+     */
+    public SimulationThread(String name, FixedTimestep timestep, Lock worldLock, Step step, Runnable publisher) {
+        this.timestep = timestep;
+        this.worldLock = worldLock;
+        this.step = step;
+        this.publisher = publisher;
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts running the simulation.
+     */
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Stops the simulation and waits for the
+     * tick that is running (if any) to finish.
+     */
+    public void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(1000);
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Checks whether the simulation is running.
+     * @return Whether the simulation is running.
+     */
+    public boolean isRunning() {
+        return running && thread.isAlive();
+    }
+
+    /**
+     * Gets the error that stopped the simulation.
+     * @return The error thrown by a tick (null if there was none).
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Runs ticks as they become due until stopped.
+     */
+    private void run() {
+        long last = System.nanoTime();
+        try {
+            while(running) {
+                final long now = System.nanoTime();
+                final int elapsed = (int) Math.min((now - last) / 1_000_000L, Integer.MAX_VALUE);
+                last += elapsed * 1_000_000L; // The part of a millisecond that is left is kept.
+
+                final int ticks = timestep.advance(elapsed);
+                if(ticks > 0) {
+                    worldLock.lock();
+                    try {
+                        for(int i = 0; i < ticks; i++)
+                            step.tick(timestep.getTickMillis());
+                        publisher.run();
+                    }
+                    finally {
+                        worldLock.unlock();
+                    }
+                }
+
+                // Waits until the next tick is due.
+                final float left = (1f - timestep.getAlpha()) * timestep.getTickMillis();
+                LockSupport.parkNanos(Math.max((long) (left * 1_000_000L), MIN_WAIT_NANOS));
+            }
+        }
+        catch(RuntimeException | Error e) {
+            failure = e;
+            running = false;
+        }
+    }
+
+    /**
+     * This interface is used to run
+     * one tick of the simulation.
+     */
+    public interface Step {
+        /**
+         * Runs one tick of the simulation.
+         * @param milliseconds The length of the tick.
+         */
+        void tick(int milliseconds);
+    }
+}
@@ -0,0 +1,203 @@
+package com.magneticstudio.transience.util;
+
+import java.util.Arrays;
+
+/**
+ * An index of rectangles on a 2d map, bucketed into a uniform
+ * grid of square cells. A rectangle is kept in every cell it
+ * touches, so finding the rectangles that overlap an area, or
+ * that are near a point, only looks at the few cells around
+ * it instead of at every rectangle.
+ *
+ * With cells at least as large as the largest rectangle, a
+ * rectangle touches at most four cells and a query looks at a
+ * handful of them, so queries take about the same time no
+ * matter how many rectangles the map holds.
+ *
+ * Rectangles are also kept in the order they were added,
+ * and can be reached by their index (see get).
+ *
+ * @param <T> An object kept with each rectangle.
+ * @author Max
+ */
+public class SpatialGrid<T> {
+
+    private static final int INITIAL_BUCKET_SIZE = 4; // The capacity a cell starts with.
+
+    private final int cellSize; // The width and height of a cell.
+    private final int columns; // The amount of cells on the x axis.
+    private final int rows; // The amount of cells on the y axis.
+    private final int[][] buckets; // The indices of the rectangles in each cell (null if none).
+    private final int[] bucketSizes; // The amount of rectangles in each cell.
+
+    private Object[] items = new Object[16]; // The object of each rectangle.
+    private int[] bounds = new int[16 * 4]; // The rectangles (x, y, width, height).
+    private int[] marks = new int[16]; // The query that last reached each rectangle.
+    private int mark = 0; // The current query (so a rectangle in several cells is reported once).
+    private int size = 0; // The amount of rectangles.
+
+    /**
+     * Creates a new empty spatial grid.
+     * @param width The width of the map.
+     * @param height The height of the map.
+     * @param cellSize The width and height of a cell (best at least the size of the largest rectangle).
+     */
+    public SpatialGrid(int width, int height, int cellSize) {
+        this.cellSize = Math.max(cellSize, 1);
+        columns = Math.max(1, (Math.max(width, 0) + this.cellSize - 1) / this.cellSize);
+        rows = Math.max(1, (Math.max(height, 0) + this.cellSize - 1) / this.cellSize);
+        buckets = new int[columns * rows][];
+        bucketSizes = new int[columns * rows];
+    }
+
+    /**
+     * Adds a rectangle to the grid. Rectangles may reach
+     * past the map; they're kept in the cells at its border.
+     * @param item The object to keep with the rectangle.
+     * @param x The X value of the upper left corner of the rectangle.
+     * @param y The Y value of the upper left corner of the rectangle.
+     * @param w The width of the rectangle.
+     * @param h The height of the rectangle.
+     */
+    public void add(T item, int x, int y, int w, int h) {
+        if(size == items.length) {
+            items = Arrays.copyOf(items, size * 2);
+            bounds = Arrays.copyOf(bounds, size * 2 * 4);
+            marks = Arrays.copyOf(marks, size * 2);
+        }
+        final int index = size++;
+        items[index] = item;
+        bounds[index * 4] = x;
+        bounds[index * 4 + 1] = y;
+        bounds[index * 4 + 2] = w;
+        bounds[index * 4 + 3] = h;
+
+        // The rectangle is kept in the cells of its edge too, as overlapping includes touching it.
+        for(int row = rowOf(y); row <= rowOf(y + h); row++) {
+            for(int column = columnOf(x); column <= columnOf(x + w); column++) {
+                final int cell = row * columns + column;
+                int[] bucket = buckets[cell];
+                if(bucket == null)
+                    bucket = buckets[cell] = new int[INITIAL_BUCKET_SIZE];
+                else if(bucketSizes[cell] == bucket.length)
+                    bucket = buckets[cell] = Arrays.copyOf(bucket, bucket.length * 2);
+                bucket[bucketSizes[cell]++] = index;
+            }
+        }
+    }
+
+    /**
+     * Checks whether an area overlaps any rectangle of the grid.
+     * Like TileSetGenerator's rooms, rectangles that only touch
+     * (one ending on the column or row the other starts at)
+     * count as overlapping.
+     * @param x The X value of the upper left corner of the area.
+     * @param y The Y value of the upper left corner of the area.
+     * @param w The width of the area.
+     * @param h The height of the area.
+     * @return Whether the area overlaps a rectangle.
+     */
+    public boolean overlapsAny(int x, int y, int w, int h) {
+        for(int row = rowOf(y); row <= rowOf(y + h); row++) {
+            for(int column = columnOf(x); column <= columnOf(x + w); column++) {
+                final int cell = row * columns + column;
+                final int[] bucket = buckets[cell];
+                for(int i = 0; i < bucketSizes[cell]; i++) {
+                    final int b = bucket[i] * 4;
+                    if(!(bounds[b + 1] + bounds[b + 3] < y || y + h < bounds[b + 1])
+                        && !(bounds[b] + bounds[b + 2] < x || x + w < bounds[b]))
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Goes through the rectangles near a point: those that
+     * have a cell within a distance of the point on both axes.
+     * A distance of 0 finds the rectangles holding the point.
+     * Each rectangle is reported once, in no particular order.
+     * @param x The X value of the point.
+     * @param y The Y value of the point.
+     * @param distance The largest distance from the point, in cells of the map.
+     * @param action The action to run for each rectangle near the point.
+     */
+    public void forEachNear(int x, int y, int distance, ArrayList2D.ForEach<T> action) {
+        final int query = ++mark;
+        for(int row = rowOf(y - distance); row <= rowOf(y + distance); row++) {
+            for(int column = columnOf(x - distance); column <= columnOf(x + distance); column++) {
+                final int cell = row * columns + column;
+                final int[] bucket = buckets[cell];
+                for(int i = 0; i < bucketSizes[cell]; i++) {
+                    final int index = bucket[i];
+                    if(marks[index] == query)
+                        continue;
+                    marks[index] = query;
+                    final int b = index * 4;
+                    final int dx = Math.max(0, Math.max(bounds[b] - x, x - (bounds[b] + bounds[b + 2] - 1)));
+                    final int dy = Math.max(0, Math.max(bounds[b + 1] - y, y - (bounds[b + 1] + bounds[b + 3] - 1)));
+                    if(dx <= distance && dy <= distance)
+                        action.onelem(get(index));
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the object of a rectangle.
+     * @param index The index of the rectangle (in the order they were added).
+     * @return The object kept with the rectangle.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if(index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        return (T) items[index];
+    }
+
+    /**
+     * Gets the amount of rectangles in the grid.
+     * @return The amount of rectangles.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every rectangle from the grid.
+     */
+    public void clear() {
+        Arrays.fill(items, 0, size, null);
+        Arrays.fill(bucketSizes, 0);
+        size = 0;
+    }
+
+    /**
+     * Gets the width and height of a cell.
+     * @return The cell size.
+     */
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Gets the column of the cell holding a location,
+     * clamped to the grid.
+     * @param x The X value of the location.
+     * @return The column of the cell.
+     */
+    private int columnOf(int x) {
+        return x < 0 ? 0 : Math.min(x / cellSize, columns - 1);
+    }
+
+    /**
+     * Gets the row of the cell holding a location,
+     * clamped to the grid.
+     * @param y The Y value of the location.
+     * @return The row of the cell.
+     */
+    private int rowOf(int y) {
+        return y < 0 ? 0 : Math.min(y / cellSize, rows - 1);
+    }
+}
@@ -0,0 +1,147 @@
+package com.magneticstudio.transience.util;
+
+import jdk.jfr.*;
+
+/**
+ * The JDK Flight Recorder events of the game. They show up
+ * under "Transience" in a recording (for example one started
+ * with -XX:StartFlightRecording), next to the recorder's own
+ * events about allocation, garbage collection and threads, so
+ * a recording shows what the game was doing when time and
+ * memory went somewhere.
+ *
+ * Events cost next to nothing while no recording is running.
+ *
+ * @author Max
+ */
+public final class TelemetryEvents {
+
+    public static final long LONG_FRAME_NANOS = 50_000_000L; // Frames taking longer than this are reported.
+
+    private TelemetryEvents() {
+
+    }
+
+    /**
+     * Registers the periodic metrics event. Called once
+     * when the game starts.
+     */
+    public static void register() {
+        FlightRecorder.addPeriodicEvent(GameMetrics.class, () -> {
+            GameMetrics event = new GameMetrics();
+            if(!event.isEnabled())
+                return;
+            event.entities = (int) Metrics.readGauge("entities");
+            event.effects = (int) Metrics.readGauge("environment.effects");
+            event.fontCacheHitRate = Metrics.readGauge("res.fonts.hitRate");
+            event.imageCacheHitRate = Metrics.readGauge("res.images.hitRate");
+            event.frameP99 = Metrics.histogram("frame.micros").getPercentile(99);
+            event.commit();
+        });
+    }
+
+    /**
+     * Generating (or regenerating) a level.
+     */
+    @Name("transience.LevelGeneration")
+    @Label("Level Generation")
+    @Category("Transience")
+    @StackTrace(false)
+    public static final class LevelGeneration extends Event {
+        @Label("Width")
+        public int width;
+
+        @Label("Height")
+        public int height;
+
+        @Label("Regeneration")
+        @Description("Whether an existing tile set was regenerated")
+        public boolean regeneration;
+
+        @Label("Floor")
+        @Description("The index of the floor, which picks its random number stream")
+        public int floor;
+
+        @Label("Rooms Placed")
+        public int roomsPlaced;
+
+        @Label("Attempts Rejected")
+        @Description("Room placement attempts that overlapped or didn't fit")
+        public int attemptsRejected;
+
+        @Label("Background")
+        @Description("Whether the floor was generated ahead of time on the floor worker")
+        public boolean background;
+
+        @Label("Room Placer")
+        @Description("The strategy the rooms were placed with")
+        public String placer;
+
+        @Label("Saturated")
+        @Description("Whether room placement stopped before using its budget")
+        public boolean saturated;
+    }
+
+    /**
+     * Taking the stairs, from stepping onto them
+     * until the new level has faded in.
+     */
+    @Name("transience.StairTransition")
+    @Label("Stair Transition")
+    @Category("Transience")
+    @StackTrace(false)
+    public static final class StairTransition extends Event {
+        @Label("Floor")
+        @Description("The depth of the floor the stairs led to (the first floor is 0)")
+        public long floor;
+
+        @Label("Ascending")
+        @Description("Whether the stairs led back up to a visited floor")
+        public boolean ascending;
+    }
+
+    /**
+     * A frame that took longer than LONG_FRAME_NANOS.
+     */
+    @Name("transience.LongFrame")
+    @Label("Long Frame")
+    @Category("Transience")
+    @StackTrace(false)
+    public static final class LongFrame extends Event {
+        @Label("Frame Time")
+        @Timespan(Timespan.NANOSECONDS)
+        public long frameTime;
+
+        @Label("Slowest Phase")
+        @Description("The render phase that took the longest in the long frame")
+        public String slowestPhase;
+    }
+
+    /**
+     * The gauges of the game, sampled once a second.
+     */
+    @Name("transience.GameMetrics")
+    @Label("Game Metrics")
+    @Category("Transience")
+    @Period("1 s")
+    @StackTrace(false)
+    public static final class GameMetrics extends Event {
+        @Label("Entities")
+        public int entities;
+
+        @Label("Environment Effects")
+        public int effects;
+
+        @Label("Font Cache Hit Rate")
+        @Percentage
+        public double fontCacheHitRate;
+
+        @Label("Image Cache Hit Rate")
+        @Percentage
+        public double imageCacheHitRate;
+
+        @Label("Frame Time p99")
+        @Timespan(Timespan.MICROSECONDS)
+        public long frameP99;
+    }
+}
@@ -0,0 +1,13 @@
+#version 330 core
+
+in vec2 Tex;
+in vec4 Color;
+
+out vec4 FinalColor;
+
+uniform sampler2D U_Atlas;
+
+void main() {
+    // The atlas holds white glyphs, so only its alpha matters.
+    FinalColor = vec4(Color.rgb, Color.a * texture(U_Atlas, Tex).a);
+}
\ No newline at end of file
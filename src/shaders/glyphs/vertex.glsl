@@ -0,0 +1,16 @@
+#version 330 core
+
+layout (location = 0) in vec2 Cpu_Pos;
+layout (location = 1) in vec2 Cpu_Tex;
+layout (location = 2) in vec4 Cpu_Color;
+
+uniform mat4 Cpu_Projection;
+
+out vec2 Tex;
+out vec4 Color;
+
+void main() {
+    Tex = Cpu_Tex;
+    Color = Cpu_Color;
+    gl_Position = Cpu_Projection * vec4(Cpu_Pos.xy, 0.0f, 1.0f);
+}
\ No newline at end of file
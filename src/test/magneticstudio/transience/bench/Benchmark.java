@@ -0,0 +1,157 @@
+package test.magneticstudio.transience.bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * A small benchmark harness for the main-method benchmarks
+ * in this package. Each benchmark runs a few timed warmup
+ * iterations (so the JIT settles) followed by timed measurement
+ * iterations, and reports its throughput along with how much
+ * it allocates (per operation and per second) and how many
+ * garbage collections happened while it was measured.
+ *
+ * Nothing here needs a display or a GL context.
+ *
+ * @author Max
+ */
+public final class Benchmark {
+
+    private static final int BATCH = 256; // Operations run between clock checks.
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean(); // Source of allocation counters.
+
+    private static volatile long sink; // Keeps the JIT from removing the benchmarked work.
+
+    private final int warmupIterations; // The amount of warmup iterations.
+    private final int measureIterations; // The amount of measured iterations.
+    private final long iterationNanos; // The length of each iteration.
+    private final String filter; // Only benchmarks whose names contain this run (null for all).
+
+    /**
+     * Creates a new benchmark harness.
+     * @param warmupIterations The amount of warmup iterations.
+     * @param measureIterations The amount of measured iterations.
+     * @param iterationMillis The length of each iteration in milliseconds.
+     * @param filter Only benchmarks whose names contain this run (null for all).
+     */
+    public Benchmark(int warmupIterations, int measureIterations, int iterationMillis, String filter) {
+        this.warmupIterations = warmupIterations;
+        this.measureIterations = measureIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+        this.filter = filter;
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Creates a benchmark harness from command-line arguments:
+     * "-quick" makes the iterations shorter, anything
+     * else is used as a filter on the benchmark names.
+     * @param args Arguments from command-line.
+     * @return The harness.
+     */
+    public static Benchmark fromArgs(String[] args) {
+        boolean quick = false;
+        String filter = null;
+        for(String arg : args) {
+            if(arg.equals("-quick"))
+                quick = true;
+            else
+                filter = arg;
+        }
+        return quick ? new Benchmark(2, 3, 100, filter) : new Benchmark(5, 5, 500, filter);
+    }
+
+    /**
+     * Prints the header of the result table.
+     */
+    public void printHeader() {
+        System.out.println(String.format(Locale.ROOT, "%-36s %16s %10s %12s %12s %6s",
+            "Benchmark", "ops/s", "error %", "B/op", "MB/s alloc", "GCs"));
+    }
+
+    /**
+     * Runs a benchmark and prints its result.
+     * @param name The name of the benchmark.
+     * @param body The operation to measure.
+     */
+    public void run(String name, Operation body) {
+        if(filter != null && !name.contains(filter))
+            return;
+
+        for(int i = 0; i < warmupIterations; i++)
+            iterate(body);
+
+        final long thread = Thread.currentThread().getId();
+        final long gcBefore = gcCount();
+        final long allocatedBefore = THREADS.getThreadAllocatedBytes(thread);
+        double[] throughput = new double[measureIterations];
+        long totalOps = 0;
+        long totalNanos = 0;
+        for(int i = 0; i < measureIterations; i++) {
+            final long start = System.nanoTime();
+            final long ops = iterate(body);
+            final long nanos = System.nanoTime() - start;
+            throughput[i] = ops * 1e9 / nanos;
+            totalOps += ops;
+            totalNanos += nanos;
+        }
+        final long allocated = THREADS.getThreadAllocatedBytes(thread) - allocatedBefore;
+        final long gcs = gcCount() - gcBefore;
+
+        double mean = 0;
+        for(double t : throughput)
+            mean += t;
+        mean /= throughput.length;
+        double variance = 0;
+        for(double t : throughput)
+            variance += (t - mean) * (t - mean);
+        final double error = throughput.length > 1 ? Math.sqrt(variance / (throughput.length - 1)) / mean * 100 : 0;
+
+        System.out.println(String.format(Locale.ROOT, "%-36s %16.1f %9.1f%% %12.2f %12.2f %6d",
+            name, mean, error, (double) allocated / totalOps, allocated / 1e6 / (totalNanos / 1e9), gcs));
+    }
+
+    /**
+     * Runs the operation in batches for the length of one iteration.
+     * @param body The operation to run.
+     * @return The amount of operations run.
+     */
+    private long iterate(Operation body) {
+        final long end = System.nanoTime() + iterationNanos;
+        long ops = 0;
+        long result = 0;
+        do {
+            for(int i = 0; i < BATCH; i++)
+                result += body.run();
+            ops += BATCH;
+        }
+        while(System.nanoTime() < end);
+        sink += result;
+        return ops;
+    }
+
+    /**
+     * Gets the amount of garbage collections so far.
+     * @return The total collection count of every collector.
+     */
+    private static long gcCount() {
+        long count = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            count += Math.max(gc.getCollectionCount(), 0);
+        return count;
+    }
+
+    /**
+     * This interface is a single benchmarked operation.
+     */
+    public interface Operation {
+        /**
+         * Runs the operation once.
+         * @return Any value derived from the work (consumed so it isn't optimized away).
+         */
+        long run();
+    }
+}
@@ -0,0 +1,139 @@
+package test.magneticstudio.transience.bench;
+
+import com.magneticstudio.transience.devkit.Complex;
+import com.magneticstudio.transience.devkit.Mat4;
+import com.magneticstudio.transience.devkit.Quaternion;
+import com.magneticstudio.transience.util.ArrayList2D;
+import com.magneticstudio.transience.util.FlowPosition;
+import com.magneticstudio.transience.util.Shake;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Benchmarks of the primitives the game uses every frame:
+ * the tile grid, the devkit math and the animation helpers.
+ * Run it with "-quick" for shorter iterations, or with part of
+ * a benchmark's name to only run matching benchmarks, for
+ * example "Mat4".
+ *
+ * @author Max
+ */
+public final class PrimitiveBenchmarks {
+
+    private static final int GRID_SIZE = 128; // Width and height of the benchmarked grid.
+    private static final int FLOW_POSITIONS = 1000; // The amount of positions updated per operation.
+
+    /**
+     * Main entry point of the program.
+     * @param args Arguments from command-line.
+     */
+    public static void main(String[] args) {
+        Benchmark bench = Benchmark.fromArgs(args);
+        bench.printHeader();
+        gridBenchmarks(bench);
+        mathBenchmarks(bench);
+        animationBenchmarks(bench);
+    }
+
+    /**
+     * Benchmarks of ArrayList2D.
+     * @param bench The harness.
+     */
+    private static void gridBenchmarks(Benchmark bench) {
+        final ArrayList2D<String> grid = new ArrayList2D<>(GRID_SIZE, GRID_SIZE);
+        grid.fill("#");
+        final int[] cursor = {0};
+
+        bench.run("ArrayList2D.getElement", () -> {
+            final int i = cursor[0] = (cursor[0] + 7919) & (GRID_SIZE * GRID_SIZE - 1);
+            return grid.getElement(i % GRID_SIZE, i / GRID_SIZE).length();
+        });
+        bench.run("ArrayList2D.setElement", () -> {
+            final int i = cursor[0] = (cursor[0] + 7919) & (GRID_SIZE * GRID_SIZE - 1);
+            return grid.setElement((i & 1) == 0 ? "#" : ".", i % GRID_SIZE, i / GRID_SIZE) ? 1 : 0;
+        });
+        bench.run("ArrayList2D.fill " + GRID_SIZE + "x" + GRID_SIZE, () -> {
+            grid.fill((cursor[0]++ & 1) == 0 ? "#" : ".");
+            return grid.getElementCount();
+        });
+        bench.run("ArrayList2D.fillRect 12x12", () -> {
+            final int i = cursor[0] = (cursor[0] + 31) & 63;
+            grid.fillRect(".", i, i, 12, 12);
+            return i;
+        });
+
+        final ArrayList2D<String> resized = new ArrayList2D<>(GRID_SIZE, GRID_SIZE);
+        resized.fill("#");
+        bench.run("ArrayList2D.setDimensions", () -> {
+            final int size = (cursor[0]++ & 1) == 0 ? GRID_SIZE / 2 : GRID_SIZE;
+            resized.setDimensions(size, size);
+            return resized.getWidth();
+        });
+    }
+
+    /**
+     * Benchmarks of Mat4, Quaternion and Complex.
+     * @param bench The harness.
+     */
+    private static void mathBenchmarks(Benchmark bench) {
+        final Mat4 a = Mat4.Factory.rotationZ(30f).times(Mat4.Factory.translation(5f, -7f, 0f));
+        final Mat4 b = Mat4.Factory.orthographic(0, 960, 640, 0, 1, -1);
+        final Mat4 out = Mat4.Factory.identity();
+        final FloatBuffer buffer = FloatBuffer.allocate(16);
+
+        bench.run("Mat4.times", () -> (long) a.times(b).get(0, 0));
+        bench.run("Mat4.mulInto", () -> (long) Mat4.Factory.mulInto(a, b, out).get(0, 0));
+        bench.run("Mat4.getShaderBuffer", () -> a.getShaderBuffer().limit());
+        bench.run("Mat4.writeTo", () -> a.writeTo(buffer).limit());
+
+        final float[] points = new float[2 * 1000];
+        bench.run("Mat4.transformPoints2 x1000", () -> {
+            a.transformPoints2(points, 0, 1000, points);
+            return (long) points[0];
+        });
+
+        final Quaternion q1 = new Quaternion(1f, 2f, 3f, 4f);
+        final Quaternion q2 = new Quaternion(0.5f, -1f, 2f, 0.25f);
+        final Quaternion qOut = new Quaternion(1f, 0f, 0f, 0f);
+        bench.run("Quaternion.times", () -> (long) q1.times(q2).getW());
+        bench.run("Quaternion.timesInto", () -> (long) q1.timesInto(q2, qOut).getW());
+        bench.run("Quaternion.div", () -> (long) q1.div(q2).getW());
+
+        final Complex c1 = new Complex(4f, 2f);
+        final Complex c2 = new Complex(-2f, 1f);
+        final Complex cOut = new Complex(1f, 0f);
+        bench.run("Complex.times", () -> (long) c1.times(c2).getReal());
+        bench.run("Complex.timesInto", () -> (long) c1.timesInto(c2, cOut).getReal());
+        bench.run("Complex.div", () -> (long) c1.div(c2).getReal());
+    }
+
+    /**
+     * Benchmarks of FlowPosition and Shake.
+     * @param bench The harness.
+     */
+    private static void animationBenchmarks(Benchmark bench) {
+        final FlowPosition[] positions = new FlowPosition[FLOW_POSITIONS];
+        for(int i = 0; i < positions.length; i++) {
+            positions[i] = new FlowPosition(0, 0);
+            positions[i].setTransitionTime(85);
+        }
+        bench.run("FlowPosition.update x" + FLOW_POSITIONS, () -> {
+            long moving = 0;
+            for(FlowPosition position : positions) {
+                if(!position.isMoving())
+                    position.setTargetPosition(position.getTargetX() + 1, 0);
+                position.update(16);
+                moving += position.isMoving() ? 1 : 0;
+            }
+            return moving;
+        });
+
+        final Shake shake = new Shake();
+        bench.run("Shake.update", () -> {
+            shake.update(16);
+            if(shake.getRotationOffset() == 0f)
+                shake.start(20f, 6f, 400);
+            return (long) shake.getVerticalOffset();
+        });
+    }
+}
@@ -0,0 +1,104 @@
+package test.magneticstudio.transience.bench;
+
+import com.magneticstudio.transience.game.HeadlessTileRenderer;
+import com.magneticstudio.transience.game.TileSet;
+import com.magneticstudio.transience.game.TileSetGenerator;
+import com.magneticstudio.transience.ui.Res;
+import com.magneticstudio.transience.util.IntPoint;
+import com.magneticstudio.transience.util.Metrics;
+import com.magneticstudio.transience.util.RandomStreams;
+
+/**
+ * Benchmarks of generating, simulating and rendering a
+ * tile set without OpenGL (see HeadlessTileRenderer), so the
+ * CPU side of the render path is measured apart from the
+ * graphics driver. Takes the same arguments as PrimitiveBenchmarks,
+ * and prints the latest headless frame at the end.
+ *
+ * Run it from the directory holding "resources", as the
+ * tile font is read from there.
+ *
+ * @author Max
+ */
+public final class RenderBenchmarks {
+
+    private static final int TILE_SET_SIZE = 120; // Width and height of the generated tile set.
+    private static final int LEVELS = 5; // The amount of levels generated before benchmarking.
+    private static final long SEED = 42; // The seed of the generated levels, so every run benchmarks the same ones.
+
+    /**
+     * Main entry point of the program.
+     * @param args Arguments from command-line.
+     */
+    public static void main(String[] args) throws Exception {
+        Res.setHeadless(true);
+        TileSetGenerator generator = new TileSetGenerator();
+        generator.setAutoLootScatter(false);
+        generator.setRandomStreams(new RandomStreams(SEED));
+        generator.setRoomMinWidth(6);
+        generator.setRoomMinHeight(6);
+        generator.setRoomClusterSize(TileSetGenerator.ROOM_CLUSTER_SIMPLE);
+
+        // A level takes far longer than an operation of the harness, so it's timed by the metrics instead.
+        TileSet tileSet = generator.generate(TILE_SET_SIZE, TILE_SET_SIZE);
+        for(int i = 1; i < LEVELS; i++)
+            generator.regenerate(tileSet);
+        System.out.println("Generated " + LEVELS + " levels of " + TILE_SET_SIZE + "x" + TILE_SET_SIZE + ":");
+        System.out.println(Metrics.report());
+
+        final HeadlessTileRenderer renderer = new HeadlessTileRenderer();
+        tileSet.setRenderer(renderer);
+        tileSet.setViewport(1280, 720);
+        tileSet.publishSnapshot(16);
+
+        Benchmark bench = Benchmark.fromArgs(args);
+        bench.printHeader();
+        bench.run("TileSet.render (nothing changed)", () -> {
+            render(tileSet);
+            return renderer.getFramesRendered();
+        });
+
+        final IntPoint player = tileSet.getEntities().getPlayer().getPosition().getIntPoint();
+        final int[] frame = {0};
+        bench.run("TileSet.render (one tile changed)", () -> {
+            if((frame[0]++ & 1) == 0)
+                tileSet.hideTile(player.x + 1, player.y);
+            else
+                tileSet.showTile(player.x + 1, player.y);
+            render(tileSet);
+            return renderer.getTilesDrawn();
+        });
+
+        bench.run("TileSet.update + publishSnapshot", () -> {
+            tileSet.runAi();
+            tileSet.update(16);
+            tileSet.publishSnapshot(16);
+            return tileSet.getEntities().size();
+        });
+
+        bench.run("TileSet.render (zoomed out)", () -> {
+            tileSet.setScale(.25f);
+            tileSet.update(16);
+            tileSet.publishSnapshot(16);
+            render(tileSet);
+            return renderer.getFrameColumns();
+        });
+
+        System.out.println();
+        System.out.println("Latest frame (" + renderer.getFrameColumns() + "x" + renderer.getFrameRows() + " tiles):");
+        System.out.print(renderer);
+    }
+
+    /**
+     * Renders a frame headless.
+     * @param tileSet The tile set to render.
+     */
+    private static void render(TileSet tileSet) {
+        try {
+            tileSet.render(null);
+        }
+        catch(Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package test.magneticstudio.transience.game;
+
+import com.magneticstudio.transience.game.BspRoomPlacer;
+import com.magneticstudio.transience.game.PoissonRoomPlacer;
+import com.magneticstudio.transience.game.RejectionRoomPlacer;
+import com.magneticstudio.transience.game.RoomPlacer;
+import com.magneticstudio.transience.game.Tile;
+import com.magneticstudio.transience.game.TileSet;
+import com.magneticstudio.transience.game.TileSetGenerator;
+import com.magneticstudio.transience.ui.Res;
+import com.magneticstudio.transience.util.RandomStreams;
+
+/**
+ * This class is designed to test the room placers
+ * ("RejectionRoomPlacer", "BspRoomPlacer" and "PoissonRoomPlacer")
+ * in the source code package, through the tile set generator.
+ *
+ * @author Max
+ */
+public final class RoomPlacerTest {
+
+    private static final int[] SIZES = {13, 30, 120}; // The width and height of the tile sets generated.
+    private static final int FLOORS = 3; // The floors generated with each placer and size.
+
+    /**
+     * Main entry point of the program.
+     * @param args Arguments from command-line.
+     */
+    public static void main(String[] args) {
+        Res.setHeadless(true);
+
+        RoomPlacer[] placers = {new RejectionRoomPlacer(), new BspRoomPlacer(), new PoissonRoomPlacer()};
+        for(RoomPlacer placer : placers) {
+            for(int size : SIZES) {
+                TileSetGenerator generator = new TileSetGenerator();
+                generator.setAutoLootScatter(false);
+                generator.setRandomStreams(new RandomStreams(7));
+                generator.setRoomPlacer(placer);
+                generator.setRoomMinWidth(6);
+                generator.setRoomMinHeight(6);
+                generator.setRoomMaxWidth(12);
+                generator.setRoomMaxHeight(12);
+
+                // Every floor should hold rooms, and the stair down in one of them.
+                boolean carved = true, stairs = true;
+                TileSet tileSet = generator.generate(size, size);
+                for(int i = 0; i < FLOORS; i++) {
+                    if(i > 0)
+                        generator.regenerate(tileSet);
+                    carved &= count(tileSet, Tile.Type.AIR) > 0;
+                    stairs &= count(tileSet, Tile.Type.STAIR) == 1;
+                }
+                System.out.println(placer.getName() + " " + size + "x" + size
+                    + ": rooms: " + carved + ", stairs: " + stairs + " (expected true, true)");
+            }
+        }
+
+        // Rooms larger than the map can't be placed, but the tile set is still generated.
+        TileSetGenerator generator = new TileSetGenerator();
+        generator.setAutoLootScatter(false);
+        generator.setRoomMinWidth(12);
+        generator.setRoomMinHeight(12);
+        TileSet empty = generator.generate(8, 8);
+        generator.regenerate(empty);
+        System.out.println("Empty: " + count(empty, Tile.Type.AIR) + " air, "
+            + count(empty, Tile.Type.STAIR) + " stairs (expected 0 air, 0 stairs)");
+    }
+
+    /**
+     * Counts the cells of a tile type.
+     * @param tileSet The tile set to count in.
+     * @param type The tile type to count.
+     * @return The amount of cells of the type.
+     */
+    private static int count(TileSet tileSet, Tile.Type type) {
+        int count = 0;
+        for(int y = 0; y < tileSet.getTiles().getHeight(); y++) {
+            for(int x = 0; x < tileSet.getTiles().getWidth(); x++) {
+                Tile t = tileSet.getTiles().getElement(x, y);
+                if(t != null && t.getTileType() == type)
+                    count++;
+            }
+        }
+        return count;
+    }
+}
@@ -9,6 +9,7 @@
 package test.magneticstudio.transience.gl
 
 import com.magneticstudio.transience.devkit.Complex
+import com.magneticstudio.transience.devkit.Quaternion
 
 fun testComplexOnComplexArithmetic() {
     val c1 = Complex(4.0f, 2.0f)
@@ -32,7 +33,29 @@ fun testComplexOnScalarArithmetic() {
     println()
 }
 
+fun testAssignmentArithmetic() {
+    // The assigning operators must give the same results as the plain ones.
+    val c1 = Complex(4.0f, 2.0f)
+    val c2 = Complex(-2.0f, 1.0f)
+    val product = Complex(4.0f, 2.0f).also { it *= c2 }
+    val quotient = Complex(4.0f, 2.0f).also { it /= c2 }
+    println("${product isSimilarTo (c1 * c2)} ${quotient isSimilarTo (c1 / c2)} (expected true true)")
+
+    val q1 = Quaternion(1.0f, 2.0f, 3.0f, 4.0f)
+    val q2 = Quaternion(0.5f, -1.0f, 2.0f, 0.25f)
+    val qProduct = Quaternion(1.0f, 2.0f, 3.0f, 4.0f).also { it *= q2 }
+    println("${qProduct isSimilarTo (q1 * q2)} (expected true)")
+
+    // (q1 / q2) * q2 should give q1 back.
+    println("${q1 / q2 * q2} (expected about 1.0 + 2.0i + 3.0j + 4.0k)")
+
+    val conjugate = Quaternion(1.0f, 2.0f, 3.0f, 4.0f).also { it.conjugate() }
+    println("$conjugate (expected 1.0 + -2.0i + -3.0j + -4.0k)")
+    println()
+}
+
 fun main(args: Array<String>) {
     testComplexOnComplexArithmetic()
     testComplexOnScalarArithmetic()
+    testAssignmentArithmetic()
 }
\ No newline at end of file
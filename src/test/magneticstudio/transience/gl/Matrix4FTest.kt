@@ -1,6 +1,50 @@
 package test.magneticstudio.transience.gl
 
 import com.magneticstudio.transience.devkit.Mat4
+import com.magneticstudio.transience.devkit.Quaternion
+
+fun sameAs(a: Mat4, b: Mat4): Boolean {
+    for (row in 0 until 4)
+        for (col in 0 until 4)
+            if (Math.abs(a[row, col] - b[row, col]) > 1e-4f) return false
+    return true
+}
+
+fun testInPlaceMath() {
+    val a = Mat4.scaling(2f, 3f).times(Mat4.rotationZ(30f)).times(Mat4.translation(5f, -7f))
+    val b = Mat4.orthographic(0f, 960f, 640f, 0f)
+
+    println("In place math test ---- (all expected true)")
+    println(sameAs(Mat4.mulInto(a, b, Mat4.empty()), a * b))
+
+    // timesAssign used to read values it had already overwritten.
+    val c = Mat4.empty().set(a)
+    c *= b
+    println(sameAs(c, a * b))
+
+    // The output may be either operand.
+    val intoLeft = Mat4.empty().set(a)
+    val intoRight = Mat4.empty().set(b)
+    println("${sameAs(Mat4.mulInto(intoLeft, b, intoLeft), a * b)} ${sameAs(Mat4.mulInto(a, intoRight, intoRight), a * b)}")
+
+    // Or both, when a matrix is squared in place.
+    val squared = Mat4.empty().set(a)
+    val assigned = Mat4.empty().set(a)
+    assigned *= assigned
+    println("${sameAs(Mat4.mulInto(squared, squared, squared), a * Mat4.empty().set(a))} ${sameAs(assigned, a * Mat4.empty().set(a))}")
+
+    val d = Mat4.identity().scaleInPlace(2f, 3f).rotateInPlace(30f).translateInPlace(5f, -7f)
+    println(sameAs(d, a))
+
+    // A quaternion around the z axis is the same rotation as rotationZ.
+    val q = Quaternion().setAxisAngle(0f, 0f, 1f, 30f)
+    println(sameAs(q.toMatrix(Mat4.empty()), Mat4.rotationZ(30f)))
+
+    val points = floatArrayOf(1f, 2f, -4f, 0.5f)
+    a.transformPoints2(points)
+    val single = Mat4.translation(-4f, 0.5f).times(a)
+    println("${Math.abs(points[2] - single[0, 3]) < 1e-4f} ${Math.abs(points[3] - single[1, 3]) < 1e-4f}")
+}
 
 fun main(args: Array<String>) {
     val m1 = Mat4.empty()
@@ -36,5 +80,5 @@ fun main(args: Array<String>) {
     m1 *= m2
     m1.print()
 
-
-}
\ No newline at end of file
+    testInPlaceMath()
+}
@@ -22,5 +22,17 @@ public final class ArrayList2DTest {
         array.fill("Hello");
         array.setDimensions(1, 1);
         array.printToTerminal(System.out, false);
+
+        // Growing again should leave the new slots empty.
+        array.setDimensions(3, 2);
+        array.printToTerminal(System.out, false);
+        System.out.println("Count: " + array.getElementCount() + " (expected 4)");
+
+        // Unlocked writes outside of the current size grow the array.
+        array.setElement("World", 6, 4);
+        array.fillRect("Rect", 1, 1, 2, 2);
+        array.printToTerminal(System.out, false);
+        System.out.println("Count: " + array.getElementCount() + " of " + array.getSpace());
+        System.out.println(array.getElement(6, 4) + " " + array.getElement(0, 0) + " " + array.getElement(7, 0));
     }
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package test.magneticstudio.transience.util;
+
+import com.magneticstudio.transience.util.ChunkedGrid2D;
+
+/**
+ * This class is designed to test the class
+ * "ChunkedGrid2D" in the source code package.
+ *
+ * @author Max
+ */
+public final class ChunkedGrid2DTest {
+
+    /**
+     * Main entry point of the program.
+     * @param args Arguments from command-line.
+     */
+    public static void main(String[] args) {
+        ChunkedGrid2D<String> grid = new ChunkedGrid2D<>(8192, 8192, " ");
+        System.out.println("Chunks: " + grid.getAllocatedChunkCount() + " (expected 0)");
+
+        // A room crossing a chunk border touches four chunks.
+        grid.fillRect("#", 30, 30, 4, 4);
+        System.out.println("Chunks: " + grid.getAllocatedChunkCount() + " (expected 4)");
+        System.out.println(grid.getElement(31, 31) + grid.getElement(29, 29) + grid.getElement(8192, 0) + " (expected '# null')");
+        System.out.println("Empty: " + grid.isRegionEmpty(64, 64, 100, 100) + " " + grid.isRegionEmpty(0, 0, 33, 33) + " (expected true false)");
+
+        // Writing the blank element back releases the chunk.
+        grid.fillRect(" ", 32, 32, 2, 2);
+        System.out.println("Chunks: " + grid.getAllocatedChunkCount() + " (expected 3)");
+        grid.fill(" ");
+        System.out.println("Chunks: " + grid.getAllocatedChunkCount() + " (expected 0)");
+    }
+}
@@ -0,0 +1,36 @@
+package test.magneticstudio.transience.util;
+
+import com.magneticstudio.transience.util.LogHistogram;
+
+/**
+ * This class is designed to test the class
+ * "LogHistogram" in the source code package.
+ *
+ * @author Max
+ */
+public final class LogHistogramTest {
+
+    /**
+     * Main entry point of the program.
+     * @param args Arguments from command-line.
+     */
+    public static void main(String[] args) {
+        LogHistogram histogram = new LogHistogram();
+        for(int i = 1; i <= 1000; i++)
+            histogram.record(i);
+        System.out.println("Count: " + histogram.getCount() + ", mean: " + histogram.getMean() + ", max: "
+            + histogram.getMax() + " (expected 1000, 500.5, 1000)");
+        System.out.println("p50: " + histogram.getPercentile(50) + ", p99: " + histogram.getPercentile(99)
+            + " (expected within 3% of 500, 990)");
+        System.out.println("p100: " + histogram.getPercentile(100) + " (expected 1000)");
+
+        // Large values keep their relative precision.
+        histogram.reset();
+        histogram.record(123_456_789_000L);
+        System.out.println("Large p50: " + histogram.getPercentile(50) + " (expected 123456789000)");
+
+        histogram.reset();
+        System.out.println("Cleared count: " + histogram.getCount() + ", p99: " + histogram.getPercentile(99)
+            + " (expected 0, 0)");
+    }
+}
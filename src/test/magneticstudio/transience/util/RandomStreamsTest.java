@@ -0,0 +1,73 @@
+package test.magneticstudio.transience.util;
+
+import com.magneticstudio.transience.game.TileSet;
+import com.magneticstudio.transience.game.TileSetGenerator;
+import com.magneticstudio.transience.ui.Res;
+import com.magneticstudio.transience.util.RandomStreams;
+
+import java.util.Arrays;
+
+/**
+ * This class is designed to test the class
+ * "RandomStreams" in the source code package.
+ *
+ * @author Max
+ */
+public final class RandomStreamsTest {
+
+    private static final int FLOORS = 3; // The floors generated from each seed.
+    private static final int SIZE = 120; // The width and height of the tile sets.
+
+    /**
+     * Main entry point of the program.
+     * @param args Arguments from command-line.
+     */
+    public static void main(String[] args) {
+        Res.setHeadless(true);
+
+        RandomStreams streams = new RandomStreams(42);
+        System.out.println("Same stream: " + (streams.stream("floor", 1).nextLong() == streams.stream("floor", 1).nextLong()) + " (expected true)");
+        System.out.println("Other index: " + (streams.stream("floor", 1).nextLong() == streams.stream("floor", 2).nextLong()) + " (expected false)");
+
+        final long[] first = generateFloors(42);
+        final long[] second = generateFloors(42);
+        final long[] other = generateFloors(43);
+        System.out.println("Same seed: " + Arrays.equals(first, second) + " (expected true)");
+        System.out.println("Floors differ: " + (first[0] != first[1] && first[1] != first[2]) + " (expected true)");
+        System.out.println("Other seed: " + (first[0] != other[0] && first[1] != other[1] && first[2] != other[2]) + " (expected true)");
+    }
+
+    /**
+     * Generates the first floors of a tile set from a seed.
+     * @param seed The seed of the session.
+     * @return The hash of the tiles of each floor.
+     */
+    private static long[] generateFloors(long seed) {
+        TileSetGenerator generator = new TileSetGenerator();
+        generator.setAutoLootScatter(false);
+        generator.setRandomStreams(new RandomStreams(seed));
+
+        final long[] hashes = new long[FLOORS];
+        TileSet tileSet = generator.generate(SIZE, SIZE);
+        hashes[0] = hashTiles(tileSet);
+        for(int i = 1; i < FLOORS; i++) {
+            generator.regenerate(tileSet);
+            hashes[i] = hashTiles(tileSet);
+        }
+        return hashes;
+    }
+
+    /**
+     * Hashes the type of every tile of a tile set.
+     * @param tileSet The tile set to hash.
+     * @return The hash of the tiles.
+     */
+    private static long hashTiles(TileSet tileSet) {
+        long hash = 1;
+        for(int y = 0; y < tileSet.getTiles().getHeight(); y++) {
+            for(int x = 0; x < tileSet.getTiles().getWidth(); x++)
+                hash = hash * 31 + tileSet.getTiles().getElement(x, y).getTileType().ordinal();
+        }
+        return hash;
+    }
+}
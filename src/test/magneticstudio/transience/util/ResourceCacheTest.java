@@ -0,0 +1,37 @@
+package test.magneticstudio.transience.util;
+
+import com.magneticstudio.transience.util.ResourceCache;
+
+/**
+ * This class is designed to test the class
+ * "ResourceCache" in the source code package.
+ *
+ * @author Max
+ */
+public final class ResourceCacheTest {
+
+    /**
+     * Main entry point of the program.
+     * @param args Arguments from command-line.
+     */
+    public static void main(String[] args) {
+        ResourceCache<String, StringBuilder> cache = new ResourceCache<>(1, sb -> System.out.println("Disposed " + sb));
+
+        StringBuilder a = cache.acquire("a", StringBuilder::new);
+        StringBuilder a2 = cache.acquire("a", StringBuilder::new);
+        System.out.println("Same: " + (a == a2) + ", refs: " + cache.getReferenceCount("a") + " (expected true, 2)");
+        System.out.println("Hits: " + cache.getHits() + ", misses: " + cache.getMisses() + " (expected 1, 1)");
+
+        // Released resources stay cached until the idle limit is exceeded.
+        StringBuilder b = cache.acquire("b", StringBuilder::new);
+        cache.release(a);
+        cache.release(a2);
+        System.out.println("Idle: " + cache.getIdleCount() + " (expected 1)");
+        cache.release(b); // Expected: "Disposed a"
+        System.out.println("Size: " + cache.size() + " (expected 1)");
+
+        System.out.println("Foreign: " + cache.release(new StringBuilder()) + " (expected false)");
+        cache.evictIdle(); // Expected: "Disposed b"
+        System.out.println("Size: " + cache.size() + " (expected 0)");
+    }
+}
@@ -0,0 +1,38 @@
+package test.magneticstudio.transience.util;
+
+import com.magneticstudio.transience.util.RollingSamples;
+
+/**
+ * This class is designed to test the class
+ * "RollingSamples" in the source code package.
+ *
+ * @author Max
+ */
+public final class RollingSamplesTest {
+
+    /**
+     * Main entry point of the program.
+     * @param args Arguments from command-line.
+     */
+    public static void main(String[] args) {
+        RollingSamples samples = new RollingSamples(100);
+        for(int i = 100; i >= 1; i--)
+            samples.record(i);
+        samples.computeStatistics();
+        System.out.println("p50: " + samples.getP50() + ", p95: " + samples.getP95() + ", p99: "
+            + samples.getP99() + ", max: " + samples.getMax() + " (expected 50, 95, 99, 100)");
+        System.out.println("Latest: " + samples.get(0) + ", oldest: " + samples.get(99) + " (expected 1, 100)");
+
+        // The oldest samples are replaced once the buffer is full.
+        for(int i = 0; i < 50; i++)
+            samples.record(1000);
+        samples.computeStatistics();
+        System.out.println("Size: " + samples.size() + ", p50: " + samples.getP50() + ", max: "
+            + samples.getMax() + " (expected 100, 50, 1000)");
+        System.out.println("Too old: " + samples.get(100) + " (expected 0)");
+
+        samples.clear();
+        samples.computeStatistics();
+        System.out.println("Cleared size: " + samples.size() + ", max: " + samples.getMax() + " (expected 0, 0)");
+    }
+}
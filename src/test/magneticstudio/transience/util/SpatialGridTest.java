@@ -0,0 +1,64 @@
+package test.magneticstudio.transience.util;
+
+import com.magneticstudio.transience.util.SpatialGrid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class is designed to test the class
+ * "SpatialGrid" in the source code package.
+ *
+ * @author Max
+ */
+public final class SpatialGridTest {
+
+    /**
+     * Main entry point of the program.
+     * @param args Arguments from command-line.
+     */
+    public static void main(String[] args) {
+        final int size = 200;
+        SpatialGrid<int[]> grid = new SpatialGrid<>(size, size, 13);
+        List<int[]> rects = new ArrayList<>();
+        Random rng = new Random(1);
+        for(int i = 0; i < 300; i++) {
+            int[] r = {rng.nextInt(size + 20) - 10, rng.nextInt(size + 20) - 10, 1 + rng.nextInt(12), 1 + rng.nextInt(12)};
+            grid.add(r, r[0], r[1], r[2], r[3]);
+            rects.add(r);
+        }
+
+        // Every query is checked against going through all of the rectangles.
+        int overlapMismatches = 0, nearMismatches = 0;
+        for(int i = 0; i < 10_000; i++) {
+            final int x = rng.nextInt(size + 20) - 10, y = rng.nextInt(size + 20) - 10;
+            final int w = 1 + rng.nextInt(12), h = 1 + rng.nextInt(12);
+            boolean expected = false;
+            for(int[] r : rects)
+                expected |= !(r[1] + r[3] < y || y + h < r[1]) && !(r[0] + r[2] < x || x + w < r[0]);
+            if(grid.overlapsAny(x, y, w, h) != expected)
+                overlapMismatches++;
+
+            final int distance = rng.nextInt(8);
+            int expectedNear = 0;
+            for(int[] r : rects) {
+                final int dx = Math.max(0, Math.max(r[0] - x, x - (r[0] + r[2] - 1)));
+                final int dy = Math.max(0, Math.max(r[1] - y, y - (r[1] + r[3] - 1)));
+                if(dx <= distance && dy <= distance)
+                    expectedNear++;
+            }
+            final int[] near = {0};
+            grid.forEachNear(x, y, distance, r -> near[0]++);
+            if(near[0] != expectedNear)
+                nearMismatches++;
+        }
+        System.out.println("Overlap mismatches: " + overlapMismatches + " (expected 0)");
+        System.out.println("Near mismatches: " + nearMismatches + " (expected 0)");
+        System.out.println("Size: " + grid.size() + ", first: " + (grid.get(0) == rects.get(0)) + " (expected 300, true)");
+
+        grid.clear();
+        System.out.println("Cleared size: " + grid.size() + ", overlaps: " + grid.overlapsAny(0, 0, size, size)
+            + " (expected 0, false)");
+    }
+}